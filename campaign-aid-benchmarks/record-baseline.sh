@@ -0,0 +1,15 @@
+#!/bin/sh
+# Records the benchmark results with the allocation profiler.
+# Usage: record-baseline.sh [result file], the default result file is baseline/baseline.json.
+set -e
+cd "$(dirname "$0")"
+RESULT="${1:-baseline/baseline.json}"
+mkdir -p "$(dirname "$RESULT")"
+(cd ../campaign-aid && mvn -B -q install -DskipTests)
+mvn -B -q package
+java -jar target/benchmarks.jar -prof gc -rf json -rff "$RESULT"
+{
+    echo "commit: $(git rev-parse HEAD)"
+    echo "date: $(date -u +%Y-%m-%dT%H:%M:%SZ)"
+    java -version 2>&1
+} > "${RESULT%.json}.env"
@@ -0,0 +1,88 @@
+package com.kautiainen.antti.btechgame.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kautiainen.antti.btechgame.game.Equipment;
+import com.kautiainen.antti.btechgame.game.HitLocation;
+import com.kautiainen.antti.btechgame.game.LoadoutController;
+
+/**
+ * The benchmarks of the loadout operations.
+ *
+ * Every invocation operates on the next loadout of the roster, so the larger rosters measure the
+ * operations without the loadouts staying in the processor caches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadoutBenchmark {
+
+    /**
+     * The number of units in the roster.
+     */
+    @Param({"1", "100", "1000", "10000", "100000"})
+    public int rosterSize;
+
+    private Roster roster;
+
+    private LoadoutController.Loadout[] loadouts;
+
+    /**
+     * The index of the next loadout.
+     */
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.roster = new Roster(this.rosterSize, 42L);
+        this.loadouts = this.roster.createLoadouts();
+        this.cursor = 0;
+    }
+
+    /**
+     * Get the index of the next unit.
+     */
+    private int next() {
+        final int result = this.cursor;
+        this.cursor = result + 1 == this.loadouts.length ? 0 : result + 1;
+        return result;
+    }
+
+    /**
+     * Add an equipment and remove it again.
+     * @return The result of the removal.
+     */
+    @Benchmark
+    public boolean addRemoveEquipment() {
+        final int unit = next();
+        final HitLocation location = this.roster.locations[unit % this.roster.locations.length];
+        final Equipment equipment = Roster.EQUIPMENT[unit % Roster.EQUIPMENT.length];
+        this.loadouts[unit].addEquipment(location, equipment);
+        return this.loadouts[unit].removeEquipment(location, equipment);
+    }
+
+    /**
+     * Convert a loadout into equipment loadouts.
+     * @return The equipment loadouts.
+     */
+    @Benchmark
+    public LoadoutController.Entry<HitLocation, Equipment>[] toArray() {
+        return this.loadouts[next()].toArray();
+    }
+}
@@ -0,0 +1,117 @@
+package com.kautiainen.antti.btechgame.benchmark;
+
+import java.util.SplittableRandom;
+
+import com.kautiainen.antti.btechgame.game.ArmorLoadout;
+import com.kautiainen.antti.btechgame.game.Equipment;
+import com.kautiainen.antti.btechgame.game.GameRules;
+import com.kautiainen.antti.btechgame.game.HitLocation;
+import com.kautiainen.antti.btechgame.game.LoadoutController;
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+import com.kautiainen.antti.btechgame.game.StructureLoadout;
+import com.kautiainen.antti.btechgame.game.Unit;
+
+/**
+ * A generated roster of mechs used by the benchmarks.
+ *
+ * The roster is generated from a seed, so every run of a benchmark measures the same units.
+ */
+public final class Roster {
+
+    /**
+     * The equipment the units are loaded with.
+     */
+    static final Equipment[] EQUIPMENT = {
+        new Equipment("Medium Laser", "ML", 1.0, 1),
+        new Equipment("Large Laser", "LL", 5.0, 2),
+        new Equipment("Small Laser", "SL", 0.5, 1),
+        new Equipment("Autocannon/5", "AC/5", 8.0, 4),
+        new Equipment("Long Range Missile 10", "LRM 10", 5.0, 2),
+        new Equipment("Short Range Missile 4", "SRM 4", 2.0, 1),
+        new Equipment("Heat Sink", "HS", 1.0, 1),
+        new Equipment("Jump Jet", "JJ", 0.5, 1),
+    };
+
+    /**
+     * The hit locations of the units.
+     */
+    final HitLocation[] locations;
+
+    /**
+     * The units of the roster.
+     */
+    final Unit[] units;
+
+    /**
+     * The equipment loadouts of the units.
+     */
+    final EquipmentLoadout[][] loadouts;
+
+    /**
+     * The armor loadouts of the units.
+     */
+    final ArmorLoadout[][] armor;
+
+    /**
+     * The structure loadouts of the units.
+     */
+    final StructureLoadout[][] structure;
+
+    /**
+     * Generate a roster.
+     * @param size The number of units.
+     * @param seed The seed of the generated units.
+     * @throws IllegalArgumentException The size was not positive.
+     */
+    public Roster(int size, long seed) throws IllegalArgumentException {
+        if (size <= 0) throw new IllegalArgumentException("Roster size must be positive");
+        GameRules.UnitHitLocation[] defaults = GameRules.defaultHitLocations();
+        this.locations = new HitLocation[defaults.length];
+        for (int i = 0; i < defaults.length; i++) {
+            this.locations[i] = defaults[i].location();
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        this.units = new Unit[size];
+        this.loadouts = new EquipmentLoadout[size][];
+        this.armor = new ArmorLoadout[size][];
+        this.structure = new StructureLoadout[size][];
+        for (int unit = 0; unit < size; unit++) {
+            final double tonnage = 20 + 5 * random.nextInt(17);
+            this.armor[unit] = new ArmorLoadout[this.locations.length];
+            this.structure[unit] = new StructureLoadout[this.locations.length];
+            for (int i = 0; i < this.locations.length; i++) {
+                final int max = 3 + (int) (tonnage / 10) + random.nextInt(8);
+                this.armor[unit][i] = new ArmorLoadout(this.locations[i], 2 * max);
+                this.structure[unit][i] = new StructureLoadout(this.locations[i], (short) max, (short) max);
+            }
+            this.loadouts[unit] = new EquipmentLoadout[4 + random.nextInt(12)];
+            for (int i = 0; i < this.loadouts[unit].length; i++) {
+                this.loadouts[unit][i] = new EquipmentLoadout(
+                    this.locations[random.nextInt(this.locations.length)],
+                    EQUIPMENT[random.nextInt(EQUIPMENT.length)]);
+            }
+            this.units[unit] = new Unit(GameRules.UnitType.Mech, "Unit " + unit, "Model " + (unit % 64),
+                tonnage, tonnage / 2, this.loadouts[unit], this.armor[unit], this.structure[unit]);
+        }
+    }
+
+    /**
+     * The number of units.
+     * @return The number of units in the roster.
+     */
+    public int size() {
+        return this.units.length;
+    }
+
+    /**
+     * Create lenient loadouts of the units of the roster.
+     * @return The loadouts containing the equipment of the units.
+     */
+    public LoadoutController.Loadout[] createLoadouts() {
+        LoadoutController.Loadout[] result = new LoadoutController.Loadout[this.units.length];
+        for (int unit = 0; unit < result.length; unit++) {
+            result[unit] = this.units[unit].getLoadoutController(false, true).new Loadout(this.loadouts[unit]);
+        }
+        return result;
+    }
+}
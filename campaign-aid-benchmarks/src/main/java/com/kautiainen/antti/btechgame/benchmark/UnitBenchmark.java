@@ -0,0 +1,103 @@
+package com.kautiainen.antti.btechgame.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kautiainen.antti.btechgame.game.GameRules;
+import com.kautiainen.antti.btechgame.game.LoadoutController;
+import com.kautiainen.antti.btechgame.game.Unit;
+
+/**
+ * The benchmarks of the unit construction and the loadout controllers of the units.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnitBenchmark {
+
+    /**
+     * The number of units in the roster.
+     */
+    @Param({"1", "100", "1000", "10000", "100000"})
+    public int rosterSize;
+
+    private Roster roster;
+
+    /**
+     * The index of the next unit.
+     */
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.roster = new Roster(this.rosterSize, 42L);
+        this.cursor = 0;
+    }
+
+    /**
+     * Get the index of the next unit.
+     */
+    private int next() {
+        final int result = this.cursor;
+        this.cursor = result + 1 == this.roster.units.length ? 0 : result + 1;
+        return result;
+    }
+
+    /**
+     * Construct a unit copying its loadout, armor, and structure.
+     * @return The constructed unit.
+     */
+    @Benchmark
+    public Unit construct() {
+        final int unit = next();
+        return new Unit(GameRules.UnitType.Mech, "Unit", "Model", 50.0, 25.0,
+            this.roster.loadouts[unit], this.roster.armor[unit], this.roster.structure[unit]);
+    }
+
+    /**
+     * Create the loadout controller of a unit with the armor and the equipment stripped.
+     * @return The loadout controller.
+     */
+    @Benchmark
+    public LoadoutController loadoutControllerStripped() {
+        return this.roster.units[next()].getLoadoutController(true, true);
+    }
+
+    /**
+     * Create the loadout controller of a unit preserving its armor and equipment.
+     * @return The loadout controller.
+     */
+    @Benchmark
+    public LoadoutController loadoutController() {
+        return this.roster.units[next()].getLoadoutController(false, false);
+    }
+
+    /**
+     * Create the stripped loadout controllers of the whole roster. The time of an operation grows
+     * with the roster size.
+     * @param sink The consumer of the controllers.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void wholeRosterLoadoutControllers(Blackhole sink) {
+        for (Unit unit : this.roster.units) {
+            sink.consume(unit.getLoadoutController(true, true));
+        }
+    }
+}
@@ -0,0 +1 @@
+import "./copilot-DI0fjqo8.js";
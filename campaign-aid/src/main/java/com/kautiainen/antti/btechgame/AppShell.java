@@ -1,11 +1,15 @@
 package com.kautiainen.antti.btechgame;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
 
 /**
  * This class is used to configure the generated html host page used by the app
+ *
+ * The server push delivers the results of the background jobs to the user interfaces.
  */
+@Push
 @PWA(name = "Battletech Game Campaign Aid", shortName = "Campaign Aid")
 public class AppShell implements AppShellConfigurator {
     
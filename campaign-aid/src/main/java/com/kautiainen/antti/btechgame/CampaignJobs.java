@@ -0,0 +1,101 @@
+package com.kautiainen.antti.btechgame;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * The background jobs of the campaign shared by all sessions of the application.
+ *
+ * The views submit long running work such as refit optimization, simulation, imports, and saves
+ * as jobs instead of running it on the request thread. The jobs of a session count against the
+ * session limit, and the results are pushed to the user interface with {@link UI#access}.
+ */
+public final class CampaignJobs {
+
+    /**
+     * The largest number of jobs running at the same time.
+     */
+    public static final int MAX_RUNNING = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The largest number of queued and running jobs of the application.
+     */
+    public static final int MAX_PENDING = 256;
+
+    /**
+     * The largest number of queued and running jobs of a session.
+     */
+    public static final int MAX_PER_SESSION = 4;
+
+    /**
+     * The executor of the application.
+     */
+    private static final JobExecutor EXECUTOR = new JobExecutor(MAX_RUNNING, MAX_PENDING, MAX_PER_SESSION);
+
+    private CampaignJobs() {
+
+    }
+
+    /**
+     * The executor of the jobs.
+     * @return The executor shared by the application.
+     */
+    public static JobExecutor getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Submit a job of the session of a user interface. The job is cancelled if the user interface
+     * is detached before the job ends.
+     * @param <T> The type of the result.
+     * @param ui The user interface receiving the result.
+     * @param name The name of the job.
+     * @param task The task of the job.
+     * @param onSuccess The consumer of the result called with the lock of the session.
+     * @param onFailure The consumer of the failure or the {@link java.util.concurrent.CancellationException}
+     * called with the lock of the session.
+     * @return The accepted job.
+     * @throws IllegalArgumentException Any value was undefined, or the user interface had no
+     * session.
+     * @throws RejectedExecutionException The session or the application had too many jobs.
+     */
+    public static <T> Job<T> submit(UI ui, String name, Job.Task<T> task, SerializableConsumer<T> onSuccess,
+        SerializableConsumer<Throwable> onFailure) throws IllegalArgumentException, RejectedExecutionException {
+        if (ui == null) throw new IllegalArgumentException("Missing user interface");
+        if (onSuccess == null) throw new IllegalArgumentException("Missing result consumer");
+        if (onFailure == null) throw new IllegalArgumentException("Missing failure consumer");
+        VaadinSession session = ui.getSession();
+        if (session == null) throw new IllegalArgumentException("User interface without session");
+        Job<T> job = EXECUTOR.submit(session, name, task);
+        Registration detach = ui.addDetachListener(event -> job.cancel());
+        job.getResult().whenComplete((value, failure) -> {
+            try {
+                ui.access(() -> {
+                    detach.remove();
+                    if (failure == null) {
+                        onSuccess.accept(value);
+                    } else {
+                        onFailure.accept(failure);
+                    }
+                });
+            } catch (UIDetachedException exception) {
+                // Nobody is left to receive the result.
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Cancel the jobs of a session.
+     * @param session The session.
+     * @return The number of cancelled jobs.
+     */
+    public static int cancelAll(VaadinSession session) {
+        return EXECUTOR.cancelAll(session);
+    }
+}
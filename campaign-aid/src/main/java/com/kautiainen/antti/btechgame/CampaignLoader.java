@@ -0,0 +1,49 @@
+package com.kautiainen.antti.btechgame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kautiainen.antti.btechgame.game.Campaign;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+
+/**
+ * The loader of the campaign of the shared roster.
+ *
+ * The loader is registered as a service init listener. If the {@link #CAMPAIGN_PROPERTY} system
+ * property names a campaign store directory or a campaign file, the loader loads the campaign into
+ * the {@link CampaignRoster} when the service starts. Without the property the roster is empty.
+ */
+public class CampaignLoader implements VaadinServiceInitListener {
+
+    /**
+     * The logger logging for the campaign loader.
+     */
+    static final Logger log = LoggerFactory.getLogger(CampaignLoader.class);
+
+    /**
+     * The system property naming the campaign store directory or the campaign file.
+     */
+    public static final String CAMPAIGN_PROPERTY = "btechgame.campaign";
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        final String campaign = System.getProperty(CAMPAIGN_PROPERTY);
+        if (campaign == null || campaign.isBlank()) return;
+        final Path path = Path.of(campaign);
+        if (!Files.exists(path)) {
+            log.warn("Campaign {} does not exist, the roster is empty", path);
+            return;
+        }
+        try {
+            Campaign loaded = CampaignRoster.getInstance().open(path);
+            log.info("Loaded campaign {} with {} units from {}", loaded.getName(), loaded.size(), path);
+        } catch (IOException | IllegalArgumentException exception) {
+            log.error("Loading campaign {} failed", path, exception);
+        }
+    }
+}
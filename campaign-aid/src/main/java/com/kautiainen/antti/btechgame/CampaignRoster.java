@@ -0,0 +1,148 @@
+package com.kautiainen.antti.btechgame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.kautiainen.antti.btechgame.game.Campaign;
+import com.kautiainen.antti.btechgame.game.CampaignStore;
+import com.kautiainen.antti.btechgame.game.HitLocationRegistry;
+import com.kautiainen.antti.btechgame.game.MappedCampaign;
+import com.kautiainen.antti.btechgame.game.RosterIndex;
+import com.kautiainen.antti.btechgame.game.RuleSet;
+import com.kautiainen.antti.btechgame.game.Unit;
+
+/**
+ * The roster of the open campaign shared by all sessions of the application.
+ *
+ * The roster keeps one index of the units, which the roster views of all users query, so the
+ * units are not copied into the sessions. The campaign and its index are replaced together, so the
+ * readers never see an index of another campaign.
+ */
+public final class CampaignRoster {
+
+    /**
+     * The roster of the application.
+     */
+    private static final CampaignRoster INSTANCE = new CampaignRoster();
+
+    /**
+     * Get the roster of the application.
+     * @return The roster shared by the application.
+     */
+    public static CampaignRoster getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The campaign of the roster with its index.
+     * @param campaign The campaign.
+     * @param index The index of the units of the campaign.
+     */
+    private static record State(Campaign campaign, RosterIndex index) {
+
+    }
+
+    /**
+     * The current campaign and index of the units.
+     */
+    private final AtomicReference<State> state = new AtomicReference<>(
+        new State(new Campaign("Campaign", new Unit[0]), new RosterIndex(new Unit[0])));
+
+    private CampaignRoster() {
+
+    }
+
+    /**
+     * The current index of the units.
+     * @return The index of the units of the open campaign.
+     */
+    public RosterIndex getIndex() {
+        return this.state.get().index();
+    }
+
+    /**
+     * The current campaign.
+     * @return The campaign whose units the roster contains.
+     */
+    public Campaign getCampaign() {
+        return this.state.get().campaign();
+    }
+
+    /**
+     * Replace the units of the roster. The index of the units is built before it replaces the
+     * current index, so the queries are never blocked.
+     * @param campaign The campaign whose units the roster contains.
+     * @throws IllegalArgumentException The campaign was undefined.
+     */
+    public void setCampaign(Campaign campaign) throws IllegalArgumentException {
+        RosterIndex index = RosterIndex.of(campaign);
+        synchronized (this.state) {
+            this.state.set(new State(campaign, index));
+        }
+    }
+
+    /**
+     * Add units to the campaign of the roster. The additions are serialized, so concurrent
+     * additions do not lose units.
+     * @param units The added units.
+     * @return The campaign with the added units.
+     * @throws IllegalArgumentException The units were undefined or contained an undefined unit.
+     */
+    public Campaign addUnits(Collection<Unit> units) throws IllegalArgumentException {
+        if (units == null) throw new IllegalArgumentException("Missing units");
+        synchronized (this.state) {
+            Campaign current = this.state.get().campaign();
+            Unit[] result = new Unit[current.size() + units.size()];
+            for (int i = 0; i < current.size(); i++) {
+                result[i] = current.getUnit(i);
+            }
+            int index = current.size();
+            for (Unit unit : units) {
+                result[index++] = unit;
+            }
+            Campaign campaign = new Campaign(current.getName(), result);
+            this.state.set(new State(campaign, RosterIndex.of(campaign)));
+            return campaign;
+        }
+    }
+
+    /**
+     * Load a campaign with the current shared rule set, and replace the units of the roster with
+     * its units.
+     * @param path The directory of a campaign store, or a campaign file.
+     * @return The loaded campaign.
+     * @throws IllegalArgumentException The path was undefined, or the directory did not contain a
+     * campaign.
+     * @throws IOException The campaign could not be read.
+     */
+    public Campaign open(Path path) throws IllegalArgumentException, IOException {
+        return open(path, SharedRegistry.getInstance().getRuleSet());
+    }
+
+    /**
+     * Load a campaign, and replace the units of the roster with its units. The campaign store is
+     * read without opening it, so loading the roster never writes to the store.
+     * @param path The directory of a campaign store, or a campaign file.
+     * @param ruleSet The rule set whose hit locations the units use.
+     * @return The loaded campaign.
+     * @throws IllegalArgumentException The path or the rule set was undefined, or the directory
+     * did not contain a campaign.
+     * @throws IOException The campaign could not be read.
+     */
+    public Campaign open(Path path, RuleSet ruleSet) throws IllegalArgumentException, IOException {
+        if (path == null) throw new IllegalArgumentException("Missing campaign path");
+        if (ruleSet == null) throw new IllegalArgumentException("Missing rule set");
+        final HitLocationRegistry registry = ruleSet.getLocations();
+        final Campaign campaign;
+        if (Files.isDirectory(path)) {
+            campaign = CampaignStore.read(path, registry);
+        } else {
+            campaign = MappedCampaign.open(path, registry).toCampaign();
+        }
+        setCampaign(campaign);
+        return campaign;
+    }
+}
@@ -0,0 +1,238 @@
+package com.kautiainen.antti.btechgame;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A background job of the campaign.
+ *
+ * The job tracks its state and progress, and the task of the job reports the progress and checks
+ * the cancellation through the job.
+ * @param <T> The type of the result.
+ */
+public final class Job<T> {
+
+    /**
+     * The task of a job.
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public static interface Task<T> {
+
+        /**
+         * Perform the task.
+         * @param job The job performing the task.
+         * @return The result of the task.
+         * @throws Exception The task failed.
+         */
+        T run(Job<T> job) throws Exception;
+    }
+
+    /**
+     * The states of a job.
+     */
+    public static enum State {
+        /** The job waits for a free worker. */
+        QUEUED,
+        /** The job is running. */
+        RUNNING,
+        /** The job completed with a result. */
+        DONE,
+        /** The job failed with an exception. */
+        FAILED,
+        /** The job was cancelled. */
+        CANCELLED;
+
+        /**
+         * Has the job ended.
+         * @return True, if and only if the state is final.
+         */
+        public boolean isFinal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final long id;
+
+    private final String name;
+
+    private final Object owner;
+
+    private final Task<T> task;
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+
+    /**
+     * The lock guarding the interrupting and the clearing of the worker, so a cancellation never
+     * interrupts the thread after the job has stopped running on it.
+     */
+    private final Object workerLock = new Object();
+
+    /**
+     * The thread running the job.
+     */
+    private Thread worker;
+
+    /**
+     * The consumer of the job called after the state or the progress of the job has changed.
+     */
+    private final java.util.function.Consumer<Job<?>> onChange;
+
+    private volatile long done;
+
+    private volatile long total;
+
+    /**
+     * Create a new job.
+     * @param id The identifier of the job.
+     * @param name The name of the job.
+     * @param owner The owner of the job.
+     * @param task The task of the job.
+     * @param onChange The consumer of the job called by the thread changing the state or the
+     * progress of the job after the change.
+     */
+    Job(long id, String name, Object owner, Task<T> task, java.util.function.Consumer<Job<?>> onChange) {
+        this.id = id;
+        this.name = name;
+        this.owner = owner;
+        this.task = task;
+        this.onChange = onChange;
+    }
+
+    /**
+     * The identifier of the job.
+     * @return The identifier unique within the executor.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * The name of the job.
+     * @return The name describing the job to the user.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The owner of the job.
+     * @return The owner whose job limit the job counts against.
+     */
+    Object getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * The state of the job.
+     * @return The current state.
+     */
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * The result of the job.
+     * @return The future completed with the result, or completed exceptionally with the failure or
+     * a {@link CancellationException}.
+     */
+    public CompletableFuture<T> getResult() {
+        return this.result;
+    }
+
+    /**
+     * The progress of the job.
+     * @return The progress between 0 and 1, or -1 if the task has not reported its progress.
+     */
+    public double getProgress() {
+        if (getState() == State.DONE) return 1.0;
+        long total = this.total;
+        return total <= 0 ? -1 : Math.min(1.0, (double) this.done / total);
+    }
+
+    /**
+     * Report the progress of the job.
+     * @param done The number of performed steps.
+     * @param total The total number of steps.
+     * @throws CancellationException The job has been cancelled.
+     */
+    public void setProgress(long done, long total) throws CancellationException {
+        checkCancelled();
+        this.done = done;
+        this.total = total;
+        this.onChange.accept(this);
+    }
+
+    /**
+     * Has the job been cancelled.
+     * @return True, if and only if the job has been cancelled.
+     */
+    public boolean isCancelled() {
+        return getState() == State.CANCELLED;
+    }
+
+    /**
+     * Check whether the job has been cancelled. Long running tasks should check the cancellation
+     * regularly.
+     * @throws CancellationException The job has been cancelled.
+     */
+    public void checkCancelled() throws CancellationException {
+        if (isCancelled()) throw new CancellationException("Job " + this.name + " was cancelled");
+    }
+
+    /**
+     * Cancel the job. A queued job never runs, and a running job is interrupted.
+     * @return True, if and only if the job was cancelled by the call.
+     */
+    public boolean cancel() {
+        State current;
+        do {
+            current = this.state.get();
+            if (current.isFinal()) return false;
+        } while (!this.state.compareAndSet(current, State.CANCELLED));
+        synchronized (this.workerLock) {
+            if (this.worker != null) this.worker.interrupt();
+        }
+        this.result.completeExceptionally(new CancellationException("Job " + this.name + " was cancelled"));
+        this.onChange.accept(this);
+        return true;
+    }
+
+    /**
+     * Run the job on the current thread. The thread is not interrupted by a cancellation after the
+     * method has returned.
+     */
+    void run() {
+        synchronized (this.workerLock) {
+            this.worker = Thread.currentThread();
+        }
+        try {
+            if (!this.state.compareAndSet(State.QUEUED, State.RUNNING)) return;
+            this.onChange.accept(this);
+            T value = this.task.run(this);
+            if (this.state.compareAndSet(State.RUNNING, State.DONE)) {
+                this.result.complete(value);
+                this.onChange.accept(this);
+            }
+        } catch (Throwable exception) {
+            if (this.state.compareAndSet(State.RUNNING, State.FAILED)) {
+                this.result.completeExceptionally(exception);
+                this.onChange.accept(this);
+            }
+        } finally {
+            synchronized (this.workerLock) {
+                this.worker = null;
+                // Clears the interrupt of a cancellation racing with the end of the task.
+                Thread.interrupted();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "#" + this.id + "[" + getState() + "]";
+    }
+}
@@ -0,0 +1,324 @@
+package com.kautiainen.antti.btechgame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kautiainen.antti.btechgame.metrics.Counter;
+import com.kautiainen.antti.btechgame.metrics.Metrics;
+
+/**
+ * The bounded executor of the background jobs.
+ *
+ * The executor runs each job on a virtual thread when the JVM supports them, and on a pool of
+ * daemon threads otherwise. The number of running jobs is limited globally, and the number of
+ * accepted but not ended jobs is limited both globally and per owner, so one owner can not starve
+ * the others. A job ends when its thread stops running it, so a cancelled job counts against the
+ * limits until its task has returned. The listeners of an owner are told about the changes of the
+ * states and the progress of the jobs of the owner, so the views need not poll the jobs.
+ */
+public final class JobExecutor implements AutoCloseable {
+
+    /**
+     * The logger logging for the job executor.
+     */
+    static final Logger log = LoggerFactory.getLogger(JobExecutor.class);
+
+    /**
+     * The number of jobs rejected by the executors.
+     */
+    static final Counter REJECTED = Metrics.counter("jobs.rejected");
+
+    /**
+     * The threads running the jobs.
+     */
+    private final ExecutorService threads;
+
+    /**
+     * The permits of the running jobs.
+     */
+    private final Semaphore running;
+
+    private final int maxRunning;
+
+    private final int maxPending;
+
+    private final int maxPerOwner;
+
+    /**
+     * The number of accepted jobs not ended.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * The accepted jobs not ended.
+     */
+    private final Map<Long, Job<?>> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The number of accepted jobs not ended by owner.
+     */
+    private final Map<Object, AtomicInteger> owners = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * The listeners of the changes of the jobs by owner.
+     */
+    private final Map<Object, List<Consumer<Job<?>>>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new executor.
+     * @param maxRunning The largest number of jobs running at the same time.
+     * @param maxPending The largest number of accepted jobs not ended.
+     * @param maxPerOwner The largest number of accepted jobs not ended per owner.
+     * @throws IllegalArgumentException Any limit was not positive, or the running or owner limit
+     * exceeded the pending limit.
+     */
+    public JobExecutor(int maxRunning, int maxPending, int maxPerOwner) throws IllegalArgumentException {
+        if (maxRunning <= 0 || maxPending <= 0 || maxPerOwner <= 0) {
+            throw new IllegalArgumentException("Non-positive job limit");
+        }
+        if (maxRunning > maxPending || maxPerOwner > maxPending) {
+            throw new IllegalArgumentException("Job limit exceeds the pending job limit");
+        }
+        this.maxRunning = maxRunning;
+        this.maxPending = maxPending;
+        this.maxPerOwner = maxPerOwner;
+        this.running = new Semaphore(maxRunning, true);
+        this.threads = createThreads(maxRunning);
+    }
+
+    /**
+     * Create the threads of the jobs.
+     * @param maxRunning The largest number of jobs running at the same time.
+     * @return The executor with a virtual thread per task if the JVM supports them, or a fixed pool
+     * of daemon threads.
+     */
+    private static ExecutorService createThreads(int maxRunning) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "campaign-job-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            log.info("Virtual threads not available, using {} platform threads for jobs", maxRunning);
+            return Executors.newFixedThreadPool(maxRunning, factory);
+        }
+    }
+
+    /**
+     * Submit a job.
+     * @param <T> The type of the result.
+     * @param owner The owner of the job.
+     * @param name The name of the job.
+     * @param task The task of the job.
+     * @return The accepted job.
+     * @throws IllegalArgumentException The owner, the name, or the task was undefined.
+     * @throws RejectedExecutionException The owner or the executor had too many jobs, or the
+     * executor was closed.
+     */
+    public <T> Job<T> submit(Object owner, String name, Job.Task<T> task)
+        throws IllegalArgumentException, RejectedExecutionException {
+        if (owner == null) throw new IllegalArgumentException("Missing owner");
+        if (name == null) throw new IllegalArgumentException("Missing name");
+        if (task == null) throw new IllegalArgumentException("Missing task");
+        if (this.pending.incrementAndGet() > this.maxPending) {
+            this.pending.decrementAndGet();
+            REJECTED.increment();
+            throw new RejectedExecutionException("Too many jobs");
+        }
+        AtomicInteger ownerJobs = this.owners.compute(owner, (key, count) -> {
+            AtomicInteger result = count == null ? new AtomicInteger() : count;
+            result.incrementAndGet();
+            return result;
+        });
+        if (ownerJobs.get() > this.maxPerOwner) {
+            release(owner);
+            REJECTED.increment();
+            throw new RejectedExecutionException("Too many jobs of the owner");
+        }
+        Job<T> job = new Job<>(this.nextId.incrementAndGet(), name, owner, task, this::changed);
+        this.jobs.put(job.getId(), job);
+        try {
+            this.threads.execute(() -> execute(job));
+        } catch (RejectedExecutionException exception) {
+            job.cancel();
+            end(job);
+            REJECTED.increment();
+            throw exception;
+        }
+        return job;
+    }
+
+    /**
+     * Run a job once a running permit is available.
+     */
+    private void execute(Job<?> job) {
+        try {
+            if (job.getState().isFinal()) return;
+            try {
+                this.running.acquire();
+            } catch (InterruptedException exception) {
+                job.cancel();
+                return;
+            }
+            try {
+                job.run();
+            } finally {
+                this.running.release();
+            }
+        } finally {
+            end(job);
+        }
+    }
+
+    /**
+     * End a job releasing its place in the limits.
+     */
+    private void end(Job<?> job) {
+        if (this.jobs.remove(job.getId()) != null) {
+            release(job.getOwner());
+            changed(job);
+        }
+    }
+
+    /**
+     * Tell the listeners of an owner about a change of a job. A failing listener does not stop the
+     * other listeners or the job.
+     */
+    private void changed(Job<?> job) {
+        List<Consumer<Job<?>>> registered = this.listeners.get(job.getOwner());
+        if (registered == null) return;
+        for (Consumer<Job<?>> listener : registered) {
+            try {
+                listener.accept(job);
+            } catch (RuntimeException exception) {
+                log.warn("Job listener failed on {}", job, exception);
+            }
+        }
+    }
+
+    /**
+     * Add a listener of the changes of the jobs of an owner. The listener is called by the thread
+     * changing a job after the state or the progress of the job has changed, and after the job
+     * has ended. The listener must return quickly.
+     * @param owner The owner of the jobs.
+     * @param listener The added listener.
+     * @throws IllegalArgumentException The owner or the listener was undefined.
+     */
+    public void addJobListener(Object owner, Consumer<Job<?>> listener) throws IllegalArgumentException {
+        if (owner == null) throw new IllegalArgumentException("Missing owner");
+        if (listener == null) throw new IllegalArgumentException("Missing listener");
+        this.listeners.compute(owner, (key, registered) -> {
+            List<Consumer<Job<?>>> result = registered == null ? new CopyOnWriteArrayList<>() : registered;
+            result.add(listener);
+            return result;
+        });
+    }
+
+    /**
+     * Remove a listener of the changes of the jobs of an owner.
+     * @param owner The owner of the jobs.
+     * @param listener The removed listener.
+     * @return True, if and only if the listener was removed.
+     */
+    public boolean removeJobListener(Object owner, Consumer<Job<?>> listener) {
+        if (owner == null) return false;
+        final boolean[] result = { false };
+        this.listeners.computeIfPresent(owner, (key, registered) -> {
+            result[0] = registered.remove(listener);
+            return registered.isEmpty() ? null : registered;
+        });
+        return result[0];
+    }
+
+    /**
+     * Release the pending job of an owner.
+     */
+    private void release(Object owner) {
+        this.owners.computeIfPresent(owner, (key, count) -> count.decrementAndGet() == 0 ? null : count);
+        this.pending.decrementAndGet();
+    }
+
+    /**
+     * The jobs of an owner.
+     * @param owner The owner.
+     * @return The accepted jobs of the owner which have not ended.
+     */
+    public List<Job<?>> getJobs(Object owner) {
+        List<Job<?>> result = new ArrayList<>();
+        for (Job<?> job : this.jobs.values()) {
+            if (job.getOwner() == owner) result.add(job);
+        }
+        result.sort((first, second) -> Long.compare(first.getId(), second.getId()));
+        return result;
+    }
+
+    /**
+     * Cancel the jobs of an owner.
+     * @param owner The owner.
+     * @return The number of cancelled jobs.
+     */
+    public int cancelAll(Object owner) {
+        int result = 0;
+        for (Job<?> job : getJobs(owner)) {
+            if (job.cancel()) result++;
+        }
+        return result;
+    }
+
+    /**
+     * The number of accepted jobs not ended.
+     * @return The number of queued and running jobs.
+     */
+    public int getPendingCount() {
+        return this.pending.get();
+    }
+
+    /**
+     * The largest number of jobs running at the same time.
+     * @return The running job limit.
+     */
+    public int getMaxRunning() {
+        return this.maxRunning;
+    }
+
+    /**
+     * Cancel all jobs and stop the threads.
+     */
+    @Override
+    public void close() {
+        for (Job<?> job : this.jobs.values()) {
+            job.cancel();
+        }
+        this.threads.shutdownNow();
+        try {
+            if (this.threads.awaitTermination(10, TimeUnit.SECONDS)) {
+                // The jobs whose threads never started have not ended.
+                for (Job<?> job : this.jobs.values()) {
+                    end(job);
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
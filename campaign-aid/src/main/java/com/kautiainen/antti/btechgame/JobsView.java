@@ -0,0 +1,113 @@
+package com.kautiainen.antti.btechgame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.router.RouterLink;
+import com.vaadin.flow.server.VaadinSession;
+
+/**
+ * The view showing the background jobs of the session of the user.
+ *
+ * The view listens to the changes of the jobs of the session, and pushes the refreshed jobs to the
+ * browser. A change arriving while a refresh is waiting for the lock of the session is included in
+ * that refresh, so frequent progress reports do not queue up refreshes.
+ */
+@Route("users/jobs")
+@PageTitle("Jobs")
+public class JobsView extends VerticalLayout {
+
+    /**
+     * The grid of the jobs.
+     */
+    private final Grid<Job<?>> grid = new Grid<>();
+
+    /**
+     * Is a refresh waiting for the lock of the session.
+     */
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    /**
+     * The session whose jobs the listener follows, or undefined value if the view is detached.
+     */
+    private VaadinSession session;
+
+    /**
+     * The listener of the jobs of the session, or undefined value if the view is detached.
+     */
+    private Consumer<Job<?>> listener;
+
+    public JobsView() {
+        this.grid.addColumn(Job::getName).setHeader("Job");
+        this.grid.addColumn(Job::getState).setHeader("State");
+        this.grid.addComponentColumn(job -> {
+            ProgressBar progress = new ProgressBar();
+            double value = job.getProgress();
+            progress.setIndeterminate(value < 0);
+            if (value >= 0) progress.setValue(value);
+            return progress;
+        }).setHeader("Progress");
+        this.grid.addComponentColumn(job -> new Button("Cancel", event -> {
+            job.cancel();
+            refresh();
+        })).setHeader("");
+
+        add(new RouterLink("Main", MainView.class));
+        add(new HorizontalLayout(new Button("Refresh", event -> refresh()),
+            new Button("Cancel all", event -> {
+                CampaignJobs.cancelAll(VaadinSession.getCurrent());
+                refresh();
+            })));
+        add(this.grid);
+        refresh();
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        final UI ui = attachEvent.getUI();
+        this.session = attachEvent.getSession();
+        this.listener = job -> {
+            if (this.refreshPending.compareAndSet(false, true)) {
+                try {
+                    ui.access(() -> {
+                        this.refreshPending.set(false);
+                        refresh();
+                    });
+                } catch (UIDetachedException exception) {
+                    // The view is being detached, and the listener is removed.
+                }
+            }
+        };
+        CampaignJobs.getExecutor().addJobListener(this.session, this.listener);
+        refresh();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (this.listener != null) {
+            CampaignJobs.getExecutor().removeJobListener(this.session, this.listener);
+            this.listener = null;
+            this.session = null;
+        }
+        super.onDetach(detachEvent);
+    }
+
+    /**
+     * Refresh the jobs of the session.
+     */
+    private void refresh() {
+        this.grid.setItems(CampaignJobs.getExecutor().getJobs(VaadinSession.getCurrent()));
+    }
+}
@@ -3,6 +3,10 @@ package com.kautiainen.antti.btechgame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kautiainen.antti.btechgame.metrics.Counter;
+import com.kautiainen.antti.btechgame.metrics.Histogram;
+import com.kautiainen.antti.btechgame.metrics.Metrics;
+
 import com.vaadin.flow.component.ClickEvent;
 import com.vaadin.flow.component.ComponentEventListener;
 import com.vaadin.flow.component.button.Button;
@@ -58,19 +62,71 @@ public class MainView extends VerticalLayout implements ComponentEventListener<C
                 event -> add(new Paragraph("Clicked!")));
 
         add(button);
+        add(createRulesSummary(SharedRegistry.getInstance().getSnapshot()));
+    }
+
+    /**
+     * Create the summary of the shared rules.
+     * @param shared The snapshot of the shared rules data.
+     * @return The paragraph naming the rule set, and telling the number of hit locations and
+     * equipment.
+     */
+    static Paragraph createRulesSummary(SharedRegistry.Snapshot shared) {
+        return new Paragraph(String.format("Rules %s with %d hit locations and %d equipment", shared.ruleSet(),
+            shared.locations().size(), shared.catalog().size()));
+    }
+
+    /**
+     * The number of menu selections of unknown routes or failing with an exception.
+     */
+    static final Counter ROUTE_ERRORS = Metrics.counter("ui.route.errors");
+
+    /**
+     * Get the latency histogram of a menu route.
+     * @param route The identifier of the menu item.
+     * @return The histogram of the route, or the histogram of unknown routes.
+     */
+    static Histogram routeLatency(String route) {
+        return switch (route) {
+            case "campaign-create", "campaign-open", "campaign-close", "account-create", "account-select",
+                "account-close" -> Metrics.histogram("ui.route." + route.replace('-', '_'));
+            default -> Metrics.histogram("ui.route.unknown");
+        };
     }
 
     @Override
     public void onComponentEvent(ClickEvent<MenuItem> event) {
+        final long start = System.nanoTime();
         MenuItem item = event.getSource();
-        switch (item.getId().orElse("")) {
+        String route = item.getId().orElse("");
+        try {
+            handleMenuItem(item, route, event);
+        } catch (RuntimeException exception) {
+            ROUTE_ERRORS.increment();
+            throw exception;
+        } finally {
+            routeLatency(route).recordSince(start);
+        }
+    }
+
+    /**
+     * Perform the action of a menu item.
+     * @param item The selected menu item.
+     * @param route The identifier of the menu item.
+     * @param event The click event.
+     */
+    private void handleMenuItem(MenuItem item, String route, ClickEvent<MenuItem> event) {
+        switch (route) {
             case "campaign-create" -> performCreateCampaign(event);
             case "campaign-open" -> performOpenCampaign(event);
             case "campaign-close" -> performCloseCampaign(event);
             case "account-create" -> performSignIn(event);
             case "account-select" -> performLogIn(event);
             case "account-close" -> performLogOut(event);
-            default -> log.atError().log("Unknown menu item [%s]:%s", item.getId(), item.getText());
+            default -> {
+                ROUTE_ERRORS.increment();
+                log.atError().log("Unknown menu item [%s]:%s", item.getId(), item.getText());
+            }
         }
 ;
     }
@@ -0,0 +1,186 @@
+package com.kautiainen.antti.btechgame;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The estimator of the memory retained by an object graph.
+ *
+ * The estimator walks the objects reachable from a root and sums their estimated sizes assuming a
+ * 64-bit JVM with compressed references. The walk does not enter the boundary objects, which are
+ * shared by the application, so the estimate is the memory that would be freed with the root.
+ * The private fields of the JDK classes are not accessible, so the strings, the collections, and
+ * the maps of the JDK are estimated from their contents, and other JDK objects are counted as
+ * small objects without content.
+ *
+ * The estimator is not thread safe, and the walked objects should not change during the walk.
+ */
+final class MemoryEstimator {
+
+    /**
+     * The largest number of objects walked.
+     */
+    static final int MAX_OBJECTS = 1_000_000;
+
+    private static final int HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    /**
+     * The instance fields and the shallow sizes of the classes.
+     */
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return Layout.of(type);
+        }
+    };
+
+    /**
+     * The layout of a class.
+     * @param size The shallow size of the instances.
+     * @param references The accessible reference fields, or undefined value if the fields are not
+     * accessible.
+     */
+    private static record Layout(long size, Field[] references) {
+
+        static Layout of(Class<?> type) {
+            long size = HEADER;
+            List<Field> references = new ArrayList<>();
+            boolean accessible = !type.getModule().isNamed();
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) continue;
+                    size += sizeOf(field.getType());
+                    if (!field.getType().isPrimitive() && accessible) {
+                        try {
+                            field.setAccessible(true);
+                            references.add(field);
+                        } catch (RuntimeException exception) {
+                            accessible = false;
+                        }
+                    }
+                }
+            }
+            return new Layout(align(size), accessible ? references.toArray(new Field[0]) : null);
+        }
+    }
+
+    /**
+     * The objects not walked.
+     */
+    private final Predicate<Object> boundary;
+
+    /**
+     * Create a new estimator.
+     * @param boundary The predicate of the shared objects not included in the estimates.
+     */
+    MemoryEstimator(Predicate<Object> boundary) {
+        this.boundary = boundary;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        if (type == byte.class || type == boolean.class) return 1;
+        return REFERENCE;
+    }
+
+    /**
+     * Estimate the memory retained by an object.
+     * @param root The root object.
+     * @return The estimated size of the objects reachable from the root without entering the
+     * boundary objects in bytes.
+     */
+    long estimate(Object root) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        long result = 0;
+        if (root != null) {
+            visited.add(root);
+            pending.push(root);
+        }
+        while (!pending.isEmpty() && visited.size() <= MAX_OBJECTS) {
+            final Object current = pending.pop();
+            final Class<?> type = current.getClass();
+            final List<Object> children = new ArrayList<>();
+            if (type.isArray()) {
+                final int length = Array.getLength(current);
+                final Class<?> component = type.getComponentType();
+                result += align(ARRAY_HEADER + (long) length * sizeOf(component));
+                if (!component.isPrimitive()) {
+                    Collections.addAll(children, (Object[]) current);
+                }
+            } else if (current instanceof String text) {
+                result += align(HEADER + 12) + align(ARRAY_HEADER + text.length());
+            } else if (type.getModule().isNamed()) {
+                result += estimateJdk(current, children);
+            } else {
+                final Layout layout = LAYOUTS.get(type);
+                result += layout.size;
+                if (layout.references != null) {
+                    for (Field field : layout.references) {
+                        try {
+                            children.add(field.get(current));
+                        } catch (IllegalAccessException exception) {
+                            // The field is counted in the shallow size only.
+                        }
+                    }
+                }
+            }
+            for (Object child : children) {
+                if (child != null && !isShared(child) && visited.add(child)) {
+                    pending.push(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimate a JDK object from its public contents.
+     */
+    private static long estimateJdk(Object current, List<Object> children) {
+        try {
+            if (current instanceof Collection<?> collection) {
+                children.addAll(collection);
+                return 48 + 16L * collection.size();
+            }
+            if (current instanceof Map<?, ?> map) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    children.add(entry.getKey());
+                    children.add(entry.getValue());
+                }
+                return 64 + 40L * map.size();
+            }
+        } catch (RuntimeException exception) {
+            // A concurrently modified collection is counted with the contents read so far.
+        }
+        return LAYOUTS.get(current.getClass()).size;
+    }
+
+    /**
+     * Is an object shared by the application.
+     */
+    private boolean isShared(Object value) {
+        return value instanceof Class || value instanceof ClassLoader || value instanceof Thread
+            || value instanceof Enum || value instanceof Module || this.boundary.test(value);
+    }
+}
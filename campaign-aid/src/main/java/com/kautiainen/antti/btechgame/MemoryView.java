@@ -0,0 +1,106 @@
+package com.kautiainen.antti.btechgame;
+
+import java.util.List;
+
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.BeforeEnterEvent;
+import com.vaadin.flow.router.BeforeEnterObserver;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.router.RouterLink;
+import com.vaadin.flow.server.VaadinRequest;
+
+/**
+ * The view showing the estimated memory use of the open user interfaces.
+ *
+ * The view lists the user interfaces tracked by the {@link SessionTracker} without the session
+ * identifiers, and compares them with the shared data and the used heap of the JVM. Only the
+ * authenticated users in the {@link #ADMIN_ROLE administrator role} may open the view, and the
+ * other users are forwarded to the main view. The estimates are measured only when the user asks for
+ * a measurement, so showing the view does not walk the session or the shared data.
+ */
+@Route("admin/memory")
+@PageTitle("Session Memory")
+public class MemoryView extends VerticalLayout implements BeforeEnterObserver {
+
+    /**
+     * The role of the users allowed to open the view.
+     */
+    public static final String ADMIN_ROLE = "admin";
+
+    /**
+     * The grid of the estimates.
+     */
+    private final Grid<SessionTracker.Estimate> grid = new Grid<>();
+
+    /**
+     * The summary of the memory use.
+     */
+    private final Paragraph summary = new Paragraph();
+
+    /**
+     * The status of the measurement.
+     */
+    private final Paragraph status = new Paragraph();
+
+    public MemoryView() {
+        this.grid.addColumn(SessionTracker.Estimate::uiId).setHeader("UI");
+        this.grid.addColumn(SessionTracker.Estimate::route).setHeader("Route");
+        this.grid.addColumn(estimate -> estimate.bytes() < 0 ? "" : String.valueOf(estimate.bytes() / 1024))
+            .setHeader("Estimated KiB");
+        this.grid.addColumn(estimate -> estimate.measured() == null ? "" : estimate.measured().toString())
+            .setHeader("Measured");
+
+        Button measure = new Button("Measure", event -> {
+            if (!SessionTracker.measureAll(getUI().orElse(null))) {
+                this.status.setText("Measured less than a minute ago, showing the previous measurement");
+            } else {
+                this.status.setText("Measuring the shared data and the other user interfaces in the background");
+            }
+            refresh();
+        });
+        Button refresh = new Button("Refresh", event -> refresh());
+
+        add(new RouterLink("Main", MainView.class));
+        add(measure, refresh, this.status, this.summary, this.grid);
+        setSizeFull();
+    }
+
+    /**
+     * Is the request of an administrator. The remote address is not trusted, since behind a reverse
+     * proxy all requests come from the address of the proxy.
+     * @param request The request, or undefined value if there is no current request.
+     * @return True, if and only if the user of the request is authenticated and in the administrator
+     * role.
+     */
+    static boolean isAdministrator(VaadinRequest request) {
+        return request != null && request.getUserPrincipal() != null && request.isUserInRole(ADMIN_ROLE);
+    }
+
+    @Override
+    public void beforeEnter(BeforeEnterEvent event) {
+        if (!isAdministrator(VaadinRequest.getCurrent())) {
+            SessionTracker.log.warn("Refused access to {}", event.getLocation().getPath());
+            event.forwardTo(MainView.class);
+            return;
+        }
+        refresh();
+    }
+
+    /**
+     * Refresh the estimates and the summary.
+     */
+    private void refresh() {
+        List<SessionTracker.Estimate> estimates = SessionTracker.getEstimates();
+        long total = estimates.stream().mapToLong(estimate -> Math.max(0, estimate.bytes())).sum();
+        final long shared = SessionTracker.getSharedEstimate();
+        Runtime runtime = Runtime.getRuntime();
+        this.grid.setItems(estimates);
+        this.summary.setText(String.format("%d user interfaces, %d KiB estimated, %s shared, %d MiB heap used",
+            estimates.size(), total / 1024, shared < 0 ? "not measured" : (shared / 1024) + " KiB",
+            (runtime.totalMemory() - runtime.freeMemory()) >> 20));
+    }
+}
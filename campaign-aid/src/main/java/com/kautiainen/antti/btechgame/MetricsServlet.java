@@ -0,0 +1,49 @@
+package com.kautiainen.antti.btechgame;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import com.kautiainen.antti.btechgame.metrics.Metrics;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * The servlet serving the text report of the metrics.
+ *
+ * The report is served only to the clients connecting from the local host.
+ */
+@WebServlet(urlPatterns = "/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    /**
+     * Is an address a loopback address.
+     * @param address The numeric address of the client.
+     * @return True, if and only if the address is a loopback address.
+     */
+    static boolean isLoopback(String address) {
+        if (address == null || address.isEmpty()) return false;
+        try {
+            // The numeric remote address is parsed without a name lookup.
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException exception) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!isLoopback(request.getRemoteAddr())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(Metrics.getReport());
+    }
+}
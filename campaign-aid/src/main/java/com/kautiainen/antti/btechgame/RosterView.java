@@ -0,0 +1,275 @@
+package com.kautiainen.antti.btechgame;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kautiainen.antti.btechgame.game.Campaign;
+import com.kautiainen.antti.btechgame.game.CampaignFile;
+import com.kautiainen.antti.btechgame.game.GameRules;
+import com.kautiainen.antti.btechgame.game.RosterIndex;
+import com.kautiainen.antti.btechgame.game.Unit;
+import com.kautiainen.antti.btechgame.game.UnitImporter;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.NumberField;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.ConfigurableFilterDataProvider;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.router.RouterLink;
+
+/**
+ * The view browsing the units of the open campaign.
+ *
+ * The grid fetches only the visible pages of units from the shared {@link CampaignRoster}, and the
+ * paging, the sorting, and the filtering are done by the {@link RosterIndex} on the server. The
+ * unit types of the filter are the unit types of the rules of the {@link SharedRegistry}. The index
+ * is captured when the grid counts the units, and the pages are fetched from the same index, so the
+ * pages stay consistent with the count even if the roster is replaced meanwhile.
+ *
+ * Importing units into the roster and saving the campaign of the roster run as
+ * {@link CampaignJobs background jobs}, and their progress is shown by the {@link JobsView}.
+ */
+@Route("users/campaign/show")
+@PageTitle("Campaign Roster")
+public class RosterView extends VerticalLayout {
+
+    /**
+     * The logger logging for the roster view.
+     */
+    static final Logger log = LoggerFactory.getLogger(RosterView.class);
+
+    /**
+     * The grid of the units.
+     */
+    private final Grid<Unit> grid = new Grid<>();
+
+    /**
+     * The data provider of the grid.
+     */
+    private final ConfigurableFilterDataProvider<Unit, Void, RosterIndex.Filter> dataProvider;
+
+    /**
+     * The unit type filter offering the unit types of the shared rules.
+     */
+    private final ComboBox<GameRules.UnitType> typeFilter = new ComboBox<>("Type");
+
+    private final TextField nameFilter = new TextField("Name");
+
+    private final NumberField minTonnage = new NumberField("Min tonnage");
+
+    private final NumberField maxTonnage = new NumberField("Max tonnage");
+
+    /**
+     * The file of the imported units or the saved campaign.
+     */
+    private final TextField file = new TextField("File");
+
+    /**
+     * The index of the last count of the units.
+     */
+    private RosterIndex index = CampaignRoster.getInstance().getIndex();
+
+    public RosterView() {
+        // The view uses one snapshot of the shared rules, so the offered unit types do not change
+        // while the view is open.
+        final SharedRegistry.Snapshot shared = SharedRegistry.getInstance().getSnapshot();
+        this.typeFilter.setItems(shared.rules().getUnitTypes());
+        this.dataProvider = DataProvider.fromFilteringCallbacks(this::fetch, this::count).withConfigurableFilter();
+        this.dataProvider.setFilter(RosterIndex.Filter.ALL);
+
+        this.grid.addColumn(Unit::getName).setHeader("Name").setSortProperty(RosterIndex.Key.NAME.name());
+        this.grid.addColumn(Unit::getModel).setHeader("Model").setSortProperty(RosterIndex.Key.MODEL.name());
+        this.grid.addColumn(Unit::getType).setHeader("Type").setSortProperty(RosterIndex.Key.TYPE.name());
+        this.grid.addColumn(Unit::getTonnage).setHeader("Tonnage").setSortProperty(RosterIndex.Key.TONNAGE.name());
+        this.grid.addColumn(Unit::getAvailableTonnage).setHeader("Available").setSortProperty(RosterIndex.Key.AVAILABLE_TONNAGE.name());
+        this.grid.setItems(this.dataProvider);
+
+        this.typeFilter.setClearButtonVisible(true);
+        this.nameFilter.setClearButtonVisible(true);
+        this.nameFilter.setValueChangeMode(ValueChangeMode.LAZY);
+        this.typeFilter.addValueChangeListener(event -> updateFilter());
+        this.nameFilter.addValueChangeListener(event -> updateFilter());
+        this.minTonnage.addValueChangeListener(event -> updateFilter());
+        this.maxTonnage.addValueChangeListener(event -> updateFilter());
+
+        add(new RouterLink("Main", MainView.class));
+        add(new HorizontalLayout(this.typeFilter, this.nameFilter, this.minTonnage, this.maxTonnage));
+        add(new HorizontalLayout(this.file, new Button("Import units", event -> submitImport()),
+            new Button("Save campaign", event -> submitSave()), new RouterLink("Jobs", JobsView.class)));
+        add(this.grid);
+        setSizeFull();
+    }
+
+    /**
+     * Update the filter of the grid from the filter fields. The units match both the name prefix
+     * and the tonnage range. The name prefix is searched first, as it is usually more selective.
+     */
+    private void updateFilter() {
+        RosterIndex.Filter filter = RosterIndex.Filter.ALL.withType(this.typeFilter.getValue());
+        final String name = this.nameFilter.getValue();
+        final Double min = this.minTonnage.getValue();
+        final Double max = this.maxTonnage.getValue();
+        final boolean invalidRange = min != null && max != null && min > max;
+        this.maxTonnage.setInvalid(invalidRange);
+        final boolean named = name != null && !name.isBlank();
+        if (named) {
+            filter = filter.withNamePrefix(name.strip());
+        }
+        if (!invalidRange && (min != null || max != null)) {
+            final RosterIndex.Filter range = RosterIndex.Filter.ALL.withTonnage(min == null ? Double.NEGATIVE_INFINITY : min,
+                max == null ? Double.POSITIVE_INFINITY : max);
+            filter = named ? filter.and(range) : filter.withTonnage(range.min(), range.max());
+        }
+        this.dataProvider.setFilter(filter);
+    }
+
+    /**
+     * Get the path of the file field.
+     * @return The path of the file, or undefined value if the field is empty or invalid.
+     */
+    private Path getFile() {
+        final String value = this.file.getValue();
+        if (value == null || value.isBlank()) {
+            this.file.setErrorMessage("Missing file");
+            this.file.setInvalid(true);
+            return null;
+        }
+        try {
+            this.file.setInvalid(false);
+            return Path.of(value.strip());
+        } catch (java.nio.file.InvalidPathException exception) {
+            this.file.setErrorMessage("Invalid file");
+            this.file.setInvalid(true);
+            return null;
+        }
+    }
+
+    /**
+     * Submit a job of the session.
+     */
+    private <T> void submit(String name, Job.Task<T> task, com.vaadin.flow.function.SerializableConsumer<T> onSuccess) {
+        getUI().ifPresent(ui -> {
+            try {
+                CampaignJobs.submit(ui, name, task, onSuccess, failure -> {
+                    log.atWarn().setCause(failure).log("Job {} failed", name);
+                    Notification.show(name + " failed: " + failure.getMessage());
+                });
+            } catch (java.util.concurrent.RejectedExecutionException exception) {
+                Notification.show(name + " rejected: " + exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Submit the import of the units of the file into the roster.
+     */
+    private void submitImport() {
+        final Path path = getFile();
+        if (path == null) return;
+        this.<Campaign>submit("Import " + path.getFileName(), job -> importUnits(job, path), campaign -> {
+            Notification.show(String.format("Campaign %s has %d units", campaign.getName(), campaign.size()));
+            this.dataProvider.refreshAll();
+        });
+    }
+
+    /**
+     * Submit the saving of the campaign of the roster into the file.
+     */
+    private void submitSave() {
+        final Path path = getFile();
+        if (path == null) return;
+        final Campaign campaign = CampaignRoster.getInstance().getCampaign();
+        this.<Path>submit("Save " + path.getFileName(), job -> {
+            CampaignFile.write(campaign, SharedRegistry.getInstance().getCatalog(), path);
+            return path;
+        }, saved -> Notification.show(String.format("Saved %d units into %s", campaign.size(), saved)));
+    }
+
+    /**
+     * Import the units of a file with the shared rules and equipment, and add them to the roster.
+     * The progress of the job is estimated from the characters read and the size of the file.
+     * @param job The job of the import.
+     * @param path The file of the units.
+     * @return The campaign of the roster with the imported units.
+     * @throws IOException The reading of the file failed.
+     */
+    private static Campaign importUnits(Job<Campaign> job, Path path) throws IOException {
+        final SharedRegistry.Snapshot shared = SharedRegistry.getInstance().getSnapshot();
+        final UnitImporter importer = new UnitImporter(shared.catalog(), shared.locations());
+        final long size = Math.max(1, Files.size(path));
+        final List<Unit> units = Collections.synchronizedList(new ArrayList<>());
+        final List<UnitImporter.ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+        try (Reader input = new FilterReader(Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+
+            private long read;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                final int result = super.read(buffer, offset, length);
+                if (result > 0) {
+                    this.read += result;
+                    // Throws the cancellation, which ends the import.
+                    job.setProgress(Math.min(this.read, size), size);
+                }
+                return result;
+            }
+        }) {
+            importer.importUnits(input, units::add, errors::add);
+        }
+        job.checkCancelled();
+        if (!errors.isEmpty()) {
+            UnitImporter.ImportError first = Collections.min(errors,
+                (UnitImporter.ImportError a, UnitImporter.ImportError b) -> Long.compare(a.line(), b.line()));
+            log.atInfo().log("Import of {} skipped {} records, the first at line {}: {}", path, errors.size(),
+                first.line(), first.message());
+        }
+        return CampaignRoster.getInstance().addUnits(units);
+    }
+
+    /**
+     * Fetch a page of units from the index of the last count.
+     */
+    private java.util.stream.Stream<Unit> fetch(Query<Unit, RosterIndex.Filter> query) {
+        RosterIndex.Key key = null;
+        boolean descending = false;
+        List<QuerySortOrder> sortOrders = query.getSortOrders();
+        if (!sortOrders.isEmpty()) {
+            try {
+                key = RosterIndex.Key.valueOf(sortOrders.get(0).getSorted());
+                descending = sortOrders.get(0).getDirection() == SortDirection.DESCENDING;
+            } catch (IllegalArgumentException exception) {
+                log.atWarn().log("Unknown roster sort key {}", sortOrders.get(0).getSorted());
+            }
+        }
+        return this.index.fetch(query.getFilter().orElse(RosterIndex.Filter.ALL), key, descending,
+            query.getOffset(), query.getLimit()).stream();
+    }
+
+    /**
+     * Count the units in the current index, and capture the index for the fetches of the pages.
+     */
+    private int count(Query<Unit, RosterIndex.Filter> query) {
+        this.index = CampaignRoster.getInstance().getIndex();
+        return this.index.count(query.getFilter().orElse(RosterIndex.Filter.ALL));
+    }
+}
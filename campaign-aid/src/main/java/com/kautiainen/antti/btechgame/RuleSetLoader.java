@@ -0,0 +1,71 @@
+package com.kautiainen.antti.btechgame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kautiainen.antti.btechgame.game.RuleSet;
+import com.kautiainen.antti.btechgame.game.RuleSetWatcher;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+
+/**
+ * The loader of the shared rule set from the rule set files.
+ *
+ * The loader is registered as a service init listener. If the {@link #DIRECTORY_PROPERTY} system
+ * property names a directory, the loader watches the rule set files of the directory, and replaces
+ * the rule set of the {@link SharedRegistry} whenever the file named by the {@link #FILE_PROPERTY}
+ * system property is loaded. Without the directory the application uses the built-in rules.
+ */
+public class RuleSetLoader implements VaadinServiceInitListener {
+
+    /**
+     * The logger logging for the rule set loader.
+     */
+    static final Logger log = LoggerFactory.getLogger(RuleSetLoader.class);
+
+    /**
+     * The system property naming the directory of the rule set files.
+     */
+    public static final String DIRECTORY_PROPERTY = "btechgame.rules.dir";
+
+    /**
+     * The system property naming the file of the shared rule set.
+     */
+    public static final String FILE_PROPERTY = "btechgame.rules.file";
+
+    /**
+     * The default file of the shared rule set.
+     */
+    public static final String DEFAULT_FILE = "campaign" + RuleSetWatcher.EXTENSION;
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        final String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.isBlank()) return;
+        final Path path = Path.of(directory);
+        if (!Files.isDirectory(path)) {
+            log.warn("Rule set directory {} does not exist, using the built-in rules", path);
+            return;
+        }
+        final String file = System.getProperty(FILE_PROPERTY, DEFAULT_FILE);
+        final RuleSetWatcher watcher = new RuleSetWatcher(path);
+        watcher.addListener((String changed, RuleSet previous, RuleSet current) -> {
+            if (file.equals(changed) && current != null) {
+                SharedRegistry.getInstance().setRuleSet(current);
+                log.info("Loaded rule set {} from {}", current, changed);
+            }
+        });
+        try {
+            watcher.start();
+        } catch (IOException exception) {
+            log.error("Watching rule set directory {} failed", path, exception);
+            return;
+        }
+        watcher.getErrors().forEach((String failed, String message) -> log.warn("Loading rule set {} failed: {}", failed, message));
+        event.getSource().addServiceDestroyListener(destroy -> watcher.close());
+    }
+}
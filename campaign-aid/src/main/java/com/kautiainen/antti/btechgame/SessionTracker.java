@@ -0,0 +1,188 @@
+package com.kautiainen.antti.btechgame;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.server.VaadinSession;
+
+/**
+ * The tracker of the user interfaces of the application and their estimated memory use.
+ *
+ * The tracker is registered as a service init listener, and it keeps the open user interfaces of
+ * all sessions until they are detached. The estimate of a user interface is the memory retained by
+ * its components and views excluding the sessions, the service, the other user interfaces, and the
+ * data shared through the {@link SharedRegistry} and the {@link CampaignRoster}.
+ */
+public class SessionTracker implements VaadinServiceInitListener {
+
+    /**
+     * The logger logging for the session tracker.
+     */
+    static final Logger log = LoggerFactory.getLogger(SessionTracker.class);
+
+    /**
+     * The estimated memory use of a user interface.
+     * @param uiId The identifier of the user interface within its session.
+     * @param route The path of the active view.
+     * @param bytes The estimated retained size in bytes, or -1 if the user interface has not been
+     * measured.
+     * @param measured The time of the measurement, or undefined value if the user interface has not
+     * been measured.
+     */
+    public static record Estimate(int uiId, String route, long bytes, Instant measured) {
+
+    }
+
+    /**
+     * The estimates of the open user interfaces.
+     */
+    private static final Map<UI, Estimate> ESTIMATES = new ConcurrentHashMap<>();
+
+    /**
+     * The shortest interval between the measurements of all user interfaces in nanoseconds.
+     */
+    static final long MEASURE_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The start time of the previous measurement of all user interfaces in nanoseconds.
+     */
+    private static final AtomicLong LAST_MEASURED = new AtomicLong(System.nanoTime() - MEASURE_INTERVAL);
+
+    /**
+     * The estimated size of the shared data in bytes, or -1 if the shared data has not been
+     * measured.
+     */
+    private static volatile long sharedBytes = -1;
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        VaadinService service = event.getSource();
+        service.addUIInitListener(init -> {
+            UI ui = init.getUI();
+            ESTIMATES.put(ui, new Estimate(ui.getUIId(), "", -1, null));
+            ui.addDetachListener(detach -> ESTIMATES.remove(ui));
+        });
+        service.addSessionDestroyListener(destroy -> {
+            VaadinSession session = destroy.getSession();
+            ESTIMATES.keySet().removeIf(ui -> ui.getSession() == session);
+            CampaignJobs.cancelAll(session);
+        });
+    }
+
+    /**
+     * Is an object outside the user interface.
+     * @param value The tested object.
+     * @param measured The measured user interface.
+     * @param shared The shared data of the measurement.
+     * @param roster The roster index of the measurement.
+     * @return True, if and only if the object is shared by the application or belongs to another
+     * user interface.
+     */
+    private static boolean isShared(Object value, UI measured, SharedRegistry.Snapshot shared, Object roster) {
+        return (value instanceof UI && value != measured) || value instanceof VaadinSession
+            || value instanceof VaadinService || value instanceof SharedRegistry
+            || value instanceof SharedRegistry.Snapshot || value instanceof CampaignRoster
+            || value == shared.ruleSet() || value == shared.rules() || value == shared.locations()
+            || value == shared.catalog() || value == roster;
+    }
+
+    /**
+     * The path of the active view of a user interface.
+     */
+    private static String routeOf(UI ui) {
+        return ui.getInternals().getActiveViewLocation().getPath();
+    }
+
+    /**
+     * Measure a user interface. The caller must hold the lock of the session of the user
+     * interface.
+     */
+    private static void measure(UI ui) {
+        if (!ESTIMATES.containsKey(ui)) return;
+        final SharedRegistry.Snapshot shared = SharedRegistry.getInstance().getSnapshot();
+        final Object roster = CampaignRoster.getInstance().getIndex();
+        long bytes = new MemoryEstimator(value -> isShared(value, ui, shared, roster)).estimate(ui);
+        ESTIMATES.replace(ui, new Estimate(ui.getUIId(), routeOf(ui), bytes, Instant.now()));
+    }
+
+    /**
+     * Measure all open user interfaces and the shared data. The current user interface is measured
+     * immediately, and the shared data and the other user interfaces are measured one at a time by
+     * a background thread, so a measurement locks at most one other session at a time, and the
+     * caller does not wait for the other sessions or the shared data. A measurement is started at
+     * most once in {@link #MEASURE_INTERVAL} nanoseconds.
+     * @param current The user interface of the caller, or undefined value if the caller holds no
+     * session lock.
+     * @return True, if and only if the measurement was started. A measurement is not started, if
+     * the previous measurement was started less than the interval ago.
+     */
+    public static boolean measureAll(UI current) {
+        final long now = System.nanoTime();
+        final long previous = LAST_MEASURED.get();
+        if (now - previous < MEASURE_INTERVAL || !LAST_MEASURED.compareAndSet(previous, now)) return false;
+        if (current != null) measure(current);
+        final List<UI> others = new ArrayList<>(ESTIMATES.keySet());
+        others.remove(current);
+        Thread measurer = new Thread(() -> {
+            sharedBytes = estimateShared();
+            for (UI ui : others) {
+                try {
+                    ui.access(() -> measure(ui)).get();
+                } catch (UIDetachedException exception) {
+                    ESTIMATES.remove(ui);
+                } catch (InterruptedException exception) {
+                    return;
+                } catch (ExecutionException exception) {
+                    log.warn("Measuring user interface {} failed", ui.getUIId(), exception.getCause());
+                }
+            }
+        }, "session-measure");
+        measurer.setDaemon(true);
+        measurer.start();
+        return true;
+    }
+
+    /**
+     * The estimates of the open user interfaces.
+     * @return The estimates in descending order of the estimated size.
+     */
+    public static List<Estimate> getEstimates() {
+        List<Estimate> result = new ArrayList<>(ESTIMATES.values());
+        result.sort(Comparator.comparingLong(Estimate::bytes).reversed());
+        return result;
+    }
+
+    /**
+     * The estimated memory use of the shared data. The estimate is updated by {@link #measureAll},
+     * so getting it does not walk the shared data.
+     * @return The estimated size of the shared registry data and the campaign roster in bytes, or
+     * -1 if the shared data has not been measured.
+     */
+    public static long getSharedEstimate() {
+        return sharedBytes;
+    }
+
+    /**
+     * Estimate the memory used by the shared data.
+     * @return The estimated size of the shared registry data and the campaign roster in bytes.
+     */
+    private static long estimateShared() {
+        return new MemoryEstimator(value -> false).estimate(
+            new Object[] { SharedRegistry.getInstance().getSnapshot(), CampaignRoster.getInstance().getIndex() });
+    }
+}
@@ -0,0 +1,166 @@
+package com.kautiainen.antti.btechgame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.kautiainen.antti.btechgame.game.EquipmentCatalog;
+import com.kautiainen.antti.btechgame.game.GameRules;
+import com.kautiainen.antti.btechgame.game.HitLocationRegistry;
+import com.kautiainen.antti.btechgame.game.RuleSet;
+
+/**
+ * The immutable rules data shared by all sessions of the application.
+ *
+ * The views get the game rules, the hit locations, and the equipment catalog from the registry
+ * instead of creating their own, so the data exists once per application instead of once per
+ * session. The data is replaced as a whole, so a reader always sees a consistent snapshot. A
+ * calculation, which must use one version of the rules throughout, gets the snapshot once, and
+ * uses the rules of the snapshot instead of asking the registry again.
+ */
+public final class SharedRegistry {
+
+    /**
+     * The shared rules data.
+     * @param ruleSet The rule set with the game rules and the registry of the canonical hit
+     * locations.
+     * @param catalog The equipment catalog.
+     */
+    public static record Snapshot(RuleSet ruleSet, EquipmentCatalog catalog) {
+
+        /**
+         * Create new shared rules data.
+         * @throws IllegalArgumentException Any value was undefined.
+         */
+        public Snapshot {
+            if (ruleSet == null) throw new IllegalArgumentException("Missing rule set");
+            if (catalog == null) throw new IllegalArgumentException("Missing equipment catalog");
+        }
+
+        /**
+         * Create new shared rules data with game rules without modifiers.
+         * @param rules The game rules.
+         * @param locations The registry of the canonical hit locations.
+         * @param catalog The equipment catalog.
+         * @throws IllegalArgumentException Any value was undefined.
+         */
+        public Snapshot(GameRules rules, HitLocationRegistry locations, EquipmentCatalog catalog) {
+            this(RuleSet.of(rules, locations), catalog);
+        }
+
+        /**
+         * The game rules.
+         * @return The game rules of the rule set.
+         */
+        public GameRules rules() {
+            return this.ruleSet.getRules();
+        }
+
+        /**
+         * The registry of the canonical hit locations.
+         * @return The hit location registry of the rule set.
+         */
+        public HitLocationRegistry locations() {
+            return this.ruleSet.getLocations();
+        }
+    }
+
+    /**
+     * The registry of the application.
+     */
+    private static final SharedRegistry INSTANCE = new SharedRegistry();
+
+    /**
+     * Get the registry of the application.
+     * @return The registry shared by the application.
+     */
+    public static SharedRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The current shared data.
+     */
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(
+        RuleSet.of(new GameRules.BaseGameRules("Campaign")), EquipmentCatalog.empty()));
+
+    private SharedRegistry() {
+
+    }
+
+    /**
+     * The current shared data.
+     * @return The current snapshot of the shared data.
+     */
+    public Snapshot getSnapshot() {
+        return this.current.get();
+    }
+
+    /**
+     * The current game rules.
+     * @return The shared game rules.
+     */
+    public GameRules getRules() {
+        return getSnapshot().rules();
+    }
+
+    /**
+     * The current rule set.
+     * @return The shared rule set.
+     */
+    public RuleSet getRuleSet() {
+        return getSnapshot().ruleSet();
+    }
+
+    /**
+     * The current hit location registry.
+     * @return The shared hit location registry.
+     */
+    public HitLocationRegistry getLocations() {
+        return getSnapshot().locations();
+    }
+
+    /**
+     * The current equipment catalog.
+     * @return The shared equipment catalog.
+     */
+    public EquipmentCatalog getCatalog() {
+        return getSnapshot().catalog();
+    }
+
+    /**
+     * The roster of the open campaign.
+     * @return The shared campaign roster.
+     */
+    public CampaignRoster getRoster() {
+        return CampaignRoster.getInstance();
+    }
+
+    /**
+     * Replace the shared data.
+     * @param snapshot The new shared data.
+     * @throws IllegalArgumentException The snapshot was undefined.
+     */
+    public void setSnapshot(Snapshot snapshot) throws IllegalArgumentException {
+        if (snapshot == null) throw new IllegalArgumentException("Missing snapshot");
+        this.current.set(snapshot);
+    }
+
+    /**
+     * Replace the shared equipment catalog.
+     * @param catalog The new equipment catalog.
+     * @throws IllegalArgumentException The catalog was undefined.
+     */
+    public void setCatalog(EquipmentCatalog catalog) throws IllegalArgumentException {
+        this.current.updateAndGet(snapshot -> new Snapshot(snapshot.ruleSet(), catalog));
+    }
+
+    /**
+     * Replace the shared rule set. The game rules and the hit location registry are replaced
+     * together, and the snapshots taken before the replacement keep the previous rule set.
+     * @param ruleSet The new rule set.
+     * @throws IllegalArgumentException The rule set was undefined.
+     */
+    public void setRuleSet(RuleSet ruleSet) throws IllegalArgumentException {
+        if (ruleSet == null) throw new IllegalArgumentException("Missing rule set");
+        this.current.updateAndGet(snapshot -> new Snapshot(ruleSet, snapshot.catalog()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.Arrays;
+
+/**
+ * A POJO representing a campaign.
+ */
+public class Campaign {
+
+    /**
+     * The name of the campaign.
+     */
+    final String name;
+
+    /**
+     * The units of the campaign.
+     */
+    final Unit[] units;
+
+    /**
+     * Create a new campaign.
+     * @param name The name of the campaign.
+     * @param units The units of the campaign.
+     * @throws IllegalArgumentException The units were undefined or contained an undefined unit.
+     */
+    public Campaign(String name, Unit[] units) throws IllegalArgumentException {
+        if (units == null) throw new IllegalArgumentException("Campaign without units");
+        this.name = name;
+        this.units = units.clone();
+        for (Unit unit : this.units) {
+            if (unit == null) throw new IllegalArgumentException("Undefined unit not accepted");
+        }
+    }
+
+    /**
+     * The name of the campaign.
+     * @return The name of the campaign.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The number of units.
+     * @return The number of units in the campaign.
+     */
+    public int size() {
+        return this.units.length;
+    }
+
+    /**
+     * Get an unit.
+     * @param index The index of the unit.
+     * @return The unit with the given index.
+     * @throws IndexOutOfBoundsException The index was invalid.
+     */
+    public Unit getUnit(int index) throws IndexOutOfBoundsException {
+        return this.units[index];
+    }
+
+    /**
+     * The units of the campaign.
+     * @return A copy of the units of the campaign.
+     */
+    public Unit[] getUnits() {
+        return Arrays.copyOf(this.units, this.units.length);
+    }
+}
@@ -0,0 +1,97 @@
+package com.kautiainen.antti.btechgame.game;
+
+/**
+ * An event changing the state of a campaign.
+ *
+ * The events refer to the units by their index in the campaign.
+ */
+public sealed interface CampaignEvent {
+
+    /**
+     * The index of the unit the event changes.
+     * @return The index of the unit in the campaign.
+     */
+    int unit();
+
+    /**
+     * Equipment was added to the loadout of a unit.
+     * @param unit The index of the unit.
+     * @param location The location of the equipment.
+     * @param equipment The added equipment.
+     */
+    public static record EquipmentAdded(int unit, HitLocation location, Equipment equipment) implements CampaignEvent {
+
+        /**
+         * Create a new equipment addition event.
+         * @throws IllegalArgumentException The unit index was negative, or the location or the
+         * equipment was undefined.
+         */
+        public EquipmentAdded {
+            if (unit < 0) throw new IllegalArgumentException("Negative unit index");
+            if (location == null) throw new IllegalArgumentException("Undefined location not accepted");
+            if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+        }
+    }
+
+    /**
+     * Equipment was removed from the loadout of a unit.
+     * @param unit The index of the unit.
+     * @param location The location of the equipment.
+     * @param equipment The removed equipment.
+     */
+    public static record EquipmentRemoved(int unit, HitLocation location, Equipment equipment) implements CampaignEvent {
+
+        /**
+         * Create a new equipment removal event.
+         * @throws IllegalArgumentException The unit index was negative, or the location or the
+         * equipment was undefined.
+         */
+        public EquipmentRemoved {
+            if (unit < 0) throw new IllegalArgumentException("Negative unit index");
+            if (location == null) throw new IllegalArgumentException("Undefined location not accepted");
+            if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+        }
+    }
+
+    /**
+     * The armor of a unit was damaged or repaired.
+     * @param unit The index of the unit.
+     * @param delta The armor delta created with {@link ArmorLoadout#ofDamage(HitLocation, int)} or
+     * {@link ArmorLoadout#ofRepair(HitLocation, int)}.
+     */
+    public static record ArmorChanged(int unit, ArmorLoadout delta) implements CampaignEvent {
+
+        /**
+         * Create a new armor change event.
+         * @throws IllegalArgumentException The unit index was negative, or the delta was undefined,
+         * was not a delta, or had no location.
+         */
+        public ArmorChanged {
+            if (unit < 0) throw new IllegalArgumentException("Negative unit index");
+            if (delta == null) throw new IllegalArgumentException("Undefined armor delta not accepted");
+            if (delta.max != null) throw new IllegalArgumentException("Armor loadout is not a delta");
+            if (delta.location == null) throw new IllegalArgumentException("Undefined location not accepted");
+        }
+    }
+
+    /**
+     * The structure of a unit was damaged or repaired.
+     * @param unit The index of the unit.
+     * @param delta The structure delta created with {@link StructureLoadout#ofDamage(HitLocation, short)}
+     * or {@link StructureLoadout#ofRepair(HitLocation, short)}.
+     */
+    public static record StructureChanged(int unit, StructureLoadout delta) implements CampaignEvent {
+
+        /**
+         * Create a new structure change event.
+         * @throws IllegalArgumentException The unit index was negative, or the delta was undefined,
+         * was not a delta, or had no location.
+         */
+        public StructureChanged {
+            if (unit < 0) throw new IllegalArgumentException("Negative unit index");
+            if (delta == null) throw new IllegalArgumentException("Undefined structure delta not accepted");
+            if (delta.max != null) throw new IllegalArgumentException("Structure loadout is not a delta");
+            if (delta.location == null) throw new IllegalArgumentException("Undefined location not accepted");
+        }
+    }
+}
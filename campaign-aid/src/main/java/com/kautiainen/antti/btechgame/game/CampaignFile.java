@@ -0,0 +1,496 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The binary campaign file format.
+ *
+ * A campaign file starts with a fixed size header followed by sections. All numbers are big endian.
+ * <ul>
+ * <li>The header contains the magic number, the format version, the campaign name, the section
+ * sizes, and the offsets of the sections.</li>
+ * <li>The string table contains the offsets of the strings followed by the UTF-8 bytes of the
+ * strings. The strings are referred by their index, and -1 refers to an undefined string.</li>
+ * <li>The location table contains fixed width location records.</li>
+ * <li>The catalog section contains the offsets of the equipment records followed by the records.</li>
+ * <li>The unit table contains fixed width unit records referring to the ranges of the loadout and
+ * the condition sections.</li>
+ * <li>The loadout section contains fixed width entries of location and equipment ids.</li>
+ * <li>The condition section contains the armor and the structure entries packed as shorts.</li>
+ * </ul>
+ * The fixed width records allow reading any unit without reading the units before it, which
+ * {@link MappedCampaign} uses to decode the units on access.
+ */
+public final class CampaignFile {
+
+    /**
+     * The magic number of the campaign files.
+     */
+    static final int MAGIC = 0x42544341;
+
+    /**
+     * The current format version.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The size of the header.
+     */
+    static final int HEADER_SIZE = 76;
+
+    /**
+     * The header offset of the campaign name string id.
+     */
+    static final int HEADER_NAME = 8;
+
+    /**
+     * The header offset of the unit count.
+     */
+    static final int HEADER_UNITS = 12;
+
+    /**
+     * The header offset of the string count.
+     */
+    static final int HEADER_STRINGS = 16;
+
+    /**
+     * The header offset of the location count.
+     */
+    static final int HEADER_LOCATIONS = 20;
+
+    /**
+     * The header offset of the equipment count.
+     */
+    static final int HEADER_EQUIPMENT = 24;
+
+    /**
+     * The header offset of the section offsets in the order of the sections.
+     */
+    static final int HEADER_SECTIONS = 28;
+
+    /**
+     * The number of sections.
+     */
+    static final int SECTION_COUNT = 6;
+
+    static final int STRING_SECTION = 0;
+
+    static final int LOCATION_SECTION = 1;
+
+    static final int CATALOG_SECTION = 2;
+
+    static final int UNIT_SECTION = 3;
+
+    static final int LOADOUT_SECTION = 4;
+
+    static final int CONDITION_SECTION = 5;
+
+    /**
+     * The size of a location record: kind byte, name id, abbreviation id, and slot capacity.
+     */
+    static final int LOCATION_SIZE = 1 + 4 + 4 + 4;
+
+    /**
+     * The location record kind of a location without critical slots.
+     */
+    static final byte UNSLOTTED = 0;
+
+    /**
+     * The location record kind of a location with critical slots.
+     */
+    static final byte SLOTTED = 1;
+
+    /**
+     * The size of an unit record: name id, model id, type, tonnage, available tonnage, and the
+     * first index and the number of the loadout, the armor, and the structure entries.
+     */
+    static final int UNIT_SIZE = 4 + 4 + 1 + 8 + 8 + 3 * (4 + 4);
+
+    /**
+     * The size of a loadout entry: flags, location id, and equipment id.
+     */
+    static final int LOADOUT_SIZE = 1 + 2 + 4;
+
+    /**
+     * The size of a condition entry: flags, location id, maximum, and current value.
+     */
+    static final int CONDITION_SIZE = 1 + 2 + 2 + 2;
+
+    /**
+     * The entry flag of a defined entry.
+     */
+    static final byte PRESENT = 1;
+
+    /**
+     * The condition entry flag of an entry with maximum.
+     */
+    static final byte HAS_MAX = 2;
+
+    /**
+     * The rounding id of the modifiers without rounding.
+     */
+    static final byte NO_ROUNDING = -1;
+
+    /**
+     * The size of an equipment record without its modifiers: name id, abbreviation id, mass, size,
+     * and the number of the modifiers.
+     */
+    static final int EQUIPMENT_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    /**
+     * The size of a modifier of an equipment record: name id, rule id, modifier, and rounding id.
+     */
+    static final int MODIFIER_SIZE = 4 + 4 + 8 + 1;
+
+    private CampaignFile() {
+
+    }
+
+    /**
+     * Get the rounding mode of a rounding id.
+     * @param id The rounding id.
+     * @return The rounding mode, or undefined value for the modifiers without rounding.
+     * @throws IOException The rounding id was invalid.
+     */
+    static RoundingMode rounding(byte id) throws IOException {
+        if (id == NO_ROUNDING) return null;
+        final RoundingMode[] modes = RoundingMode.values();
+        if (id < 0 || id >= modes.length) throw new IOException("Corrupted rounding id " + id);
+        return modes[id];
+    }
+
+    /**
+     * Write a campaign into a file. The file is written into a temporary file, which replaces the
+     * file when it is complete and forced to the disk. The replacement is forced to the disk before
+     * the method returns.
+     * @param campaign The written campaign.
+     * @param file The file.
+     * @throws IllegalArgumentException The campaign or the file was undefined, or the campaign
+     * exceeded the limits of the format.
+     * @throws IOException The writing failed.
+     */
+    public static void write(Campaign campaign, Path file) throws IllegalArgumentException, IOException {
+        write(campaign, EquipmentCatalog.empty(), file);
+    }
+
+    /**
+     * Write a campaign into a file.
+     * @param campaign The written campaign.
+     * @param catalog The catalog whose equipment ids the catalog section of the file preserves. The
+     * equipment of the campaign missing from the catalog is appended after the catalog equipment.
+     * @param file The file.
+     * @throws IllegalArgumentException The campaign, the catalog, or the file was undefined, or the
+     * campaign exceeded the limits of the format.
+     * @throws IOException The writing failed.
+     */
+    public static void write(Campaign campaign, EquipmentCatalog catalog, Path file) throws IllegalArgumentException, IOException {
+        if (file == null) throw new IllegalArgumentException("Missing file");
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+                write(campaign, catalog, output);
+                output.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Force the entries of a directory to the disk, so the files created, moved, or deleted in the
+     * directory survive a crash.
+     * @param directory The directory.
+     * @throws IOException The forcing failed.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException exception) {
+            // The platform does not allow opening a directory, and it does not need the sync.
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Write a campaign into a stream.
+     * @param campaign The written campaign.
+     * @param catalog The catalog whose equipment ids the catalog section preserves.
+     * @param output The stream the campaign is written to.
+     * @throws IllegalArgumentException The campaign, the catalog, or the stream was undefined, or
+     * the campaign exceeded the limits of the format.
+     * @throws IOException The writing failed.
+     */
+    public static void write(Campaign campaign, EquipmentCatalog catalog, OutputStream output) throws IllegalArgumentException, IOException {
+        if (campaign == null) throw new IllegalArgumentException("Missing campaign");
+        if (catalog == null) throw new IllegalArgumentException("Missing equipment catalog");
+        if (output == null) throw new IllegalArgumentException("Missing output");
+        new Writer(campaign, catalog).write(output);
+    }
+
+    /**
+     * The encoder of a campaign.
+     *
+     * The encoder collects the strings and the locations and counts the entries before writing,
+     * so the header gets the section offsets without buffering the sections, and each section is
+     * written directly to the output.
+     */
+    private static final class Writer {
+
+        private final Campaign campaign;
+
+        /**
+         * The ids of the strings.
+         */
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        /**
+         * The UTF-8 bytes of the strings of the string table.
+         */
+        private final java.util.List<byte[]> stringList = new java.util.ArrayList<>();
+
+        /**
+         * The total length of the UTF-8 bytes of the strings.
+         */
+        private long textSize = 0;
+
+        /**
+         * The ids of the locations.
+         */
+        private final DenseIndex<HitLocation> locations = new DenseIndex<>();
+
+        /**
+         * The catalog of the written equipment.
+         */
+        private final EquipmentCatalog catalog;
+
+        Writer(Campaign campaign, EquipmentCatalog catalog) {
+            this.campaign = campaign;
+            EquipmentCatalog.Builder builder = catalog.toBuilder();
+            for (Unit unit : campaign.units) {
+                for (EquipmentLoadout entry : unit.loadout) {
+                    if (entry != null && entry.getValue() != null) builder.add(entry.getValue());
+                }
+            }
+            this.catalog = builder.build();
+        }
+
+        /**
+         * Get the string id of a string.
+         */
+        private int stringId(String value) {
+            if (value == null) return -1;
+            Integer result = this.strings.get(value);
+            if (result == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                result = this.stringList.size();
+                this.strings.put(value, result);
+                this.stringList.add(bytes);
+                this.textSize += bytes.length;
+            }
+            return result;
+        }
+
+        /**
+         * Get the location id of a location.
+         */
+        private short locationId(HitLocation location) {
+            if (location == null) return -1;
+            int result = this.locations.intern(location);
+            if (result > Short.MAX_VALUE) throw new IllegalArgumentException("Too many hit locations");
+            return (short) result;
+        }
+
+        /**
+         * Check an entry count fits into the entry ids of the format.
+         */
+        private static int checkCount(long count, String entries) {
+            if (count > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many " + entries);
+            return (int) count;
+        }
+
+        void write(OutputStream target) throws IOException {
+            final Unit[] units = this.campaign.units;
+            final int nameId = stringId(this.campaign.name);
+
+            // Collect the strings and the locations, and count the entries.
+            long loadoutCount = 0;
+            long conditionCount = 0;
+            for (Unit unit : units) {
+                stringId(unit.name);
+                stringId(unit.model);
+                for (EquipmentLoadout entry : unit.loadout) {
+                    if (entry != null) locationId(entry.getKey());
+                }
+                for (ArmorLoadout entry : unit.armor) {
+                    if (entry != null) locationId(entry.location);
+                }
+                for (StructureLoadout entry : unit.structure) {
+                    if (entry != null) locationId(entry.location);
+                }
+                loadoutCount += unit.loadout.length;
+                conditionCount += unit.armor.length + unit.structure.length;
+            }
+            checkCount(loadoutCount, "loadout entries");
+            checkCount(conditionCount, "armor and structure entries");
+            for (int i = 0; i < this.locations.size(); i++) {
+                stringId(this.locations.get(i).name);
+                stringId(this.locations.get(i).abbrev);
+            }
+            long recordSize = 0;
+            for (int i = 0; i < this.catalog.size(); i++) {
+                Equipment item = this.catalog.get(i);
+                stringId(item.name);
+                stringId(item.abbrev);
+                for (RulesModifier modifier : item.modifiers) {
+                    stringId(modifier.name());
+                    stringId(modifier.rule());
+                }
+                recordSize += EQUIPMENT_SIZE + (long) MODIFIER_SIZE * item.modifiers.length;
+            }
+            checkCount(recordSize, "equipment modifiers");
+            checkCount(this.textSize, "string bytes");
+
+            final long[] sizes = {
+                4L * (this.stringList.size() + 1) + this.textSize,
+                (long) LOCATION_SIZE * this.locations.size(),
+                4L * (this.catalog.size() + 1) + recordSize,
+                (long) UNIT_SIZE * units.length,
+                LOADOUT_SIZE * loadoutCount,
+                CONDITION_SIZE * conditionCount
+            };
+            DataOutputStream output = new DataOutputStream(target);
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeShort(0);
+            output.writeInt(nameId);
+            output.writeInt(units.length);
+            output.writeInt(this.stringList.size());
+            output.writeInt(this.locations.size());
+            output.writeInt(this.catalog.size());
+            long offset = HEADER_SIZE;
+            for (long size : sizes) {
+                output.writeLong(offset);
+                offset += size;
+            }
+
+            int textOffset = 0;
+            for (byte[] text : this.stringList) {
+                output.writeInt(textOffset);
+                textOffset += text.length;
+            }
+            output.writeInt(textOffset);
+            for (byte[] text : this.stringList) {
+                output.write(text);
+            }
+
+            for (int i = 0; i < this.locations.size(); i++) {
+                HitLocation location = this.locations.get(i);
+                boolean slotted = location instanceof HitLocation.SlottedHitLocation;
+                output.writeByte(slotted ? SLOTTED : UNSLOTTED);
+                output.writeInt(stringId(location.name));
+                output.writeInt(stringId(location.abbrev));
+                output.writeInt(slotted ? ((HitLocation.SlottedHitLocation) location).critSlotCapacity : 0);
+            }
+
+            int recordOffset = 0;
+            for (int i = 0; i < this.catalog.size(); i++) {
+                output.writeInt(recordOffset);
+                recordOffset += EQUIPMENT_SIZE + MODIFIER_SIZE * this.catalog.get(i).modifiers.length;
+            }
+            output.writeInt(recordOffset);
+            for (int i = 0; i < this.catalog.size(); i++) {
+                Equipment item = this.catalog.get(i);
+                output.writeInt(stringId(item.name));
+                output.writeInt(stringId(item.abbrev));
+                output.writeDouble(item.mass);
+                output.writeInt(item.size);
+                output.writeInt(item.modifiers.length);
+                for (RulesModifier modifier : item.modifiers) {
+                    output.writeInt(stringId(modifier.name()));
+                    output.writeInt(stringId(modifier.rule()));
+                    output.writeDouble(modifier.modifier());
+                    output.writeByte(modifier.rounding() == null ? NO_ROUNDING : modifier.rounding().ordinal());
+                }
+            }
+
+            int loadoutIndex = 0;
+            int conditionIndex = 0;
+            for (Unit unit : units) {
+                output.writeInt(stringId(unit.name));
+                output.writeInt(stringId(unit.model));
+                output.writeByte(unit.type.ordinal());
+                output.writeDouble(unit.tonnage);
+                output.writeDouble(unit.availableTonnage);
+                output.writeInt(loadoutIndex);
+                output.writeInt(unit.loadout.length);
+                loadoutIndex += unit.loadout.length;
+                output.writeInt(conditionIndex);
+                output.writeInt(unit.armor.length);
+                conditionIndex += unit.armor.length;
+                output.writeInt(conditionIndex);
+                output.writeInt(unit.structure.length);
+                conditionIndex += unit.structure.length;
+            }
+
+            for (Unit unit : units) {
+                for (EquipmentLoadout entry : unit.loadout) {
+                    output.writeByte(entry == null ? 0 : PRESENT);
+                    output.writeShort(entry == null ? -1 : locationId(entry.getKey()));
+                    output.writeInt(entry == null || entry.getValue() == null ? -1 : this.catalog.idOf(entry.getValue()));
+                }
+            }
+
+            for (Unit unit : units) {
+                for (ArmorLoadout entry : unit.armor) {
+                    if (entry == null) {
+                        writeCondition(output, (byte) 0, (short) -1, null, (short) 0);
+                    } else {
+                        writeCondition(output, PRESENT, locationId(entry.location), entry.max, entry.current);
+                    }
+                }
+                for (StructureLoadout entry : unit.structure) {
+                    if (entry == null) {
+                        writeCondition(output, (byte) 0, (short) -1, null, (short) 0);
+                    } else {
+                        writeCondition(output, PRESENT, locationId(entry.location), entry.max, entry.current);
+                    }
+                }
+            }
+            output.flush();
+        }
+
+        /**
+         * Write a condition entry.
+         */
+        private static void writeCondition(DataOutputStream output, byte flags, short location, Short max, short current) throws IOException {
+            output.writeByte(max == null ? flags : flags | HAS_MAX);
+            output.writeShort(location);
+            output.writeShort(max == null ? 0 : max);
+            output.writeShort(current);
+        }
+    }
+}
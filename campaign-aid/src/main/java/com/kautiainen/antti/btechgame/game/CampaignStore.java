@@ -0,0 +1,773 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * A file backed event sourced campaign store.
+ *
+ * The store keeps a directory of campaign snapshots and event log segments. The snapshot
+ * <code>snapshot-N.bin</code> is a {@link CampaignFile} containing the campaign after the event
+ * <code>N</code>, and the segment <code>events-N.log</code> contains the events after the event
+ * <code>N</code>. Every log record is framed with its length and CRC-32C checksum, and the segment
+ * defines the locations and the equipment the first time its events refer to them.
+ *
+ * The appended events are written by a single committer thread. The committer writes all events
+ * waiting at the time with one write, and forces them to the disk with one sync, so concurrent
+ * appenders share the cost of the sync. After every snapshot interval of events, the committer
+ * writes a snapshot, starts a new segment, and deletes the older snapshots and segments.
+ *
+ * Opening a store loads the latest snapshot and replays the events after it. A torn record at
+ * the end of a segment ends the replay of the segment. {@link #read(Path, HitLocationRegistry)}
+ * loads the campaign the same way without creating a segment or starting the committer, so the
+ * readers never change the directory.
+ *
+ * The events cannot add or remove units, so the campaign keeps the units of the initial campaign.
+ * The locations read from the files are replaced with the canonical locations of the hit location
+ * registry of the store, and the armor and the structure are applied with the ids of the registry.
+ */
+public final class CampaignStore implements Closeable {
+
+    /**
+     * The default number of events between snapshots.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+
+    /**
+     * The largest accepted record size.
+     */
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static final byte DEFINE_LOCATION = 1;
+
+    private static final byte DEFINE_EQUIPMENT = 2;
+
+    private static final byte EQUIPMENT_ADDED = 3;
+
+    private static final byte EQUIPMENT_REMOVED = 4;
+
+    private static final byte ARMOR_CHANGED = 5;
+
+    private static final byte STRUCTURE_CHANGED = 6;
+
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private static final Pattern SEGMENT = Pattern.compile("events-(\\d+)\\.log");
+
+    /**
+     * An appended event waiting for the commit.
+     * @param event The event.
+     * @param result The future completed with the sequence number of the event when it is durable.
+     */
+    private static record Pending(CampaignEvent event, CompletableFuture<Long> result) {
+
+    }
+
+    /**
+     * The pending event signalling the committer to stop.
+     */
+    private static final Pending STOP = new Pending(null, null);
+
+    /**
+     * The mutable state of a unit.
+     */
+    private static final class UnitEntry {
+
+        /**
+         * The registry of the canonical hit locations.
+         */
+        final HitLocationRegistry registry;
+
+        /**
+         * The unit the state started from, or the last materialized unit.
+         */
+        Unit unit;
+
+        /**
+         * The current loadout, or undefined value if the loadout has not changed.
+         */
+        List<EquipmentLoadout> loadout;
+
+        /**
+         * The current armor and structure, or undefined value if they have not changed.
+         */
+        DamageEngine.UnitState condition;
+
+        /**
+         * Has the state changed since the unit was materialized.
+         */
+        boolean dirty;
+
+        UnitEntry(Unit unit, HitLocationRegistry registry) {
+            this.unit = unit;
+            this.registry = registry;
+        }
+
+        /**
+         * Apply an event to the state.
+         */
+        void apply(CampaignEvent event) {
+            if (event instanceof CampaignEvent.EquipmentAdded added) {
+                loadout().add(new EquipmentLoadout(added.location(), added.equipment()));
+            } else if (event instanceof CampaignEvent.EquipmentRemoved removed) {
+                List<EquipmentLoadout> entries = loadout();
+                for (int i = 0; i < entries.size(); i++) {
+                    EquipmentLoadout entry = entries.get(i);
+                    if (entry != null && removed.location().equals(entry.getKey()) && removed.equipment().equals(entry.getValue())) {
+                        entries.remove(i);
+                        break;
+                    }
+                }
+            } else if (event instanceof CampaignEvent.ArmorChanged armor) {
+                DamageEngine.UnitState state = condition();
+                state.submit(state.newBatch().add(armor.delta()));
+                state.apply();
+            } else if (event instanceof CampaignEvent.StructureChanged structure) {
+                DamageEngine.UnitState state = condition();
+                state.submit(state.newBatch().add(structure.delta()));
+                state.apply();
+            }
+            this.dirty = true;
+        }
+
+        private List<EquipmentLoadout> loadout() {
+            if (this.loadout == null) this.loadout = new ArrayList<>(java.util.Arrays.asList(this.unit.loadout));
+            return this.loadout;
+        }
+
+        private DamageEngine.UnitState condition() {
+            if (this.condition == null) this.condition = new DamageEngine.UnitState(this.unit, this.registry);
+            return this.condition;
+        }
+
+        /**
+         * Get the current unit.
+         */
+        Unit toUnit() {
+            if (this.dirty) {
+                Unit base = this.unit;
+                this.unit = new Unit(base.type, base.name, base.model, base.tonnage, base.availableTonnage,
+                    this.loadout == null ? base.loadout : this.loadout.toArray(new EquipmentLoadout[0]),
+                    this.condition == null ? base.armor : this.condition.toArmor(),
+                    this.condition == null ? base.structure : this.condition.toStructure());
+                this.dirty = false;
+            }
+            return this.unit;
+        }
+    }
+
+    /**
+     * The writer of a log segment. The writer is used by one thread at a time.
+     */
+    private static final class SegmentWriter implements Closeable {
+
+        private final FileChannel channel;
+
+        /**
+         * The locations defined in the segment.
+         */
+        private final DenseIndex<HitLocation> locations = new DenseIndex<>();
+
+        /**
+         * The equipment defined in the segment.
+         */
+        private final DenseIndex<Equipment> equipment = new DenseIndex<>();
+
+        /**
+         * The encoded records waiting for the write.
+         */
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+        /**
+         * The payload of the encoded record.
+         */
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+        private final DataOutputStream payloadData = new DataOutputStream(this.payload);
+
+        private final CRC32C checksum = new CRC32C();
+
+        /**
+         * Create a new empty segment. The entry of the segment is forced to the disk.
+         */
+        SegmentWriter(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                CampaignFile.syncDirectory(file.toAbsolutePath().getParent());
+            } catch (IOException exception) {
+                this.channel.close();
+                throw exception;
+            }
+        }
+
+        /**
+         * Frame the current payload into a record.
+         */
+        private void endRecord() {
+            final byte[] bytes = this.payload.toByteArray();
+            this.checksum.reset();
+            this.checksum.update(bytes);
+            final int crc = (int) this.checksum.getValue();
+            final int length = bytes.length;
+            this.records.write(length >>> 24);
+            this.records.write(length >>> 16);
+            this.records.write(length >>> 8);
+            this.records.write(length);
+            this.records.write(crc >>> 24);
+            this.records.write(crc >>> 16);
+            this.records.write(crc >>> 8);
+            this.records.write(crc);
+            this.records.write(bytes, 0, length);
+            this.payload.reset();
+        }
+
+        /**
+         * Get the segment id of a location, and define it if it is not defined yet.
+         */
+        private int location(HitLocation location) throws IOException {
+            final int known = this.locations.size();
+            final int result = this.locations.intern(location);
+            if (result == known) {
+                boolean slotted = location instanceof HitLocation.SlottedHitLocation;
+                this.payloadData.writeByte(DEFINE_LOCATION);
+                this.payloadData.writeInt(result);
+                writeString(this.payloadData, location.name);
+                writeString(this.payloadData, location.abbrev);
+                this.payloadData.writeInt(slotted ? ((HitLocation.SlottedHitLocation) location).critSlotCapacity : -1);
+                endRecord();
+            }
+            return result;
+        }
+
+        /**
+         * Get the segment id of an equipment, and define it if it is not defined yet.
+         */
+        private int equipment(Equipment item) throws IOException {
+            final int known = this.equipment.size();
+            final int result = this.equipment.intern(item);
+            if (result == known) {
+                this.payloadData.writeByte(DEFINE_EQUIPMENT);
+                this.payloadData.writeInt(result);
+                writeString(this.payloadData, item.name);
+                writeString(this.payloadData, item.abbrev);
+                this.payloadData.writeDouble(item.mass);
+                this.payloadData.writeInt(item.size);
+                this.payloadData.writeInt(item.modifiers.length);
+                for (RulesModifier modifier : item.modifiers) {
+                    writeString(this.payloadData, modifier.name());
+                    writeString(this.payloadData, modifier.rule());
+                    this.payloadData.writeDouble(modifier.modifier());
+                    this.payloadData.writeByte(modifier.rounding() == null ? CampaignFile.NO_ROUNDING : modifier.rounding().ordinal());
+                }
+                endRecord();
+            }
+            return result;
+        }
+
+        /**
+         * Encode an event with the definitions it needs.
+         */
+        void encode(long sequence, CampaignEvent event) throws IOException {
+            if (event instanceof CampaignEvent.EquipmentAdded added) {
+                encodeEquipment(EQUIPMENT_ADDED, sequence, added.unit(), added.location(), added.equipment());
+            } else if (event instanceof CampaignEvent.EquipmentRemoved removed) {
+                encodeEquipment(EQUIPMENT_REMOVED, sequence, removed.unit(), removed.location(), removed.equipment());
+            } else if (event instanceof CampaignEvent.ArmorChanged armor) {
+                encodeDelta(ARMOR_CHANGED, sequence, armor.unit(), armor.delta().location, armor.delta().current);
+            } else if (event instanceof CampaignEvent.StructureChanged structure) {
+                encodeDelta(STRUCTURE_CHANGED, sequence, structure.unit(), structure.delta().location, structure.delta().current);
+            }
+        }
+
+        private void encodeEquipment(byte type, long sequence, int unit, HitLocation location, Equipment item) throws IOException {
+            final int locationId = location(location);
+            final int equipmentId = equipment(item);
+            this.payloadData.writeByte(type);
+            this.payloadData.writeLong(sequence);
+            this.payloadData.writeInt(unit);
+            this.payloadData.writeInt(locationId);
+            this.payloadData.writeInt(equipmentId);
+            endRecord();
+        }
+
+        private void encodeDelta(byte type, long sequence, int unit, HitLocation location, short amount) throws IOException {
+            final int locationId = location(location);
+            this.payloadData.writeByte(type);
+            this.payloadData.writeLong(sequence);
+            this.payloadData.writeInt(unit);
+            this.payloadData.writeInt(locationId);
+            this.payloadData.writeShort(amount);
+            endRecord();
+        }
+
+        /**
+         * Write the encoded records and force them to the disk.
+         */
+        void commit() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(this.records.toByteArray());
+            this.records.reset();
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            this.channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * The directory of the store.
+     */
+    private final Path directory;
+
+    /**
+     * The number of events between snapshots.
+     */
+    private final int snapshotInterval;
+
+    /**
+     * The registry of the canonical hit locations.
+     */
+    private final HitLocationRegistry registry;
+
+    /**
+     * The name of the campaign.
+     */
+    private final String name;
+
+    /**
+     * The unit states. The states are guarded by the array.
+     */
+    private final UnitEntry[] units;
+
+    /**
+     * The events waiting for the committer. The appending and the closing enqueue while holding the
+     * lock of the queue, so no event is enqueued after the stop marker.
+     */
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The committer thread, or undefined value if the store only reads the campaign.
+     */
+    private final Thread committer;
+
+    /**
+     * The current segment. Only the committer uses the segment after the store is opened.
+     */
+    private SegmentWriter segment;
+
+    /**
+     * The sequence number of the last committed event.
+     */
+    private volatile long lastSequence;
+
+    /**
+     * The sequence number of the last snapshot.
+     */
+    private long snapshotSequence;
+
+    /**
+     * The failure stopping the store, or undefined value if the store has not failed.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Is the store closed.
+     */
+    private volatile boolean closed;
+
+    private CampaignStore(Path directory, int snapshotInterval, HitLocationRegistry registry, Campaign campaign, long sequence,
+            boolean writable) {
+        this.directory = directory;
+        this.registry = registry;
+        this.snapshotInterval = snapshotInterval;
+        this.name = campaign.name;
+        this.units = new UnitEntry[campaign.units.length];
+        for (int i = 0; i < this.units.length; i++) {
+            this.units[i] = new UnitEntry(campaign.units[i], registry);
+        }
+        this.lastSequence = sequence;
+        this.snapshotSequence = sequence;
+        if (writable) {
+            this.committer = new Thread(this::commitLoop, "campaign-store-committer");
+            this.committer.setDaemon(true);
+        } else {
+            this.committer = null;
+        }
+    }
+
+    /**
+     * Open a campaign store with the default snapshot interval.
+     * @param directory The directory of the store.
+     * @param initial The campaign of a new store. The campaign is ignored if the directory already
+     * contains a snapshot.
+     * @return The opened store.
+     * @throws IllegalArgumentException The directory was undefined, or the directory did not contain
+     * a snapshot and the initial campaign was undefined.
+     * @throws IOException The store could not be read or created.
+     */
+    public static CampaignStore open(Path directory, Campaign initial) throws IllegalArgumentException, IOException {
+        return open(directory, initial, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Open a campaign store.
+     * @param directory The directory of the store.
+     * @param initial The campaign of a new store. The campaign is ignored if the directory already
+     * contains a snapshot.
+     * @param snapshotInterval The number of events between snapshots.
+     * @return The opened store.
+     * @throws IllegalArgumentException The directory was undefined, the snapshot interval was not
+     * positive, or the directory did not contain a snapshot and the initial campaign was undefined.
+     * @throws IOException The store could not be read or created.
+     */
+    public static CampaignStore open(Path directory, Campaign initial, int snapshotInterval) throws IllegalArgumentException, IOException {
+        return open(directory, initial, snapshotInterval, HitLocationRegistry.getDefault());
+    }
+
+    /**
+     * Open a campaign store using the hit locations of a rule set.
+     * @param directory The directory of the store.
+     * @param initial The campaign of a new store. The campaign is ignored if the directory already
+     * contains a snapshot.
+     * @param snapshotInterval The number of events between snapshots.
+     * @param registry The registry of the canonical hit locations of the rules.
+     * @return The opened store.
+     * @throws IllegalArgumentException The directory or the registry was undefined, the snapshot
+     * interval was not positive, or the directory did not contain a snapshot and the initial
+     * campaign was undefined.
+     * @throws IOException The store could not be read or created.
+     */
+    public static CampaignStore open(Path directory, Campaign initial, int snapshotInterval, HitLocationRegistry registry)
+            throws IllegalArgumentException, IOException {
+        if (directory == null) throw new IllegalArgumentException("Missing directory");
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        if (snapshotInterval <= 0) throw new IllegalArgumentException("Snapshot interval must be positive");
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = list(directory, SNAPSHOT);
+        CampaignStore result;
+        if (snapshots.isEmpty()) {
+            if (initial == null) throw new IllegalArgumentException("Missing initial campaign");
+            result = new CampaignStore(directory, snapshotInterval, registry, initial, 0L, true);
+            CampaignFile.write(initial, snapshotFile(directory, 0L));
+        } else {
+            result = load(directory, snapshots, snapshotInterval, registry, true);
+        }
+        result.segment = new SegmentWriter(directory.resolve("events-" + result.lastSequence + ".log"));
+        result.committer.start();
+        return result;
+    }
+
+    /**
+     * Read the current campaign of a store without opening the store. The latest snapshot is
+     * mapped, and the events after it are replayed from the segments. No file of the directory is
+     * created or changed.
+     * @param directory The directory of the store.
+     * @param registry The registry of the canonical hit locations of the rules.
+     * @return The campaign with all events of the segments applied.
+     * @throws IllegalArgumentException The directory or the registry was undefined, or the directory
+     * did not contain a snapshot.
+     * @throws IOException The store could not be read.
+     */
+    public static Campaign read(Path directory, HitLocationRegistry registry) throws IllegalArgumentException, IOException {
+        if (directory == null) throw new IllegalArgumentException("Missing directory");
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        TreeMap<Long, Path> snapshots = list(directory, SNAPSHOT);
+        if (snapshots.isEmpty()) throw new IllegalArgumentException("Missing campaign snapshot");
+        return load(directory, snapshots, DEFAULT_SNAPSHOT_INTERVAL, registry, false).getCampaign();
+    }
+
+    /**
+     * Load the latest snapshot of a store and replay the events after it.
+     * @param writable Does the loaded store commit events.
+     */
+    private static CampaignStore load(Path directory, TreeMap<Long, Path> snapshots, int snapshotInterval,
+            HitLocationRegistry registry, boolean writable) throws IOException {
+        long sequence = snapshots.lastKey();
+        CampaignStore result = new CampaignStore(directory, snapshotInterval, registry,
+            MappedCampaign.open(snapshots.lastEntry().getValue(), registry).toCampaign(), sequence, writable);
+        for (Path segment : list(directory, SEGMENT).tailMap(sequence, true).values()) {
+            result.replay(segment);
+        }
+        return result;
+    }
+
+    /**
+     * List the files of the directory matching a pattern by their sequence numbers.
+     */
+    private static TreeMap<Long, Path> list(Path directory, Pattern pattern) throws IOException {
+        TreeMap<Long, Path> result = new TreeMap<>();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) result.put(Long.parseLong(matcher.group(1)), file);
+            }
+        }
+        return result;
+    }
+
+    private static Path snapshotFile(Path directory, long sequence) {
+        return directory.resolve("snapshot-" + sequence + ".bin");
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) output.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * Replay the events of a segment after the last replayed event.
+     */
+    private void replay(Path file) throws IOException {
+        List<HitLocation> locations = new ArrayList<>();
+        List<Equipment> equipment = new ArrayList<>();
+        CRC32C checksum = new CRC32C();
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream input = new DataInputStream(stream);
+            while (true) {
+                byte[] payload;
+                try {
+                    final int length = input.readInt();
+                    final int crc = input.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) return;
+                    payload = new byte[length];
+                    input.readFully(payload);
+                    checksum.reset();
+                    checksum.update(payload);
+                    if ((int) checksum.getValue() != crc) return;
+                } catch (EOFException end) {
+                    return;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                final byte type = record.readByte();
+                switch (type) {
+                    case DEFINE_LOCATION -> {
+                        final int id = record.readInt();
+                        final String locationName = readString(record);
+                        final String abbrev = readString(record);
+                        final int capacity = record.readInt();
+                        HitLocation location = capacity < 0 ? new HitLocation(locationName, abbrev)
+                            : new HitLocation.SlottedHitLocation(locationName, abbrev, (short) capacity);
+                        int canonical = this.registry.idOf(location);
+                        define(locations, id, canonical < 0 ? location : this.registry.get(canonical));
+                    }
+                    case DEFINE_EQUIPMENT -> {
+                        final int id = record.readInt();
+                        final String equipmentName = readString(record);
+                        final String abbrev = readString(record);
+                        final double mass = record.readDouble();
+                        final int size = record.readInt();
+                        final int count = record.readInt();
+                        if (count < 0 || count > payload.length) throw new IOException("Corrupted campaign log modifier count " + count);
+                        RulesModifier[] modifiers = new RulesModifier[count];
+                        for (int i = 0; i < modifiers.length; i++) {
+                            final String modifierName = readString(record);
+                            final String rule = readString(record);
+                            final double amount = record.readDouble();
+                            final byte rounding = record.readByte();
+                            modifiers[i] = new RulesModifier(modifierName, rule, amount, CampaignFile.rounding(rounding));
+                        }
+                        define(equipment, id, new Equipment(equipmentName, abbrev, mass, size, modifiers));
+                    }
+                    default -> {
+                        final long sequence = record.readLong();
+                        final int unit = record.readInt();
+                        if (unit < 0 || unit >= this.units.length) throw new IOException("Corrupted campaign log unit " + unit);
+                        final HitLocation location = definition(locations, record.readInt());
+                        CampaignEvent event = switch (type) {
+                            case EQUIPMENT_ADDED -> new CampaignEvent.EquipmentAdded(unit, location, definition(equipment, record.readInt()));
+                            case EQUIPMENT_REMOVED -> new CampaignEvent.EquipmentRemoved(unit, location, definition(equipment, record.readInt()));
+                            case ARMOR_CHANGED -> new CampaignEvent.ArmorChanged(unit, armorDelta(location, record.readShort()));
+                            case STRUCTURE_CHANGED -> new CampaignEvent.StructureChanged(unit, structureDelta(location, record.readShort()));
+                            default -> throw new IOException("Unknown campaign event type " + type);
+                        };
+                        if (sequence > this.lastSequence) {
+                            this.units[unit].apply(event);
+                            this.lastSequence = sequence;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> void define(List<T> definitions, int id, T value) throws IOException {
+        if (id != definitions.size()) throw new IOException("Campaign log definition out of order");
+        definitions.add(value);
+    }
+
+    private static <T> T definition(List<T> definitions, int id) throws IOException {
+        if (id < 0 || id >= definitions.size()) throw new IOException("Campaign log refers to undefined id " + id);
+        return definitions.get(id);
+    }
+
+    private static ArmorLoadout armorDelta(HitLocation location, short amount) {
+        return amount < 0 ? ArmorLoadout.ofDamage(location, -amount) : ArmorLoadout.ofRepair(location, amount);
+    }
+
+    private static StructureLoadout structureDelta(HitLocation location, short amount) {
+        return amount < 0 ? StructureLoadout.ofDamage(location, (short) -amount) : StructureLoadout.ofRepair(location, amount);
+    }
+
+    /**
+     * Append an event to the log.
+     * @param event The appended event.
+     * @return The future completed with the sequence number of the event, when the event has been
+     * forced to the disk and applied to the campaign.
+     * @throws IllegalArgumentException The event was undefined, or it referred to an unit the
+     * campaign does not have.
+     * @throws IllegalStateException The store was closed or it has failed.
+     */
+    public CompletableFuture<Long> append(CampaignEvent event) throws IllegalArgumentException, IllegalStateException {
+        if (event == null) throw new IllegalArgumentException("Undefined event not accepted");
+        if (event.unit() >= this.units.length) throw new IllegalArgumentException("Unknown unit " + event.unit());
+        if (this.failure != null) throw new IllegalStateException("Campaign store failed", this.failure);
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        synchronized (this.queue) {
+            if (this.closed) throw new IllegalStateException("Campaign store closed");
+            this.queue.add(new Pending(event, result));
+        }
+        return result;
+    }
+
+    /**
+     * The sequence number of the last committed event.
+     * @return The sequence number of the last committed event.
+     */
+    public long getLastSequence() {
+        return this.lastSequence;
+    }
+
+    /**
+     * Get the current campaign.
+     * @return The campaign with all committed events applied.
+     */
+    public Campaign getCampaign() {
+        synchronized (this.units) {
+            Unit[] result = new Unit[this.units.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = this.units[i].toUnit();
+            }
+            return new Campaign(this.name, result);
+        }
+    }
+
+    /**
+     * Commit the appended events until the store is closed.
+     */
+    private void commitLoop() {
+        List<Pending> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            batch.clear();
+            try {
+                batch.add(this.queue.take());
+            } catch (InterruptedException interrupted) {
+                break;
+            }
+            this.queue.drainTo(batch);
+            if (batch.remove(STOP)) {
+                running = false;
+            }
+            if (this.failure != null) {
+                batch.forEach(pending -> pending.result.completeExceptionally(this.failure));
+                continue;
+            }
+            try {
+                long sequence = this.lastSequence;
+                for (Pending pending : batch) {
+                    this.segment.encode(++sequence, pending.event);
+                }
+                this.segment.commit();
+                synchronized (this.units) {
+                    for (Pending pending : batch) {
+                        this.units[pending.event.unit()].apply(pending.event);
+                    }
+                }
+                final long first = this.lastSequence + 1;
+                this.lastSequence = sequence;
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result.complete(first + i);
+                }
+                if (sequence - this.snapshotSequence >= this.snapshotInterval) {
+                    snapshot();
+                }
+            } catch (IOException | RuntimeException exception) {
+                this.failure = exception;
+                batch.forEach(pending -> pending.result.completeExceptionally(exception));
+            }
+        }
+        Pending late;
+        while ((late = this.queue.poll()) != null) {
+            if (late != STOP) late.result.completeExceptionally(new IllegalStateException("Campaign store closed"));
+        }
+    }
+
+    /**
+     * Write a snapshot of the current campaign, start a new segment, and delete the older files.
+     * The older files are deleted only after the snapshot and the new segment have been forced to
+     * the disk, so a crash always leaves a complete snapshot and its events.
+     */
+    private void snapshot() throws IOException {
+        final long sequence = this.lastSequence;
+        CampaignFile.write(getCampaign(), snapshotFile(this.directory, sequence));
+        this.segment.close();
+        this.segment = new SegmentWriter(this.directory.resolve("events-" + sequence + ".log"));
+        this.snapshotSequence = sequence;
+        for (Path file : list(this.directory, SEGMENT).headMap(sequence, false).values()) {
+            Files.deleteIfExists(file);
+        }
+        for (Path file : list(this.directory, SNAPSHOT).headMap(sequence, false).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Commit the appended events and close the store.
+     * @throws IOException The closing of the log failed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.queue) {
+            if (this.closed) return;
+            this.closed = true;
+            this.queue.add(STOP);
+        }
+        try {
+            this.committer.join();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        this.segment.close();
+    }
+}
@@ -0,0 +1,369 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * A Monte Carlo simulator of weapon volleys fired at a unit.
+ *
+ * The hits are located with the 2d6 hit location table of the mech locations of the game rules, or
+ * uniformly if the rules do not define the standard mech locations. Damage to a destroyed location
+ * transfers inwards from the limbs to the side torsos, and from the side torsos to the center torso.
+ * The unit is killed when its head or center torso is destroyed, or when both legs are destroyed.
+ *
+ * The trials are split into chunks simulated in parallel. Every chunk has its own random stream split
+ * from the seed in chunk order, and a trial allocates no memory, so the results depend only on the seed.
+ */
+public final class CombatSimulator {
+
+    /**
+     * A weapon of a volley.
+     * @param damage The damage of a hit.
+     * @param hitChance The probability of hitting the target.
+     */
+    public static record Weapon(int damage, double hitChance) {
+
+        /**
+         * Create a new weapon.
+         * @param damage The damage of a hit.
+         * @param hitChance The probability of hitting the target.
+         * @throws IllegalArgumentException The damage or the hit chance was invalid.
+         */
+        public Weapon {
+            if (damage < 0) throw new IllegalArgumentException("Negative weapon damage");
+            if (!(hitChance >= 0.0 && hitChance <= 1.0)) throw new IllegalArgumentException("Invalid hit chance");
+        }
+    }
+
+    /**
+     * The result of a simulation.
+     * @param trials The number of trials.
+     * @param volleysToKill The number of trials in which the unit was killed by the volley of the index.
+     * The index 0 is not used.
+     * @param locations The locations of the unit.
+     * @param destroyed The number of trials in which the location of the index was destroyed.
+     */
+    public static record Result(long trials, long[] volleysToKill, HitLocation[] locations, long[] destroyed) {
+
+        /**
+         * The number of trials in which the unit was killed.
+         * @return The number of kills.
+         */
+        public long kills() {
+            return Arrays.stream(this.volleysToKill).sum();
+        }
+
+        /**
+         * The mean number of volleys needed to kill the unit in the trials it was killed.
+         * @return The mean time to kill in volleys, or not a number, if the unit was never killed.
+         */
+        public double meanVolleysToKill() {
+            long kills = 0;
+            double total = 0.0;
+            for (int volleys = 1; volleys < this.volleysToKill.length; volleys++) {
+                kills += this.volleysToKill[volleys];
+                total += (double) volleys * this.volleysToKill[volleys];
+            }
+            return kills == 0 ? Double.NaN : total / kills;
+        }
+
+        /**
+         * The probability of a location being destroyed.
+         * @param location The location.
+         * @return The share of the trials in which the location was destroyed.
+         */
+        public double destructionRate(HitLocation location) {
+            for (int i = 0; i < this.locations.length; i++) {
+                if (this.locations[i].equals(location)) {
+                    return this.trials == 0 ? 0.0 : (double) this.destroyed[i] / this.trials;
+                }
+            }
+            return 0.0;
+        }
+    }
+
+    /**
+     * The location names of the 2d6 rolls from 2 to 12.
+     */
+    private static final String[] MECH_TABLE = { "Center Torso", "Right Arm", "Right Arm", "Right Leg", "Right Torso",
+            "Center Torso", "Left Torso", "Left Leg", "Left Arm", "Left Arm", "Head" };
+
+    /**
+     * The number of trials of a chunk. The chunks do not depend on the number of processors, so the
+     * results of a seed are the same on every machine.
+     */
+    private static final long CHUNK_SIZE = 1 << 14;
+
+    /**
+     * The names of the hit locations by the 36 equally likely outcomes of the hit location roll.
+     */
+    private final String[] outcomes;
+
+    /**
+     * The registry of the canonical hit locations of the rules.
+     */
+    private final HitLocationRegistry registry;
+
+    /**
+     * Create a new simulator.
+     * @param rules The game rules whose mech hit locations are used.
+     * @throws IllegalArgumentException The rules were undefined.
+     */
+    public CombatSimulator(GameRules rules) throws IllegalArgumentException {
+        this(rules, HitLocationRegistry.getDefault());
+    }
+
+    /**
+     * Create a new simulator using a rule set.
+     * @param ruleSet The rule set whose mech hit locations are used.
+     * @throws IllegalArgumentException The rule set was undefined.
+     */
+    public CombatSimulator(RuleSet ruleSet) throws IllegalArgumentException {
+        this(ruleSet == null ? null : ruleSet.getRules(), ruleSet == null ? null : ruleSet.getLocations());
+    }
+
+    /**
+     * Create a new simulator.
+     * @param rules The game rules whose mech hit locations are used.
+     * @param registry The registry of the canonical hit locations of the rules.
+     * @throws IllegalArgumentException The rules or the registry were undefined.
+     */
+    private CombatSimulator(GameRules rules, HitLocationRegistry registry) throws IllegalArgumentException {
+        if (rules == null) throw new IllegalArgumentException("Missing game rules");
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        this.registry = registry;
+        GameRules.LocationTable table = rules.getLocationTable(GameRules.UnitType.Mech);
+        java.util.List<String> mech = new java.util.ArrayList<>(table.size());
+        boolean standard = true;
+        for (int i = 0; i < table.size(); i++) {
+            mech.add(table.get(i).name);
+        }
+        for (String name : MECH_TABLE) {
+            standard &= table.indexOfName(name) >= 0;
+        }
+        this.outcomes = new String[36];
+        if (standard) {
+            for (int first = 1; first <= 6; first++) {
+                for (int second = 1; second <= 6; second++) {
+                    this.outcomes[(first - 1) * 6 + second - 1] = MECH_TABLE[first + second - 2];
+                }
+            }
+        } else if (!mech.isEmpty()) {
+            for (int i = 0; i < 36; i++) {
+                this.outcomes[i] = mech.get(i * mech.size() / 36);
+            }
+        }
+    }
+
+    /**
+     * Simulate volleys fired at a unit.
+     * @param target The target unit.
+     * @param volley The weapons of a volley.
+     * @param maxVolleys The largest number of volleys of a trial.
+     * @param trials The number of trials.
+     * @param seed The seed of the random streams.
+     * @return The result of the simulation.
+     * @throws IllegalArgumentException Any parameter was invalid.
+     */
+    public Result simulate(Unit target, Weapon[] volley, int maxVolleys, long trials, long seed) throws IllegalArgumentException {
+        if (target == null) throw new IllegalArgumentException("Missing target");
+        if (volley == null) throw new IllegalArgumentException("Missing volley");
+        if (maxVolleys < 1) throw new IllegalArgumentException("Invalid number of volleys");
+        if (trials < 0) throw new IllegalArgumentException("Negative number of trials");
+        final Plan plan = new Plan(new DamageEngine.UnitState(target, this.registry), volley);
+        final int chunks = (int) Math.max(1, (trials + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        final SplittableRandom root = new SplittableRandom(seed);
+        final SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            streams[i] = root.split();
+        }
+        final Partial[] partials = IntStream.range(0, chunks).parallel().mapToObj((int chunk) -> {
+            long count = Math.min(CHUNK_SIZE, trials - chunk * CHUNK_SIZE);
+            return plan.run(streams[chunk], count, maxVolleys);
+        }).toArray(Partial[]::new);
+
+        long[] volleysToKill = new long[maxVolleys + 1];
+        long[] destroyed = new long[plan.locations.length];
+        for (Partial partial : partials) {
+            for (int i = 0; i < volleysToKill.length; i++) volleysToKill[i] += partial.volleysToKill[i];
+            for (int i = 0; i < destroyed.length; i++) destroyed[i] += partial.destroyed[i];
+        }
+        return new Result(trials, volleysToKill, plan.locations.clone(), destroyed);
+    }
+
+    /**
+     * The counts of a chunk of trials.
+     */
+    private static final class Partial {
+
+        final long[] volleysToKill;
+
+        final long[] destroyed;
+
+        Partial(int maxVolleys, int locations) {
+            this.volleysToKill = new long[maxVolleys + 1];
+            this.destroyed = new long[locations];
+        }
+    }
+
+    /**
+     * The precomputed tables of a simulation.
+     */
+    private final class Plan {
+
+        /**
+         * The locations of the target.
+         */
+        final HitLocation[] locations;
+
+        /**
+         * The initial armor by location index.
+         */
+        final short[] armor;
+
+        /**
+         * The initial structure by location index.
+         */
+        final short[] structure;
+
+        /**
+         * The maximum structure by location index.
+         */
+        final short[] structureMax;
+
+        /**
+         * The location indexes of the hit location roll outcomes, or -1 for a miss.
+         */
+        final int[] table = new int[36];
+
+        /**
+         * The location index receiving the damage transferred from a destroyed location, or -1.
+         */
+        final int[] transfer;
+
+        /**
+         * Does the destruction of the location kill the unit.
+         */
+        final boolean[] fatal;
+
+        /**
+         * The location indexes of the legs, or -1.
+         */
+        final int leftLeg, rightLeg;
+
+        /**
+         * The damage of the weapons.
+         */
+        final int[] damage;
+
+        /**
+         * The hit thresholds of the weapons. A weapon hits, if 32 random bits interpreted as an
+         * unsigned number are smaller than the threshold.
+         */
+        final long[] hitThreshold;
+
+        Plan(DamageEngine.UnitState state, Weapon[] volley) {
+            this.locations = state.getLocations();
+            final int count = this.locations.length;
+            this.armor = new short[count];
+            this.structure = new short[count];
+            this.structureMax = new short[count];
+            state.copyArmor(this.armor, new short[count]);
+            state.copyStructure(this.structure, this.structureMax);
+            java.util.Map<String, Integer> byName = new java.util.HashMap<>();
+            for (int i = 0; i < count; i++) {
+                byName.putIfAbsent(this.locations[i].name, i);
+            }
+            for (int i = 0; i < 36; i++) {
+                this.table[i] = outcomes[i] == null
+                        ? (count == 0 ? -1 : i * count / 36)
+                        : byName.getOrDefault(outcomes[i], -1);
+            }
+            this.transfer = new int[count];
+            this.fatal = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                String name = this.locations[i].name;
+                this.fatal[i] = "Head".equals(name) || "Center Torso".equals(name);
+                this.transfer[i] = -1;
+                if (name != null && (name.endsWith(" Arm") || name.endsWith(" Leg"))) {
+                    this.transfer[i] = byName.getOrDefault(name.substring(0, name.length() - 4) + " Torso", -1);
+                } else if (name != null && name.endsWith(" Torso") && !this.fatal[i]) {
+                    this.transfer[i] = byName.getOrDefault("Center Torso", -1);
+                }
+            }
+            this.leftLeg = byName.getOrDefault("Left Leg", -1);
+            this.rightLeg = byName.getOrDefault("Right Leg", -1);
+            this.damage = new int[volley.length];
+            this.hitThreshold = new long[volley.length];
+            for (int i = 0; i < volley.length; i++) {
+                if (volley[i] == null) throw new IllegalArgumentException("Undefined weapon not accepted");
+                this.damage[i] = volley[i].damage();
+                this.hitThreshold[i] = (long) Math.ceil(volley[i].hitChance() * 0x1_0000_0000L);
+            }
+        }
+
+        /**
+         * Run a chunk of trials.
+         */
+        Partial run(SplittableRandom random, long trials, int maxVolleys) {
+            final int count = this.locations.length;
+            final Partial result = new Partial(maxVolleys, count);
+            final short[] armorLeft = new short[count];
+            final short[] structureLeft = new short[count];
+            final boolean[] destroyed = new boolean[count];
+            for (long trial = 0; trial < trials; trial++) {
+                System.arraycopy(this.armor, 0, armorLeft, 0, count);
+                System.arraycopy(this.structure, 0, structureLeft, 0, count);
+                for (int i = 0; i < count; i++) {
+                    destroyed[i] = this.structureMax[i] > 0 && structureLeft[i] <= 0;
+                }
+                boolean dead = false;
+                for (int volley = 1; volley <= maxVolleys && !dead; volley++) {
+                    for (int weapon = 0; weapon < this.damage.length && !dead; weapon++) {
+                        // The low bits decide the hit, and the high bits the hit location roll.
+                        final long bits = random.nextLong();
+                        if ((bits & 0xFFFF_FFFFL) < this.hitThreshold[weapon]) {
+                            final int roll = (int) (((bits >>> 32) * 36) >>> 32);
+                            dead = hit(this.table[roll], this.damage[weapon], armorLeft, structureLeft, destroyed);
+                        }
+                    }
+                    if (dead) {
+                        result.volleysToKill[volley]++;
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (destroyed[i]) result.destroyed[i]++;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Apply a hit.
+         * @return True, if and only if the hit killed the unit.
+         */
+        private boolean hit(int location, int amount, short[] armorLeft, short[] structureLeft, boolean[] destroyed) {
+            while (amount > 0 && location >= 0) {
+                if (destroyed[location]) {
+                    location = this.transfer[location];
+                    continue;
+                }
+                int absorbed = Math.min(armorLeft[location], amount);
+                armorLeft[location] -= absorbed;
+                amount -= absorbed;
+                if (amount == 0) break;
+                absorbed = Math.min(structureLeft[location], amount);
+                structureLeft[location] -= absorbed;
+                amount -= absorbed;
+                if (structureLeft[location] == 0) {
+                    destroyed[location] = true;
+                    if (this.fatal[location]) return true;
+                    if (this.leftLeg >= 0 && this.rightLeg >= 0 && destroyed[this.leftLeg] && destroyed[this.rightLeg]) return true;
+                    location = this.transfer[location];
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,639 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative integers.
+ *
+ * The bitmap splits the integers into chunks of 65536 integers by their high 16 bits. A chunk with
+ * at most {@value #ARRAY_LIMIT} members stores the low 16 bits of the members as a sorted array,
+ * and a denser chunk stores them as a bitmap of 1024 words, so a chunk never takes more than 8 KiB
+ * and sparse chunks take 2 bytes per member. The set operations combine the chunks with the same
+ * high bits, and skip the chunks the other operand does not have.
+ *
+ * An array chunk becomes a bitmap chunk when it grows past {@value #ARRAY_LIMIT} members, but a
+ * bitmap chunk becomes an array chunk again only when it shrinks to {@value #BITMAP_LIMIT} members,
+ * so adding and removing a member at the limit does not convert the chunk back and forth.
+ *
+ * The bitmap is not thread safe.
+ */
+public final class CompressedBitmap {
+
+    /**
+     * The largest number of members of an array chunk.
+     */
+    static final int ARRAY_LIMIT = 4096;
+
+    /**
+     * The number of members at which a shrinking bitmap chunk becomes an array chunk.
+     */
+    static final int BITMAP_LIMIT = ARRAY_LIMIT / 2;
+
+    /**
+     * The number of words of a bitmap chunk.
+     */
+    private static final int WORDS = 1024;
+
+    /**
+     * A chunk of the members sharing the high 16 bits.
+     */
+    private abstract static sealed class Container permits ArrayContainer, BitmapContainer {
+
+        /**
+         * The number of members.
+         * @return The number of members of the chunk.
+         */
+        abstract int cardinality();
+
+        /**
+         * Test membership.
+         * @param value The low bits of the tested value.
+         * @return True, if and only if the chunk contains the value.
+         */
+        abstract boolean contains(char value);
+
+        /**
+         * Add a member.
+         * @param value The low bits of the added value.
+         * @return The chunk containing the value.
+         */
+        abstract Container add(char value);
+
+        /**
+         * Remove a member.
+         * @param value The low bits of the removed value.
+         * @return The chunk without the value, or undefined value if the chunk became empty.
+         */
+        abstract Container remove(char value);
+
+        /**
+         * Call a consumer with the members in ascending order.
+         * @param high The high bits of the chunk.
+         * @param consumer The consumer of the members.
+         */
+        abstract void forEach(int high, IntConsumer consumer);
+
+        /**
+         * Copy the chunk.
+         * @return An independent copy of the chunk.
+         */
+        abstract Container copy();
+
+        /**
+         * Set the bits of the members into words.
+         * @param words The words of a bitmap chunk.
+         */
+        abstract void setInto(long[] words);
+    }
+
+    /**
+     * A sparse chunk.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+
+        private int cardinality;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(this.values, 0, this.cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+            if (index >= 0) return this;
+            if (this.cardinality == ARRAY_LIMIT) {
+                BitmapContainer result = toBitmap();
+                return result.add(value);
+            }
+            index = -index - 1;
+            if (this.cardinality == this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.min(ARRAY_LIMIT, Math.max(4, 2 * this.cardinality)));
+            }
+            System.arraycopy(this.values, index, this.values, index + 1, this.cardinality - index);
+            this.values[index] = value;
+            this.cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+            if (index < 0) return this;
+            System.arraycopy(this.values, index + 1, this.values, index, this.cardinality - index - 1);
+            this.cardinality--;
+            return this.cardinality == 0 ? null : this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < this.cardinality; i++) {
+                consumer.accept(high | this.values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(this.values, this.cardinality), this.cardinality);
+        }
+
+        @Override
+        void setInto(long[] words) {
+            for (int i = 0; i < this.cardinality; i++) {
+                words[this.values[i] >>> 6] |= 1L << this.values[i];
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[WORDS];
+            setInto(words);
+            return new BitmapContainer(words, this.cardinality);
+        }
+    }
+
+    /**
+     * A dense chunk.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (this.words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = this.words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                this.words[value >>> 6] = after;
+                this.cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = this.words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before == after) return this;
+            this.words[value >>> 6] = after;
+            this.cardinality--;
+            return this.cardinality <= BITMAP_LIMIT ? normalize(this.words, this.cardinality) : this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int word = 0; word < WORDS; word++) {
+                long bits = this.words[word];
+                while (bits != 0) {
+                    consumer.accept(high | (word << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(this.words.clone(), this.cardinality);
+        }
+
+        @Override
+        void setInto(long[] words) {
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= this.words[i];
+            }
+        }
+    }
+
+    /**
+     * Create the chunk of words.
+     * @param words The words of the chunk.
+     * @param cardinality The number of set bits of the words.
+     * @return The array chunk if the words have at most {@value #ARRAY_LIMIT} members, the bitmap
+     * chunk of the words otherwise, or undefined value if the words have no members.
+     */
+    private static Container normalize(long[] words, int cardinality) {
+        if (cardinality == 0) return null;
+        if (cardinality > ARRAY_LIMIT) return new BitmapContainer(words, cardinality);
+        char[] values = new char[cardinality];
+        int index = 0;
+        for (int word = 0; word < WORDS; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                values[index++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return new ArrayContainer(values, cardinality);
+    }
+
+    /**
+     * Count the set bits of words.
+     */
+    private static int cardinalityOf(long[] words) {
+        int result = 0;
+        for (long word : words) {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+
+    private static Container and(Container first, Container second) {
+        if (first instanceof ArrayContainer array) return filter(array, second, true);
+        if (second instanceof ArrayContainer array) return filter(array, first, true);
+        long[] words = ((BitmapContainer) first).words.clone();
+        long[] other = ((BitmapContainer) second).words;
+        for (int i = 0; i < WORDS; i++) {
+            words[i] &= other[i];
+        }
+        return normalize(words, cardinalityOf(words));
+    }
+
+    private static Container or(Container first, Container second) {
+        if (first instanceof ArrayContainer a && second instanceof ArrayContainer b
+            && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+            char[] values = new char[a.cardinality + b.cardinality];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < a.cardinality && j < b.cardinality) {
+                char x = a.values[i];
+                char y = b.values[j];
+                if (x <= y) i++;
+                if (y <= x) j++;
+                values[count++] = x <= y ? x : y;
+            }
+            while (i < a.cardinality) values[count++] = a.values[i++];
+            while (j < b.cardinality) values[count++] = b.values[j++];
+            return new ArrayContainer(values, count);
+        }
+        long[] words = new long[WORDS];
+        first.setInto(words);
+        second.setInto(words);
+        return normalize(words, cardinalityOf(words));
+    }
+
+    private static Container andNot(Container first, Container second) {
+        if (first instanceof ArrayContainer array) return filter(array, second, false);
+        long[] words = ((BitmapContainer) first).words.clone();
+        if (second instanceof ArrayContainer array) {
+            for (int i = 0; i < array.cardinality; i++) {
+                words[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+            }
+        } else {
+            long[] other = ((BitmapContainer) second).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= ~other[i];
+            }
+        }
+        return normalize(words, cardinalityOf(words));
+    }
+
+    /**
+     * Filter the members of an array chunk by their membership in another chunk.
+     * @param array The filtered chunk.
+     * @param other The other chunk.
+     * @param member Are the members of the other chunk kept or discarded.
+     * @return The chunk of the kept members, or undefined value if none were kept.
+     */
+    private static Container filter(ArrayContainer array, Container other, boolean member) {
+        char[] values = new char[array.cardinality];
+        int count = 0;
+        for (int i = 0; i < array.cardinality; i++) {
+            if (other.contains(array.values[i]) == member) values[count++] = array.values[i];
+        }
+        return count == 0 ? null : new ArrayContainer(values, count);
+    }
+
+    /**
+     * The high bits of the chunks in ascending order.
+     */
+    private char[] keys;
+
+    /**
+     * The chunks by the index of their high bits.
+     */
+    private Container[] containers;
+
+    /**
+     * The number of chunks.
+     */
+    private int size;
+
+    /**
+     * Create a new empty bitmap.
+     */
+    public CompressedBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private CompressedBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Create a bitmap of a range.
+     * @param start The first member.
+     * @param end The integer after the last member.
+     * @return The bitmap containing the integers from the start until the end.
+     * @throws IllegalArgumentException The start was negative or greater than the end.
+     */
+    public static CompressedBitmap range(int start, int end) throws IllegalArgumentException {
+        if (start < 0 || start > end) throw new IllegalArgumentException("Invalid range");
+        CompressedBitmap result = new CompressedBitmap();
+        for (int value = start; value < end; ) {
+            final int high = value >>> 16;
+            final int last = (int) Math.min(end, (high + 1L) << 16);
+            long[] words = new long[WORDS];
+            for (int low = value & 0xFFFF, stop = last - (high << 16); low < stop; low++) {
+                words[low >>> 6] |= 1L << low;
+            }
+            result.append((char) high, normalize(words, last - value));
+            value = last;
+        }
+        return result;
+    }
+
+    /**
+     * Create a bitmap of members.
+     * @param values The members.
+     * @return The bitmap containing the members.
+     * @throws IllegalArgumentException Any member was negative.
+     */
+    public static CompressedBitmap of(int... values) throws IllegalArgumentException {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Find the index of the chunk of high bits.
+     * @return The index of the chunk, or the negated insertion point minus one.
+     */
+    private int find(char high) {
+        return Arrays.binarySearch(this.keys, 0, this.size, high);
+    }
+
+    /**
+     * Append a chunk after the last chunk.
+     */
+    private void append(char high, Container container) {
+        if (container == null) return;
+        insert(this.size, high, container);
+    }
+
+    private void insert(int index, char high, Container container) {
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+            this.containers = Arrays.copyOf(this.containers, 2 * this.size);
+        }
+        System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+        System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+        this.keys[index] = high;
+        this.containers[index] = container;
+        this.size++;
+    }
+
+    private void delete(int index) {
+        System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+        System.arraycopy(this.containers, index + 1, this.containers, index, this.size - index - 1);
+        this.size--;
+        this.containers[this.size] = null;
+    }
+
+    /**
+     * Add a member.
+     * @param value The added member.
+     * @return True, if and only if the bitmap did not contain the member.
+     * @throws IllegalArgumentException The member was negative.
+     */
+    public boolean add(int value) throws IllegalArgumentException {
+        if (value < 0) throw new IllegalArgumentException("Negative member");
+        final char high = (char) (value >>> 16);
+        final int index = find(high);
+        if (index < 0) {
+            insert(-index - 1, high, new ArrayContainer(new char[] { (char) value }, 1));
+            return true;
+        }
+        Container container = this.containers[index];
+        int before = container.cardinality();
+        container = container.add((char) value);
+        this.containers[index] = container;
+        return container.cardinality() != before;
+    }
+
+    /**
+     * Remove a member.
+     * @param value The removed member.
+     * @return True, if and only if the bitmap contained the member.
+     */
+    public boolean remove(int value) {
+        if (value < 0) return false;
+        final int index = find((char) (value >>> 16));
+        if (index < 0) return false;
+        Container container = this.containers[index];
+        int before = container.cardinality();
+        Container result = container.remove((char) value);
+        if (result == null) {
+            delete(index);
+            return true;
+        }
+        this.containers[index] = result;
+        return result.cardinality() != before;
+    }
+
+    /**
+     * Test membership.
+     * @param value The tested value.
+     * @return True, if and only if the bitmap contains the value.
+     */
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        final int index = find((char) (value >>> 16));
+        return index >= 0 && this.containers[index].contains((char) value);
+    }
+
+    /**
+     * The number of members.
+     * @return The number of members of the bitmap.
+     */
+    public int getCardinality() {
+        int result = 0;
+        for (int i = 0; i < this.size; i++) {
+            result += this.containers[i].cardinality();
+        }
+        return result;
+    }
+
+    /**
+     * The number of bitmap chunks.
+     * @return The number of chunks storing their members as a bitmap.
+     */
+    int getBitmapChunkCount() {
+        int result = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.containers[i] instanceof BitmapContainer) result++;
+        }
+        return result;
+    }
+
+    /**
+     * Is the bitmap empty.
+     * @return True, if and only if the bitmap has no members.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Call a consumer with the members in ascending order.
+     * @param consumer The consumer of the members.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < this.size; i++) {
+            this.containers[i].forEach(this.keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * The members as an array.
+     * @return The members in ascending order.
+     */
+    public int[] toArray() {
+        int[] result = new int[getCardinality()];
+        int[] index = { 0 };
+        forEach(value -> result[index[0]++] = value);
+        return result;
+    }
+
+    /**
+     * Copy the bitmap.
+     * @return An independent copy of the bitmap.
+     */
+    public CompressedBitmap copy() {
+        Container[] containers = new Container[Math.max(4, this.size)];
+        for (int i = 0; i < this.size; i++) {
+            containers[i] = this.containers[i].copy();
+        }
+        return new CompressedBitmap(Arrays.copyOf(this.keys, containers.length), containers, this.size);
+    }
+
+    /**
+     * The intersection of bitmaps.
+     * @param first The first bitmap.
+     * @param second The second bitmap.
+     * @return The new bitmap of the members of both bitmaps.
+     */
+    public static CompressedBitmap and(CompressedBitmap first, CompressedBitmap second) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < first.size && j < second.size) {
+            if (first.keys[i] < second.keys[j]) {
+                i++;
+            } else if (first.keys[i] > second.keys[j]) {
+                j++;
+            } else {
+                result.append(first.keys[i], and(first.containers[i], second.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The union of bitmaps.
+     * @param first The first bitmap.
+     * @param second The second bitmap.
+     * @return The new bitmap of the members of either bitmap.
+     */
+    public static CompressedBitmap or(CompressedBitmap first, CompressedBitmap second) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < first.size || j < second.size) {
+            if (j == second.size || (i < first.size && first.keys[i] < second.keys[j])) {
+                result.append(first.keys[i], first.containers[i].copy());
+                i++;
+            } else if (i == first.size || first.keys[i] > second.keys[j]) {
+                result.append(second.keys[j], second.containers[j].copy());
+                j++;
+            } else {
+                result.append(first.keys[i], or(first.containers[i], second.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The difference of bitmaps.
+     * @param first The first bitmap.
+     * @param second The second bitmap.
+     * @return The new bitmap of the members of the first bitmap not in the second bitmap.
+     */
+    public static CompressedBitmap andNot(CompressedBitmap first, CompressedBitmap second) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < first.size; i++) {
+            while (j < second.size && second.keys[j] < first.keys[i]) j++;
+            if (j < second.size && second.keys[j] == first.keys[i]) {
+                result.append(first.keys[i], andNot(first.containers[i], second.containers[j]));
+            } else {
+                result.append(first.keys[i], first.containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof CompressedBitmap bitmap)) return false;
+        return Arrays.equals(toArray(), bitmap.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
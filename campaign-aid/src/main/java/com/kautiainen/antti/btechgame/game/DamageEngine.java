@@ -0,0 +1,576 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The engine applying damage and repair to the armor and the internal structure of units.
+ *
+ * The armor and the structure of a unit are kept in primitive columns indexed by the location index
+ * of the unit. The damage and repair deltas are collected into batches of primitive columns, which
+ * may be submitted to a unit from any thread without locking. Applying the pending batches of a unit
+ * processes all deltas in one pass, and the pending batches of different units may be applied in
+ * parallel.
+ *
+ * The locations are identified by the ids of a hit location registry. A calculation using a rule
+ * set creates its unit states and batches with the registry of the rule set, so a reloaded rule set
+ * does not change the ids of a calculation in progress.
+ */
+public final class DamageEngine {
+
+    /**
+     * The delta kind of armor.
+     */
+    private static final byte ARMOR = 0;
+
+    /**
+     * The delta kind of internal structure.
+     */
+    private static final byte STRUCTURE = 1;
+
+    private DamageEngine() {
+
+    }
+
+    /**
+     * Apply the pending batches of units in parallel.
+     * @param units The unit states.
+     * @return The number of locations destroyed by the applied batches.
+     */
+    public static int applyAll(Collection<UnitState> units) {
+        return units.parallelStream().mapToInt(UnitState::apply).sum();
+    }
+
+    /**
+     * The registry id of a location.
+     * @return The id of the location in the registry, or -1 if the location is not registered. The
+     * locations are never added to the registry.
+     */
+    private static int idOf(HitLocationRegistry registry, HitLocation location) {
+        if (location == null) throw new IllegalArgumentException("Undefined location not accepted");
+        return registry.idOf(location);
+    }
+
+    /**
+     * A batch of damage and repair deltas.
+     *
+     * A batch is filled by a single thread, and it must not be modified after it has been submitted.
+     * Damage is a negative and repair a positive delta.
+     */
+    public static final class Batch {
+
+        /**
+         * The registry giving the ids of the locations.
+         */
+        private final HitLocationRegistry registry;
+
+        /**
+         * The registry ids of the locations of the deltas, or -1 for the locations missing from
+         * the registry.
+         */
+        private int[] locations = new int[16];
+
+        /**
+         * The locations of the deltas. Only the locations missing from the registry are defined.
+         */
+        private HitLocation[] unregistered = null;
+
+        /**
+         * The amounts of the deltas.
+         */
+        private short[] amounts = new short[16];
+
+        /**
+         * The kinds of the deltas.
+         */
+        private byte[] kinds = new byte[16];
+
+        /**
+         * The number of deltas.
+         */
+        private int size = 0;
+
+        /**
+         * Create a new empty batch using the ids of the default hit location registry.
+         */
+        public Batch() {
+            this(HitLocationRegistry.getDefault());
+        }
+
+        /**
+         * Create a new empty batch.
+         * @param registry The registry giving the ids of the locations. The batch is applied
+         * fastest to the unit states using the same registry.
+         * @throws IllegalArgumentException The registry was undefined.
+         */
+        public Batch(HitLocationRegistry registry) throws IllegalArgumentException {
+            if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+            this.registry = registry;
+        }
+
+        /**
+         * The location of a delta.
+         */
+        private HitLocation location(int index) {
+            final int id = this.locations[index];
+            return id < 0 ? this.unregistered[index] : this.registry.get(id);
+        }
+
+        /**
+         * The number of deltas.
+         * @return The number of deltas in the batch.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Append a delta.
+         */
+        private Batch append(HitLocation location, int amount, byte kind) {
+            if (amount < Short.MIN_VALUE || amount > Short.MAX_VALUE) throw new IllegalArgumentException("Delta out of range");
+            final int id = idOf(this.registry, location);
+            if (this.size == this.kinds.length) {
+                int length = this.size * 2;
+                this.locations = Arrays.copyOf(this.locations, length);
+                this.amounts = Arrays.copyOf(this.amounts, length);
+                this.kinds = Arrays.copyOf(this.kinds, length);
+                if (this.unregistered != null) this.unregistered = Arrays.copyOf(this.unregistered, length);
+            }
+            if (id < 0) {
+                if (this.unregistered == null) this.unregistered = new HitLocation[this.kinds.length];
+                this.unregistered[this.size] = location;
+            }
+            this.locations[this.size] = id;
+            this.amounts[this.size] = (short) amount;
+            this.kinds[this.size] = kind;
+            this.size++;
+            return this;
+        }
+
+        /**
+         * Add damage to a location. The damage exceeding the armor damages the structure.
+         * @param location The damaged location.
+         * @param amount The amount of damage.
+         * @return The batch.
+         * @throws IllegalArgumentException The location was undefined or the amount was invalid.
+         */
+        public Batch damage(HitLocation location, int amount) throws IllegalArgumentException {
+            if (amount < 0) throw new IllegalArgumentException("Negative armor damage");
+            return append(location, -amount, ARMOR);
+        }
+
+        /**
+         * Add armor repair to a location.
+         * @param location The repaired location.
+         * @param amount The amount of repaired armor.
+         * @return The batch.
+         * @throws IllegalArgumentException The location was undefined or the amount was invalid.
+         */
+        public Batch repairArmor(HitLocation location, int amount) throws IllegalArgumentException {
+            if (amount < 0) throw new IllegalArgumentException("Negative armor repair");
+            return append(location, amount, ARMOR);
+        }
+
+        /**
+         * Add structural damage bypassing the armor of a location.
+         * @param location The damaged location.
+         * @param amount The amount of structural damage.
+         * @return The batch.
+         * @throws IllegalArgumentException The location was undefined or the amount was invalid.
+         */
+        public Batch damageStructure(HitLocation location, int amount) throws IllegalArgumentException {
+            if (amount < 0) throw new IllegalArgumentException("Negative amount of structural damage");
+            return append(location, -amount, STRUCTURE);
+        }
+
+        /**
+         * Add structure repair to a location.
+         * @param location The repaired location.
+         * @param amount The amount of repaired structure.
+         * @return The batch.
+         * @throws IllegalArgumentException The location was undefined or the amount was invalid.
+         */
+        public Batch repairStructure(HitLocation location, int amount) throws IllegalArgumentException {
+            if (amount < 0) throw new IllegalArgumentException("Negative amount of structure repaired");
+            return append(location, amount, STRUCTURE);
+        }
+
+        /**
+         * Add an armor delta created with {@link ArmorLoadout#ofDamage(HitLocation, int)} or
+         * {@link ArmorLoadout#ofRepair(HitLocation, int)}.
+         * @param delta The armor delta.
+         * @return The batch.
+         * @throws IllegalArgumentException The delta was undefined, or it was not a delta.
+         */
+        public Batch add(ArmorLoadout delta) throws IllegalArgumentException {
+            if (delta == null) throw new IllegalArgumentException("Undefined armor delta not accepted");
+            if (delta.max != null) throw new IllegalArgumentException("Armor loadout is not a delta");
+            return append(delta.location, delta.current, ARMOR);
+        }
+
+        /**
+         * Add a structure delta created with {@link StructureLoadout#ofDamage(HitLocation, short)} or
+         * {@link StructureLoadout#ofRepair(HitLocation, short)}.
+         * @param delta The structure delta.
+         * @return The batch.
+         * @throws IllegalArgumentException The delta was undefined, or it was not a delta.
+         */
+        public Batch add(StructureLoadout delta) throws IllegalArgumentException {
+            if (delta == null) throw new IllegalArgumentException("Undefined structure delta not accepted");
+            if (delta.max != null) throw new IllegalArgumentException("Structure loadout is not a delta");
+            return append(delta.location, delta.current, STRUCTURE);
+        }
+    }
+
+    /**
+     * The armor and the structure of a unit.
+     */
+    public static final class UnitState {
+
+        /**
+         * The registry giving the ids of the locations.
+         */
+        private final HitLocationRegistry registry;
+
+        /**
+         * The locations of the unit by location index.
+         */
+        private final HitLocation[] locations;
+
+        /**
+         * The location indexes of the registry ids, or -1 for the locations the unit does not have.
+         */
+        private final int[] indexOfId;
+
+        /**
+         * The location indexes of the locations missing from the registry.
+         */
+        private final Map<HitLocation, Integer> indexOfUnregistered = new HashMap<>();
+
+        private final short[] armor;
+
+        private final short[] armorMax;
+
+        private final short[] structure;
+
+        private final short[] structureMax;
+
+        /**
+         * Is the location destroyed by location index.
+         */
+        private final boolean[] destroyed;
+
+        /**
+         * The submitted batches waiting to be applied.
+         */
+        private final ConcurrentLinkedQueue<Batch> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Create the state of a unit. The armor and structure entries with a maximum set the maximum
+         * and the current value of their location, and the entries without maximum are applied as
+         * deltas in the order of the entries.
+         * @param unit The unit.
+         * @throws IllegalArgumentException The unit was undefined.
+         */
+        public UnitState(Unit unit) throws IllegalArgumentException {
+            this(unit, HitLocationRegistry.getDefault());
+        }
+
+        /**
+         * Create the state of a unit using the locations of a rule set.
+         * @param unit The unit.
+         * @param registry The registry of the canonical hit locations of the rules.
+         * @throws IllegalArgumentException The unit or the registry was undefined.
+         */
+        public UnitState(Unit unit, HitLocationRegistry registry) throws IllegalArgumentException {
+            this(unit == null ? null : unit.armor, unit == null ? null : unit.structure, registry);
+        }
+
+        /**
+         * Create the state of armor and structure entries.
+         * @param armor The armor entries.
+         * @param structure The structure entries.
+         * @throws IllegalArgumentException Either entry array was undefined.
+         */
+        public UnitState(ArmorLoadout[] armor, StructureLoadout[] structure) throws IllegalArgumentException {
+            this(armor, structure, HitLocationRegistry.getDefault());
+        }
+
+        /**
+         * Create the state of armor and structure entries using the locations of a rule set.
+         * @param armor The armor entries.
+         * @param structure The structure entries.
+         * @param registry The registry of the canonical hit locations of the rules.
+         * @throws IllegalArgumentException Either entry array or the registry was undefined.
+         */
+        public UnitState(ArmorLoadout[] armor, StructureLoadout[] structure, HitLocationRegistry registry)
+                throws IllegalArgumentException {
+            if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+            if (armor == null) throw new IllegalArgumentException("Unit without armor");
+            if (structure == null) throw new IllegalArgumentException("Unit without structure");
+            Map<HitLocation, Integer> order = new LinkedHashMap<>();
+            for (ArmorLoadout entry : armor) {
+                if (entry != null && entry.location != null) order.putIfAbsent(entry.location, order.size());
+            }
+            for (StructureLoadout entry : structure) {
+                if (entry != null && entry.location != null) order.putIfAbsent(entry.location, order.size());
+            }
+            final int count = order.size();
+            this.registry = registry;
+            this.locations = order.keySet().toArray(new HitLocation[count]);
+            this.armor = new short[count];
+            this.armorMax = new short[count];
+            this.structure = new short[count];
+            this.structureMax = new short[count];
+            this.destroyed = new boolean[count];
+            int largestId = -1;
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = idOf(registry, this.locations[i]);
+                largestId = Math.max(largestId, ids[i]);
+            }
+            this.indexOfId = new int[largestId + 1];
+            Arrays.fill(this.indexOfId, -1);
+            for (int i = 0; i < count; i++) {
+                if (ids[i] < 0) {
+                    this.indexOfUnregistered.put(this.locations[i], i);
+                } else {
+                    this.indexOfId[ids[i]] = i;
+                }
+            }
+
+            Batch deltas = newBatch();
+            for (ArmorLoadout entry : armor) {
+                if (entry == null || entry.location == null) continue;
+                if (entry.max == null) {
+                    deltas.add(entry);
+                } else {
+                    int index = order.get(entry.location);
+                    this.armorMax[index] = entry.max;
+                    this.armor[index] = entry.current;
+                }
+            }
+            for (StructureLoadout entry : structure) {
+                if (entry == null || entry.location == null) continue;
+                if (entry.max == null) {
+                    deltas.add(entry);
+                } else {
+                    int index = order.get(entry.location);
+                    this.structureMax[index] = entry.max;
+                    this.structure[index] = entry.current;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                this.destroyed[i] = this.structureMax[i] > 0 && this.structure[i] <= 0;
+            }
+            applyBatch(deltas);
+        }
+
+        /**
+         * Create a new empty batch using the registry of the state.
+         * @return The batch.
+         */
+        public Batch newBatch() {
+            return new Batch(this.registry);
+        }
+
+        /**
+         * Submit a batch to be applied. Submitting does not block, and batches may be submitted
+         * from several threads.
+         * @param batch The submitted batch.
+         * @throws IllegalArgumentException The batch was undefined.
+         */
+        public void submit(Batch batch) throws IllegalArgumentException {
+            if (batch == null) throw new IllegalArgumentException("Missing batch");
+            this.pending.add(batch);
+        }
+
+        /**
+         * Apply the submitted batches.
+         * @return The number of locations destroyed by the applied batches.
+         */
+        public synchronized int apply() {
+            int result = 0;
+            Batch batch;
+            while ((batch = this.pending.poll()) != null) {
+                result += applyBatch(batch);
+            }
+            return result;
+        }
+
+        /**
+         * Apply a batch.
+         * @return The number of locations destroyed by the batch.
+         */
+        private int applyBatch(Batch batch) {
+            int result = 0;
+            final int[] ids = batch.locations;
+            final short[] amounts = batch.amounts;
+            final byte[] kinds = batch.kinds;
+            final boolean shared = batch.registry == this.registry;
+            for (int i = 0, size = batch.size; i < size; i++) {
+                final int id = ids[i];
+                final int index = shared ? indexOf(id, id < 0 ? batch.unregistered[i] : null) : indexOf(batch.location(i));
+                if (index < 0) continue;
+                int amount = amounts[i];
+                if (amount >= 0) {
+                    if (kinds[i] == ARMOR) {
+                        this.armor[index] = (short) Math.min(this.armorMax[index], this.armor[index] + amount);
+                    } else {
+                        this.structure[index] = (short) Math.min(this.structureMax[index], this.structure[index] + amount);
+                        if (this.structure[index] > 0) this.destroyed[index] = false;
+                    }
+                    continue;
+                }
+                int damage = -amount;
+                if (kinds[i] == ARMOR) {
+                    int absorbed = Math.min(Math.max(0, this.armor[index]), damage);
+                    this.armor[index] -= absorbed;
+                    damage -= absorbed;
+                }
+                if (damage > 0) {
+                    this.structure[index] = (short) Math.max(0, this.structure[index] - damage);
+                    // A location without structure is never destroyed, as at the creation of the state.
+                    if (this.structureMax[index] > 0 && this.structure[index] == 0 && !this.destroyed[index]) {
+                        this.destroyed[index] = true;
+                        result++;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * The location index of a location.
+         */
+        private int indexOf(HitLocation location) {
+            return indexOf(this.registry.idOf(location), location);
+        }
+
+        /**
+         * The location index of a registry id.
+         * @param id The registry id, or -1 for a location missing from the registry.
+         * @param location The location, or undefined value if the id is a registry id.
+         */
+        private int indexOf(int id, HitLocation location) {
+            final int result = id >= 0 && id < this.indexOfId.length ? this.indexOfId[id] : -1;
+            if (result >= 0 || this.indexOfUnregistered.isEmpty()) return result;
+            // The location may have been registered after the state was created.
+            Integer unregistered = this.indexOfUnregistered.get(id < 0 ? location : this.registry.get(id));
+            return unregistered == null ? -1 : unregistered;
+        }
+
+        /**
+         * The locations of the unit.
+         * @return The locations in the location index order.
+         */
+        public HitLocation[] getLocations() {
+            return this.locations.clone();
+        }
+
+        /**
+         * The current armor of a location.
+         * @param location The location.
+         * @return The current armor of the location, or 0 if the unit does not have the location.
+         */
+        public synchronized int getArmor(HitLocation location) {
+            int index = indexOf(location);
+            return index < 0 ? 0 : this.armor[index];
+        }
+
+        /**
+         * The current structure of a location.
+         * @param location The location.
+         * @return The current structure of the location, or 0 if the unit does not have the location.
+         */
+        public synchronized int getStructure(HitLocation location) {
+            int index = indexOf(location);
+            return index < 0 ? 0 : this.structure[index];
+        }
+
+        /**
+         * Is a location destroyed.
+         * @param location The location.
+         * @return True, if and only if the unit has the location and its structure is destroyed.
+         */
+        public synchronized boolean isDestroyed(HitLocation location) {
+            int index = indexOf(location);
+            return index >= 0 && this.destroyed[index];
+        }
+
+        /**
+         * The destroyed locations.
+         * @return The destroyed locations in the location index order.
+         */
+        public synchronized List<HitLocation> getDestroyedLocations() {
+            List<HitLocation> result = new ArrayList<>();
+            for (int i = 0; i < this.locations.length; i++) {
+                if (this.destroyed[i]) result.add(this.locations[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Copy the current and maximum armor columns.
+         * @param current The target of the current armor by location index.
+         * @param max The target of the maximum armor by location index.
+         */
+        public synchronized void copyArmor(short[] current, short[] max) {
+            System.arraycopy(this.armor, 0, current, 0, this.armor.length);
+            System.arraycopy(this.armorMax, 0, max, 0, this.armorMax.length);
+        }
+
+        /**
+         * Copy the current and maximum structure columns.
+         * @param current The target of the current structure by location index.
+         * @param max The target of the maximum structure by location index.
+         */
+        public synchronized void copyStructure(short[] current, short[] max) {
+            System.arraycopy(this.structure, 0, current, 0, this.structure.length);
+            System.arraycopy(this.structureMax, 0, max, 0, this.structureMax.length);
+        }
+
+        /**
+         * Convert the armor into armor loadouts.
+         * @return The armor loadouts with the maximum and current armor of the locations.
+         */
+        public synchronized ArmorLoadout[] toArmor() {
+            ArmorLoadout[] result = new ArmorLoadout[this.locations.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new ArmorLoadout(this.locations[i], (int) this.armorMax[i], this.armor[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Convert the structure into structure loadouts. The locations without structure are omitted.
+         * @return The structure loadouts with the maximum and current structure of the locations.
+         */
+        public synchronized StructureLoadout[] toStructure() {
+            List<StructureLoadout> result = new ArrayList<>(this.locations.length);
+            for (int i = 0; i < this.locations.length; i++) {
+                if (this.structureMax[i] > 0) {
+                    result.add(new StructureLoadout(this.locations[i], this.structureMax[i], this.structure[i]));
+                }
+            }
+            return result.toArray(new StructureLoadout[0]);
+        }
+
+        /**
+         * Create a unit with the current armor and structure.
+         * @param unit The unit whose other properties are copied.
+         * @return The unit with the armor and the structure of this state.
+         */
+        public Unit toUnit(Unit unit) {
+            return new Unit(unit.type, unit.name, unit.model, unit.tonnage, unit.availableTonnage, unit.loadout,
+                    toArmor(), toStructure());
+        }
+    }
+}
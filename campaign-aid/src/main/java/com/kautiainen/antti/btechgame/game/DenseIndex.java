@@ -0,0 +1,167 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index giving its members dense ordinals starting from zero.
+ *
+ * The ordinal of a member never changes once assigned, and new members
+ * are appended to the end of the index. Lookups are lock free, and only
+ * appending a new member is serialized.
+ *
+ * An index may extend a base index. The extending index shares the ordinals
+ * the base index had when the extending index was created, and appends the
+ * other members to itself without modifying the base index.
+ *
+ * @param <T> The type of the indexed members.
+ */
+public final class DenseIndex<T> {
+
+    /**
+     * The extended base index, or undefined value if the index has no base.
+     */
+    private final DenseIndex<T> base;
+
+    /**
+     * The number of the ordinals shared with the base index.
+     */
+    private final int baseSize;
+
+    /**
+     * The ordinals of the members not shared with the base index.
+     */
+    private final ConcurrentHashMap<T, Integer> ordinals = new ConcurrentHashMap<>();
+
+    /**
+     * The members not shared with the base index in ordinal order. Only the first
+     * {@link #size} minus {@link #baseSize} members are defined.
+     */
+    private volatile Object[] members;
+
+    /**
+     * The number of members.
+     */
+    private volatile int size;
+
+    /**
+     * Create a new empty index.
+     */
+    public DenseIndex() {
+        this.base = null;
+        this.baseSize = 0;
+        this.size = 0;
+        this.members = new Object[8];
+    }
+
+    /**
+     * Create a new index extending a base index. The base index is never
+     * modified by the created index.
+     * @param base The base index.
+     * @throws IllegalArgumentException The base index was undefined.
+     */
+    public DenseIndex(DenseIndex<T> base) throws IllegalArgumentException {
+        if (base == null) throw new IllegalArgumentException("Missing base index");
+        this.base = base;
+        this.baseSize = base.size();
+        this.size = this.baseSize;
+        this.members = new Object[4];
+    }
+
+    /**
+     * Create a new index containing given members in the iteration order.
+     * @param members The initial members. Undefined members are ignored.
+     */
+    public DenseIndex(Collection<? extends T> members) {
+        this.base = null;
+        this.baseSize = 0;
+        this.size = 0;
+        this.members = new Object[Math.max(8, members.size())];
+        for (T member : members) {
+            if (member != null) {
+                intern(member);
+            }
+        }
+    }
+
+    /**
+     * Get the ordinal of a member.
+     * @param member The member.
+     * @return The ordinal of the member, or -1 if the member is not indexed.
+     */
+    public int indexOf(T member) {
+        if (member == null) return -1;
+        final int shared = sharedIndexOf(member);
+        if (shared >= 0) return shared;
+        Integer result = this.ordinals.get(member);
+        return result == null ? -1 : result;
+    }
+
+    /**
+     * Get the ordinal of a member adding the member to the index, if it is not
+     * indexed.
+     * @param member The member.
+     * @return The ordinal of the member.
+     * @throws IllegalArgumentException The member was undefined.
+     */
+    public int intern(T member) throws IllegalArgumentException {
+        if (member == null) throw new IllegalArgumentException("Undefined member not accepted");
+        final int shared = sharedIndexOf(member);
+        if (shared >= 0) return shared;
+        Integer result = this.ordinals.get(member);
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            result = this.ordinals.get(member);
+            if (result == null) {
+                int ordinal = this.size;
+                Object[] current = this.members;
+                if (ordinal - this.baseSize == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[ordinal - this.baseSize] = member;
+                this.members = current;
+                this.size = ordinal + 1;
+                this.ordinals.put(member, ordinal);
+                result = ordinal;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the member with an ordinal.
+     * @param ordinal The ordinal.
+     * @return The member with the given ordinal.
+     * @throws IndexOutOfBoundsException The ordinal is not assigned.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int ordinal) throws IndexOutOfBoundsException {
+        if (ordinal < 0 || ordinal >= this.size) {
+            throw new IndexOutOfBoundsException("Unknown ordinal " + ordinal);
+        }
+        if (ordinal < this.baseSize) return this.base.get(ordinal);
+        // The size is published after the members, so reading it first guarantees the member is visible.
+        return (T) this.members[ordinal - this.baseSize];
+    }
+
+    /**
+     * Get the ordinal of a member shared with the base index.
+     * @return The ordinal of the member in the base index, or -1 if the member is not shared.
+     */
+    private int sharedIndexOf(T member) {
+        if (this.base == null) return -1;
+        final int result = this.base.indexOf(member);
+        return result < this.baseSize ? result : -1;
+    }
+
+    /**
+     * The number of indexed members.
+     * @return The number of members. All ordinals are smaller than the size.
+     */
+    public int size() {
+        return this.size;
+    }
+}
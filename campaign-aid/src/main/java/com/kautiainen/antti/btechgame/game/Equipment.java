@@ -4,6 +4,8 @@ package com.kautiainen.antti.btechgame.game;
 
 /**
  * An item representing equipment.
+ *
+ * Equipment are immutable values. Shared instances are handed out by the {@link EquipmentCatalog}.
  */
 public class Equipment {
     
@@ -36,11 +38,27 @@ public class Equipment {
      * @param size The size of the equipment in critical slots.
      */
     public Equipment(String name, String abbrev, double mass, int size) {
+        this(name, abbrev, mass, size, new RulesModifier[0]);
+    }
+
+    /**
+     * Create a new equipment with rules modifiers.
+     * @param name The name of the equipment.
+     * @param abbrev The abbreviation of the equipment.
+     * @param mass The mass of the equipment in tons.
+     * @param size The size of the equipment in critical slots.
+     * @param modifiers The rules modifiers of the equipment.
+     * @throws IllegalArgumentException Any modifier was undefined.
+     */
+    public Equipment(String name, String abbrev, double mass, int size, RulesModifier... modifiers) throws IllegalArgumentException {
         this.name = name;
         this.abbrev = abbrev;
         this.mass = mass;
         this.size = size;
-        this.modifiers = new RulesModifier[0];
+        this.modifiers = modifiers == null ? new RulesModifier[0] : modifiers.clone();
+        for (RulesModifier modifier : this.modifiers) {
+            if (modifier == null) throw new IllegalArgumentException("Undefined rules modifier not accepted");
+        }
     }
 
     /**
@@ -58,6 +76,25 @@ public class Equipment {
      */
     public final RulesModifier[] modifiers;
 
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (other == null || other.getClass() != this.getClass()) return false;
+        Equipment equipment = (Equipment) other;
+        return this.size == equipment.size && Double.compare(this.mass, equipment.mass) == 0
+                && java.util.Objects.equals(this.name, equipment.name) && java.util.Objects.equals(this.abbrev, equipment.abbrev)
+                && java.util.Arrays.equals(this.modifiers, equipment.modifiers);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = java.util.Objects.hashCode(this.name);
+        result = 31 * result + java.util.Objects.hashCode(this.abbrev);
+        result = 31 * result + Double.hashCode(this.mass);
+        result = 31 * result + this.size;
+        return 31 * result + java.util.Arrays.hashCode(this.modifiers);
+    }
+
     @Override
     public String toString() {
         return String.format("%s%s", this.name, "+".repeat(this.modifiers.length));
@@ -0,0 +1,479 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable catalog of equipment.
+ *
+ * The catalog interns its equipment, so that equal equipment is represented by a single shared
+ * instance with a dense id. The catalog indexes the equipment by name and abbreviation, keeps a
+ * prefix trie of the lower case names for autocompletion, and keeps range indexes of the mass and
+ * the size. The query results are read only views of the catalog indexes, and creating them does
+ * not copy the matching equipment.
+ */
+public final class EquipmentCatalog {
+
+    /**
+     * The builder of equipment catalogs.
+     */
+    public static final class Builder {
+
+        /**
+         * The equipment of the built catalog.
+         */
+        private final DenseIndex<Equipment> items = new DenseIndex<>();
+
+        /**
+         * Create a new empty builder.
+         */
+        private Builder() {
+
+        }
+
+        /**
+         * Add an equipment to the built catalog. Adding an equipment equal to an already
+         * added equipment does nothing.
+         * @param equipment The added equipment.
+         * @return The builder.
+         * @throws IllegalArgumentException The equipment or its name was undefined.
+         */
+        public Builder add(Equipment equipment) throws IllegalArgumentException {
+            if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+            if (equipment.name == null) throw new IllegalArgumentException("Equipment without name not accepted");
+            this.items.intern(equipment);
+            return this;
+        }
+
+        /**
+         * Add equipment to the built catalog.
+         * @param equipment The added equipment.
+         * @return The builder.
+         * @throws IllegalArgumentException Any equipment was invalid.
+         */
+        public Builder addAll(Collection<? extends Equipment> equipment) throws IllegalArgumentException {
+            for (Equipment item : equipment) {
+                add(item);
+            }
+            return this;
+        }
+
+        /**
+         * Build the catalog.
+         * @return The catalog containing the added equipment.
+         */
+        public EquipmentCatalog build() {
+            Equipment[] result = new Equipment[this.items.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = this.items.get(i);
+            }
+            return new EquipmentCatalog(result);
+        }
+    }
+
+    /**
+     * A read only view of a range of an ordering of the catalog.
+     */
+    private final class Slice extends AbstractList<Equipment> {
+
+        /**
+         * The ordering of the equipment ids.
+         */
+        private final int[] order;
+
+        /**
+         * The first index of the range.
+         */
+        private final int from;
+
+        /**
+         * The index after the last index of the range.
+         */
+        private final int to;
+
+        private Slice(int[] order, int from, int to) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Equipment get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+            return EquipmentCatalog.this.items[this.order[this.from + index]];
+        }
+
+        @Override
+        public int size() {
+            return this.to - this.from;
+        }
+
+        @Override
+        public List<Equipment> subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("Invalid range " + fromIndex + ".." + toIndex);
+            }
+            return new Slice(this.order, this.from + fromIndex, this.from + toIndex);
+        }
+    }
+
+    /**
+     * The empty catalog.
+     */
+    private static final EquipmentCatalog EMPTY = new EquipmentCatalog(new Equipment[0]);
+
+    /**
+     * Get the empty catalog.
+     * @return The catalog without any equipment.
+     */
+    public static EquipmentCatalog empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a new catalog builder.
+     * @return A builder of an empty catalog.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a catalog of equipment.
+     * @param equipment The equipment of the catalog.
+     * @return The catalog containing the given equipment.
+     * @throws IllegalArgumentException Any equipment was invalid.
+     */
+    public static EquipmentCatalog of(Collection<? extends Equipment> equipment) throws IllegalArgumentException {
+        return builder().addAll(equipment).build();
+    }
+
+    /**
+     * The equipment of the catalog by id.
+     */
+    private final Equipment[] items;
+
+    /**
+     * The ids of the equipment.
+     */
+    private final Map<Equipment, Integer> ids;
+
+    /**
+     * The first equipment with a name.
+     */
+    private final Map<String, Equipment> byName;
+
+    /**
+     * The first equipment with an abbreviation.
+     */
+    private final Map<String, Equipment> byAbbrev;
+
+    /**
+     * The equipment ids ordered by lower case name.
+     */
+    private final int[] nameOrder;
+
+    /**
+     * The equipment ids ordered by mass.
+     */
+    private final int[] massOrder;
+
+    /**
+     * The masses in mass order.
+     */
+    private final double[] masses;
+
+    /**
+     * The equipment ids ordered by size.
+     */
+    private final int[] sizeOrder;
+
+    /**
+     * The sizes in size order.
+     */
+    private final int[] sizes;
+
+    /**
+     * The characters of the trie nodes. The root node is the node 0.
+     */
+    private final char[] trieLabel;
+
+    /**
+     * The first child node of the trie nodes, or 0 if the node has no children.
+     */
+    private final int[] trieChild;
+
+    /**
+     * The next sibling of the trie nodes, or 0 if the node is the last child.
+     */
+    private final int[] trieSibling;
+
+    /**
+     * The first name order index of the names with the prefix of the trie nodes.
+     */
+    private final int[] trieFrom;
+
+    /**
+     * The index after the last name order index of the names with the prefix of the trie nodes.
+     */
+    private final int[] trieTo;
+
+    /**
+     * Create a new catalog.
+     * @param items The distinct equipment of the catalog in id order.
+     */
+    private EquipmentCatalog(Equipment[] items) {
+        this.items = items;
+        final int count = items.length;
+        HashMap<Equipment, Integer> idMap = new HashMap<>(Math.max(16, count * 2));
+        HashMap<String, Equipment> nameMap = new HashMap<>(Math.max(16, count * 2));
+        HashMap<String, Equipment> abbrevMap = new HashMap<>(Math.max(16, count * 2));
+        final String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            Equipment item = items[i];
+            idMap.put(item, i);
+            nameMap.putIfAbsent(item.name, item);
+            if (item.abbrev != null) {
+                abbrevMap.putIfAbsent(item.abbrev, item);
+            }
+            keys[i] = item.name.toLowerCase(Locale.ROOT);
+        }
+        this.ids = Collections.unmodifiableMap(idMap);
+        this.byName = Collections.unmodifiableMap(nameMap);
+        this.byAbbrev = Collections.unmodifiableMap(abbrevMap);
+
+        this.nameOrder = sortedIds(count, (a, b) -> keys[a].compareTo(keys[b]));
+        this.massOrder = sortedIds(count, (a, b) -> Double.compare(items[a].mass, items[b].mass));
+        this.masses = new double[count];
+        this.sizeOrder = sortedIds(count, (a, b) -> Integer.compare(items[a].size, items[b].size));
+        this.sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            this.masses[i] = items[this.massOrder[i]].mass;
+            this.sizes[i] = items[this.sizeOrder[i]].size;
+        }
+
+        // Building the trie from the sorted names appends the children of each node in label order,
+        // and the node matching the next name is always the last child of its parent.
+        int capacity = 1;
+        for (String key : keys) {
+            capacity += key.length();
+        }
+        char[] label = new char[capacity];
+        int[] child = new int[capacity];
+        int[] sibling = new int[capacity];
+        int[] lastChild = new int[capacity];
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        int nodes = 1;
+        to[0] = count;
+        for (int position = 0; position < count; position++) {
+            String key = keys[this.nameOrder[position]];
+            int node = 0;
+            for (int depth = 0; depth < key.length(); depth++) {
+                char c = key.charAt(depth);
+                int next = lastChild[node];
+                if (next == 0 || label[next] != c) {
+                    next = nodes++;
+                    label[next] = c;
+                    from[next] = position;
+                    if (lastChild[node] == 0) {
+                        child[node] = next;
+                    } else {
+                        sibling[lastChild[node]] = next;
+                    }
+                    lastChild[node] = next;
+                }
+                to[next] = position + 1;
+                node = next;
+            }
+        }
+        this.trieLabel = Arrays.copyOf(label, nodes);
+        this.trieChild = Arrays.copyOf(child, nodes);
+        this.trieSibling = Arrays.copyOf(sibling, nodes);
+        this.trieFrom = Arrays.copyOf(from, nodes);
+        this.trieTo = Arrays.copyOf(to, nodes);
+    }
+
+    /**
+     * Create the equipment ids sorted with a comparator.
+     * @param count The number of ids.
+     * @param comparator The comparator of the ids.
+     * @return The sorted ids. Equal ids are in id order.
+     */
+    private static int[] sortedIds(int count, java.util.Comparator<Integer> comparator) {
+        return java.util.stream.IntStream.range(0, count).boxed().sorted(comparator).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The number of equipment in the catalog.
+     * @return The number of equipment. All ids are smaller than this.
+     */
+    public int size() {
+        return this.items.length;
+    }
+
+    /**
+     * Get an equipment by id.
+     * @param id The id of the equipment.
+     * @return The equipment with the given id.
+     * @throws IndexOutOfBoundsException The id is not assigned.
+     */
+    public Equipment get(int id) throws IndexOutOfBoundsException {
+        return this.items[id];
+    }
+
+    /**
+     * Get the id of an equipment.
+     * @param equipment The equipment.
+     * @return The id of the catalog equipment equal to the given equipment, or -1 if the catalog
+     * does not contain the equipment.
+     */
+    public int idOf(Equipment equipment) {
+        Integer result = equipment == null ? null : this.ids.get(equipment);
+        return result == null ? -1 : result;
+    }
+
+    /**
+     * Get the shared instance of an equipment.
+     * @param equipment The equipment.
+     * @return The catalog equipment equal to the given equipment, or the given equipment, if the catalog
+     * does not contain it.
+     */
+    public Equipment intern(Equipment equipment) {
+        int id = idOf(equipment);
+        return id < 0 ? equipment : this.items[id];
+    }
+
+    /**
+     * Find an equipment by name.
+     * @param name The name of the equipment.
+     * @return The first equipment with the name, or undefined value if none exists.
+     */
+    public Equipment byName(String name) {
+        return name == null ? null : this.byName.get(name);
+    }
+
+    /**
+     * Find an equipment by abbreviation.
+     * @param abbrev The abbreviation of the equipment.
+     * @return The first equipment with the abbreviation, or undefined value if none exists.
+     */
+    public Equipment byAbbrev(String abbrev) {
+        return abbrev == null ? null : this.byAbbrev.get(abbrev);
+    }
+
+    /**
+     * Get the equipment whose names start with a prefix ignoring the case.
+     * @param prefix The prefix.
+     * @return The equipment whose names start with the prefix in the name order.
+     */
+    public List<Equipment> withPrefix(String prefix) {
+        if (prefix == null) return Collections.emptyList();
+        final String key = prefix.toLowerCase(Locale.ROOT);
+        int node = 0;
+        for (int depth = 0; depth < key.length(); depth++) {
+            char c = key.charAt(depth);
+            int next = this.trieChild[node];
+            while (next != 0 && this.trieLabel[next] < c) {
+                next = this.trieSibling[next];
+            }
+            if (next == 0 || this.trieLabel[next] != c) {
+                return Collections.emptyList();
+            }
+            node = next;
+        }
+        return new Slice(this.nameOrder, this.trieFrom[node], this.trieTo[node]);
+    }
+
+    /**
+     * Get the equipment within a mass range.
+     * @param min The smallest accepted mass.
+     * @param max The largest accepted mass.
+     * @return The equipment whose mass is within the range in the mass order.
+     */
+    public List<Equipment> withMass(double min, double max) {
+        if (!(min <= max)) return Collections.emptyList();
+        return new Slice(this.massOrder, lowerBound(this.masses, min), upperBound(this.masses, max));
+    }
+
+    /**
+     * Get the equipment within a size range.
+     * @param min The smallest accepted size.
+     * @param max The largest accepted size.
+     * @return The equipment whose size is within the range in the size order.
+     */
+    public List<Equipment> withSize(int min, int max) {
+        if (min > max) return Collections.emptyList();
+        return new Slice(this.sizeOrder, lowerBound(this.sizes, min), upperBound(this.sizes, max));
+    }
+
+    /**
+     * Get all equipment of the catalog.
+     * @return The equipment in the id order.
+     */
+    public List<Equipment> toList() {
+        return Collections.unmodifiableList(Arrays.asList(this.items));
+    }
+
+    /**
+     * Create a builder containing the equipment of this catalog.
+     * @return A builder of a catalog with the same ids as this catalog.
+     */
+    public Builder toBuilder() {
+        return builder().addAll(Arrays.asList(this.items));
+    }
+
+    /**
+     * Get the first index of a sorted array whose value is at least the given value.
+     */
+    private static int lowerBound(double[] values, double value) {
+        int low = 0, high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) low = middle + 1; else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Get the first index of a sorted array whose value is greater than the given value.
+     */
+    private static int upperBound(double[] values, double value) {
+        int low = 0, high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) low = middle + 1; else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Get the first index of a sorted array whose value is at least the given value.
+     */
+    private static int lowerBound(int[] values, int value) {
+        int low = 0, high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) low = middle + 1; else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Get the first index of a sorted array whose value is greater than the given value.
+     */
+    private static int upperBound(int[] values, int value) {
+        int low = 0, high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) low = middle + 1; else high = middle;
+        }
+        return low;
+    }
+}
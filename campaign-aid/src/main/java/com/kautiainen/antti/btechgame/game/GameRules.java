@@ -3,7 +3,12 @@ package com.kautiainen.antti.btechgame.game;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * The game rules. 
@@ -23,6 +28,236 @@ public class GameRules {
      */
     public static record UnitHitLocation(String unitType, HitLocation location, Short criticalSlots) {
 
+        /**
+         * The unit type of the location.
+         * @return The unit type with the name of the unit type of the location, or undefined value
+         * if no unit type has the name.
+         */
+        public UnitType type() {
+            if (unitType != null) {
+                for (UnitType type : UnitType.values()) {
+                    if (type.toString().equals(unitType)) return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The hit locations of a unit type as dense arrays.
+     *
+     * The table gives each hit location of the unit type a table index in the order of the hit
+     * locations of the rules. The critical slot capacities and the rule location ordinals are stored
+     * by table index, so the lookups of the damage and loadout code are array accesses once the
+     * table index or the rule location ordinal is known. The table is immutable.
+     */
+    public static final class LocationTable {
+
+        /**
+         * The unit type of the table.
+         */
+        private final UnitType unitType;
+
+        /**
+         * The hit locations by table index.
+         */
+        private final HitLocation[] locations;
+
+        /**
+         * The critical slot capacities by table index.
+         */
+        private final short[] slotCapacity;
+
+        /**
+         * The rule location ordinals by table index.
+         */
+        private final int[] ordinals;
+
+        /**
+         * The table indexes by rule location ordinal, or -1 for the locations of other unit types.
+         */
+        private final int[] indexOfOrdinal;
+
+        /**
+         * The location index giving the rule location ordinals.
+         */
+        private final DenseIndex<HitLocation> locationIndex;
+
+        /**
+         * The table indexes by location name.
+         */
+        private final Map<String, Integer> byName;
+
+        /**
+         * The table indexes by location abbreviation.
+         */
+        private final Map<String, Integer> byAbbrev;
+
+        /**
+         * The total critical slot capacity of the locations.
+         */
+        private final int totalSlotCapacity;
+
+        /**
+         * Create a new location table.
+         * @param unitType The unit type.
+         * @param locations The unit hit locations of the unit type.
+         * @param locationIndex The location index giving the rule location ordinals.
+         */
+        private LocationTable(UnitType unitType, List<UnitHitLocation> locations, DenseIndex<HitLocation> locationIndex) {
+            final int count = locations.size();
+            this.unitType = unitType;
+            this.locationIndex = locationIndex;
+            this.locations = new HitLocation[count];
+            this.slotCapacity = new short[count];
+            this.ordinals = new int[count];
+            Map<String, Integer> names = new HashMap<>(2 * count);
+            Map<String, Integer> abbrevs = new HashMap<>(2 * count);
+            int largestOrdinal = -1;
+            int total = 0;
+            for (int i = 0; i < count; i++) {
+                final UnitHitLocation location = locations.get(i);
+                this.locations[i] = location.location();
+                this.slotCapacity[i] = location.criticalSlots() == null ? 0 : location.criticalSlots();
+                this.ordinals[i] = locationIndex.indexOf(location.location());
+                largestOrdinal = Math.max(largestOrdinal, this.ordinals[i]);
+                total += this.slotCapacity[i];
+                if (location.location().name != null) names.putIfAbsent(location.location().name, i);
+                if (location.location().abbrev != null) abbrevs.putIfAbsent(location.location().abbrev, i);
+            }
+            this.indexOfOrdinal = new int[largestOrdinal + 1];
+            Arrays.fill(this.indexOfOrdinal, -1);
+            for (int i = count - 1; i >= 0; i--) {
+                if (this.ordinals[i] >= 0) this.indexOfOrdinal[this.ordinals[i]] = i;
+            }
+            this.byName = Collections.unmodifiableMap(names);
+            this.byAbbrev = Collections.unmodifiableMap(abbrevs);
+            this.totalSlotCapacity = total;
+        }
+
+        /**
+         * The unit type of the table.
+         * @return The unit type.
+         */
+        public UnitType getUnitType() {
+            return this.unitType;
+        }
+
+        /**
+         * The number of locations.
+         * @return The number of locations. All table indexes are smaller than this.
+         */
+        public int size() {
+            return this.locations.length;
+        }
+
+        /**
+         * Get a location.
+         * @param index The table index.
+         * @return The hit location with the table index.
+         * @throws IndexOutOfBoundsException The table index was invalid.
+         */
+        public HitLocation get(int index) throws IndexOutOfBoundsException {
+            return this.locations[index];
+        }
+
+        /**
+         * The critical slot capacity of a location.
+         * @param index The table index.
+         * @return The critical slot capacity of the location.
+         * @throws IndexOutOfBoundsException The table index was invalid.
+         */
+        public int getSlotCapacity(int index) throws IndexOutOfBoundsException {
+            return this.slotCapacity[index];
+        }
+
+        /**
+         * The total critical slot capacity of the locations.
+         * @return The sum of the critical slot capacities.
+         */
+        public int getTotalSlotCapacity() {
+            return this.totalSlotCapacity;
+        }
+
+        /**
+         * The rule location ordinal of a location.
+         * @param index The table index.
+         * @return The ordinal of the location in the {@link GameRules#getLocationIndex() location index}
+         * of the rules.
+         * @throws IndexOutOfBoundsException The table index was invalid.
+         */
+        public int getOrdinal(int index) throws IndexOutOfBoundsException {
+            return this.ordinals[index];
+        }
+
+        /**
+         * Get the table index of a rule location ordinal.
+         * @param ordinal The rule location ordinal.
+         * @return The table index, or -1 if the unit type does not have the location.
+         */
+        public int indexOfOrdinal(int ordinal) {
+            return ordinal < 0 || ordinal >= this.indexOfOrdinal.length ? -1 : this.indexOfOrdinal[ordinal];
+        }
+
+        /**
+         * Get the table index of a location.
+         * @param location The location.
+         * @return The table index, or -1 if the unit type does not have the location.
+         */
+        public int indexOf(HitLocation location) {
+            return indexOfOrdinal(this.locationIndex.indexOf(location));
+        }
+
+        /**
+         * Get the table index of a location name.
+         * @param name The name of the location.
+         * @return The table index, or -1 if the unit type does not have a location with the name.
+         */
+        public int indexOfName(String name) {
+            Integer result = name == null ? null : this.byName.get(name);
+            return result == null ? -1 : result;
+        }
+
+        /**
+         * Get the table index of a location abbreviation.
+         * @param abbrev The abbreviation of the location.
+         * @return The table index, or -1 if the unit type does not have a location with the
+         * abbreviation.
+         */
+        public int indexOfAbbrev(String abbrev) {
+            Integer result = abbrev == null ? null : this.byAbbrev.get(abbrev);
+            return result == null ? -1 : result;
+        }
+
+        /**
+         * Find a location by name.
+         * @param name The name of the location.
+         * @return The location, or undefined value if the unit type does not have a location with
+         * the name.
+         */
+        public HitLocation byName(String name) {
+            int index = indexOfName(name);
+            return index < 0 ? null : this.locations[index];
+        }
+
+        /**
+         * Find a location by abbreviation.
+         * @param abbrev The abbreviation of the location.
+         * @return The location, or undefined value if the unit type does not have a location with
+         * the abbreviation.
+         */
+        public HitLocation byAbbrev(String abbrev) {
+            int index = indexOfAbbrev(abbrev);
+            return index < 0 ? null : this.locations[index];
+        }
+
+        /**
+         * Get the locations.
+         * @return A new array of the locations by table index.
+         */
+        public HitLocation[] toArray() {
+            return this.locations.clone();
+        }
     }
 
     /**
@@ -30,27 +265,29 @@ public class GameRules {
      * @param unitType The unit type.
      * @param name The hit location name.
      * @param criticalSlots The critical slot capacity of the location.
-     * @return The hit location for the unit type.
+     * @return The hit location for the unit type. The location is the canonical location of the
+     * {@link #getLocationRegistry() hit location registry of the rules}.
      * @throws IllegalArgumentException Any parameter was invalid.
      */
     public UnitHitLocation createSlottedHitLocation(UnitType unitType, String name, String abbrev, short criticalSlots) {
         if (unitType == null) throw new IllegalArgumentException("Missing unit type");
         if (name == null) throw new IllegalArgumentException("Missing hit location name");
         if (criticalSlots < 0) throw new IllegalArgumentException("Invalid critical slot capacity", new IllegalArgumentException("Negative critical slot count"));
-        return new UnitHitLocation(unitType.toString(), new HitLocation.SlottedHitLocation(name, abbrev, criticalSlots), criticalSlots);
+        return new UnitHitLocation(unitType.toString(), this.registry.slotted(unitType, name, abbrev, criticalSlots), criticalSlots);
     }
 
     /**
      * Create a slotted unit hit location.
      * @param unitType The unit type.
      * @param location The location.
-     * @return The unit hit location for the given unit type and slotted mech location.
+     * @return The unit hit location for the given unit type and slotted mech location. The location
+     * is the canonical location of the {@link HitLocationRegistry#getDefault() default registry}.
      * @throws IllegalArgumentException The location or unit type was invalid.
      */
     public static UnitHitLocation createSlottedHitLocation(UnitType unitType, HitLocation.SlottedHitLocation location) {
         if (unitType == null) throw new IllegalArgumentException("Missing unit type");
         if (location == null) throw new IllegalArgumentException("Missing hit location");
-        return new UnitHitLocation(unitType.toString(), location, (short)Math.max(location.critSlotCapacity, Short.MAX_VALUE));
+        return new UnitHitLocation(unitType.toString(), HitLocationRegistry.getDefault().intern(unitType, location), (short)Math.min(location.critSlotCapacity, Short.MAX_VALUE));
     }
 
     /**
@@ -58,21 +295,23 @@ public class GameRules {
      * @param unitType The unit type.
      * @param location The location.
      * @return The unit hit location for the given unit type and generic hit location without critical slot capacity.
+     * The location is the canonical location of the {@link HitLocationRegistry#getDefault() default registry}.
      * @throws IllegalArgumentException The location or unit type was invalid.
      */
     public static UnitHitLocation createUnslottedHitLocation(UnitType unitType, HitLocation location) {
-        return new UnitHitLocation(unitType.toString(), location, (short)0);
+        return new UnitHitLocation(unitType.toString(), HitLocationRegistry.getDefault().intern(unitType, location), (short)0);
     }
 
     /**
      * Create a new unslotted critical location for a unit type.
      * @param unitType The unit type.
      * @param name The hit location name.
-     * @return The hit location for the unit type.
+     * @return The hit location for the unit type. The location is the canonical location of the
+     * {@link #getLocationRegistry() hit location registry of the rules}.
      * @throws IllegalArgumentException Any parameter was invalid.
      */
     public UnitHitLocation craeteUnslottedHitLocation(UnitType unitType, String name, String abbrev) {
-        return new UnitHitLocation(unitType.toString(), new HitLocation(name, abbrev), (short)0);
+        return new UnitHitLocation(unitType.toString(), this.registry.unslotted(unitType, name, abbrev), (short)0);
     }
 
     /**
@@ -81,9 +320,11 @@ public class GameRules {
      * @param abbrev The abbreviation of the location.
      * @param criticalSlots The critical slot capacity
      * @return The unit hit location for a mech hit location with given name, abbreviation, and equipment slots.
+     * The location is the canonical location of the {@link HitLocationRegistry#getDefault() default registry}.
+     * @throws IllegalArgumentException The name was undefined, or the critical slot capacity was negative.
      */
     public static UnitHitLocation createMechHitLocation(String name, String abbrev, short criticalSlots) {
-        return new UnitHitLocation(UnitType.Mech.toString(), new HitLocation.SlottedHitLocation(name, abbrev, criticalSlots), criticalSlots);
+        return new UnitHitLocation(UnitType.Mech.toString(), HitLocationRegistry.getDefault().slotted(UnitType.Mech, name, abbrev, criticalSlots), criticalSlots);
     }
 
     /**
@@ -120,56 +361,278 @@ public class GameRules {
     public final String name;
 
     /**
-     * Get default hit locations.
-     * @return The default hit locations for the game rules.
+     * The default hit locations shared by all rules using them. The array must not be modified.
      */
-    public static UnitHitLocation[] defaultHitLocations() {
+    private static final UnitHitLocation[] DEFAULT_HIT_LOCATIONS = createDefaultHitLocations();
+
+    /**
+     * The default unit types shared by all rules using them. The array must not be modified.
+     */
+    private static final UnitType[] DEFAULT_UNIT_TYPES = { UnitType.Mech, UnitType.Vehicle };
+
+    /**
+     * The location index of the default hit locations.
+     */
+    private static final DenseIndex<HitLocation> DEFAULT_LOCATION_INDEX = createLocationIndex(DEFAULT_HIT_LOCATIONS);
+
+    /**
+     * The location tables of the default hit locations.
+     */
+    private static final Map<UnitType, LocationTable> DEFAULT_LOCATION_TABLES = createLocationTables(DEFAULT_HIT_LOCATIONS, DEFAULT_LOCATION_INDEX);
+
+    /**
+     * The slot capacities of the default hit locations.
+     */
+    private static final int[] DEFAULT_SLOT_CAPACITIES = createSlotCapacities(DEFAULT_LOCATION_INDEX);
+
+    /**
+     * Create the default hit locations.
+     */
+    private static UnitHitLocation[] createDefaultHitLocations() {
         final List<UnitHitLocation> result = new ArrayList<>(8);
         result.add(createMechHitLocation((short)1, "Head"));
         result.add(createMechHitLocation((short)4, "Center", "Torso"));
-        Arrays.asList("Left", "Right").forEach( (String prefix) -> {
+        for (String prefix : new String[] { "Left", "Right" }) {
             result.add(createMechHitLocation((short)10, prefix, "Torso"));
             result.add(createMechHitLocation((short)8, prefix, "Arm"));
             result.add(createMechHitLocation((short)4, prefix, "Leg"));
-        });
+        }
+        return result.toArray(new UnitHitLocation[result.size()]);
+    }
 
-        return result.stream().toArray( (int size) -> (new UnitHitLocation[size]));
+    /**
+     * Create the location index of hit locations.
+     */
+    private static DenseIndex<HitLocation> createLocationIndex(UnitHitLocation[] hitLocations) {
+        return new DenseIndex<>(Arrays.stream(hitLocations).filter(Objects::nonNull).map(UnitHitLocation::location).toList());
+    }
+
+    /**
+     * Create the location tables of hit locations. Every unit type has a table, and the unit types
+     * without hit locations have an empty table. The hit locations whose unit type is not a unit
+     * type name are not in any table.
+     */
+    private static Map<UnitType, LocationTable> createLocationTables(UnitHitLocation[] hitLocations, DenseIndex<HitLocation> locationIndex) {
+        Map<UnitType, List<UnitHitLocation>> byType = new EnumMap<>(UnitType.class);
+        for (UnitType type : UnitType.values()) {
+            byType.put(type, new ArrayList<>());
+        }
+        for (UnitHitLocation location : hitLocations) {
+            if (location == null || location.location() == null) continue;
+            final UnitType type = location.type();
+            if (type != null) byType.get(type).add(location);
+        }
+        Map<UnitType, LocationTable> result = new EnumMap<>(UnitType.class);
+        for (Map.Entry<UnitType, List<UnitHitLocation>> entry : byType.entrySet()) {
+            result.put(entry.getKey(), new LocationTable(entry.getKey(), entry.getValue(), locationIndex));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Create the critical slot capacities of the locations of a location index by ordinal. The
+     * capacity of a location without critical slots is {@link Integer#MAX_VALUE}.
+     */
+    private static int[] createSlotCapacities(DenseIndex<HitLocation> locationIndex) {
+        final int[] result = new int[locationIndex.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = PackedLoadout.capacityOf(locationIndex.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Get default hit locations. The default hit locations are created once.
+     * @return The default hit locations for the game rules.
+     */
+    public static UnitHitLocation[] defaultHitLocations() {
+        return DEFAULT_HIT_LOCATIONS.clone();
     }
     
     /**
-     * Create new game rules.
+     * Create new game rules with the default unit types and hit locations. The rules share the
+     * default unit types, hit locations, and location index with all other rules using them.
      * @param name The name of the game rules.
      * @param mode The game mode.
      */
     public GameRules(String name, String mode) {
-        this(name, mode, java.util.Arrays.asList(UnitType.Mech, UnitType.Vehicle).toArray( (size) -> (new UnitType[size])),
-        GameRules.defaultHitLocations());
+        this(name, mode, HitLocationRegistry.getDefault(), DEFAULT_UNIT_TYPES, DEFAULT_HIT_LOCATIONS, DEFAULT_LOCATION_INDEX,
+            DEFAULT_LOCATION_TABLES, DEFAULT_SLOT_CAPACITIES);
     }
 
     /**
      * Create new game rules.
      * @param name The name of the game rules.
      * @param mode The game mode.
-     * @param unitTypes The allowed unit types.
-     * @param hitLocations The hit locations of the game.
+     * @param unitTypes The allowed unit types. The rules keep a copy of the array.
+     * @param hitLocations The hit locations of the game. The rules keep a copy of the array.
+     * @throws IllegalArgumentException Either array was undefined.
+     */
+    public GameRules(String name, String mode, UnitType[] unitTypes, UnitHitLocation[] hitLocations) throws IllegalArgumentException {
+        this(name, mode, HitLocationRegistry.getDefault(), unitTypes, hitLocations);
+    }
+
+    /**
+     * Create new game rules of a rule set.
+     * @param name The name of the game rules.
+     * @param mode The game mode.
+     * @param registry The registry of the canonical hit locations of the rule set.
+     * @param unitTypes The allowed unit types. The rules keep a copy of the array.
+     * @param hitLocations The hit locations of the game. The rules keep a copy of the array.
+     * @throws IllegalArgumentException The registry or either array was undefined.
+     */
+    GameRules(String name, String mode, HitLocationRegistry registry, UnitType[] unitTypes, UnitHitLocation[] hitLocations)
+            throws IllegalArgumentException {
+        this(name, mode, checkRegistry(registry), copyOf(unitTypes, "Missing unit types"),
+            copyOf(hitLocations, "Missing hit locations"), createLocationIndex(hitLocations));
+    }
+
+    /**
+     * Check the hit location registry given to the rules.
+     */
+    private static HitLocationRegistry checkRegistry(HitLocationRegistry registry) throws IllegalArgumentException {
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        return registry;
+    }
+
+    /**
+     * Copy an array given to the rules.
      */
-    public GameRules(String name, String mode, UnitType[] unitTypes, UnitHitLocation[] hitLocations) {
+    private static <T> T[] copyOf(T[] array, String missing) throws IllegalArgumentException {
+        if (array == null) throw new IllegalArgumentException(missing);
+        return array.clone();
+    }
+
+    private GameRules(String name, String mode, HitLocationRegistry registry, UnitType[] unitTypes, UnitHitLocation[] hitLocations,
+        DenseIndex<HitLocation> locationIndex) {
+        this(name, mode, registry, unitTypes, hitLocations, locationIndex, createLocationTables(hitLocations, locationIndex),
+            createSlotCapacities(locationIndex));
+    }
+
+    private GameRules(String name, String mode, HitLocationRegistry registry, UnitType[] unitTypes, UnitHitLocation[] hitLocations,
+        DenseIndex<HitLocation> locationIndex, Map<UnitType, LocationTable> locationTables, int[] slotCapacities) {
         this.mode = mode;
         this.name = name;
+        this.registry = registry;
         this.unitTypes = unitTypes;
         this.hitLocations = hitLocations;
+        this.locationIndex = locationIndex;
+        this.locationTables = locationTables;
+        this.slotCapacities = slotCapacities;
     }
 
     /**
-     * The unit types of the rules.
+     * The registry of the canonical hit locations of the rules.
      */
-    public final UnitType[] unitTypes;
+    private final HitLocationRegistry registry;
 
     /**
-     * The hit locations of the unit type.
-     * @return The hit locations of the unit type.
+     * The unit types of the rules. The array may be shared with other rules, and must not be
+     * modified.
      */
-    public final UnitHitLocation[] hitLocations; 
-}
+    private final UnitType[] unitTypes;
 
+    /**
+     * The hit locations of the rules. The array may be shared with other rules, and must not be
+     * modified.
+     */
+    private final UnitHitLocation[] hitLocations;
 
+    /**
+     * The dense ordinals of the hit locations. The index may be shared with other rules, and must
+     * not be modified.
+     */
+    private final DenseIndex<HitLocation> locationIndex;
+
+    /**
+     * The location tables by unit type.
+     */
+    private final Map<UnitType, LocationTable> locationTables;
+
+    /**
+     * The critical slot capacities of the hit locations of the rules by location ordinal.
+     */
+    private final int[] slotCapacities;
+
+    /**
+     * Get the hit location registry of the rules.
+     * @return The registry of the canonical hit locations of the rules. The rules created without
+     * a rule set use the {@link HitLocationRegistry#getDefault() default registry}.
+     */
+    public HitLocationRegistry getLocationRegistry() {
+        return this.registry;
+    }
+
+    /**
+     * Get the unit types of the rules.
+     * @return A new array of the allowed unit types.
+     */
+    public UnitType[] getUnitTypes() {
+        return this.unitTypes.clone();
+    }
+
+    /**
+     * Get the hit locations of the rules.
+     * @return A new array of the hit locations of all unit types.
+     */
+    public UnitHitLocation[] getHitLocations() {
+        return this.hitLocations.clone();
+    }
+
+    /**
+     * Get a location index of the rules. The hit locations of the rules have ordinals in the order
+     * of the hit locations, and other locations get their ordinals when they are first used.
+     * @return A new location index extending the location index of the rules. The locations added
+     * to the returned index are not added to the rules.
+     */
+    public DenseIndex<HitLocation> getLocationIndex() {
+        return new DenseIndex<>(this.locationIndex);
+    }
+
+    /**
+     * The shared location index of the rules. The index must not be modified.
+     */
+    DenseIndex<HitLocation> locationIndex() {
+        return this.locationIndex;
+    }
+
+    /**
+     * Get the location table of a unit type.
+     * @param unitType The unit type.
+     * @return The location table of the unit type. The table is empty, if the rules do not have
+     * hit locations for the unit type.
+     * @throws IllegalArgumentException The unit type was undefined.
+     */
+    public LocationTable getLocationTable(UnitType unitType) throws IllegalArgumentException {
+        if (unitType == null) throw new IllegalArgumentException("Missing unit type");
+        return this.locationTables.get(unitType);
+    }
+
+    /**
+     * Get the hit locations of a unit type.
+     * @param unitType The unit type.
+     * @return A new array of the hit locations of the unit type in the order of the hit locations
+     * of the rules.
+     * @throws IllegalArgumentException The unit type was undefined.
+     */
+    public HitLocation[] getHitLocations(UnitType unitType) throws IllegalArgumentException {
+        return getLocationTable(unitType).toArray();
+    }
+
+    /**
+     * Get the critical slot capacities of the hit locations of the rules.
+     * @return A new array of the critical slot capacities by location ordinal. The capacity of a
+     * location without critical slots is {@link Integer#MAX_VALUE}.
+     */
+    public int[] getSlotCapacities() {
+        return this.slotCapacities.clone();
+    }
+
+    /**
+     * The shared critical slot capacities of the hit locations of the rules. The array must not
+     * be modified.
+     */
+    int[] slotCapacities() {
+        return this.slotCapacities;
+    }
+}
@@ -3,6 +3,9 @@ package com.kautiainen.antti.btechgame.game;
 
 /**
  * A hit location represents a hit location.
+ *
+ * Hit locations are immutable values. Canonical instances are handed out by the
+ * {@link HitLocationRegistry}.
  */
 public class HitLocation {
     
@@ -26,6 +29,16 @@ public class HitLocation {
             super(name, abbrev);
             this.critSlotCapacity = critSlotCapacity;
         }
+
+        @Override
+        public boolean equals(Object other) {
+            return super.equals(other) && this.critSlotCapacity == ((SlottedHitLocation) other).critSlotCapacity;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + this.critSlotCapacity;
+        }
     }
 
     /**
@@ -48,4 +61,21 @@ public class HitLocation {
         this.abbrev = abbrev;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (other == null || other.getClass() != this.getClass()) return false;
+        HitLocation location = (HitLocation) other;
+        return java.util.Objects.equals(this.name, location.name) && java.util.Objects.equals(this.abbrev, location.abbrev);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * java.util.Objects.hashCode(this.name) + java.util.Objects.hashCode(this.abbrev);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
 }
@@ -0,0 +1,193 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of canonical hit locations.
+ *
+ * The registry hands out one canonical hit location for each distinct hit location, and gives
+ * every canonical hit location a small integer id. Equal hit locations of different unit types
+ * share the same canonical instance and id. The name and the abbreviation of a location identify
+ * it within its unit type, so the registry rejects a location conflicting with a location already
+ * registered for the unit type with the same name or abbreviation.
+ */
+public final class HitLocationRegistry {
+
+    /**
+     * The key of a unit type specific hit location name or abbreviation.
+     * @param unitType The unit type.
+     * @param name The name or the abbreviation of the location.
+     */
+    private static record Key(GameRules.UnitType unitType, String name) {
+
+    }
+
+    /**
+     * The registry shared by the whole application.
+     */
+    private static final HitLocationRegistry DEFAULT = new HitLocationRegistry();
+
+    /**
+     * Get the registry shared by the whole application.
+     * @return The default registry.
+     */
+    public static HitLocationRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The ids of the canonical locations.
+     */
+    private final DenseIndex<HitLocation> locations = new DenseIndex<>();
+
+    /**
+     * The canonical locations by unit type and name.
+     */
+    private final ConcurrentHashMap<Key, HitLocation> byName = new ConcurrentHashMap<>();
+
+    /**
+     * The canonical locations by unit type and abbreviation.
+     */
+    private final ConcurrentHashMap<Key, HitLocation> byAbbrev = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new empty registry.
+     */
+    public HitLocationRegistry() {
+
+    }
+
+    /**
+     * Get the canonical instance of a hit location of a unit type.
+     * @param unitType The unit type.
+     * @param location The hit location.
+     * @return The canonical hit location equal to the given location.
+     * @throws IllegalArgumentException The unit type or location was undefined, or a different
+     * location with the same name or abbreviation was registered for the unit type.
+     */
+    public HitLocation intern(GameRules.UnitType unitType, HitLocation location) throws IllegalArgumentException {
+        if (unitType == null) throw new IllegalArgumentException("Missing unit type");
+        if (location == null) throw new IllegalArgumentException("Missing hit location");
+        if (location.name == null) throw new IllegalArgumentException("Missing hit location name");
+        final Key name = new Key(unitType, location.name);
+        final HitLocation registered = this.byName.get(name);
+        if (registered != null && registered.equals(location)) return registered;
+        final Key abbrev = location.abbrev == null ? null : new Key(unitType, location.abbrev);
+        synchronized (this) {
+            checkConflict(this.byName.get(name), location, unitType);
+            if (abbrev != null) checkConflict(this.byAbbrev.get(abbrev), location, unitType);
+            final HitLocation result = this.locations.get(this.locations.intern(location));
+            this.byName.putIfAbsent(name, result);
+            if (abbrev != null) this.byAbbrev.putIfAbsent(abbrev, result);
+            return result;
+        }
+    }
+
+    /**
+     * Check a location does not conflict with a registered location.
+     * @param registered The location registered with the same name or abbreviation, or undefined
+     * value if none exists.
+     * @param location The registered location.
+     * @param unitType The unit type of the locations.
+     * @throws IllegalArgumentException The locations were different.
+     */
+    private static void checkConflict(HitLocation registered, HitLocation location, GameRules.UnitType unitType)
+            throws IllegalArgumentException {
+        if (registered != null && !registered.equals(location)) {
+            throw new IllegalArgumentException("Conflicting definition of hit location " + location.name + " of " + unitType);
+        }
+    }
+
+    /**
+     * Get the canonical slotted hit location of a unit type.
+     * @param unitType The unit type.
+     * @param name The name of the location.
+     * @param abbrev The abbreviation of the location.
+     * @param critSlotCapacity The critical slot capacity of the location.
+     * @return The canonical slotted hit location.
+     * @throws IllegalArgumentException Any parameter was invalid, or the location conflicted with a
+     * registered location.
+     */
+    public HitLocation.SlottedHitLocation slotted(GameRules.UnitType unitType, String name, String abbrev, short critSlotCapacity)
+            throws IllegalArgumentException {
+        if (critSlotCapacity < 0) throw new IllegalArgumentException("Negative critical slot count");
+        HitLocation result = this.byName.get(new Key(unitType, name));
+        if (result instanceof HitLocation.SlottedHitLocation slotted && slotted.critSlotCapacity == critSlotCapacity
+                && java.util.Objects.equals(abbrev, slotted.abbrev)) {
+            return slotted;
+        }
+        return (HitLocation.SlottedHitLocation) intern(unitType, new HitLocation.SlottedHitLocation(name, abbrev, critSlotCapacity));
+    }
+
+    /**
+     * Get the canonical unslotted hit location of a unit type.
+     * @param unitType The unit type.
+     * @param name The name of the location.
+     * @param abbrev The abbreviation of the location.
+     * @return The canonical hit location without critical slots.
+     * @throws IllegalArgumentException Any parameter was invalid, or the location conflicted with a
+     * registered location.
+     */
+    public HitLocation unslotted(GameRules.UnitType unitType, String name, String abbrev) throws IllegalArgumentException {
+        HitLocation result = this.byName.get(new Key(unitType, name));
+        if (result != null && result.getClass() == HitLocation.class && java.util.Objects.equals(abbrev, result.abbrev)) {
+            return result;
+        }
+        return intern(unitType, new HitLocation(name, abbrev));
+    }
+
+    /**
+     * Get the id of a hit location.
+     * @param location The hit location.
+     * @return The id of the canonical location equal to the given location, or -1 if none exists.
+     */
+    public int idOf(HitLocation location) {
+        return this.locations.indexOf(location);
+    }
+
+    /**
+     * Get a canonical hit location by id.
+     * @param id The id of the location.
+     * @return The canonical hit location with the given id.
+     * @throws IndexOutOfBoundsException The id is not assigned.
+     */
+    public HitLocation get(int id) throws IndexOutOfBoundsException {
+        return this.locations.get(id);
+    }
+
+    /**
+     * Find a hit location of a unit type by name.
+     * @param unitType The unit type.
+     * @param name The name of the location.
+     * @return The canonical hit location, or undefined value if none exists.
+     */
+    public HitLocation byName(GameRules.UnitType unitType, String name) {
+        return name == null ? null : this.byName.get(new Key(unitType, name));
+    }
+
+    /**
+     * Find a hit location of a unit type by abbreviation.
+     * @param unitType The unit type.
+     * @param abbrev The abbreviation of the location.
+     * @return The canonical hit location, or undefined value if none exists.
+     */
+    public HitLocation byAbbrev(GameRules.UnitType unitType, String abbrev) {
+        return abbrev == null ? null : this.byAbbrev.get(new Key(unitType, abbrev));
+    }
+
+    /**
+     * The number of canonical locations. All ids are smaller than this.
+     * @return The number of canonical locations.
+     */
+    public int size() {
+        return this.locations.size();
+    }
+
+    /**
+     * The index giving the ids of the canonical locations.
+     * @return The location index of the registry.
+     */
+    public DenseIndex<HitLocation> getIndex() {
+        return this.locations;
+    }
+}
@@ -2,6 +2,10 @@ package com.kautiainen.antti.btechgame.game;
 
 import java.util.Objects;
 
+import com.kautiainen.antti.btechgame.metrics.Counter;
+import com.kautiainen.antti.btechgame.metrics.Histogram;
+import com.kautiainen.antti.btechgame.metrics.Metrics;
+
 
 
 /**
@@ -9,6 +13,26 @@ import java.util.Objects;
  */
 public class LoadoutController {
 
+    /**
+     * The latencies of adding equipment to loadouts in nanoseconds.
+     */
+    static final Histogram ADD_LATENCY = Metrics.histogram("game.loadout.add");
+
+    /**
+     * The latencies of removing equipment from loadouts in nanoseconds.
+     */
+    static final Histogram REMOVE_LATENCY = Metrics.histogram("game.loadout.remove");
+
+    /**
+     * The latencies of placing equipment automatically in nanoseconds.
+     */
+    static final Histogram AUTO_PLACE_LATENCY = Metrics.histogram("game.loadout.auto_place");
+
+    /**
+     * The number of equipment additions rejected by strict loadouts.
+     */
+    static final Counter REJECTED_ADDS = Metrics.counter("game.loadout.rejected");
+
     /**
      * An entry.
      * @param <K> The key type of the entry.
@@ -109,20 +133,64 @@ public class LoadoutController {
         }
     }
 
+    /**
+     * A listener of the changes of a loadout.
+     *
+     * The listeners are called by the thread changing the loadout after the change, while the
+     * thread still holds the write lock of the loadout, so the listeners see the changes in the order
+     * they were made. The listeners must return quickly, and they must neither query nor modify the
+     * loadout.
+     */
+    public static interface LoadoutListener {
+
+        /**
+         * Equipment was added to the loadout.
+         * @param location The location of the equipment.
+         * @param equipment The added equipment.
+         */
+        public void equipmentAdded(HitLocation location, Equipment equipment);
+
+        /**
+         * Equipment was removed from the loadout.
+         * @param location The location of the equipment.
+         * @param equipment The removed equipment.
+         */
+        public void equipmentRemoved(HitLocation location, Equipment equipment);
+    }
+
+    /**
+     * A loadout of the controller.
+     *
+     * The equipment is stored in a packed loadout using the location ordinals of the controller.
+     * The modifications are serialized with a stamped lock. The queries first read the loadout
+     * optimistically without locking, and only take the read lock if a modification happened
+     * during the read, so the queries never block the modifications and always see a consistent
+     * state of the loadout.
+     */
     public class Loadout {
 
         /**
-         * The content of the loadout.
+         * The content of the loadout sharing the indexes of the controller. The locations missing
+         * from the location index of the controller get their ordinals from a location index of the
+         * loadout created when the first of them is added, so the loadout never adds locations to the
+         * shared index.
          */
-        private final java.util.Map<HitLocation, java.util.List<Equipment>> content = new java.util.HashMap<>();
+        private final PackedLoadout content = PackedLoadout.shared(LoadoutController.this.locationIndex,
+            LoadoutController.this.equipmentIndex, LoadoutController.this.slotCapacities);
 
         /**
-         * The tonnage of the loadout.
+         * The lock guarding the content.
          */
-        private double totalTonnage = 0.0;
+        private final java.util.concurrent.locks.StampedLock lock = new java.util.concurrent.locks.StampedLock();
 
         /**
-         * Is the loadout strict. A strict loadout throws exception, if it exceeds the tonnage.
+         * The listeners of the changes.
+         */
+        private final java.util.concurrent.CopyOnWriteArrayList<LoadoutListener> listeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+        /**
+         * Is the loadout strict. A strict loadout throws exception, if it exceeds the tonnage or the
+         * critical slot capacity of a location.
          */
         private boolean strict = false;
 
@@ -130,7 +198,17 @@ public class LoadoutController {
          * Total tonnage of the laodout
          */
         public final double getTonnage() {
-            return this.totalTonnage;
+            long stamp = this.lock.tryOptimisticRead();
+            double result = this.content.getTonnage();
+            if (!this.lock.validate(stamp)) {
+                stamp = this.lock.readLock();
+                try {
+                    result = this.content.getTonnage();
+                } finally {
+                    this.lock.unlockRead(stamp);
+                }
+            }
+            return result;
         }
 
         /**
@@ -172,19 +250,141 @@ public class LoadoutController {
          * Add an equipment to the loadout.
          * @param location The location of the equipment.
          * @param equipment The added equipment.
-         * @throws IllegalArgumentException The equipment was invalid.
+         * @throws IllegalArgumentException The equipment or the location was invalid.
          */
-        public synchronized final void addEquipment(HitLocation location, Equipment equipment) throws IllegalArgumentException {
+        public final void addEquipment(HitLocation location, Equipment equipment) throws IllegalArgumentException {
             if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
-            if (strict && (totalTonnage + equipment.mass > LoadoutController.this.availableTonnage) ) {
-                throw new IllegalArgumentException("Equipment too heavy");
+            if (location == null) throw new IllegalArgumentException("Undefined location not accepted");
+            final long start = System.nanoTime();
+            long stamp = this.lock.writeLock();
+            try {
+                if (strict && (this.content.getTonnage() + equipment.mass > LoadoutController.this.availableTonnage) ) {
+                    REJECTED_ADDS.increment();
+                    throw new IllegalArgumentException("Equipment too heavy");
+                }
+                if (strict && this.content.freeSlots(location) < equipment.size) {
+                    REJECTED_ADDS.increment();
+                    throw new IllegalArgumentException("Not enough critical slots");
+                }
+                this.content.add(location, equipment);
+                for (LoadoutListener listener : this.listeners) {
+                    listener.equipmentAdded(location, equipment);
+                }
+            } finally {
+                this.lock.unlockWrite(stamp);
+                ADD_LATENCY.recordSince(start);
+            }
+        }
+
+        /**
+         * Test whether an equipment fits into a location. The test neither throws exceptions nor
+         * allocates memory.
+         * @param location The location of the equipment.
+         * @param equipment The tested equipment.
+         * @return True, if and only if the equipment fits into the available tonnage and the free
+         * critical slots of the location.
+         */
+        public final boolean canPlace(HitLocation location, Equipment equipment) {
+            if (location == null || equipment == null) return false;
+            long stamp = this.lock.tryOptimisticRead();
+            double tonnage = this.content.getTonnage();
+            int free = this.content.freeSlots(location);
+            if (!this.lock.validate(stamp)) {
+                stamp = this.lock.readLock();
+                try {
+                    tonnage = this.content.getTonnage();
+                    free = this.content.freeSlots(location);
+                } finally {
+                    this.lock.unlockRead(stamp);
+                }
+            }
+            return tonnage + equipment.mass <= LoadoutController.this.availableTonnage && free >= equipment.size;
+        }
+
+        /**
+         * The free critical slots of a location.
+         * @param location The location.
+         * @return The number of free critical slots of the location, or {@link Integer#MAX_VALUE} for
+         * a location without critical slots.
+         */
+        public final int getFreeSlots(HitLocation location) {
+            if (location == null) return 0;
+            long stamp = this.lock.tryOptimisticRead();
+            int result = this.content.freeSlots(location);
+            if (!this.lock.validate(stamp)) {
+                stamp = this.lock.readLock();
+                try {
+                    result = this.content.freeSlots(location);
+                } finally {
+                    this.lock.unlockRead(stamp);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Place equipment automatically into locations. Either all equipment is placed, or the
+         * loadout is not modified.
+         * @param locations The locations available for the equipment.
+         * @param equipment The placed equipment.
+         * @return The placed equipment with their locations, or undefined value if the equipment
+         * does not fit into the free critical slots of the locations, or into the available tonnage
+         * of a strict loadout.
+         */
+        public final EquipmentLoadout[] autoPlace(HitLocation[] locations, java.util.Collection<Equipment> equipment) {
+            if (locations == null || equipment == null) return null;
+            final long start = System.nanoTime();
+            EquipmentLoadout[] result;
+            long stamp = this.lock.writeLock();
+            try {
+                result = place(locations, equipment);
+                if (result != null) {
+                    for (LoadoutListener listener : this.listeners) {
+                        for (EquipmentLoadout placed : result) {
+                            listener.equipmentAdded(placed.location, placed.equipment);
+                        }
+                    }
+                }
+            } finally {
+                this.lock.unlockWrite(stamp);
+                AUTO_PLACE_LATENCY.recordSince(start);
             }
+            return result;
+        }
 
-            if (!this.content.containsKey(location)) {
-                this.content.put(location, new java.util.ArrayList<>());
+        /**
+         * Place equipment automatically into locations while holding the write lock.
+         * @param locations The locations available for the equipment.
+         * @param equipment The placed equipment.
+         * @return The placed equipment with their locations, or undefined value if the equipment
+         * could not be placed.
+         */
+        private EquipmentLoadout[] place(HitLocation[] locations, java.util.Collection<Equipment> equipment) {
+            int[] free = new int[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                free[i] = locations[i] == null ? 0 : this.content.freeSlots(locations[i]);
+            }
+            int[] sizes = new int[equipment.size()];
+            double mass = 0.0;
+            int index = 0;
+            for (Equipment item : equipment) {
+                if (item == null) return null;
+                sizes[index++] = item.size;
+                mass += item.mass;
+            }
+            if (strict && this.content.getTonnage() + mass > LoadoutController.this.availableTonnage) {
+                return null;
+            }
+            int[] placement = SlotPacker.pack(free, sizes);
+            if (placement == null) return null;
+            EquipmentLoadout[] result = new EquipmentLoadout[sizes.length];
+            index = 0;
+            for (Equipment item : equipment) {
+                result[index] = new EquipmentLoadout(locations[placement[index]], item);
+                this.content.add(result[index].location, item);
+                index++;
             }
-            this.content.get(location).add(equipment);
-            this.totalTonnage += equipment.mass;
+            return result;
         }
 
         /**
@@ -193,27 +393,64 @@ public class LoadoutController {
          * @param equipment The removed equipment.
          * @returns True, if and only if the loadout was modified.
          */
-        public synchronized final boolean removeEquipment(HitLocation location, Equipment equipment) {
-            if (equipment != null && this.content.containsKey(location)) {
-                int index = this.content.get(location).indexOf(equipment);
-                if (index >= 0) {
-                    Equipment removed = this.content.get(location).get(index);
-                    this.content.get(location).remove(index);
-                    this.totalTonnage -= removed.mass;
+        public final boolean removeEquipment(HitLocation location, Equipment equipment) {
+            final long start = System.nanoTime();
+            boolean result;
+            long stamp = this.lock.writeLock();
+            try {
+                result = this.content.remove(location, equipment);
+                if (result) {
+                    for (LoadoutListener listener : this.listeners) {
+                        listener.equipmentRemoved(location, equipment);
+                    }
                 }
+            } finally {
+                this.lock.unlockWrite(stamp);
+                REMOVE_LATENCY.recordSince(start);
             }
-            return false;
+            return result;
+        }
+
+        /**
+         * Add a listener of the changes of the loadout.
+         * @param listener The added listener.
+         * @throws IllegalArgumentException The listener was undefined.
+         */
+        public final void addLoadoutListener(LoadoutListener listener) throws IllegalArgumentException {
+            if (listener == null) throw new IllegalArgumentException("Missing listener");
+            this.listeners.add(listener);
+        }
+
+        /**
+         * Remove a listener of the changes of the loadout.
+         * @param listener The removed listener.
+         * @return True, if and only if the listener was removed.
+         */
+        public final boolean removeLoadoutListener(LoadoutListener listener) {
+            return this.listeners.remove(listener);
         }
 
         /**
          * Convern the loadout into an array of equipment loadouts.
          */
         public LoadoutController.Entry<HitLocation, Equipment>[] toArray() {
-            return this.content.entrySet().stream().map( 
-                (entry) -> (new LoadoutEntry(entry.getKey(), entry.getValue()))
-            ).flatMap( (LoadoutEntry entry) -> {
-                return java.util.Arrays.asList(entry.getValue()).stream().map( equipment -> (new EquipmentLoadout(entry.getKey(), equipment)));
-            }).toArray( (int size) -> (new EquipmentLoadout[size]));
+            long stamp = this.lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                try {
+                    EquipmentLoadout[] result = this.content.toArray();
+                    if (this.lock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException inconsistentRead) {
+                    // A concurrent modification broke the optimistic read. The read is retried with the read lock.
+                }
+            }
+            stamp = this.lock.readLock();
+            try {
+                return this.content.toArray();
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
         }
     }
 
@@ -221,6 +458,42 @@ public class LoadoutController {
 
     private double availableTonnage;
 
+    /**
+     * The location index giving the location ordinals of the registered locations of the loadouts
+     * of the controller. The index is never modified by the loadouts.
+     */
+    private final DenseIndex<HitLocation> locationIndex;
+
+    /**
+     * The equipment index giving the equipment ids of the loadouts of the controller. The index is
+     * released with the controller, and it grows to at most about
+     * {@link PackedLoadout#SHARED_EQUIPMENT_LIMIT} members. The loadouts index the other equipment
+     * themselves, and those ids are released with the loadouts.
+     */
+    private final DenseIndex<Equipment> equipmentIndex = new DenseIndex<>();
+
+    /**
+     * The precomputed critical slot capacities of the location ordinals. The array is shared, and
+     * must not be modified.
+     */
+    private int[] slotCapacities = new int[0];
+
+    /**
+     * The maximum tonnage of the loadouts.
+     * @return The maximum tonnage.
+     */
+    public double getMaxTonnage() {
+        return this.maxTonnage;
+    }
+
+    /**
+     * The tonnage available for the equipment of the loadouts.
+     * @return The available tonnage. A strict loadout cannot exceed this tonnage.
+     */
+    public double getAvailableTonnage() {
+        return this.availableTonnage;
+    }
+
     /**
      * The base layout of the controller. 
      * The base layout cannot be modified. 
@@ -237,6 +510,7 @@ public class LoadoutController {
     public LoadoutController(double maxTonnage, double availableTonnage, java.util.Map<HitLocation, java.util.Collection<Equipment>> baseLoadout) {
         this.maxTonnage = maxTonnage;
         this.availableTonnage = availableTonnage;
+        this.locationIndex = HitLocationRegistry.getDefault().getIndex();
         this.baseLoadout = new java.util.HashMap<>();
         if (baseLoadout != null) {
             for (java.util.Map.Entry<HitLocation, java.util.Collection<Equipment>> entry: baseLoadout.entrySet()) {
@@ -257,6 +531,7 @@ public class LoadoutController {
     public LoadoutController(double maxTonnage, java.util.Map<HitLocation, java.util.Collection<Equipment>> baseLoadout) {
         this.maxTonnage = maxTonnage;
         this.availableTonnage = this.maxTonnage;
+        this.locationIndex = HitLocationRegistry.getDefault().getIndex();
         this.baseLoadout = new java.util.HashMap<>();
         
         if (baseLoadout != null) {
@@ -283,6 +558,22 @@ public class LoadoutController {
         this(maxTonnage, availableTonnage, java.util.Collections.emptyMap());
     }
 
+    /**
+     * Create a new loadout controller using the location ordinals of game rules.
+     * @param maxTonnage The maximum tonnage of the loadout.
+     * @param availableTonnage The available tonnage of the loadout.
+     * @param rules The game rules whose hit locations are used.
+     * @throws IllegalArgumentException The game rules was undefined.
+     */
+    public LoadoutController(double maxTonnage, double availableTonnage, GameRules rules) throws IllegalArgumentException {
+        if (rules == null) throw new IllegalArgumentException("Missing game rules");
+        this.maxTonnage = maxTonnage;
+        this.availableTonnage = availableTonnage;
+        this.locationIndex = rules.locationIndex();
+        this.slotCapacities = rules.slotCapacities();
+        this.baseLoadout = new java.util.HashMap<>();
+    }
+
     /**
      * Create a loadout controller for a unit. 
      * @param unit The unit, whose loadout is controlled.
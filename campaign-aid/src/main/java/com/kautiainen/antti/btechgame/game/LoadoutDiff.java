@@ -0,0 +1,228 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two loadouts.
+ *
+ * The difference is the smallest multiset difference of the equipment per location. An equipment
+ * removed from one location and added to another location is a move, and the other differences
+ * are removals and additions. The difference is computed with hash maps in time linear to the sizes
+ * of the loadouts.
+ *
+ * The refit plan of the difference performs the removals first, then the removing halves of the
+ * moves, then the adding halves of the moves, and finally the additions. The tonnage and the used
+ * critical slots of each location only decrease until the last removal, and only increase after it
+ * to the target loadout, so every intermediate loadout of the plan is within the tonnage and the
+ * slots of a strict loadout whenever the source and the target loadouts are.
+ */
+public final class LoadoutDiff {
+
+    /**
+     * The kinds of the changes.
+     */
+    public static enum Kind {
+        /** An equipment is removed. */
+        REMOVE,
+        /** An equipment is added. */
+        ADD,
+        /** An equipment is moved to another location. */
+        MOVE
+    }
+
+    /**
+     * A change of a loadout.
+     * @param kind The kind of the change.
+     * @param equipment The changed equipment.
+     * @param from The location of the removed or moved equipment, or undefined value for an
+     * addition.
+     * @param to The location of the added or moved equipment, or undefined value for a removal.
+     */
+    public static record Change(Kind kind, Equipment equipment, HitLocation from, HitLocation to) {
+
+    }
+
+    /**
+     * A step of a refit plan.
+     * @param add Is the equipment added, or removed.
+     * @param location The location of the equipment.
+     * @param equipment The equipment.
+     * @param move Is the step a half of a move.
+     */
+    public static record Step(boolean add, HitLocation location, Equipment equipment, boolean move) {
+
+    }
+
+    /**
+     * The key of an equipment in a location.
+     * @param location The location.
+     * @param equipment The equipment.
+     */
+    private static record Placement(HitLocation location, Equipment equipment) {
+
+    }
+
+    private final List<Change> changes;
+
+    private final double massDelta;
+
+    private LoadoutDiff(List<Change> changes, double massDelta) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.massDelta = massDelta;
+    }
+
+    /**
+     * Compute the difference of loadouts.
+     * @param from The entries of the source loadout.
+     * @param to The entries of the target loadout.
+     * @return The difference changing the source loadout into the target loadout.
+     * @throws IllegalArgumentException Either loadout was undefined.
+     */
+    public static LoadoutDiff of(LoadoutController.Entry<HitLocation, Equipment>[] from,
+        LoadoutController.Entry<HitLocation, Equipment>[] to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException("Missing loadout");
+        Map<Placement, int[]> counts = new LinkedHashMap<>(2 * (from.length + to.length));
+        for (LoadoutController.Entry<HitLocation, Equipment> entry : from) {
+            if (entry != null && entry.getValue() != null) {
+                counts.computeIfAbsent(new Placement(entry.getKey(), entry.getValue()), key -> new int[1])[0]++;
+            }
+        }
+        for (LoadoutController.Entry<HitLocation, Equipment> entry : to) {
+            if (entry != null && entry.getValue() != null) {
+                counts.computeIfAbsent(new Placement(entry.getKey(), entry.getValue()), key -> new int[1])[0]--;
+            }
+        }
+
+        // The surplus placements of an equipment are paired with its missing placements as moves.
+        Map<Equipment, ArrayDeque<HitLocation>> surplus = new LinkedHashMap<>();
+        for (Map.Entry<Placement, int[]> entry : counts.entrySet()) {
+            for (int i = 0; i < entry.getValue()[0]; i++) {
+                surplus.computeIfAbsent(entry.getKey().equipment(), key -> new ArrayDeque<>())
+                    .add(entry.getKey().location());
+            }
+        }
+        List<Change> moves = new ArrayList<>();
+        List<Change> additions = new ArrayList<>();
+        double massDelta = 0.0;
+        for (Map.Entry<Placement, int[]> entry : counts.entrySet()) {
+            final Equipment equipment = entry.getKey().equipment();
+            for (int i = entry.getValue()[0]; i < 0; i++) {
+                ArrayDeque<HitLocation> sources = surplus.get(equipment);
+                if (sources == null || sources.isEmpty()) {
+                    additions.add(new Change(Kind.ADD, equipment, null, entry.getKey().location()));
+                    massDelta += equipment.mass;
+                } else {
+                    moves.add(new Change(Kind.MOVE, equipment, sources.poll(), entry.getKey().location()));
+                }
+            }
+        }
+        List<Change> result = new ArrayList<>();
+        for (Map.Entry<Equipment, ArrayDeque<HitLocation>> entry : surplus.entrySet()) {
+            for (HitLocation location : entry.getValue()) {
+                result.add(new Change(Kind.REMOVE, entry.getKey(), location, null));
+                massDelta -= entry.getKey().mass;
+            }
+        }
+        result.addAll(moves);
+        result.addAll(additions);
+        return new LoadoutDiff(result, massDelta);
+    }
+
+    /**
+     * Compute the difference of loadouts.
+     * @param from The source loadout.
+     * @param to The target loadout.
+     * @return The difference changing the source loadout into the target loadout.
+     * @throws IllegalArgumentException Either loadout was undefined.
+     */
+    public static LoadoutDiff of(LoadoutController.Loadout from, LoadoutController.Loadout to)
+        throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException("Missing loadout");
+        return of(from.toArray(), to.toArray());
+    }
+
+    /**
+     * Compute the difference of the loadouts of units.
+     * @param from The source unit.
+     * @param to The target unit.
+     * @return The difference changing the loadout of the source unit into the loadout of the
+     * target unit.
+     * @throws IllegalArgumentException Either unit was undefined.
+     */
+    public static LoadoutDiff of(Unit from, Unit to) throws IllegalArgumentException {
+        if (from == null || to == null) throw new IllegalArgumentException("Missing unit");
+        return of(from.loadout, to.loadout);
+    }
+
+    /**
+     * The changes.
+     * @return The removals, the moves, and the additions in this order.
+     */
+    public List<Change> getChanges() {
+        return this.changes;
+    }
+
+    /**
+     * Are the loadouts equal.
+     * @return True, if and only if the difference has no changes.
+     */
+    public boolean isEmpty() {
+        return this.changes.isEmpty();
+    }
+
+    /**
+     * The change of the tonnage.
+     * @return The mass of the added equipment minus the mass of the removed equipment.
+     */
+    public double getMassDelta() {
+        return this.massDelta;
+    }
+
+    /**
+     * Create the refit plan of the difference.
+     * @return The steps changing the source loadout into the target loadout.
+     */
+    public List<Step> toRefitPlan() {
+        List<Step> result = new ArrayList<>(this.changes.size() + 8);
+        for (Change change : this.changes) {
+            if (change.kind() == Kind.REMOVE) result.add(new Step(false, change.from(), change.equipment(), false));
+        }
+        for (Change change : this.changes) {
+            if (change.kind() == Kind.MOVE) result.add(new Step(false, change.from(), change.equipment(), true));
+        }
+        for (Change change : this.changes) {
+            if (change.kind() == Kind.MOVE) result.add(new Step(true, change.to(), change.equipment(), true));
+        }
+        for (Change change : this.changes) {
+            if (change.kind() == Kind.ADD) result.add(new Step(true, change.to(), change.equipment(), false));
+        }
+        return result;
+    }
+
+    /**
+     * Perform the refit plan on a loadout.
+     * @param loadout The source loadout.
+     * @return The number of performed steps.
+     * @throws IllegalArgumentException The loadout was undefined, a removed equipment was missing,
+     * or a strict loadout rejected an added equipment. The steps before the failing step remain
+     * performed.
+     */
+    public int applyTo(LoadoutController.Loadout loadout) throws IllegalArgumentException {
+        if (loadout == null) throw new IllegalArgumentException("Missing loadout");
+        int result = 0;
+        for (Step step : toRefitPlan()) {
+            if (step.add()) {
+                loadout.addEquipment(step.location(), step.equipment());
+            } else if (!loadout.removeEquipment(step.location(), step.equipment())) {
+                throw new IllegalArgumentException("Removed equipment missing from the loadout");
+            }
+            result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,521 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * An optimizer finding the best scoring loadout of a unit.
+ *
+ * The optimizer selects equipment from a set of candidates, and places every selected equipment
+ * into a single hit location. The selected equipment never exceeds the available tonnage of the
+ * loadout controller of the unit, or the critical slot capacity of any slotted hit location. The
+ * score of a loadout is the sum of the scores of its equipment.
+ *
+ * The search is a branch-and-bound search, whose upper branches are searched in parallel in a
+ * fork/join pool. A search can be cancelled, and it stops at the end of its time budget. A stopped
+ * search returns the best loadout found so far.
+ */
+public class LoadoutOptimizer {
+
+    /**
+     * The result of an optimization.
+     * @param controller The loadout controller of the unit.
+     * @param entries The selected equipment with their locations.
+     * @param score The total score of the selected equipment.
+     * @param tonnage The total mass of the selected equipment.
+     * @param complete Did the search cover the whole search space. An incomplete result was either
+     * cancelled or ran out of time, and may not be optimal.
+     */
+    public static record Result(LoadoutController controller, EquipmentLoadout[] entries, double score, double tonnage,
+            boolean complete) {
+
+        /**
+         * Create a strict loadout containing the selected equipment.
+         * @return The loadout of the result.
+         */
+        public LoadoutController.Loadout toLoadout() {
+            return this.controller.new Loadout(this.entries, true);
+        }
+    }
+
+    /**
+     * The tolerance of the tonnage comparisons.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * The number of search nodes between the checks of the deadline. The interval is a power of
+     * two.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * The fork/join pool of the searches.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new optimizer using the common fork/join pool.
+     */
+    public LoadoutOptimizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new optimizer.
+     * @param pool The fork/join pool of the searches.
+     * @throws IllegalArgumentException The pool was undefined.
+     */
+    public LoadoutOptimizer(ForkJoinPool pool) throws IllegalArgumentException {
+        if (pool == null) throw new IllegalArgumentException("Missing fork/join pool");
+        this.pool = pool;
+    }
+
+    /**
+     * Start a search for the best loadout of a unit.
+     *
+     * The locations of the unit are the locations of its loadout, armor, and structure. If the
+     * loadout controller deducts the mass of the current equipment, the current equipment also
+     * keeps its critical slots.
+     *
+     * @param unit The unit.
+     * @param stripArmor The armor stripping of the loadout controller of the unit.
+     * @param stripEquipment The equipment stripping of the loadout controller of the unit.
+     * @param candidates The candidate equipment. Each candidate is selected at most once, so
+     * equipment which may be selected several times has to be repeated.
+     * @param score The scoring function of the equipment.
+     * @param budget The time budget of the search, or undefined value for no time limit.
+     * @return The started search.
+     * @throws IllegalArgumentException Any parameter was invalid.
+     */
+    public Search start(Unit unit, boolean stripArmor, boolean stripEquipment, Collection<Equipment> candidates,
+            ToDoubleFunction<Equipment> score, Duration budget) throws IllegalArgumentException {
+        if (unit == null) throw new IllegalArgumentException("Missing unit");
+        Set<HitLocation> locations = new LinkedHashSet<>();
+        for (EquipmentLoadout entry : unit.loadout) {
+            if (entry != null && entry.getKey() != null) locations.add(entry.getKey());
+        }
+        for (ArmorLoadout entry : unit.armor) {
+            if (entry != null && entry.location != null) locations.add(entry.location);
+        }
+        for (StructureLoadout entry : unit.structure) {
+            if (entry != null && entry.location != null) locations.add(entry.location);
+        }
+        return start(unit.getLoadoutController(stripArmor, stripEquipment), locations.toArray(new HitLocation[0]),
+                stripEquipment ? unit.loadout : new EquipmentLoadout[0], candidates, score, budget);
+    }
+
+    /**
+     * Start a search for the best loadout.
+     * @param controller The loadout controller whose available tonnage limits the loadout.
+     * @param locations The locations available for the equipment.
+     * @param occupied The equipment occupying critical slots of the locations.
+     * @param candidates The candidate equipment. Each candidate is selected at most once.
+     * @param score The scoring function of the equipment.
+     * @param budget The time budget of the search, or undefined value for no time limit.
+     * @return The started search.
+     * @throws IllegalArgumentException Any parameter was invalid.
+     */
+    public Search start(LoadoutController controller, HitLocation[] locations, LoadoutController.Entry<HitLocation, Equipment>[] occupied,
+            Collection<Equipment> candidates, ToDoubleFunction<Equipment> score, Duration budget) throws IllegalArgumentException {
+        if (controller == null) throw new IllegalArgumentException("Missing loadout controller");
+        if (locations == null) throw new IllegalArgumentException("Missing locations");
+        if (candidates == null) throw new IllegalArgumentException("Missing candidates");
+        if (score == null) throw new IllegalArgumentException("Missing scoring function");
+        if (budget != null && budget.isNegative()) throw new IllegalArgumentException("Negative time budget");
+        Search result = new Search(controller, locations, occupied, candidates, score,
+                budget == null ? null : System.nanoTime() + budget.toNanos(), this.pool.getParallelism());
+        this.pool.execute(result.task);
+        return result;
+    }
+
+    /**
+     * Find the best loadout of a unit waiting for the search to finish.
+     * @param unit The unit.
+     * @param stripArmor The armor stripping of the loadout controller of the unit.
+     * @param stripEquipment The equipment stripping of the loadout controller of the unit.
+     * @param candidates The candidate equipment.
+     * @param score The scoring function of the equipment.
+     * @param budget The time budget of the search, or undefined value for no time limit.
+     * @return The best loadout found within the time budget.
+     * @throws IllegalArgumentException Any parameter was invalid.
+     * @see #start(Unit, boolean, boolean, Collection, ToDoubleFunction, Duration)
+     */
+    public Result optimize(Unit unit, boolean stripArmor, boolean stripEquipment, Collection<Equipment> candidates,
+            ToDoubleFunction<Equipment> score, Duration budget) throws IllegalArgumentException {
+        return start(unit, stripArmor, stripEquipment, candidates, score, budget).join();
+    }
+
+    /**
+     * A running search.
+     */
+    public static final class Search {
+
+        private final LoadoutController controller;
+
+        /**
+         * The locations of the search.
+         */
+        private final HitLocation[] locations;
+
+        /**
+         * The candidate items in descending score density order.
+         */
+        private final Equipment[] items;
+
+        /**
+         * The scores of the items.
+         */
+        private final double[] scores;
+
+        /**
+         * The initial free critical slots of the locations.
+         */
+        private final int[] freeSlots;
+
+        /**
+         * The item indexes in descending score per critical slot order.
+         */
+        private final int[] slotOrder;
+
+        /**
+         * Is the following item equal to the item. Equal items are selected in order to avoid
+         * searching symmetric loadouts.
+         */
+        private final boolean[] sameAsNext;
+
+        /**
+         * The depth up to which the branches are forked.
+         */
+        private final int forkDepth;
+
+        /**
+         * The deadline of the search in nano time, or undefined value if the search has no deadline.
+         */
+        private final Long deadline;
+
+        /**
+         * The number of search nodes visited by all branches.
+         */
+        private final AtomicLong nodes = new AtomicLong();
+
+        /**
+         * Has the search been stopped.
+         */
+        private volatile boolean stopped = false;
+
+        /**
+         * The best score found so far.
+         */
+        private volatile double bestScore = 0.0;
+
+        /**
+         * The locations of the items of the best loadout. The unselected items have location -1.
+         */
+        private int[] bestAssignment;
+
+        /**
+         * The root task of the search.
+         */
+        private final ForkJoinTask<Void> task;
+
+        private Search(LoadoutController controller, HitLocation[] locations, LoadoutController.Entry<HitLocation, Equipment>[] occupied,
+                Collection<Equipment> candidates, ToDoubleFunction<Equipment> score, Long deadline, int parallelism)
+                throws IllegalArgumentException {
+            this.controller = controller;
+            this.locations = locations.clone();
+            this.deadline = deadline;
+            this.freeSlots = new int[this.locations.length];
+            for (int i = 0; i < this.locations.length; i++) {
+                this.freeSlots[i] = PackedLoadout.capacityOf(this.locations[i]);
+            }
+            if (occupied != null) {
+                for (LoadoutController.Entry<HitLocation, Equipment> entry : occupied) {
+                    if (entry == null || entry.getValue() == null) continue;
+                    for (int i = 0; i < this.locations.length; i++) {
+                        if (this.locations[i].equals(entry.getKey())) {
+                            this.freeSlots[i] = Math.max(0, this.freeSlots[i] - entry.getValue().size);
+                            break;
+                        }
+                    }
+                }
+            }
+            final int largestFree = Arrays.stream(this.freeSlots).max().orElse(0);
+            final double available = controller.getAvailableTonnage();
+            List<Equipment> accepted = new ArrayList<>(candidates.size());
+            List<Double> acceptedScores = new ArrayList<>(candidates.size());
+            for (Equipment item : candidates) {
+                if (item == null) throw new IllegalArgumentException("Undefined candidate not accepted");
+                double value = score.applyAsDouble(item);
+                if (value > 0 && item.mass <= available + EPSILON && item.size <= largestFree) {
+                    accepted.add(item);
+                    acceptedScores.add(value);
+                }
+            }
+            // Equal items are kept next to each other by ordering the items with equal density by the
+            // first occurrence of an equal item.
+            java.util.Map<Equipment, Integer> groups = new java.util.HashMap<>();
+            int[] group = new int[accepted.size()];
+            for (int i = 0; i < group.length; i++) {
+                group[i] = groups.computeIfAbsent(accepted.get(i), (Equipment key) -> groups.size());
+            }
+            Integer[] order = new Integer[accepted.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> {
+                int result = Double.compare(density(acceptedScores.get(b), accepted.get(b).mass),
+                        density(acceptedScores.get(a), accepted.get(a).mass));
+                if (result == 0) result = Integer.compare(group[a], group[b]);
+                return result != 0 ? result : Double.compare(acceptedScores.get(b), acceptedScores.get(a));
+            });
+            this.items = new Equipment[order.length];
+            this.scores = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                this.items[i] = accepted.get(order[i]);
+                this.scores[i] = acceptedScores.get(order[i]);
+            }
+            Integer[] bySlots = new Integer[this.items.length];
+            for (int i = 0; i < bySlots.length; i++) bySlots[i] = i;
+            Arrays.sort(bySlots, (a, b) -> Double.compare(density(this.scores[b], this.items[b].size),
+                    density(this.scores[a], this.items[a].size)));
+            this.slotOrder = Arrays.stream(bySlots).mapToInt(Integer::intValue).toArray();
+            this.sameAsNext = new boolean[this.items.length];
+            for (int i = 0; i + 1 < this.items.length; i++) {
+                this.sameAsNext[i] = this.items[i].equals(this.items[i + 1]) && this.scores[i] == this.scores[i + 1];
+            }
+            this.bestAssignment = new int[this.items.length];
+            Arrays.fill(this.bestAssignment, -1);
+            this.forkDepth = Math.min(this.items.length, 32 - Integer.numberOfLeadingZeros(Math.max(1, parallelism)) + 3);
+            int[] assignment = new int[this.items.length];
+            Arrays.fill(assignment, -1);
+            this.task = new Branch(0, available, this.freeSlots.clone(), 0.0, assignment);
+        }
+
+        /**
+         * The score density of an item.
+         */
+        private static double density(double score, double mass) {
+            return mass <= 0 ? Double.POSITIVE_INFINITY : score / mass;
+        }
+
+        /**
+         * Cancel the search. The cancelled search returns the best loadout found so far.
+         */
+        public void cancel() {
+            this.stopped = true;
+        }
+
+        /**
+         * Has the search finished.
+         * @return True, if and only if the search has finished.
+         */
+        public boolean isDone() {
+            return this.task.isDone();
+        }
+
+        /**
+         * The best score found so far.
+         * @return The score of the best loadout found so far.
+         */
+        public double getBestScore() {
+            return this.bestScore;
+        }
+
+        /**
+         * Wait for the search to finish.
+         * @return The best loadout found.
+         */
+        public Result join() {
+            this.task.join();
+            return result();
+        }
+
+        /**
+         * Create the result of the search.
+         */
+        private synchronized Result result() {
+            List<EquipmentLoadout> entries = new ArrayList<>();
+            double tonnage = 0.0;
+            for (int i = 0; i < this.items.length; i++) {
+                if (this.bestAssignment[i] >= 0) {
+                    entries.add(new EquipmentLoadout(this.locations[this.bestAssignment[i]], this.items[i]));
+                    tonnage += this.items[i].mass;
+                }
+            }
+            return new Result(this.controller, entries.toArray(new EquipmentLoadout[0]), this.bestScore, tonnage, !this.stopped);
+        }
+
+        /**
+         * Offer a loadout as the best loadout.
+         */
+        private synchronized void offer(double score, int[] assignment) {
+            if (score > this.bestScore) {
+                this.bestScore = score;
+                this.bestAssignment = assignment.clone();
+            }
+        }
+
+        /**
+         * Compute the upper bound of the score reachable by selecting items from an index on.
+         * The bound is the smaller of the fractional knapsack bounds of the tonnage and the
+         * critical slots.
+         */
+        private double bound(int index, double tonnage, int[] free) {
+            double byTonnage = 0.0;
+            double remaining = tonnage;
+            for (int i = index; i < this.items.length; i++) {
+                Equipment item = this.items[i];
+                if (item.mass <= remaining + EPSILON) {
+                    byTonnage += this.scores[i];
+                    remaining -= item.mass;
+                } else {
+                    byTonnage += this.scores[i] * Math.max(0.0, remaining) / item.mass;
+                    break;
+                }
+            }
+            long slots = 0;
+            for (int value : free) slots = Math.min(Integer.MAX_VALUE, slots + value);
+            double bySlots = 0.0;
+            for (int i : this.slotOrder) {
+                if (i < index) continue;
+                Equipment item = this.items[i];
+                if (item.size <= slots) {
+                    bySlots += this.scores[i];
+                    slots -= item.size;
+                } else {
+                    bySlots += this.scores[i] * slots / item.size;
+                    break;
+                }
+            }
+            return Math.min(byTonnage, bySlots);
+        }
+
+        /**
+         * A branch of the search.
+         */
+        private final class Branch extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int index;
+
+            private final double tonnage;
+
+            private final int[] free;
+
+            private final double score;
+
+            private final int[] assignment;
+
+            private Branch(int index, double tonnage, int[] free, double score, int[] assignment) {
+                this.index = index;
+                this.tonnage = tonnage;
+                this.free = free;
+                this.score = score;
+                this.assignment = assignment;
+            }
+
+            @Override
+            protected void compute() {
+                if (this.index < forkDepth) {
+                    forkBranches(this.index, this.tonnage, this.free, this.score, this.assignment);
+                } else {
+                    search(this.index, this.tonnage, this.free, this.score, this.assignment);
+                }
+            }
+
+            /**
+             * Fork the branches of an item.
+             */
+            private void forkBranches(int index, double tonnage, int[] free, double score, int[] assignment) {
+                if (index >= items.length) {
+                    offer(score, assignment);
+                    return;
+                }
+                if (shouldStop() || score + bound(index, tonnage, free) <= bestScore) {
+                    return;
+                }
+                List<Branch> branches = new ArrayList<>();
+                Equipment item = items[index];
+                boolean mayTake = index == 0 || !sameAsNext[index - 1] || assignment[index - 1] >= 0;
+                if (mayTake && item.mass <= tonnage + EPSILON) {
+                    for (int location = 0; location < free.length; location++) {
+                        if (free[location] >= item.size && isFirstWithFreeSlots(free, location)) {
+                            int[] nextFree = free.clone();
+                            nextFree[location] -= item.size;
+                            int[] nextAssignment = assignment.clone();
+                            nextAssignment[index] = location;
+                            branches.add(new Branch(index + 1, tonnage - item.mass, nextFree, score + scores[index], nextAssignment));
+                        }
+                    }
+                }
+                branches.add(new Branch(index + 1, tonnage, free, score, assignment.clone()));
+                invokeAll(branches);
+            }
+
+            /**
+             * Search the branches of an item sequentially.
+             */
+            private void search(int index, double tonnage, int[] free, double score, int[] assignment) {
+                if (index >= items.length) {
+                    if (score > bestScore) offer(score, assignment);
+                    return;
+                }
+                if (shouldStop() || score + bound(index, tonnage, free) <= bestScore) {
+                    return;
+                }
+                Equipment item = items[index];
+                boolean mayTake = index == 0 || !sameAsNext[index - 1] || assignment[index - 1] >= 0;
+                if (mayTake && item.mass <= tonnage + EPSILON) {
+                    for (int location = 0; location < free.length; location++) {
+                        if (free[location] >= item.size && isFirstWithFreeSlots(free, location)) {
+                            free[location] -= item.size;
+                            assignment[index] = location;
+                            search(index + 1, tonnage - item.mass, free, score + scores[index], assignment);
+                            assignment[index] = -1;
+                            free[location] += item.size;
+                        }
+                    }
+                }
+                search(index + 1, tonnage, free, score, assignment);
+            }
+
+            /**
+             * Is a location the first location with its number of free slots. Placing an item
+             * into locations with equal free slots leads to loadouts with equal scores, so only
+             * the first of them is searched.
+             */
+            private boolean isFirstWithFreeSlots(int[] free, int location) {
+                for (int i = 0; i < location; i++) {
+                    if (free[i] == free[location]) return false;
+                }
+                return true;
+            }
+
+            /**
+             * Should the search stop. The deadline is checked every {@link LoadoutOptimizer#CHECK_INTERVAL} nodes
+             * of the whole search, so branches too small to reach the interval on their own do
+             * not postpone the check.
+             */
+            private boolean shouldStop() {
+                if (stopped) return true;
+                if ((nodes.incrementAndGet() & (CHECK_INTERVAL - 1)) == 0
+                    && deadline != null && System.nanoTime() - deadline > 0) {
+                    stopped = true;
+                }
+                return stopped;
+            }
+        }
+    }
+}
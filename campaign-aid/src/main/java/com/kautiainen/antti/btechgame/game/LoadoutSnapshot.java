@@ -0,0 +1,418 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * An immutable loadout state.
+ *
+ * The snapshot is a persistent multiset of located equipment stored in a balanced search tree keyed
+ * by location ordinal and equipment id. An update copies only the path from the root to the
+ * updated node, and shares the rest of the tree with the previous snapshot, so taking a snapshot is
+ * constant time and an update is logarithmic in the number of distinct located items.
+ */
+public final class LoadoutSnapshot {
+
+    /**
+     * A node of the persistent tree.
+     */
+    private static final class Node {
+
+        /**
+         * The key combining the location ordinal in the high and the equipment id in the low bits.
+         */
+        final long key;
+
+        /**
+         * The number of equipment with the key.
+         */
+        final int count;
+
+        final Node left;
+
+        final Node right;
+
+        /**
+         * The height of the subtree.
+         */
+        final int height;
+
+        Node(long key, int count, Node left, Node right) {
+            this.key = key;
+            this.count = count;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+
+    /**
+     * The undo and redo history of the snapshots of an edit session.
+     *
+     * The history is not thread safe, but its snapshots may be shared freely.
+     */
+    public static final class History {
+
+        /**
+         * The undone states.
+         */
+        private final Deque<LoadoutSnapshot> undone = new ArrayDeque<>();
+
+        /**
+         * The earlier states.
+         */
+        private final Deque<LoadoutSnapshot> earlier = new ArrayDeque<>();
+
+        /**
+         * The current state.
+         */
+        private LoadoutSnapshot current;
+
+        /**
+         * Create a new history.
+         * @param initial The initial state.
+         * @throws IllegalArgumentException The initial state was undefined.
+         */
+        public History(LoadoutSnapshot initial) throws IllegalArgumentException {
+            if (initial == null) throw new IllegalArgumentException("Missing initial state");
+            this.current = initial;
+        }
+
+        /**
+         * The current state.
+         * @return The current snapshot.
+         */
+        public LoadoutSnapshot current() {
+            return this.current;
+        }
+
+        /**
+         * Make a state the current state. The undone states are forgotten.
+         * @param state The new current state.
+         * @return The new current state.
+         * @throws IllegalArgumentException The state was undefined.
+         */
+        public LoadoutSnapshot commit(LoadoutSnapshot state) throws IllegalArgumentException {
+            if (state == null) throw new IllegalArgumentException("Missing state");
+            if (state != this.current) {
+                this.earlier.push(this.current);
+                this.undone.clear();
+                this.current = state;
+            }
+            return this.current;
+        }
+
+        /**
+         * Return to the previous state.
+         * @return The current state after the undo.
+         */
+        public LoadoutSnapshot undo() {
+            if (!this.earlier.isEmpty()) {
+                this.undone.push(this.current);
+                this.current = this.earlier.pop();
+            }
+            return this.current;
+        }
+
+        /**
+         * Return to the last undone state.
+         * @return The current state after the redo.
+         */
+        public LoadoutSnapshot redo() {
+            if (!this.undone.isEmpty()) {
+                this.earlier.push(this.current);
+                this.current = this.undone.pop();
+            }
+            return this.current;
+        }
+
+        /**
+         * Can the history undo.
+         * @return True, if and only if there is a previous state.
+         */
+        public boolean canUndo() {
+            return !this.earlier.isEmpty();
+        }
+
+        /**
+         * Can the history redo.
+         * @return True, if and only if there is an undone state.
+         */
+        public boolean canRedo() {
+            return !this.undone.isEmpty();
+        }
+    }
+
+    /**
+     * The location index of the snapshot.
+     */
+    private final DenseIndex<HitLocation> locations;
+
+    /**
+     * The equipment index of the snapshot.
+     */
+    private final DenseIndex<Equipment> equipment;
+
+    /**
+     * The root of the tree.
+     */
+    private final Node root;
+
+    /**
+     * The number of equipment.
+     */
+    private final int size;
+
+    /**
+     * The total mass of the equipment.
+     */
+    private final double tonnage;
+
+    private LoadoutSnapshot(DenseIndex<HitLocation> locations, DenseIndex<Equipment> equipment, Node root, int size, double tonnage) {
+        this.locations = locations;
+        this.equipment = equipment;
+        this.root = root;
+        this.size = size;
+        this.tonnage = tonnage;
+    }
+
+    /**
+     * Create an empty snapshot.
+     * @param locations The location index of the snapshot.
+     * @param equipment The equipment index of the snapshot.
+     * @return The empty snapshot.
+     * @throws IllegalArgumentException Either index was undefined.
+     */
+    public static LoadoutSnapshot empty(DenseIndex<HitLocation> locations, DenseIndex<Equipment> equipment) throws IllegalArgumentException {
+        if (locations == null) throw new IllegalArgumentException("Missing location index");
+        if (equipment == null) throw new IllegalArgumentException("Missing equipment index");
+        return new LoadoutSnapshot(locations, equipment, null, 0, 0.0);
+    }
+
+    /**
+     * Create an empty snapshot using the locations of the default hit location registry and a new
+     * equipment index. The locations missing from the registry get their ordinals from a location
+     * index extending the registry, so the snapshots never add locations to the registry. The
+     * snapshots derived from the snapshot share its indexes.
+     * @return The empty snapshot.
+     */
+    public static LoadoutSnapshot empty() {
+        return empty(new DenseIndex<>(HitLocationRegistry.getDefault().getIndex()), new DenseIndex<>());
+    }
+
+    /**
+     * Create an empty snapshot using the hit locations of game rules and a new equipment index.
+     * The locations of the rules have the ordinals of the rules, and the other locations get their
+     * ordinals from a location index extending the index of the rules.
+     * @param rules The game rules of the snapshot.
+     * @return The empty snapshot.
+     * @throws IllegalArgumentException The rules were undefined.
+     */
+    public static LoadoutSnapshot empty(GameRules rules) throws IllegalArgumentException {
+        if (rules == null) throw new IllegalArgumentException("Missing game rules");
+        return empty(rules.getLocationIndex(), new DenseIndex<>());
+    }
+
+    /**
+     * Create a snapshot of equipment loadouts.
+     * @param entries The equipment with their locations.
+     * @return The snapshot containing the given equipment.
+     * @throws IllegalArgumentException Any entry was invalid.
+     */
+    public static LoadoutSnapshot of(LoadoutController.Entry<HitLocation, Equipment>[] entries) throws IllegalArgumentException {
+        LoadoutSnapshot result = empty();
+        for (LoadoutController.Entry<HitLocation, Equipment> entry : entries) {
+            if (entry == null) throw new IllegalArgumentException("Undefined entry not accepted");
+            result = result.add(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Create a snapshot of a loadout.
+     * @param loadout The loadout.
+     * @return The snapshot containing the current equipment of the loadout.
+     * @throws IllegalArgumentException The loadout was undefined.
+     */
+    public static LoadoutSnapshot of(LoadoutController.Loadout loadout) throws IllegalArgumentException {
+        if (loadout == null) throw new IllegalArgumentException("Missing loadout");
+        return of(loadout.toArray());
+    }
+
+    /**
+     * Combine a location ordinal and an equipment id into a key.
+     */
+    private static long key(int location, int item) {
+        return ((long) location << 32) | (item & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The number of equipment.
+     * @return The number of equipment in the snapshot.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * The total mass of the equipment.
+     * @return The sum of the masses of the equipment.
+     */
+    public double getTonnage() {
+        return this.tonnage;
+    }
+
+    /**
+     * Count the equipment in a location.
+     * @param location The location.
+     * @param item The equipment.
+     * @return The number of the given equipment in the given location.
+     */
+    public int count(HitLocation location, Equipment item) {
+        int ordinal = this.locations.indexOf(location);
+        int id = this.equipment.indexOf(item);
+        if (ordinal < 0 || id < 0) return 0;
+        final long key = key(ordinal, id);
+        Node node = this.root;
+        while (node != null) {
+            if (key < node.key) node = node.left;
+            else if (key > node.key) node = node.right;
+            else return node.count;
+        }
+        return 0;
+    }
+
+    /**
+     * Create a snapshot with an added equipment.
+     * @param location The location of the equipment.
+     * @param item The added equipment.
+     * @return The snapshot containing the equipment of this snapshot and the added equipment.
+     * @throws IllegalArgumentException The location or the equipment was undefined.
+     */
+    public LoadoutSnapshot add(HitLocation location, Equipment item) throws IllegalArgumentException {
+        if (location == null) throw new IllegalArgumentException("Undefined location not accepted");
+        if (item == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+        Node updated = insert(this.root, key(this.locations.intern(location), this.equipment.intern(item)));
+        return new LoadoutSnapshot(this.locations, this.equipment, updated, this.size + 1, this.tonnage + item.mass);
+    }
+
+    /**
+     * Create a snapshot with a removed equipment.
+     * @param location The location of the equipment.
+     * @param item The removed equipment.
+     * @return The snapshot without one of the given equipment in the given location, or this
+     * snapshot, if it does not contain the equipment.
+     */
+    public LoadoutSnapshot remove(HitLocation location, Equipment item) {
+        if (count(location, item) == 0) return this;
+        Node updated = delete(this.root, key(this.locations.indexOf(location), this.equipment.indexOf(item)));
+        return new LoadoutSnapshot(this.locations, this.equipment, updated, this.size - 1, this.tonnage - item.mass);
+    }
+
+    /**
+     * Convert the snapshot into equipment loadouts ordered by location ordinal.
+     * @return The equipment loadouts of the snapshot.
+     */
+    public EquipmentLoadout[] toArray() {
+        EquipmentLoadout[] result = new EquipmentLoadout[this.size];
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = this.root;
+        int index = 0;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            HitLocation location = this.locations.get((int) (node.key >>> 32));
+            Equipment item = this.equipment.get((int) node.key);
+            for (int i = 0; i < node.count; i++) {
+                result[index++] = new EquipmentLoadout(location, item);
+            }
+            node = node.right;
+        }
+        return result;
+    }
+
+    /**
+     * Create a loadout of a controller containing the equipment of the snapshot.
+     * @param controller The loadout controller.
+     * @param strict Is the loadout strict.
+     * @return The loadout containing the equipment of the snapshot.
+     * @throws IllegalArgumentException The controller was undefined, or a strict loadout could not
+     * contain the equipment.
+     */
+    public LoadoutController.Loadout toLoadout(LoadoutController controller, boolean strict) throws IllegalArgumentException {
+        if (controller == null) throw new IllegalArgumentException("Missing loadout controller");
+        return controller.new Loadout(toArray(), strict);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Insert a key into a subtree.
+     * @return The new root of the subtree.
+     */
+    private static Node insert(Node node, long key) {
+        if (node == null) return new Node(key, 1, null, null);
+        if (key < node.key) return balance(node.key, node.count, insert(node.left, key), node.right);
+        if (key > node.key) return balance(node.key, node.count, node.left, insert(node.right, key));
+        return new Node(node.key, node.count + 1, node.left, node.right);
+    }
+
+    /**
+     * Remove one occurrence of an existing key from a subtree.
+     * @return The new root of the subtree.
+     */
+    private static Node delete(Node node, long key) {
+        if (key < node.key) return balance(node.key, node.count, delete(node.left, key), node.right);
+        if (key > node.key) return balance(node.key, node.count, node.left, delete(node.right, key));
+        if (node.count > 1) return new Node(node.key, node.count - 1, node.left, node.right);
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        return balance(successor.key, successor.count, node.left, deleteMin(node.right));
+    }
+
+    /**
+     * Remove the smallest node of a subtree.
+     * @return The new root of the subtree.
+     */
+    private static Node deleteMin(Node node) {
+        if (node.left == null) return node.right;
+        return balance(node.key, node.count, deleteMin(node.left), node.right);
+    }
+
+    /**
+     * Create an AVL balanced node.
+     */
+    private static Node balance(long key, int count, Node left, Node right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left.key, left.count, left.left, left.right);
+            }
+            return rotateRight(key, count, left, right);
+        }
+        if (difference < -1) {
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right.key, right.count, right.left, right.right);
+            }
+            return rotateLeft(key, count, left, right);
+        }
+        return new Node(key, count, left, right);
+    }
+
+    private static Node rotateRight(long key, int count, Node left, Node right) {
+        return new Node(left.key, left.count, left.left, new Node(key, count, left.right, right));
+    }
+
+    private static Node rotateLeft(long key, int count, Node left, Node right) {
+        return new Node(right.key, right.count, new Node(key, count, left, right.left), right.right);
+    }
+}
@@ -0,0 +1,439 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * A campaign read from a memory mapped campaign file.
+ *
+ * Opening the campaign validates the header and the section bounds only. The strings, the
+ * locations, the equipment, and the units are decoded when they are first accessed, and the
+ * decoded values are cached, so the equipment and the locations are shared by all units. The
+ * locations known by the hit location registry of the campaign are replaced with their canonical
+ * instances.
+ *
+ * The records are validated when they are decoded, and the accessors decoding a corrupted record
+ * throw an {@link IOException}.
+ *
+ * The campaign is thread safe. The file must not be modified while the campaign is in use.
+ */
+public final class MappedCampaign {
+
+    /**
+     * The mapped file content. Only the absolute get operations of the buffer are used, so the
+     * buffer is shared by all threads.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The registry of the canonical hit locations.
+     */
+    private final HitLocationRegistry registry;
+
+    /**
+     * The offsets of the sections.
+     */
+    private final int[] sections;
+
+    private final int unitCount;
+
+    private final AtomicReferenceArray<String> strings;
+
+    private final AtomicReferenceArray<HitLocation> locations;
+
+    private final AtomicReferenceArray<Equipment> equipment;
+
+    private final AtomicReferenceArray<Unit> units;
+
+    private MappedCampaign(ByteBuffer buffer, HitLocationRegistry registry) throws IOException {
+        this.buffer = buffer;
+        this.registry = registry;
+        if (buffer.limit() < CampaignFile.HEADER_SIZE || buffer.getInt(0) != CampaignFile.MAGIC) {
+            throw new IOException("Not a campaign file");
+        }
+        if (buffer.getShort(4) != CampaignFile.VERSION) {
+            throw new IOException("Unsupported campaign file version " + buffer.getShort(4));
+        }
+        this.unitCount = buffer.getInt(CampaignFile.HEADER_UNITS);
+        final int stringCount = buffer.getInt(CampaignFile.HEADER_STRINGS);
+        final int locationCount = buffer.getInt(CampaignFile.HEADER_LOCATIONS);
+        final int equipmentCount = buffer.getInt(CampaignFile.HEADER_EQUIPMENT);
+        if (this.unitCount < 0 || stringCount < 0 || locationCount < 0 || equipmentCount < 0) {
+            throw new IOException("Corrupted campaign file header");
+        }
+        this.sections = new int[CampaignFile.SECTION_COUNT + 1];
+        for (int i = 0; i < CampaignFile.SECTION_COUNT; i++) {
+            long offset = buffer.getLong(CampaignFile.HEADER_SECTIONS + 8 * i);
+            if (offset < (i == 0 ? CampaignFile.HEADER_SIZE : this.sections[i - 1]) || offset > buffer.limit()) {
+                throw new IOException("Corrupted campaign file section offset");
+            }
+            this.sections[i] = (int) offset;
+        }
+        this.sections[CampaignFile.SECTION_COUNT] = buffer.limit();
+        checkSize(CampaignFile.STRING_SECTION, 4L * (stringCount + 1));
+        checkSize(CampaignFile.LOCATION_SECTION, (long) CampaignFile.LOCATION_SIZE * locationCount);
+        checkSize(CampaignFile.CATALOG_SECTION, 4L * (equipmentCount + 1));
+        checkSize(CampaignFile.UNIT_SECTION, (long) CampaignFile.UNIT_SIZE * this.unitCount);
+        this.strings = new AtomicReferenceArray<>(stringCount);
+        this.locations = new AtomicReferenceArray<>(locationCount);
+        this.equipment = new AtomicReferenceArray<>(equipmentCount);
+        this.units = new AtomicReferenceArray<>(this.unitCount);
+    }
+
+    /**
+     * Check a section has at least the given size.
+     */
+    private void checkSize(int section, long size) throws IOException {
+        if (this.sections[section + 1] - this.sections[section] < size) {
+            throw new IOException("Truncated campaign file section");
+        }
+    }
+
+    /**
+     * Open a campaign file.
+     * @param file The campaign file.
+     * @return The campaign of the file.
+     * @throws IllegalArgumentException The file was undefined.
+     * @throws IOException The file could not be mapped, or it was not a valid campaign file.
+     */
+    public static MappedCampaign open(Path file) throws IllegalArgumentException, IOException {
+        return open(file, HitLocationRegistry.getDefault());
+    }
+
+    /**
+     * Open a campaign file using the hit locations of a rule set.
+     * @param file The campaign file.
+     * @param registry The registry of the canonical hit locations of the rules.
+     * @return The campaign of the file.
+     * @throws IllegalArgumentException The file or the registry was undefined.
+     * @throws IOException The file could not be mapped, or it was not a valid campaign file.
+     */
+    public static MappedCampaign open(Path file, HitLocationRegistry registry) throws IllegalArgumentException, IOException {
+        if (file == null) throw new IllegalArgumentException("Missing file");
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Campaign file too large to map");
+            // The mapping stays valid after the channel is closed.
+            return new MappedCampaign(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), registry);
+        }
+    }
+
+    /**
+     * Create a campaign of an encoded campaign file content.
+     * @param content The content of a campaign file.
+     * @return The campaign of the content.
+     * @throws IllegalArgumentException The content was undefined.
+     * @throws IOException The content was not a valid campaign file.
+     */
+    public static MappedCampaign of(ByteBuffer content) throws IllegalArgumentException, IOException {
+        return of(content, HitLocationRegistry.getDefault());
+    }
+
+    /**
+     * Create a campaign of an encoded campaign file content using the hit locations of a rule set.
+     * @param content The content of a campaign file.
+     * @param registry The registry of the canonical hit locations of the rules.
+     * @return The campaign of the content.
+     * @throws IllegalArgumentException The content or the registry was undefined.
+     * @throws IOException The content was not a valid campaign file.
+     */
+    public static MappedCampaign of(ByteBuffer content, HitLocationRegistry registry) throws IllegalArgumentException, IOException {
+        if (content == null) throw new IllegalArgumentException("Missing content");
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        return new MappedCampaign(content.slice(), registry);
+    }
+
+    /**
+     * The name of the campaign.
+     * @return The name of the campaign.
+     * @throws IOException The name was corrupted.
+     */
+    public String getName() throws IOException {
+        return string(this.buffer.getInt(CampaignFile.HEADER_NAME));
+    }
+
+    /**
+     * The number of units.
+     * @return The number of units in the campaign.
+     */
+    public int size() {
+        return this.unitCount;
+    }
+
+    /**
+     * Get the offset of an unit record.
+     */
+    private int unitOffset(int index) {
+        if (index < 0 || index >= this.unitCount) throw new IndexOutOfBoundsException(index);
+        return this.sections[CampaignFile.UNIT_SECTION] + index * CampaignFile.UNIT_SIZE;
+    }
+
+    /**
+     * Get the name of an unit without decoding the unit.
+     * @param index The index of the unit.
+     * @return The name of the unit.
+     * @throws IndexOutOfBoundsException The index was invalid.
+     * @throws IOException The name was corrupted.
+     */
+    public String getUnitName(int index) throws IndexOutOfBoundsException, IOException {
+        return string(this.buffer.getInt(unitOffset(index)));
+    }
+
+    /**
+     * Get the model of an unit without decoding the unit.
+     * @param index The index of the unit.
+     * @return The model of the unit.
+     * @throws IndexOutOfBoundsException The index was invalid.
+     * @throws IOException The model was corrupted.
+     */
+    public String getUnitModel(int index) throws IndexOutOfBoundsException, IOException {
+        return string(this.buffer.getInt(unitOffset(index) + 4));
+    }
+
+    /**
+     * Get the type of an unit without decoding the unit.
+     * @param index The index of the unit.
+     * @return The type of the unit.
+     * @throws IndexOutOfBoundsException The index was invalid.
+     * @throws IOException The type was corrupted.
+     */
+    public GameRules.UnitType getUnitType(int index) throws IndexOutOfBoundsException, IOException {
+        return unitType(this.buffer.get(unitOffset(index) + 8));
+    }
+
+    /**
+     * Get the tonnage of an unit without decoding the unit.
+     * @param index The index of the unit.
+     * @return The tonnage of the unit.
+     * @throws IndexOutOfBoundsException The index was invalid.
+     */
+    public double getUnitTonnage(int index) throws IndexOutOfBoundsException {
+        return this.buffer.getDouble(unitOffset(index) + 9);
+    }
+
+    /**
+     * Get an unit. The unit is decoded on the first access.
+     * @param index The index of the unit.
+     * @return The unit with the given index.
+     * @throws IndexOutOfBoundsException The index was invalid.
+     * @throws IOException The unit record was corrupted.
+     */
+    public Unit getUnit(int index) throws IndexOutOfBoundsException, IOException {
+        Unit result = this.units.get(index);
+        if (result == null) {
+            result = decodeUnit(unitOffset(index));
+            if (!this.units.compareAndSet(index, null, result)) {
+                result = this.units.get(index);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode all units into a campaign.
+     * @return The campaign with all units of the file.
+     * @throws IOException Any unit record was corrupted.
+     */
+    public Campaign toCampaign() throws IOException {
+        Unit[] result = new Unit[this.unitCount];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getUnit(i);
+        }
+        return new Campaign(getName(), result);
+    }
+
+    /**
+     * The number of equipment in the catalog section.
+     * @return The number of equipment in the catalog section.
+     */
+    public int getEquipmentCount() {
+        return this.equipment.length();
+    }
+
+    /**
+     * Get an equipment of the catalog section.
+     * @param id The equipment id.
+     * @return The equipment with the given id.
+     * @throws IndexOutOfBoundsException The id was invalid.
+     * @throws IOException The equipment record was corrupted.
+     */
+    public Equipment getEquipment(int id) throws IndexOutOfBoundsException, IOException {
+        Equipment result = this.equipment.get(id);
+        if (result == null) {
+            result = decodeEquipment(id);
+            if (!this.equipment.compareAndSet(id, null, result)) {
+                result = this.equipment.get(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode the catalog section.
+     * @return The catalog with the equipment of the catalog section in the order of their ids.
+     * @throws IOException Any equipment record was corrupted.
+     */
+    public EquipmentCatalog getCatalog() throws IOException {
+        EquipmentCatalog.Builder result = EquipmentCatalog.builder();
+        for (int id = 0; id < getEquipmentCount(); id++) {
+            result.add(getEquipment(id));
+        }
+        return result.build();
+    }
+
+    /**
+     * Get an unit type.
+     */
+    private static GameRules.UnitType unitType(byte id) throws IOException {
+        final GameRules.UnitType[] types = GameRules.UnitType.values();
+        if (id < 0 || id >= types.length) throw new IOException("Corrupted campaign file unit type " + id);
+        return types[id];
+    }
+
+    /**
+     * Check a range of entries lies within a section.
+     */
+    private void checkRange(int section, int first, int count, int entrySize) throws IOException {
+        if (first < 0 || count < 0
+            || ((long) first + count) * entrySize > this.sections[section + 1] - this.sections[section]) {
+            throw new IOException("Corrupted campaign file entry range " + first + "+" + count);
+        }
+    }
+
+    /**
+     * Get a string.
+     */
+    private String string(int id) throws IOException {
+        if (id == -1) return null;
+        if (id < 0 || id >= this.strings.length()) throw new IOException("Corrupted campaign file string id " + id);
+        String result = this.strings.get(id);
+        if (result == null) {
+            final int table = this.sections[CampaignFile.STRING_SECTION];
+            final int text = table + 4 * (this.strings.length() + 1);
+            final int start = this.buffer.getInt(table + 4 * id);
+            final int end = this.buffer.getInt(table + 4 * (id + 1));
+            if (start < 0 || end < start || end > this.sections[CampaignFile.STRING_SECTION + 1] - text) {
+                throw new IOException("Corrupted campaign file string " + id);
+            }
+            byte[] bytes = new byte[end - start];
+            this.buffer.get(text + start, bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+            this.strings.compareAndSet(id, null, result);
+        }
+        return result;
+    }
+
+    /**
+     * Get a location. The locations known by the hit location registry are replaced with their
+     * canonical instances.
+     */
+    private HitLocation location(short id) throws IOException {
+        if (id == -1) return null;
+        if (id < 0 || id >= this.locations.length()) throw new IOException("Corrupted campaign file location id " + id);
+        HitLocation result = this.locations.get(id);
+        if (result == null) {
+            final int offset = this.sections[CampaignFile.LOCATION_SECTION] + id * CampaignFile.LOCATION_SIZE;
+            final String name = string(this.buffer.getInt(offset + 1));
+            final String abbrev = string(this.buffer.getInt(offset + 5));
+            final byte kind = this.buffer.get(offset);
+            if (kind == CampaignFile.SLOTTED) {
+                result = new HitLocation.SlottedHitLocation(name, abbrev, (short) this.buffer.getInt(offset + 9));
+            } else if (kind == CampaignFile.UNSLOTTED) {
+                result = new HitLocation(name, abbrev);
+            } else {
+                throw new IOException("Corrupted campaign file location kind " + kind);
+            }
+            int canonical = this.registry.idOf(result);
+            if (canonical >= 0) result = this.registry.get(canonical);
+            if (!this.locations.compareAndSet(id, null, result)) {
+                result = this.locations.get(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode an equipment.
+     */
+    private Equipment decodeEquipment(int id) throws IOException {
+        final int table = this.sections[CampaignFile.CATALOG_SECTION];
+        final int records = table + 4 * (this.equipment.length() + 1);
+        final int start = this.buffer.getInt(table + 4 * id);
+        final int end = this.sections[CampaignFile.CATALOG_SECTION + 1];
+        if (start < 0 || start > end - records - CampaignFile.EQUIPMENT_SIZE) {
+            throw new IOException("Corrupted campaign file equipment " + id);
+        }
+        int offset = records + start;
+        final String name = string(this.buffer.getInt(offset));
+        final String abbrev = string(this.buffer.getInt(offset + 4));
+        final double mass = this.buffer.getDouble(offset + 8);
+        final int size = this.buffer.getInt(offset + 16);
+        final int count = this.buffer.getInt(offset + 20);
+        offset += CampaignFile.EQUIPMENT_SIZE;
+        if (count < 0 || (long) count * CampaignFile.MODIFIER_SIZE > end - offset) {
+            throw new IOException("Corrupted campaign file equipment " + id);
+        }
+        RulesModifier[] modifiers = new RulesModifier[count];
+        for (int i = 0; i < modifiers.length; i++, offset += CampaignFile.MODIFIER_SIZE) {
+            modifiers[i] = new RulesModifier(string(this.buffer.getInt(offset)), string(this.buffer.getInt(offset + 4)),
+                this.buffer.getDouble(offset + 8), CampaignFile.rounding(this.buffer.get(offset + 16)));
+        }
+        return new Equipment(name, abbrev, mass, size, modifiers);
+    }
+
+    /**
+     * Decode an unit record.
+     */
+    private Unit decodeUnit(int offset) throws IOException {
+        final GameRules.UnitType type = unitType(this.buffer.get(offset + 8));
+        checkRange(CampaignFile.LOADOUT_SECTION, this.buffer.getInt(offset + 25), this.buffer.getInt(offset + 29), CampaignFile.LOADOUT_SIZE);
+        checkRange(CampaignFile.CONDITION_SECTION, this.buffer.getInt(offset + 33), this.buffer.getInt(offset + 37), CampaignFile.CONDITION_SIZE);
+        checkRange(CampaignFile.CONDITION_SECTION, this.buffer.getInt(offset + 41), this.buffer.getInt(offset + 45), CampaignFile.CONDITION_SIZE);
+        EquipmentLoadout[] loadout = new EquipmentLoadout[this.buffer.getInt(offset + 29)];
+        int entry = this.sections[CampaignFile.LOADOUT_SECTION] + this.buffer.getInt(offset + 25) * CampaignFile.LOADOUT_SIZE;
+        for (int i = 0; i < loadout.length; i++, entry += CampaignFile.LOADOUT_SIZE) {
+            if ((this.buffer.get(entry) & CampaignFile.PRESENT) != 0) {
+                final int id = this.buffer.getInt(entry + 3);
+                if (id < -1 || id >= this.equipment.length()) throw new IOException("Corrupted campaign file equipment id " + id);
+                loadout[i] = new EquipmentLoadout(location(this.buffer.getShort(entry + 1)), id < 0 ? null : getEquipment(id));
+            }
+        }
+        ArmorLoadout[] armor = new ArmorLoadout[this.buffer.getInt(offset + 37)];
+        entry = conditionOffset(this.buffer.getInt(offset + 33));
+        for (int i = 0; i < armor.length; i++, entry += CampaignFile.CONDITION_SIZE) {
+            final byte flags = this.buffer.get(entry);
+            if ((flags & CampaignFile.PRESENT) != 0) {
+                armor[i] = new ArmorLoadout(location(this.buffer.getShort(entry + 1)),
+                    (flags & CampaignFile.HAS_MAX) == 0 ? null : Integer.valueOf(this.buffer.getShort(entry + 3)),
+                    this.buffer.getShort(entry + 5));
+            }
+        }
+        StructureLoadout[] structure = new StructureLoadout[this.buffer.getInt(offset + 45)];
+        entry = conditionOffset(this.buffer.getInt(offset + 41));
+        for (int i = 0; i < structure.length; i++, entry += CampaignFile.CONDITION_SIZE) {
+            final byte flags = this.buffer.get(entry);
+            if ((flags & CampaignFile.PRESENT) != 0) {
+                structure[i] = new StructureLoadout(location(this.buffer.getShort(entry + 1)),
+                    (flags & CampaignFile.HAS_MAX) == 0 ? null : Short.valueOf(this.buffer.getShort(entry + 3)),
+                    this.buffer.getShort(entry + 5));
+            }
+        }
+        return new Unit(type, string(this.buffer.getInt(offset)),
+            string(this.buffer.getInt(offset + 4)), this.buffer.getDouble(offset + 9), this.buffer.getDouble(offset + 17),
+            loadout, armor, structure);
+    }
+
+    /**
+     * Get the offset of a condition entry.
+     */
+    private int conditionOffset(int index) {
+        return this.sections[CampaignFile.CONDITION_SECTION] + index * CampaignFile.CONDITION_SIZE;
+    }
+}
@@ -0,0 +1,420 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The evaluation of the rules modifiers of the equipment.
+ *
+ * The modified rules get dense rule ids, and the modifiers of each equipment are compiled once into
+ * flat arrays of rule ids, rounding modes, and amounts. The effective modifier of a rule is the sum
+ * of the rounded totals of the modifiers of the rule sharing a rounding mode, so the modifiers with
+ * fractional amounts are combined before they are rounded to whole numbers.
+ *
+ * The rule ids, the compiled modifiers, and the effective rules of the units are cached by the
+ * engine, so the caches live as long as the engine. Each {@link RuleSet} has its own engine, and
+ * the caches are released with the replaced rule set.
+ */
+public final class ModifierEngine {
+
+    /**
+     * The compiled modifiers of an equipment.
+     * @param rules The rule ids of the modifiers.
+     * @param roundings The rounding indexes of the modifiers.
+     * @param amounts The amounts of the modifiers.
+     */
+    private static record Compiled(int[] rules, int[] roundings, double[] amounts) {
+
+    }
+
+    /**
+     * The rounding index of the modifiers without rounding.
+     */
+    private static final int NO_ROUNDING = RoundingMode.values().length;
+
+    /**
+     * The number of rounding indexes.
+     */
+    private static final int ROUNDINGS = NO_ROUNDING + 1;
+
+    /**
+     * The precision used to discard the floating point error of the sums before rounding.
+     */
+    private static final double PRECISION = 1e9;
+
+    /**
+     * The rule ids.
+     */
+    private final DenseIndex<String> rules = new DenseIndex<>();
+
+    /**
+     * The compiled modifiers of the equipment.
+     */
+    private final ConcurrentHashMap<Equipment, Compiled> compiled = new ConcurrentHashMap<>();
+
+    /**
+     * The effective rules of the units. The units are immutable, so their effective rules never
+     * change.
+     */
+    private final Map<Unit, Modifiers> units = new WeakHashMap<>();
+
+    /**
+     * Create a new modifier engine without rules and compiled equipment.
+     */
+    public ModifierEngine() {
+
+    }
+
+    /**
+     * Get the id of a rule.
+     * @param rule The name of the rule.
+     * @return The id of the rule.
+     * @throws IllegalArgumentException The rule name was undefined.
+     */
+    public int ruleId(String rule) throws IllegalArgumentException {
+        if (rule == null) throw new IllegalArgumentException("Missing rule name");
+        return this.rules.intern(rule);
+    }
+
+    /**
+     * Get the compiled modifiers of an equipment.
+     */
+    private Compiled compile(Equipment equipment) {
+        return this.compiled.computeIfAbsent(equipment, (Equipment item) -> {
+            final int count = item.modifiers.length;
+            int[] ruleIds = new int[count];
+            int[] roundings = new int[count];
+            double[] amounts = new double[count];
+            for (int i = 0; i < count; i++) {
+                RulesModifier modifier = item.modifiers[i];
+                ruleIds[i] = ruleId(modifier.rule());
+                roundings[i] = modifier.rounding() == null ? NO_ROUNDING : modifier.rounding().ordinal();
+                amounts[i] = modifier.modifier();
+            }
+            return new Compiled(ruleIds, roundings, amounts);
+        });
+    }
+
+    /**
+     * Round a value to a whole number.
+     * @param value The rounded value.
+     * @param rounding The rounding index.
+     * @return The rounded value. The values without rounding and with unnecessary rounding are not rounded.
+     */
+    static double round(double value, int rounding) {
+        if (rounding == NO_ROUNDING) return value;
+        double sign = Math.signum(value);
+        double magnitude = Math.abs(value);
+        return switch (RoundingMode.values()[rounding]) {
+            case UP -> sign * Math.ceil(magnitude);
+            case DOWN -> sign * Math.floor(magnitude);
+            case CEILING -> Math.ceil(value);
+            case FLOOR -> Math.floor(value);
+            case HALF_UP -> sign * Math.floor(magnitude + 0.5);
+            case HALF_DOWN -> sign * Math.ceil(magnitude - 0.5);
+            case HALF_EVEN -> Math.rint(value);
+            case UNNECESSARY -> value;
+        };
+    }
+
+    /**
+     * Get the effective rules of a unit. The effective rules are computed once per unit and cached
+     * while the unit is reachable. The lock of the cache is held only to look up and to store the
+     * result, so the units are computed in parallel.
+     * @param unit The unit.
+     * @return The read only effective rules of the equipment of the unit.
+     * @throws IllegalArgumentException The unit was undefined.
+     */
+    public Modifiers of(Unit unit) throws IllegalArgumentException {
+        if (unit == null) throw new IllegalArgumentException("Missing unit");
+        Modifiers result;
+        synchronized (this.units) {
+            result = this.units.get(unit);
+        }
+        if (result == null) {
+            EffectiveRules computed = new EffectiveRules(this);
+            for (EquipmentLoadout entry : unit.loadout) {
+                if (entry != null && entry.getValue() != null) {
+                    computed.add(entry.getValue());
+                }
+            }
+            Modifiers view = computed.view();
+            synchronized (this.units) {
+                result = this.units.putIfAbsent(unit, view);
+            }
+            if (result == null) result = view;
+        }
+        return result;
+    }
+
+    /**
+     * Track the effective rules of a loadout. The returned rules register a listener of the
+     * loadout, which invalidates them whenever equipment is added or removed, and the next query
+     * recomputes them from the current loadout. Each call registers a new listener, so the caller
+     * keeps the returned rules as long as it tracks the loadout.
+     * @param loadout The tracked loadout.
+     * @return The read only effective rules of the current equipment of the loadout.
+     * @throws IllegalArgumentException The loadout was undefined.
+     */
+    public Modifiers track(LoadoutController.Loadout loadout) throws IllegalArgumentException {
+        if (loadout == null) throw new IllegalArgumentException("Missing loadout");
+        TrackedRules result = new TrackedRules(loadout);
+        loadout.addLoadoutListener(result);
+        return result;
+    }
+
+    /**
+     * The read only effective modifiers of rules.
+     */
+    public static interface Modifiers {
+
+        /**
+         * Get the effective modifier of a rule.
+         * @param rule The name of the rule.
+         * @return The sum of the rounded modifiers of the rule.
+         */
+        public double getModifier(String rule);
+
+        /**
+         * Get the effective modifier of a rule.
+         * @param rule The rule id.
+         * @return The sum of the rounded modifiers of the rule.
+         */
+        public double getModifier(int rule);
+
+        /**
+         * Get the effective value of a rule.
+         * @param rule The name of the rule.
+         * @param base The base value of the rule.
+         * @return The base value modified by the effective modifier of the rule.
+         */
+        public default double getValue(String rule, double base) {
+            return base + getModifier(rule);
+        }
+    }
+
+    /**
+     * The effective rules of a tracked loadout.
+     *
+     * The rules are tagged with the number of changes seen when the computation started, and the
+     * rules computed while the loadout changed are not kept, as they may miss the change.
+     */
+    private final class TrackedRules implements Modifiers, LoadoutController.LoadoutListener {
+
+        /**
+         * The computed rules and the number of changes they include.
+         * @param rules The computed rules.
+         * @param changes The number of changes before the computation.
+         */
+        private static record Computed(EffectiveRules rules, long changes) {
+
+        }
+
+        private final LoadoutController.Loadout loadout;
+
+        /**
+         * The number of changes of the loadout.
+         */
+        private final java.util.concurrent.atomic.AtomicLong changes = new java.util.concurrent.atomic.AtomicLong();
+
+        /**
+         * The latest computed rules, or undefined value before the first query.
+         */
+        private volatile Computed computed;
+
+        private TrackedRules(LoadoutController.Loadout loadout) {
+            this.loadout = loadout;
+        }
+
+        /**
+         * Get the rules of the current loadout.
+         */
+        private EffectiveRules current() {
+            Computed result = this.computed;
+            final long seen = this.changes.get();
+            if (result == null || result.changes() != seen) {
+                EffectiveRules rules = new EffectiveRules(ModifierEngine.this);
+                for (LoadoutController.Entry<HitLocation, Equipment> entry : this.loadout.toArray()) {
+                    if (entry != null && entry.getValue() != null) rules.add(entry.getValue());
+                }
+                result = new Computed(rules, seen);
+                if (this.changes.get() == seen) this.computed = result;
+            }
+            return result.rules();
+        }
+
+        @Override
+        public double getModifier(String rule) {
+            return current().getModifier(rule);
+        }
+
+        @Override
+        public double getModifier(int rule) {
+            return current().getModifier(rule);
+        }
+
+        @Override
+        public void equipmentAdded(HitLocation location, Equipment equipment) {
+            this.changes.incrementAndGet();
+        }
+
+        @Override
+        public void equipmentRemoved(HitLocation location, Equipment equipment) {
+            this.changes.incrementAndGet();
+        }
+    }
+
+    /**
+     * The effective rules of a set of equipment.
+     *
+     * The effective rules keep the modifier sums of every rule and rounding mode. Adding or
+     * removing an equipment updates the sums of the rules it modifies, and invalidates only the
+     * cached values of those rules.
+     */
+    public static final class EffectiveRules implements Modifiers {
+
+        /**
+         * The engine of the rule ids and the compiled modifiers.
+         */
+        private final ModifierEngine engine;
+
+        /**
+         * The modifier sums indexed by rule id and rounding index.
+         */
+        private double[] sums = new double[0];
+
+        /**
+         * The number of modifiers in the sums indexed by rule id and rounding index.
+         */
+        private int[] counts = new int[0];
+
+        /**
+         * The cached effective modifiers indexed by rule id.
+         */
+        private double[] values = new double[0];
+
+        /**
+         * Is the cached effective modifier invalid indexed by rule id.
+         */
+        private boolean[] invalid = new boolean[0];
+
+        /**
+         * Create new effective rules without any equipment.
+         * @param engine The engine of the rule ids and the compiled modifiers.
+         * @throws IllegalArgumentException The engine was undefined.
+         */
+        public EffectiveRules(ModifierEngine engine) throws IllegalArgumentException {
+            if (engine == null) throw new IllegalArgumentException("Missing modifier engine");
+            this.engine = engine;
+        }
+
+        /**
+         * Create new effective rules of equipment.
+         * @param engine The engine of the rule ids and the compiled modifiers.
+         * @param equipment The equipment.
+         * @throws IllegalArgumentException The engine was undefined.
+         */
+        public EffectiveRules(ModifierEngine engine, Iterable<Equipment> equipment) throws IllegalArgumentException {
+            this(engine);
+            for (Equipment item : equipment) {
+                add(item);
+            }
+        }
+
+        /**
+         * Get a read only view of the effective rules. The view sees the later changes of the
+         * rules, but it cannot change them.
+         * @return The read only view.
+         */
+        public Modifiers view() {
+            final EffectiveRules rules = this;
+            return new Modifiers() {
+
+                @Override
+                public double getModifier(String rule) {
+                    return rules.getModifier(rule);
+                }
+
+                @Override
+                public double getModifier(int rule) {
+                    return rules.getModifier(rule);
+                }
+            };
+        }
+
+        /**
+         * Ensure the arrays cover a rule id.
+         */
+        private void ensureRule(int rule) {
+            if (rule >= this.values.length) {
+                int length = Math.max(rule + 1, this.engine.rules.size());
+                this.sums = Arrays.copyOf(this.sums, length * ROUNDINGS);
+                this.counts = Arrays.copyOf(this.counts, length * ROUNDINGS);
+                this.values = Arrays.copyOf(this.values, length);
+                this.invalid = Arrays.copyOf(this.invalid, length);
+            }
+        }
+
+        /**
+         * Add the modifiers of an equipment.
+         * @param equipment The added equipment.
+         * @throws IllegalArgumentException The equipment was undefined.
+         */
+        public synchronized void add(Equipment equipment) throws IllegalArgumentException {
+            update(equipment, 1);
+        }
+
+        /**
+         * Remove the modifiers of an equipment.
+         * @param equipment The removed equipment.
+         * @throws IllegalArgumentException The equipment was undefined.
+         */
+        public synchronized void remove(Equipment equipment) throws IllegalArgumentException {
+            update(equipment, -1);
+        }
+
+        /**
+         * Update the sums with the modifiers of an equipment.
+         */
+        private void update(Equipment equipment, int sign) {
+            if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+            Compiled compiled = this.engine.compile(equipment);
+            for (int i = 0; i < compiled.rules.length; i++) {
+                final int rule = compiled.rules[i];
+                ensureRule(rule);
+                final int slot = rule * ROUNDINGS + compiled.roundings[i];
+                this.counts[slot] += sign;
+                this.sums[slot] = this.counts[slot] == 0 ? 0.0 : this.sums[slot] + sign * compiled.amounts[i];
+                this.invalid[rule] = true;
+            }
+        }
+
+        @Override
+        public double getModifier(String rule) {
+            int id = this.engine.rules.indexOf(rule);
+            return id < 0 ? 0.0 : getModifier(id);
+        }
+
+        @Override
+        public synchronized double getModifier(int rule) {
+            if (rule < 0 || rule >= this.values.length) return 0.0;
+            if (this.invalid[rule]) {
+                double result = 0.0;
+                final int first = rule * ROUNDINGS;
+                for (int rounding = 0; rounding < ROUNDINGS; rounding++) {
+                    if (this.counts[first + rounding] != 0) {
+                        result += round(Math.rint(this.sums[first + rounding] * PRECISION) / PRECISION, rounding);
+                    }
+                }
+                this.values[rule] = result;
+                this.invalid[rule] = false;
+            }
+            return this.values[rule];
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.Arrays;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * A compact loadout storing the equipment of each location as a packed array of equipment ids.
+ *
+ * The locations are identified by their dense ordinals in a location index, and the equipment
+ * by their dense ordinals in an equipment index. The row of a location stores the number of
+ * items at index 0 followed by the equipment ids in insertion order. The loadout keeps a counter of
+ * the used critical slots of each location, so the free slots of a location are known in constant time.
+ *
+ * A loadout {@link #shared(DenseIndex, DenseIndex, int[]) sharing its indexes} never adds locations to the
+ * shared location index, and adds equipment to the shared equipment index only while the index has fewer
+ * than {@link #SHARED_EQUIPMENT_LIMIT} members. The other members get their ordinals from an index of the
+ * loadout extending the shared index, which is created when the first such member is added.
+ *
+ * The packed loadout is not thread safe.
+ */
+public final class PackedLoadout {
+
+    /**
+     * The empty row shared by all locations without equipment.
+     */
+    private static final int[][] NO_ROWS = new int[0][];
+
+    /**
+     * The slot counters of a loadout without locations.
+     */
+    private static final int[] NO_SLOTS = new int[0];
+
+    /**
+     * The number of members after which loadouts sharing an equipment index stop adding equipment
+     * to it.
+     */
+    public static final int SHARED_EQUIPMENT_LIMIT = 1024;
+
+    /**
+     * The critical slot capacities of the location ordinals of the loadout with precomputed
+     * capacities. The array must not be modified.
+     */
+    private final int[] capacities;
+
+    /**
+     * The location index of the loadout.
+     */
+    private DenseIndex<HitLocation> locations;
+
+    /**
+     * The equipment index of the loadout.
+     */
+    private DenseIndex<Equipment> equipment;
+
+    /**
+     * Is the location index shared. The loadout does not add locations to a shared location index.
+     */
+    private boolean sharedLocations;
+
+    /**
+     * Is the equipment index shared. The loadout adds equipment to a shared equipment index only
+     * while it has fewer than {@link #SHARED_EQUIPMENT_LIMIT} members.
+     */
+    private boolean sharedEquipment;
+
+    /**
+     * The rows of the locations indexed by location ordinal. A row is undefined,
+     * if the location has never had any equipment.
+     */
+    private int[][] rows = NO_ROWS;
+
+    /**
+     * The used critical slots of the locations indexed by location ordinal.
+     */
+    private int[] usedSlots = NO_SLOTS;
+
+    /**
+     * The number of items in the loadout.
+     */
+    private int size = 0;
+
+    /**
+     * The total mass of the items in the loadout.
+     */
+    private double tonnage = 0.0;
+
+    /**
+     * Create a new empty packed loadout with an equipment index of its own.
+     * @param locations The location index of the loadout.
+     * @throws IllegalArgumentException The location index was undefined.
+     */
+    public PackedLoadout(DenseIndex<HitLocation> locations) throws IllegalArgumentException {
+        this(locations, new DenseIndex<>());
+    }
+
+    /**
+     * Create a new empty packed loadout.
+     * @param locations The location index of the loadout.
+     * @param equipment The equipment index of the loadout.
+     * @throws IllegalArgumentException Either index was undefined.
+     */
+    public PackedLoadout(DenseIndex<HitLocation> locations, DenseIndex<Equipment> equipment) throws IllegalArgumentException {
+        this(locations, equipment, NO_SLOTS);
+    }
+
+    /**
+     * Create a new empty packed loadout with precomputed critical slot capacities.
+     * @param locations The location index of the loadout.
+     * @param equipment The equipment index of the loadout.
+     * @param capacities The {@link #capacityOf(HitLocation) critical slot capacities} of the first
+     * location ordinals. The array is shared, and must not be modified. The capacities of the other
+     * ordinals are computed from their locations.
+     * @throws IllegalArgumentException Any parameter was undefined.
+     */
+    public PackedLoadout(DenseIndex<HitLocation> locations, DenseIndex<Equipment> equipment, int[] capacities)
+        throws IllegalArgumentException {
+        this(locations, equipment, capacities, false);
+    }
+
+    /**
+     * Create a new empty packed loadout.
+     * @param locations The location index of the loadout.
+     * @param equipment The equipment index of the loadout.
+     * @param capacities The critical slot capacities of the first location ordinals.
+     * @param shared Are the indexes shared.
+     * @throws IllegalArgumentException Any parameter was undefined.
+     */
+    private PackedLoadout(DenseIndex<HitLocation> locations, DenseIndex<Equipment> equipment, int[] capacities,
+        boolean shared) throws IllegalArgumentException {
+        if (locations == null) throw new IllegalArgumentException("Missing location index");
+        if (equipment == null) throw new IllegalArgumentException("Missing equipment index");
+        if (capacities == null) throw new IllegalArgumentException("Missing slot capacities");
+        this.locations = locations;
+        this.equipment = equipment;
+        this.capacities = capacities;
+        this.sharedLocations = shared;
+        this.sharedEquipment = shared;
+    }
+
+    /**
+     * Create a new empty packed loadout sharing its indexes. The loadout never adds locations to the
+     * location index, and stops adding equipment to the equipment index once the index has
+     * {@link #SHARED_EQUIPMENT_LIMIT} members.
+     * @param locations The shared location index.
+     * @param equipment The shared equipment index.
+     * @param capacities The {@link #capacityOf(HitLocation) critical slot capacities} of the first
+     * location ordinals. The array is shared, and must not be modified.
+     * @return The created loadout.
+     * @throws IllegalArgumentException Any parameter was undefined.
+     */
+    public static PackedLoadout shared(DenseIndex<HitLocation> locations, DenseIndex<Equipment> equipment, int[] capacities)
+        throws IllegalArgumentException {
+        return new PackedLoadout(locations, equipment, capacities, true);
+    }
+
+    /**
+     * Create a copy of a packed loadout.
+     * @param source The copied loadout.
+     */
+    private PackedLoadout(PackedLoadout source) {
+        this.locations = source.locations;
+        this.equipment = source.equipment;
+        this.sharedLocations = source.sharedLocations;
+        this.sharedEquipment = source.sharedEquipment;
+        this.capacities = source.capacities;
+        this.rows = new int[source.rows.length][];
+        for (int i = 0; i < this.rows.length; i++) {
+            int[] row = source.rows[i];
+            if (row != null && row[0] > 0) {
+                this.rows[i] = Arrays.copyOf(row, row[0] + 1);
+            }
+        }
+        this.usedSlots = source.usedSlots.clone();
+        this.size = source.size;
+        this.tonnage = source.tonnage;
+    }
+
+    /**
+     * The critical slot capacity of a location.
+     * @param location The location.
+     * @return The critical slot capacity of a slotted location, or {@link Integer#MAX_VALUE} for
+     * a location without critical slots.
+     */
+    public static int capacityOf(HitLocation location) {
+        return location instanceof HitLocation.SlottedHitLocation slotted ? slotted.critSlotCapacity : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Create a copy of the loadout sharing the indexes of the loadout. The copy shares the indexes
+     * the loadout has created for itself, too.
+     * @return The copy of the loadout.
+     */
+    public PackedLoadout copy() {
+        return new PackedLoadout(this);
+    }
+
+    /**
+     * The location index of the loadout.
+     * @return The index giving the location ordinals.
+     */
+    public DenseIndex<HitLocation> getLocationIndex() {
+        return this.locations;
+    }
+
+    /**
+     * The equipment index of the loadout.
+     * @return The index giving the equipment ids.
+     */
+    public DenseIndex<Equipment> getEquipmentIndex() {
+        return this.equipment;
+    }
+
+    /**
+     * The total mass of the loadout.
+     * @return The sum of the masses of the items.
+     */
+    public double getTonnage() {
+        return this.tonnage;
+    }
+
+    /**
+     * The number of items in the loadout.
+     * @return The number of items.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * The number of location rows. All location ordinals with equipment are smaller than this.
+     * @return The number of location rows.
+     */
+    public int locationCount() {
+        return this.rows.length;
+    }
+
+    /**
+     * The number of items in a location.
+     * @param location The location ordinal.
+     * @return The number of items in the location.
+     */
+    public int count(int location) {
+        if (location < 0 || location >= this.rows.length || this.rows[location] == null) return 0;
+        return this.rows[location][0];
+    }
+
+    /**
+     * The number of critical slots used in a location.
+     * @param location The location ordinal.
+     * @return The total size of the items in the location.
+     */
+    public int usedSlots(int location) {
+        return location < 0 || location >= this.usedSlots.length ? 0 : this.usedSlots[location];
+    }
+
+    /**
+     * The number of free critical slots in a location.
+     * @param location The location ordinal.
+     * @return The number of free critical slots, or {@link Integer#MAX_VALUE} for a location
+     * without critical slots. The value is negative, if the location is overfilled.
+     * @throws IndexOutOfBoundsException The location ordinal was not assigned.
+     */
+    public int freeSlots(int location) throws IndexOutOfBoundsException {
+        int capacity = location >= 0 && location < this.capacities.length ? this.capacities[location]
+            : capacityOf(this.locations.get(location));
+        return capacity == Integer.MAX_VALUE ? capacity : capacity - usedSlots(location);
+    }
+
+    /**
+     * The number of free critical slots in a location.
+     * @param location The location.
+     * @return The number of free critical slots, or {@link Integer#MAX_VALUE} for a location
+     * without critical slots.
+     */
+    public int freeSlots(HitLocation location) {
+        int ordinal = this.locations.indexOf(location);
+        int capacity = ordinal >= 0 && ordinal < this.capacities.length ? this.capacities[ordinal] : capacityOf(location);
+        return capacity == Integer.MAX_VALUE ? capacity : capacity - usedSlots(ordinal);
+    }
+
+    /**
+     * Get an equipment id of a location.
+     * @param location The location ordinal.
+     * @param index The index of the item within the location.
+     * @return The equipment id of the item.
+     * @throws IndexOutOfBoundsException The location does not have the given item.
+     */
+    public int equipmentAt(int location, int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= count(location)) {
+            throw new IndexOutOfBoundsException("Location " + location + " has no item " + index);
+        }
+        return this.rows[location][index + 1];
+    }
+
+    /**
+     * Add an equipment to the loadout.
+     * @param location The location of the equipment.
+     * @param item The added equipment.
+     * @throws IllegalArgumentException The location or the equipment was undefined.
+     */
+    public void add(HitLocation location, Equipment item) throws IllegalArgumentException {
+        if (location == null) throw new IllegalArgumentException("Undefined location not accepted");
+        if (item == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+        append(locationOrdinal(location), equipmentId(item), item.mass, item.size);
+    }
+
+    /**
+     * Get the ordinal of a location adding the location to the location index, if it is not indexed.
+     * The location is added to an index of the loadout instead of a shared index.
+     * @param location The location.
+     * @return The ordinal of the location.
+     */
+    private int locationOrdinal(HitLocation location) {
+        final int result = this.locations.indexOf(location);
+        if (result >= 0) return result;
+        if (this.sharedLocations) {
+            this.locations = new DenseIndex<>(this.locations);
+            this.sharedLocations = false;
+        }
+        return this.locations.intern(location);
+    }
+
+    /**
+     * Get the id of an equipment adding the equipment to the equipment index, if it is not indexed.
+     * The equipment is added to an index of the loadout instead of a full shared index.
+     * @param item The equipment.
+     * @return The id of the equipment.
+     */
+    private int equipmentId(Equipment item) {
+        final int result = this.equipment.indexOf(item);
+        if (result >= 0) return result;
+        if (this.sharedEquipment && this.equipment.size() >= SHARED_EQUIPMENT_LIMIT) {
+            this.equipment = new DenseIndex<>(this.equipment);
+            this.sharedEquipment = false;
+        }
+        return this.equipment.intern(item);
+    }
+
+    /**
+     * Add an equipment to the loadout.
+     * @param location The location ordinal.
+     * @param item The equipment id.
+     * @throws IndexOutOfBoundsException The location ordinal or equipment id was not assigned.
+     */
+    public void add(int location, int item) throws IndexOutOfBoundsException {
+        this.locations.get(location);
+        Equipment added = this.equipment.get(item);
+        append(location, item, added.mass, added.size);
+    }
+
+    /**
+     * Append an equipment to a location row.
+     * @param location The location ordinal.
+     * @param item The equipment id.
+     * @param mass The mass of the equipment.
+     * @param slots The size of the equipment.
+     */
+    private void append(int location, int item, double mass, int slots) {
+        if (location >= this.rows.length) {
+            int length = Math.max(location + 1, this.locations.size());
+            this.rows = Arrays.copyOf(this.rows, length);
+            this.usedSlots = Arrays.copyOf(this.usedSlots, length);
+        }
+        int[] row = this.rows[location];
+        if (row == null) {
+            row = new int[4];
+            this.rows[location] = row;
+        } else if (row[0] + 1 == row.length) {
+            row = Arrays.copyOf(row, row.length * 2);
+            this.rows[location] = row;
+        }
+        row[++row[0]] = item;
+        this.usedSlots[location] += slots;
+        this.size++;
+        this.tonnage += mass;
+    }
+
+    /**
+     * Remove the first occurrence of an equipment from a location.
+     * @param location The location of the removed equipment.
+     * @param item The removed equipment.
+     * @return True, if and only if the loadout was modified.
+     */
+    public boolean remove(HitLocation location, Equipment item) {
+        int ordinal = this.locations.indexOf(location);
+        int id = this.equipment.indexOf(item);
+        return ordinal >= 0 && id >= 0 && delete(ordinal, id, item.mass, item.size);
+    }
+
+    /**
+     * Remove the first occurrence of an equipment from a location.
+     * @param location The location ordinal.
+     * @param item The equipment id.
+     * @return True, if and only if the loadout was modified.
+     */
+    public boolean remove(int location, int item) {
+        if (item < 0 || item >= this.equipment.size()) return false;
+        Equipment removed = this.equipment.get(item);
+        return delete(location, item, removed.mass, removed.size);
+    }
+
+    /**
+     * Delete the first occurrence of an equipment id from a location row.
+     * @param location The location ordinal.
+     * @param item The equipment id.
+     * @param mass The mass of the equipment.
+     * @param slots The size of the equipment.
+     * @return True, if and only if the loadout was modified.
+     */
+    private boolean delete(int location, int item, double mass, int slots) {
+        if (location < 0 || location >= this.rows.length) return false;
+        int[] row = this.rows[location];
+        if (row == null) return false;
+        final int count = row[0];
+        for (int i = 1; i <= count; i++) {
+            if (row[i] == item) {
+                System.arraycopy(row, i + 1, row, i, count - i);
+                row[0] = count - 1;
+                this.usedSlots[location] -= slots;
+                this.size--;
+                this.tonnage -= mass;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Convert the loadout into an array of equipment loadouts ordered by location ordinal.
+     * @return The equipment loadouts of the loadout.
+     */
+    public EquipmentLoadout[] toArray() {
+        EquipmentLoadout[] result = new EquipmentLoadout[this.size];
+        int index = 0;
+        for (int location = 0; location < this.rows.length; location++) {
+            int[] row = this.rows[location];
+            if (row == null || row[0] == 0) continue;
+            HitLocation key = this.locations.get(location);
+            for (int i = 1; i <= row[0]; i++) {
+                result[index++] = new EquipmentLoadout(key, this.equipment.get(row[i]));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,515 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The inverted index of the units of a roster by their attributes and equipment.
+ *
+ * The index maps the unit types, the tonnage buckets, and the equipment to the compressed bitmaps
+ * of the ids of the units, which are the indexes of the units in the roster. The bitmaps of an
+ * equipment are layered by count, so the layer k contains the units carrying at least k + 1 of
+ * the equipment. The queries combine the bitmaps with set operations, and only the units of the
+ * partially covered tonnage buckets are tested one by one.
+ *
+ * The index is thread safe. The queries share a read lock, and the changes take a write lock.
+ */
+public final class RosterBitmapIndex {
+
+    /**
+     * The width of a tonnage bucket in tons.
+     */
+    public static final double TONNAGE_BUCKET = 5.0;
+
+    /**
+     * A query of units.
+     */
+    public static sealed interface Query {
+
+        /**
+         * The units of a type.
+         * @param type The unit type.
+         */
+        public static record OfType(GameRules.UnitType type) implements Query {
+
+            /**
+             * Create a new type query.
+             * @throws IllegalArgumentException The type was undefined.
+             */
+            public OfType {
+                if (type == null) throw new IllegalArgumentException("Missing unit type");
+            }
+        }
+
+        /**
+         * The units within a tonnage range.
+         * @param min The smallest tonnage.
+         * @param max The largest tonnage.
+         */
+        public static record Tonnage(double min, double max) implements Query {
+
+            /**
+             * Create a new tonnage query.
+             * @throws IllegalArgumentException The range was empty or not a number.
+             */
+            public Tonnage {
+                if (!(min <= max)) throw new IllegalArgumentException("Empty tonnage range");
+            }
+        }
+
+        /**
+         * The units carrying an equipment.
+         * @param equipment The equipment.
+         * @param count The smallest number of the equipment.
+         */
+        public static record Carries(Equipment equipment, int count) implements Query {
+
+            /**
+             * Create a new equipment query.
+             * @throws IllegalArgumentException The equipment was undefined, or the count was not
+             * positive.
+             */
+            public Carries {
+                if (equipment == null) throw new IllegalArgumentException("Missing equipment");
+                if (count <= 0) throw new IllegalArgumentException("Non-positive equipment count");
+            }
+        }
+
+        /**
+         * The units matching all queries.
+         * @param queries The queries.
+         */
+        public static record And(List<Query> queries) implements Query {
+
+            /**
+             * Create a new conjunction.
+             * @throws IllegalArgumentException The queries were undefined or contained an undefined
+             * query.
+             */
+            public And {
+                queries = List.copyOf(queries);
+            }
+        }
+
+        /**
+         * The units matching any query.
+         * @param queries The queries.
+         */
+        public static record Or(List<Query> queries) implements Query {
+
+            /**
+             * Create a new disjunction.
+             * @throws IllegalArgumentException The queries were undefined or contained an undefined
+             * query.
+             */
+            public Or {
+                queries = List.copyOf(queries);
+            }
+        }
+
+        /**
+         * The units not matching a query.
+         * @param query The negated query.
+         */
+        public static record Not(Query query) implements Query {
+
+            /**
+             * Create a new negation.
+             * @throws IllegalArgumentException The query was undefined.
+             */
+            public Not {
+                if (query == null) throw new IllegalArgumentException("Missing query");
+            }
+        }
+
+        /**
+         * The units of a type.
+         * @param type The unit type.
+         * @return The query of the units of the type.
+         */
+        public static Query type(GameRules.UnitType type) {
+            return new OfType(type);
+        }
+
+        /**
+         * The units within a tonnage range.
+         * @param min The smallest tonnage.
+         * @param max The largest tonnage.
+         * @return The query of the units within the range.
+         */
+        public static Query tonnage(double min, double max) {
+            return new Tonnage(min, max);
+        }
+
+        /**
+         * The units carrying an equipment.
+         * @param equipment The equipment.
+         * @return The query of the units carrying at least one of the equipment.
+         */
+        public static Query carries(Equipment equipment) {
+            return new Carries(equipment, 1);
+        }
+
+        /**
+         * The units carrying several of an equipment.
+         * @param equipment The equipment.
+         * @param count The smallest number of the equipment.
+         * @return The query of the units carrying at least the count of the equipment.
+         */
+        public static Query carries(Equipment equipment, int count) {
+            return new Carries(equipment, count);
+        }
+
+        /**
+         * The units carrying any of equipment.
+         * @param equipment The equipment.
+         * @return The query of the units carrying at least one of any of the equipment.
+         */
+        public static Query carriesAny(Equipment... equipment) {
+            return new Or(Arrays.stream(equipment).map(Query::carries).toList());
+        }
+
+        /**
+         * The units matching all queries.
+         * @param queries The queries.
+         * @return The conjunction of the queries.
+         */
+        public static Query and(Query... queries) {
+            return new And(Arrays.asList(queries));
+        }
+
+        /**
+         * The units matching any query.
+         * @param queries The queries.
+         * @return The disjunction of the queries.
+         */
+        public static Query or(Query... queries) {
+            return new Or(Arrays.asList(queries));
+        }
+
+        /**
+         * The units not matching a query.
+         * @param query The negated query.
+         * @return The negation of the query.
+         */
+        public static Query not(Query query) {
+            return new Not(query);
+        }
+    }
+
+    /**
+     * The lock guarding the index.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The ids of the equipment.
+     */
+    private final DenseIndex<Equipment> equipmentIds = new DenseIndex<>();
+
+    /**
+     * The count layers of the equipment by equipment id.
+     */
+    private final List<List<CompressedBitmap>> equipment = new ArrayList<>();
+
+    /**
+     * The units by unit type.
+     */
+    private final Map<GameRules.UnitType, CompressedBitmap> types = new EnumMap<>(GameRules.UnitType.class);
+
+    /**
+     * The units by tonnage bucket.
+     */
+    private final NavigableMap<Integer, CompressedBitmap> buckets = new TreeMap<>();
+
+    /**
+     * The indexed units.
+     */
+    private final CompressedBitmap units = new CompressedBitmap();
+
+    /**
+     * The tonnage of the units by unit id.
+     */
+    private double[] tonnage = new double[0];
+
+    /**
+     * The unit types of the units by unit id.
+     */
+    private GameRules.UnitType[] typeOf = new GameRules.UnitType[0];
+
+    /**
+     * The ids of the equipment carried by the units by unit id.
+     */
+    private CompressedBitmap[] carried = new CompressedBitmap[0];
+
+    /**
+     * Create a new empty index.
+     */
+    public RosterBitmapIndex() {
+
+    }
+
+    /**
+     * Create a new index of units.
+     * @param units The units indexed by their index.
+     * @throws IllegalArgumentException The units were undefined.
+     */
+    public RosterBitmapIndex(Unit[] units) throws IllegalArgumentException {
+        if (units == null) throw new IllegalArgumentException("Missing units");
+        for (int id = 0; id < units.length; id++) {
+            if (units[id] != null) put(id, units[id]);
+        }
+    }
+
+    /**
+     * Create a new index of the units of a campaign.
+     * @param campaign The campaign.
+     * @return The index of the units by their index in the campaign.
+     * @throws IllegalArgumentException The campaign was undefined.
+     */
+    public static RosterBitmapIndex of(Campaign campaign) throws IllegalArgumentException {
+        if (campaign == null) throw new IllegalArgumentException("Missing campaign");
+        return new RosterBitmapIndex(campaign.getUnits());
+    }
+
+    private static int bucketOf(double tonnage) {
+        return (int) Math.floor(tonnage / TONNAGE_BUCKET);
+    }
+
+    /**
+     * Add a unit or replace the unit with the same id.
+     * @param id The id of the unit.
+     * @param unit The unit.
+     * @throws IllegalArgumentException The id was negative, or the unit was undefined.
+     */
+    public void put(int id, Unit unit) throws IllegalArgumentException {
+        if (id < 0) throw new IllegalArgumentException("Negative unit id");
+        if (unit == null) throw new IllegalArgumentException("Missing unit");
+        this.lock.writeLock().lock();
+        try {
+            removeUnit(id);
+            if (id >= this.tonnage.length) {
+                int length = Math.max(id + 1, 2 * this.tonnage.length);
+                this.tonnage = Arrays.copyOf(this.tonnage, length);
+                this.typeOf = Arrays.copyOf(this.typeOf, length);
+                this.carried = Arrays.copyOf(this.carried, length);
+            }
+            this.units.add(id);
+            this.tonnage[id] = unit.tonnage;
+            this.typeOf[id] = unit.type;
+            this.carried[id] = new CompressedBitmap();
+            this.types.computeIfAbsent(unit.type, key -> new CompressedBitmap()).add(id);
+            this.buckets.computeIfAbsent(bucketOf(unit.tonnage), key -> new CompressedBitmap()).add(id);
+            for (EquipmentLoadout entry : unit.loadout) {
+                if (entry != null && entry.getValue() != null) addEquipment(id, entry.getValue());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a unit.
+     * @param id The id of the unit.
+     * @return True, if and only if the unit was indexed.
+     */
+    public boolean remove(int id) {
+        this.lock.writeLock().lock();
+        try {
+            return removeUnit(id);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a unit while holding the write lock. Only the layers of the equipment the unit carries
+     * are visited.
+     */
+    private boolean removeUnit(int id) {
+        if (!this.units.remove(id)) return false;
+        this.types.get(this.typeOf[id]).remove(id);
+        this.buckets.get(bucketOf(this.tonnage[id])).remove(id);
+        this.carried[id].forEach(equipmentId -> {
+            for (CompressedBitmap layer : this.equipment.get(equipmentId)) {
+                if (!layer.remove(id)) break;
+            }
+        });
+        this.typeOf[id] = null;
+        this.carried[id] = null;
+        return true;
+    }
+
+    /**
+     * Add an equipment of a unit while holding the write lock.
+     */
+    private void addEquipment(int id, Equipment equipment) {
+        int equipmentId = this.equipmentIds.intern(equipment);
+        while (this.equipment.size() <= equipmentId) {
+            this.equipment.add(new ArrayList<>());
+        }
+        List<CompressedBitmap> layers = this.equipment.get(equipmentId);
+        this.carried[id].add(equipmentId);
+        for (CompressedBitmap layer : layers) {
+            if (layer.add(id)) return;
+        }
+        layers.add(CompressedBitmap.of(id));
+    }
+
+    /**
+     * Remove an equipment of a unit while holding the write lock.
+     */
+    private void removeEquipment(int id, Equipment equipment) {
+        int equipmentId = this.equipmentIds.indexOf(equipment);
+        if (!this.units.contains(id) || equipmentId < 0 || equipmentId >= this.equipment.size()) return;
+        List<CompressedBitmap> layers = this.equipment.get(equipmentId);
+        for (int layer = layers.size() - 1; layer >= 0; layer--) {
+            if (layers.get(layer).remove(id)) {
+                if (layer == 0) this.carried[id].remove(equipmentId);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Create a listener keeping the equipment of a unit up to date with a loadout. The listener
+     * should be added to the loadout of the unit with
+     * {@link LoadoutController.Loadout#addLoadoutListener(LoadoutController.LoadoutListener)}.
+     * @param id The id of the unit.
+     * @return The listener updating the equipment of the unit.
+     */
+    public LoadoutController.LoadoutListener listener(int id) {
+        return new LoadoutController.LoadoutListener() {
+
+            @Override
+            public void equipmentAdded(HitLocation location, Equipment equipment) {
+                lock.writeLock().lock();
+                try {
+                    if (units.contains(id)) addEquipment(id, equipment);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public void equipmentRemoved(HitLocation location, Equipment equipment) {
+                lock.writeLock().lock();
+                try {
+                    removeEquipment(id, equipment);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * The number of indexed units.
+     * @return The number of units in the index.
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.units.getCardinality();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the units matching a query.
+     * @param query The query.
+     * @return The bitmap of the ids of the matching units.
+     * @throws IllegalArgumentException The query was undefined.
+     */
+    public CompressedBitmap evaluate(Query query) throws IllegalArgumentException {
+        if (query == null) throw new IllegalArgumentException("Missing query");
+        this.lock.readLock().lock();
+        try {
+            return eval(query);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count the units matching a query.
+     * @param query The query.
+     * @return The number of matching units.
+     * @throws IllegalArgumentException The query was undefined.
+     */
+    public int count(Query query) throws IllegalArgumentException {
+        return evaluate(query).getCardinality();
+    }
+
+    /**
+     * Evaluate a query while holding the read lock. The result is always a new bitmap.
+     */
+    private CompressedBitmap eval(Query query) {
+        if (query instanceof Query.OfType type) {
+            CompressedBitmap result = this.types.get(type.type());
+            return result == null ? new CompressedBitmap() : result.copy();
+        } else if (query instanceof Query.Tonnage range) {
+            return evalTonnage(range.min(), range.max());
+        } else if (query instanceof Query.Carries carries) {
+            int id = this.equipmentIds.indexOf(carries.equipment());
+            if (id < 0 || id >= this.equipment.size()) return new CompressedBitmap();
+            List<CompressedBitmap> layers = this.equipment.get(id);
+            return carries.count() > layers.size() ? new CompressedBitmap() : layers.get(carries.count() - 1).copy();
+        } else if (query instanceof Query.And and) {
+            CompressedBitmap result = null;
+            List<Query> negated = new ArrayList<>();
+            for (Query member : and.queries()) {
+                if (member instanceof Query.Not not) {
+                    negated.add(not.query());
+                } else {
+                    result = result == null ? eval(member) : CompressedBitmap.and(result, eval(member));
+                    if (result.isEmpty()) return result;
+                }
+            }
+            if (result == null) result = this.units.copy();
+            for (Query member : negated) {
+                result = CompressedBitmap.andNot(result, eval(member));
+            }
+            return result;
+        } else if (query instanceof Query.Or or) {
+            CompressedBitmap result = new CompressedBitmap();
+            for (Query member : or.queries()) {
+                result = CompressedBitmap.or(result, eval(member));
+            }
+            return result;
+        } else {
+            return CompressedBitmap.andNot(this.units, eval(((Query.Not) query).query()));
+        }
+    }
+
+    /**
+     * Evaluate a tonnage range while holding the read lock.
+     */
+    private CompressedBitmap evalTonnage(double min, double max) {
+        CompressedBitmap result = new CompressedBitmap();
+        if (max < Integer.MIN_VALUE * TONNAGE_BUCKET || min > Integer.MAX_VALUE * TONNAGE_BUCKET) return result;
+        for (Map.Entry<Integer, CompressedBitmap> entry
+            : this.buckets.subMap(bucketOf(min), true, bucketOf(max), true).entrySet()) {
+            final double start = entry.getKey() * TONNAGE_BUCKET;
+            if (start >= min && start + TONNAGE_BUCKET <= max) {
+                result = CompressedBitmap.or(result, entry.getValue());
+            } else {
+                CompressedBitmap partial = new CompressedBitmap();
+                entry.getValue().forEach(id -> {
+                    if (this.tonnage[id] >= min && this.tonnage[id] <= max) partial.add(id);
+                });
+                result = CompressedBitmap.or(result, partial);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,508 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sorted indexes of a roster of units.
+ *
+ * The index keeps a sorted permutation of the units for every sort key, both for the whole roster
+ * and for the units of each unit type. Filtering by unit type selects a permutation, and filtering
+ * by a range or a prefix of a key is a binary search in the permutation of the key, so counting the
+ * units matching a filter takes logarithmic time, and fetching a page of units sorted by the
+ * filtered key takes logarithmic time plus the size of the page. A page sorted by another key than
+ * the filtered key walks the permutation of the sort key testing the rank of each unit in the
+ * filtered key against the filtered range, as long as the expected walk is shorter than sorting the
+ * matching units. Otherwise the matching units are sorted, and the sorted results of the
+ * {@link #SORTED_CACHE_SIZE most recently used} filters and sort keys are cached. A filter combined
+ * with {@link Filter#and(Filter) further filters} searches the range of its own key, and the units of
+ * the range matching the further filters are sorted and cached like the results sorted by another key.
+ *
+ * The index is immutable and thread safe.
+ */
+public final class RosterIndex {
+
+    /**
+     * The sort and filter keys of the index.
+     */
+    public static enum Key {
+        NAME, MODEL, TYPE, TONNAGE, AVAILABLE_TONNAGE
+    }
+
+    /**
+     * A filter of the units.
+     * @param type The unit type of the units, or undefined value for all unit types.
+     * @param key The key of the range or the prefix, or undefined value for all units.
+     * @param prefix The prefix of the name or the model, compared ignoring case.
+     * @param min The smallest tonnage or available tonnage.
+     * @param max The largest tonnage or available tonnage.
+     * @param also The further filter the units must match, or undefined value if the units match
+     * only this filter. The unit type of the further filter is ignored.
+     */
+    public static record Filter(GameRules.UnitType type, Key key, String prefix, double min, double max, Filter also) {
+
+        /**
+         * The filter accepting all units.
+         */
+        public static final Filter ALL = new Filter(null, null, null, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+
+        /**
+         * Create a new filter.
+         * @throws IllegalArgumentException The key was the unit type, a name or model filter had
+         * undefined prefix, or a tonnage range was invalid.
+         */
+        public Filter {
+            if (key == Key.TYPE) throw new IllegalArgumentException("Unit type is not a range key");
+            if ((key == Key.NAME || key == Key.MODEL) && prefix == null) throw new IllegalArgumentException("Missing prefix");
+            if (Double.isNaN(min) || Double.isNaN(max) || min > max) throw new IllegalArgumentException("Invalid range");
+        }
+
+        /**
+         * Create a new filter without a further filter.
+         * @param type The unit type of the units, or undefined value for all unit types.
+         * @param key The key of the range or the prefix, or undefined value for all units.
+         * @param prefix The prefix of the name or the model, compared ignoring case.
+         * @param min The smallest tonnage or available tonnage.
+         * @param max The largest tonnage or available tonnage.
+         * @throws IllegalArgumentException The key was the unit type, a name or model filter had
+         * undefined prefix, or a tonnage range was invalid.
+         */
+        public Filter(GameRules.UnitType type, Key key, String prefix, double min, double max) throws IllegalArgumentException {
+            this(type, key, prefix, min, max, null);
+        }
+
+        /**
+         * Create a filter accepting the units matching both this filter and another filter. The
+         * index searches the range of the key of this filter, and checks the other filter for
+         * each unit of the range, so the more selective filter should be this filter.
+         * @param other The other filter.
+         * @return The filter accepting the units of this filter matching the other filter.
+         * @throws IllegalArgumentException The other filter was undefined.
+         */
+        public Filter and(Filter other) throws IllegalArgumentException {
+            if (other == null) throw new IllegalArgumentException("Missing filter");
+            return new Filter(this.type, this.key, this.prefix, this.min, this.max,
+                this.also == null ? other : this.also.and(other));
+        }
+
+        /**
+         * Create a filter with a unit type.
+         * @param unitType The unit type, or undefined value for all unit types.
+         * @return The filter accepting the units of this filter with the given type.
+         */
+        public Filter withType(GameRules.UnitType unitType) {
+            return new Filter(unitType, this.key, this.prefix, this.min, this.max, this.also);
+        }
+
+        /**
+         * Create a filter with a name prefix.
+         * @param namePrefix The prefix of the name.
+         * @return The filter accepting the units of the type of this filter with the given name prefix.
+         * @throws IllegalArgumentException The prefix was undefined.
+         */
+        public Filter withNamePrefix(String namePrefix) throws IllegalArgumentException {
+            return new Filter(this.type, Key.NAME, namePrefix, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, this.also);
+        }
+
+        /**
+         * Create a filter with a model prefix.
+         * @param modelPrefix The prefix of the model.
+         * @return The filter accepting the units of the type of this filter with the given model prefix.
+         * @throws IllegalArgumentException The prefix was undefined.
+         */
+        public Filter withModelPrefix(String modelPrefix) throws IllegalArgumentException {
+            return new Filter(this.type, Key.MODEL, modelPrefix, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, this.also);
+        }
+
+        /**
+         * Create a filter with a tonnage range.
+         * @param minTonnage The smallest tonnage.
+         * @param maxTonnage The largest tonnage.
+         * @return The filter accepting the units of the type of this filter within the tonnage range.
+         * @throws IllegalArgumentException The range was invalid.
+         */
+        public Filter withTonnage(double minTonnage, double maxTonnage) throws IllegalArgumentException {
+            return new Filter(this.type, Key.TONNAGE, null, minTonnage, maxTonnage, this.also);
+        }
+
+        /**
+         * Create a filter with an available tonnage range.
+         * @param minTonnage The smallest available tonnage.
+         * @param maxTonnage The largest available tonnage.
+         * @return The filter accepting the units of the type of this filter within the available tonnage range.
+         * @throws IllegalArgumentException The range was invalid.
+         */
+        public Filter withAvailableTonnage(double minTonnage, double maxTonnage) throws IllegalArgumentException {
+            return new Filter(this.type, Key.AVAILABLE_TONNAGE, null, minTonnage, maxTonnage, this.also);
+        }
+    }
+
+    /**
+     * The key of the matching units of a filter sorted by another key.
+     * @param filter The filter.
+     * @param sortKey The sort key.
+     */
+    private static record SortedKey(Filter filter, Key sortKey) {
+
+    }
+
+    /**
+     * The largest number of cached sorted results.
+     */
+    public static final int SORTED_CACHE_SIZE = 16;
+
+    /**
+     * The cache of the sorted results evicting the least recently used result.
+     */
+    private static final class SortedCache extends LinkedHashMap<SortedKey, int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        SortedCache() {
+            super(2 * SORTED_CACHE_SIZE, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SortedKey, int[]> eldest) {
+            return size() > SORTED_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * The comparator of the names and models.
+     */
+    private static final Comparator<String> TEXT = Comparator.nullsFirst(
+        String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()));
+
+    private final Unit[] units;
+
+    /**
+     * The sorted unit indexes by unit type partition and key. The partition 0 contains all units, and
+     * the partition of a unit type is the ordinal of the type plus one.
+     */
+    private final int[][][] orders;
+
+    /**
+     * The positions of the units in the sorted unit indexes of all units by key.
+     */
+    private final int[][] ranks;
+
+    /**
+     * The unit indexes of the recent results sorted by another key than the filtered key in the
+     * ascending order of the sort key. The cache is guarded by itself.
+     */
+    private final SortedCache sortedCache = new SortedCache();
+
+    /**
+     * Create an index of units.
+     * @param units The units.
+     * @throws IllegalArgumentException The units were undefined or contained an undefined unit.
+     */
+    public RosterIndex(Unit[] units) throws IllegalArgumentException {
+        if (units == null) throw new IllegalArgumentException("Missing units");
+        this.units = units.clone();
+        for (Unit unit : this.units) {
+            if (unit == null) throw new IllegalArgumentException("Undefined unit not accepted");
+        }
+        final Key[] keys = Key.values();
+        final GameRules.UnitType[] types = GameRules.UnitType.values();
+        this.orders = new int[types.length + 1][keys.length][];
+        this.ranks = new int[keys.length][];
+        for (Key key : keys) {
+            final int[] all = sortedIndexes(key);
+            final int[] rank = new int[all.length];
+            final int[] typeCounts = new int[types.length];
+            for (int i = 0; i < all.length; i++) {
+                rank[all[i]] = i;
+                typeCounts[this.units[all[i]].type.ordinal()]++;
+            }
+            this.orders[0][key.ordinal()] = all;
+            this.ranks[key.ordinal()] = rank;
+            for (GameRules.UnitType type : types) {
+                int[] partition = new int[typeCounts[type.ordinal()]];
+                int size = 0;
+                for (int unit : all) {
+                    if (this.units[unit].type == type) partition[size++] = unit;
+                }
+                this.orders[type.ordinal() + 1][key.ordinal()] = partition;
+            }
+        }
+    }
+
+    /**
+     * Create an index of the units of a campaign.
+     * @param campaign The campaign.
+     * @return The index of the units of the campaign.
+     * @throws IllegalArgumentException The campaign was undefined.
+     */
+    public static RosterIndex of(Campaign campaign) throws IllegalArgumentException {
+        if (campaign == null) throw new IllegalArgumentException("Missing campaign");
+        return new RosterIndex(campaign.units);
+    }
+
+    /**
+     * Sort the unit indexes by a key. The sort is stable, so the units with equal keys keep the
+     * roster order. The unit types are sorted by name within the type.
+     */
+    private int[] sortedIndexes(Key key) {
+        final int count = this.units.length;
+        final Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) boxed[i] = i;
+        switch (key) {
+            case NAME, MODEL -> {
+                final String[] keys = new String[count];
+                for (int i = 0; i < count; i++) keys[i] = key == Key.NAME ? this.units[i].name : this.units[i].model;
+                Arrays.parallelSort(boxed, (Integer a, Integer b) -> TEXT.compare(keys[a], keys[b]));
+            }
+            case TONNAGE, AVAILABLE_TONNAGE -> {
+                final double[] keys = new double[count];
+                for (int i = 0; i < count; i++) keys[i] = key == Key.TONNAGE ? this.units[i].tonnage : this.units[i].availableTonnage;
+                Arrays.parallelSort(boxed, (Integer a, Integer b) -> Double.compare(keys[a], keys[b]));
+            }
+            case TYPE -> {
+                // A counting sort of the name order by the unit type.
+                final int[] names = this.orders[0][Key.NAME.ordinal()];
+                final int[] starts = new int[GameRules.UnitType.values().length + 1];
+                for (int unit : names) starts[this.units[unit].type.ordinal() + 1]++;
+                for (int i = 1; i < starts.length; i++) starts[i] += starts[i - 1];
+                final int[] result = new int[count];
+                for (int unit : names) result[starts[this.units[unit].type.ordinal()]++] = unit;
+                return result;
+            }
+        }
+        final int[] result = new int[count];
+        for (int i = 0; i < count; i++) result[i] = boxed[i];
+        return result;
+    }
+
+    /**
+     * The number of units.
+     * @return The number of units in the roster.
+     */
+    public int size() {
+        return this.units.length;
+    }
+
+    /**
+     * Count the units matching a filter.
+     * @param filter The filter.
+     * @return The number of units matching the filter.
+     * @throws IllegalArgumentException The filter was undefined.
+     */
+    public int count(Filter filter) throws IllegalArgumentException {
+        if (filter == null) throw new IllegalArgumentException("Missing filter");
+        int[] range = range(filter);
+        if (filter.also != null) return matching(filter, range, filter.key == null ? Key.NAME : filter.key).length;
+        return range[1] - range[0];
+    }
+
+    /**
+     * Fetch a page of the units matching a filter.
+     * @param filter The filter.
+     * @param sortKey The sort key, or undefined value for the order of the filtered key, or the order
+     * of the names, if the filter has no key.
+     * @param descending Is the page in the descending order of the sort key.
+     * @param offset The index of the first unit of the page.
+     * @param limit The largest number of units in the page.
+     * @return The units of the page.
+     * @throws IllegalArgumentException The filter was undefined, or the offset or the limit was negative.
+     */
+    public List<Unit> fetch(Filter filter, Key sortKey, boolean descending, int offset, int limit) throws IllegalArgumentException {
+        if (filter == null) throw new IllegalArgumentException("Missing filter");
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("Negative page bounds");
+        final Key key = sortKey != null ? sortKey : filter.key != null ? filter.key : Key.NAME;
+        final int[] order;
+        final int from;
+        final int to;
+        if (filter.also == null && (filter.key == null || filter.key == key)) {
+            final int[] range = range(filter);
+            order = partition(filter.type, key);
+            from = range[0];
+            to = range[1];
+        } else {
+            final int[] range = range(filter);
+            int[] cached;
+            synchronized (this.sortedCache) {
+                cached = this.sortedCache.get(new SortedKey(filter, key));
+            }
+            if (cached == null && filter.also == null && isWalkShorter(filter.type, key, range[1] - range[0], offset, limit)) {
+                return walk(filter, range, key, descending, offset, limit);
+            }
+            order = cached != null ? cached : matching(filter, range, key);
+            from = 0;
+            to = order.length;
+        }
+        final int size = (int) Math.max(0, Math.min((long) limit, (long) to - from - offset));
+        List<Unit> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(this.units[order[descending ? to - 1 - offset - i : from + offset + i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the sorted unit indexes of a unit type.
+     */
+    private int[] partition(GameRules.UnitType type, Key key) {
+        return this.orders[type == null ? 0 : type.ordinal() + 1][key.ordinal()];
+    }
+
+    /**
+     * Get the range of the units matching a filter in the order of the filtered key.
+     * @return The start and the end of the range.
+     */
+    private int[] range(Filter filter) {
+        if (filter.key == null) return new int[] { 0, partition(filter.type, Key.NAME).length };
+        final int[] order = partition(filter.type, filter.key);
+        return switch (filter.key) {
+            case NAME, MODEL -> {
+                final boolean name = filter.key == Key.NAME;
+                final String prefix = filter.prefix;
+                yield new int[] {
+                    search(order, (int unit) -> comparePrefix(name ? this.units[unit].name : this.units[unit].model, prefix) < 0),
+                    search(order, (int unit) -> comparePrefix(name ? this.units[unit].name : this.units[unit].model, prefix) <= 0)
+                };
+            }
+            case TONNAGE -> new int[] {
+                search(order, (int unit) -> this.units[unit].tonnage < filter.min),
+                search(order, (int unit) -> this.units[unit].tonnage <= filter.max)
+            };
+            case AVAILABLE_TONNAGE -> new int[] {
+                search(order, (int unit) -> this.units[unit].availableTonnage < filter.min),
+                search(order, (int unit) -> this.units[unit].availableTonnage <= filter.max)
+            };
+            case TYPE -> throw new IllegalStateException();
+        };
+    }
+
+    /**
+     * Is walking the permutation of a sort key expected to be shorter than sorting the matching
+     * units. The matching units are assumed to be spread evenly over the permutation.
+     * @param matching The number of the matching units.
+     */
+    private boolean isWalkShorter(GameRules.UnitType type, Key key, int matching, int offset, int limit) {
+        if (matching == 0) return true;
+        final long walked = Math.min((long) offset + limit, matching) * partition(type, key).length / matching;
+        final long sorting = (long) matching * (64 - Long.numberOfLeadingZeros(matching));
+        return walked <= sorting;
+    }
+
+    /**
+     * Fetch a page of the units of a filter by walking the permutation of another key than the
+     * filtered key.
+     * @param range The range of the matching units in the order of the filtered key.
+     */
+    private List<Unit> walk(Filter filter, int[] range, Key key, boolean descending, int offset, int limit) {
+        final int size = Math.max(0, Math.min(limit, range[1] - range[0] - offset));
+        final List<Unit> result = new ArrayList<>(size);
+        if (size == 0) return result;
+        // The filtered range of a partition is a range of the ranks of the whole roster.
+        final int[] filtered = partition(filter.type, filter.key);
+        final int[] rank = this.ranks[filter.key.ordinal()];
+        final int low = rank[filtered[range[0]]];
+        final int high = rank[filtered[range[1] - 1]];
+        final int[] order = partition(filter.type, key);
+        int skipped = 0;
+        for (int i = 0; i < order.length && result.size() < size; i++) {
+            final int unit = order[descending ? order.length - 1 - i : i];
+            final int position = rank[unit];
+            if (position < low || position > high) continue;
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(this.units[unit]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the cached matching units of a filter sorted by a key.
+     * @param range The range of the units matching the key of the filter in the order of the key.
+     */
+    private int[] matching(Filter filter, int[] range, Key key) {
+        int[] cached;
+        synchronized (this.sortedCache) {
+            cached = this.sortedCache.get(new SortedKey(filter, key));
+        }
+        return cached != null ? cached : sorted(filter, range, key);
+    }
+
+    /**
+     * Get the matching units of a filter sorted by a key, and cache the result.
+     * @param range The range of the units matching the key of the filter in the order of the key.
+     */
+    private int[] sorted(Filter filter, int[] range, Key key) {
+        final int[] order = partition(filter.type, filter.key == null ? Key.NAME : filter.key);
+        final int[] rank = this.ranks[key.ordinal()];
+        final int[] all = this.orders[0][key.ordinal()];
+        int[] result = new int[range[1] - range[0]];
+        int size = 0;
+        for (int i = 0; i < result.length; i++) {
+            final int unit = order[range[0] + i];
+            if (filter.also == null || matches(filter.also, unit)) result[size++] = rank[unit];
+        }
+        if (size < result.length) result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        for (int i = 0; i < result.length; i++) {
+            result[i] = all[result[i]];
+        }
+        synchronized (this.sortedCache) {
+            this.sortedCache.put(new SortedKey(filter, key), result);
+        }
+        return result;
+    }
+
+    /**
+     * Does a unit match the key and the further filters of a filter. The unit type of the filter is
+     * not checked.
+     */
+    private boolean matches(Filter filter, int unit) {
+        final Unit value = this.units[unit];
+        final boolean result = filter.key == null || switch (filter.key) {
+            case NAME -> comparePrefix(value.name, filter.prefix) == 0;
+            case MODEL -> comparePrefix(value.model, filter.prefix) == 0;
+            case TONNAGE -> value.tonnage >= filter.min && value.tonnage <= filter.max;
+            case AVAILABLE_TONNAGE -> value.availableTonnage >= filter.min && value.availableTonnage <= filter.max;
+            case TYPE -> throw new IllegalStateException();
+        };
+        return result && (filter.also == null || matches(filter.also, unit));
+    }
+
+    /**
+     * Compare the start of a text to a prefix ignoring case. The undefined text precedes all prefixes.
+     */
+    private static int comparePrefix(String text, String prefix) {
+        if (text == null) return -1;
+        final int length = Math.min(text.length(), prefix.length());
+        final int result = String.CASE_INSENSITIVE_ORDER.compare(text.substring(0, length), prefix);
+        return result != 0 || text.length() >= prefix.length() ? result : -1;
+    }
+
+    /**
+     * The predicate of a unit index.
+     */
+    @FunctionalInterface
+    private static interface UnitPredicate {
+        boolean test(int unit);
+    }
+
+    /**
+     * Find the first position of a sorted order whose unit does not satisfy a predicate, which holds for
+     * a prefix of the order.
+     */
+    private static int search(int[] order, UnitPredicate before) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (before.test(order[middle])) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,336 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable compiled rule set.
+ *
+ * A rule set is read from a line oriented definition file.
+ * <ul>
+ * <li>The <code>name</code> and <code>mode</code> keys set the name and the mode of the game rules.</li>
+ * <li>A <code>type:TYPE</code> line allows a unit type.</li>
+ * <li>A <code>location:TYPE,NAME,ABBREV[,SLOTS]</code> line defines a hit location of a unit type.
+ * The location has the given critical slot capacity, or no critical slots if the capacity is
+ * omitted. The unit type of a location is allowed implicitly.</li>
+ * <li>A <code>modifier:NAME,RULE,AMOUNT[,ROUNDING]</code> line defines a rule set wide modifier.
+ * The rounding is a name of a {@link RoundingMode}.</li>
+ * <li>Blank lines and lines starting with <code>#</code> are ignored.</li>
+ * </ul>
+ *
+ * The hit locations of a rule set are canonical in a registry of the rule set, so a changed
+ * definition of a location does not conflict with the locations of the previous versions of the
+ * rule set. All data of the rule set is compiled when the rule set is loaded, and a rule set is
+ * never modified afterwards, so a calculation holding a rule set sees one consistent version of the
+ * rules.
+ */
+public final class RuleSet {
+
+    /**
+     * The key of the name of the rules.
+     */
+    private static final String NAME = "name";
+
+    /**
+     * The key of the mode of the rules.
+     */
+    private static final String MODE = "mode";
+
+    /**
+     * The key of an allowed unit type.
+     */
+    private static final String TYPE = "type";
+
+    /**
+     * The key of a hit location.
+     */
+    private static final String LOCATION = "location";
+
+    /**
+     * The key of a modifier.
+     */
+    private static final String MODIFIER = "modifier";
+
+    /**
+     * The version of the rule set.
+     */
+    private final long version;
+
+    /**
+     * The game rules of the rule set.
+     */
+    private final GameRules rules;
+
+    /**
+     * The registry of the hit locations of the rule set.
+     */
+    private final HitLocationRegistry locations;
+
+    /**
+     * The modifiers of the rule set.
+     */
+    private final List<RulesModifier> modifiers;
+
+    /**
+     * The effective modifiers by rule.
+     */
+    private final Map<String, Double> effective;
+
+    /**
+     * The evaluation of the equipment modifiers under the rule set.
+     */
+    private final ModifierEngine modifierEngine = new ModifierEngine();
+
+    /**
+     * Create a new rule set.
+     * @param version The version of the rule set.
+     * @param rules The game rules.
+     * @param locations The registry of the hit locations of the rules.
+     * @param modifiers The modifiers.
+     */
+    private RuleSet(long version, GameRules rules, HitLocationRegistry locations, List<RulesModifier> modifiers) {
+        this.version = version;
+        this.rules = rules;
+        this.locations = locations;
+        this.modifiers = Collections.unmodifiableList(new ArrayList<>(modifiers));
+
+        // The modifiers are summed by rule and rounding, and the sums are rounded like the
+        // modifiers of the equipment.
+        Map<String, double[]> sums = new HashMap<>();
+        final int roundings = RoundingMode.values().length + 1;
+        for (RulesModifier modifier : this.modifiers) {
+            final int rounding = modifier.rounding() == null ? roundings - 1 : modifier.rounding().ordinal();
+            sums.computeIfAbsent(modifier.rule(), rule -> new double[roundings])[rounding] += modifier.modifier();
+        }
+        Map<String, Double> result = new HashMap<>(2 * sums.size());
+        for (Map.Entry<String, double[]> entry : sums.entrySet()) {
+            double value = 0.0;
+            for (int rounding = 0; rounding < roundings; rounding++) {
+                value += ModifierEngine.round(Math.rint(entry.getValue()[rounding] * 1e9) / 1e9, rounding);
+            }
+            result.put(entry.getKey(), value);
+        }
+        this.effective = Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Create a rule set of game rules without modifiers.
+     * @param rules The game rules.
+     * @param locations The registry of the hit locations of the rules.
+     * @return The rule set with version 0.
+     * @throws IllegalArgumentException Either parameter was undefined.
+     */
+    public static RuleSet of(GameRules rules, HitLocationRegistry locations) throws IllegalArgumentException {
+        if (rules == null) throw new IllegalArgumentException("Missing game rules");
+        if (locations == null) throw new IllegalArgumentException("Missing hit location registry");
+        return new RuleSet(0L, rules, locations, Collections.emptyList());
+    }
+
+    /**
+     * Create a rule set of game rules without modifiers using the hit location registry of the
+     * rules.
+     * @param rules The game rules.
+     * @return The rule set with version 0.
+     * @throws IllegalArgumentException The rules were undefined.
+     */
+    public static RuleSet of(GameRules rules) throws IllegalArgumentException {
+        if (rules == null) throw new IllegalArgumentException("Missing game rules");
+        return of(rules, rules.getLocationRegistry());
+    }
+
+    /**
+     * Load a rule set from a file.
+     * @param file The definition file.
+     * @param version The version of the loaded rule set.
+     * @return The compiled rule set.
+     * @throws IllegalArgumentException The file was undefined, or the definition was invalid.
+     * @throws IOException The reading of the file failed.
+     */
+    public static RuleSet load(Path file, long version) throws IllegalArgumentException, IOException {
+        if (file == null) throw new IllegalArgumentException("Missing rule set file");
+        try (Reader input = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(input, version);
+        }
+    }
+
+    /**
+     * Parse a rule set.
+     * @param input The reader of the definition.
+     * @param version The version of the parsed rule set.
+     * @return The compiled rule set.
+     * @throws IllegalArgumentException The reader was undefined, or the definition was invalid. The
+     * message tells the line number of the invalid line.
+     * @throws IOException The reading failed.
+     */
+    public static RuleSet parse(Reader input, long version) throws IllegalArgumentException, IOException {
+        if (input == null) throw new IllegalArgumentException("Missing rule set input");
+        final BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+        final HitLocationRegistry registry = new HitLocationRegistry();
+        final Set<GameRules.UnitType> types = new LinkedHashSet<>();
+        final List<GameRules.UnitHitLocation> hitLocations = new ArrayList<>();
+        final List<RulesModifier> modifiers = new ArrayList<>();
+        String name = null;
+        String mode = null;
+        long number = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            final int separator = line.indexOf(':');
+            if (separator < 0) throw invalid(number, "Missing key");
+            final String key = line.substring(0, separator).strip().toLowerCase(Locale.ROOT);
+            final String value = line.substring(separator + 1).strip();
+            try {
+                switch (key) {
+                    case NAME -> name = value;
+                    case MODE -> mode = value;
+                    case TYPE -> types.add(parseType(value));
+                    case LOCATION -> {
+                        String[] fields = fields(value, 3, 4);
+                        GameRules.UnitType type = parseType(fields[0]);
+                        types.add(type);
+                        String abbrev = fields[2].isEmpty() ? null : fields[2];
+                        short slots = fields.length == 4 ? Short.parseShort(fields[3]) : 0;
+                        // The registry rejects a definition conflicting with a registered location.
+                        HitLocation location = fields.length == 4 ? registry.slotted(type, fields[1], abbrev, slots)
+                            : registry.unslotted(type, fields[1], abbrev);
+                        hitLocations.add(new GameRules.UnitHitLocation(type.toString(), location, slots));
+                    }
+                    case MODIFIER -> {
+                        String[] fields = fields(value, 3, 4);
+                        RoundingMode rounding = fields.length == 4 && !fields[3].isEmpty()
+                            ? RoundingMode.valueOf(fields[3].toUpperCase(Locale.ROOT)) : null;
+                        modifiers.add(new RulesModifier(fields[0], fields[1], Double.parseDouble(fields[2]), rounding));
+                    }
+                    default -> throw new IllegalArgumentException("Unknown key " + key);
+                }
+            } catch (IllegalArgumentException exception) {
+                throw invalid(number, exception.getMessage());
+            }
+        }
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("Rule set without name");
+        GameRules rules = new GameRules(name, mode, registry, types.toArray(new GameRules.UnitType[types.size()]),
+            hitLocations.toArray(new GameRules.UnitHitLocation[hitLocations.size()]));
+        return new RuleSet(version, rules, registry, modifiers);
+    }
+
+    /**
+     * Create the exception of an invalid line.
+     */
+    private static IllegalArgumentException invalid(long line, String message) {
+        return new IllegalArgumentException("Invalid rule set line " + line + ": " + message);
+    }
+
+    /**
+     * Parse a unit type.
+     */
+    private static GameRules.UnitType parseType(String value) throws IllegalArgumentException {
+        for (GameRules.UnitType type : GameRules.UnitType.values()) {
+            if (type.toString().equalsIgnoreCase(value)) return type;
+        }
+        throw new IllegalArgumentException("Unknown unit type " + value);
+    }
+
+    /**
+     * Split a value into comma separated fields.
+     */
+    private static String[] fields(String value, int min, int max) throws IllegalArgumentException {
+        String[] result = value.split(",", -1);
+        if (result.length < min || result.length > max) {
+            throw new IllegalArgumentException("Expected " + min + " to " + max + " fields");
+        }
+        for (int i = 0; i < result.length; i++) {
+            result[i] = result[i].strip();
+        }
+        if (result[0].isEmpty() || result[1].isEmpty()) throw new IllegalArgumentException("Missing field");
+        return result;
+    }
+
+    /**
+     * The version of the rule set.
+     * @return The version given when the rule set was loaded.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * The name of the rule set.
+     * @return The name of the game rules.
+     */
+    public String getName() {
+        return this.rules.name;
+    }
+
+    /**
+     * The game rules of the rule set.
+     * @return The game rules with the precomputed location tables.
+     */
+    public GameRules getRules() {
+        return this.rules;
+    }
+
+    /**
+     * The registry of the hit locations of the rule set.
+     * @return The registry of the canonical hit locations of the rules.
+     */
+    public HitLocationRegistry getLocations() {
+        return this.locations;
+    }
+
+    /**
+     * The modifiers of the rule set.
+     * @return The unmodifiable list of the modifiers in the order of the definition.
+     */
+    public List<RulesModifier> getModifiers() {
+        return this.modifiers;
+    }
+
+    /**
+     * The modifier engine of the rule set. The rule ids and the compiled equipment of the engine
+     * are released with the rule set.
+     * @return The modifier engine of the equipment used with the rule set.
+     */
+    public ModifierEngine getModifierEngine() {
+        return this.modifierEngine;
+    }
+
+    /**
+     * Get the effective modifier of a rule.
+     * @param rule The name of the rule.
+     * @return The sum of the rounded modifiers of the rule.
+     */
+    public double getModifier(String rule) {
+        Double result = rule == null ? null : this.effective.get(rule);
+        return result == null ? 0.0 : result;
+    }
+
+    /**
+     * Get the effective value of a rule.
+     * @param rule The name of the rule.
+     * @param base The base value of the rule.
+     * @return The base value modified by the effective modifier of the rule.
+     */
+    public double getValue(String rule, double base) {
+        return base + getModifier(rule);
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " v" + this.version;
+    }
+}
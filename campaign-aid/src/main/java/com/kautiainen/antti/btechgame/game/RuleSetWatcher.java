@@ -0,0 +1,347 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The watcher of the rule set files of a directory.
+ *
+ * The watcher loads the files with the {@link #EXTENSION rule set extension}, and reloads a file
+ * whenever it changes. A file is compiled into a new rule set before the rule sets are replaced, and
+ * the rule sets are replaced with a new map in one update, so the readers never wait for a reload
+ * and never see a partially loaded rule set. A rule set failing to load keeps its previous version,
+ * and the failure is kept until the file loads again.
+ *
+ * A changed file is reloaded once it has not changed for the {@link #QUIET_PERIOD quiet period},
+ * and a file changing while it is read is not loaded, so a file still being written is not loaded
+ * until it is complete. Writing the new version to a file without the rule set extension, and
+ * renaming it over the rule set file, replaces the rule set without waiting for the writing. The
+ * reloads are serialized, so the rule sets are replaced in the order of their versions.
+ */
+public final class RuleSetWatcher implements AutoCloseable {
+
+    /**
+     * The extension of the rule set files.
+     */
+    public static final String EXTENSION = ".rules";
+
+    /**
+     * The time in milliseconds the directory must stay unchanged before the changed files are
+     * reloaded.
+     */
+    public static final long QUIET_PERIOD = 250;
+
+    /**
+     * The listener of the changes of the rule sets.
+     */
+    @FunctionalInterface
+    public static interface Listener {
+
+        /**
+         * A rule set was loaded or removed. The listener is called by the thread loading the rule
+         * set after the rule set has been replaced.
+         * @param file The file name of the rule set.
+         * @param previous The previous version of the rule set, or undefined value if the rule set
+         * was added.
+         * @param current The current version of the rule set, or undefined value if the rule set was
+         * removed.
+         */
+        void ruleSetChanged(String file, RuleSet previous, RuleSet current);
+    }
+
+    /**
+     * The watched directory.
+     */
+    private final Path directory;
+
+    /**
+     * The current rule sets by file name. The map is never modified.
+     */
+    private final AtomicReference<Map<String, RuleSet>> ruleSets = new AtomicReference<>(Collections.emptyMap());
+
+    /**
+     * The lock serializing the reloads.
+     */
+    private final Object reloadLock = new Object();
+
+    /**
+     * The load and listener failures by file name.
+     */
+    private final ConcurrentHashMap<String, String> errors = new ConcurrentHashMap<>();
+
+    /**
+     * The last assigned version.
+     */
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * The listeners of the changes.
+     */
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The watch service of the directory, or undefined value if the watcher has not been started.
+     */
+    private WatchService service = null;
+
+    /**
+     * The thread waiting for the changes, or undefined value if the watcher has not been started.
+     */
+    private Thread thread = null;
+
+    /**
+     * Create a new watcher of a directory. The watcher does not load the rule sets until it is
+     * started or the rule sets are loaded.
+     * @param directory The directory of the rule set files.
+     * @throws IllegalArgumentException The directory was undefined.
+     */
+    public RuleSetWatcher(Path directory) throws IllegalArgumentException {
+        if (directory == null) throw new IllegalArgumentException("Missing rule set directory");
+        this.directory = directory;
+    }
+
+    /**
+     * The watched directory.
+     * @return The directory of the rule set files.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Add a listener of the changes.
+     * @param listener The added listener.
+     * @throws IllegalArgumentException The listener was undefined.
+     */
+    public void addListener(Listener listener) throws IllegalArgumentException {
+        if (listener == null) throw new IllegalArgumentException("Missing listener");
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener of the changes.
+     * @param listener The removed listener.
+     */
+    public void removeListener(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Get the current rule sets.
+     * @return The unmodifiable map of the current rule sets by file name. The map does not change
+     * when the rule sets are reloaded.
+     */
+    public Map<String, RuleSet> getRuleSets() {
+        return this.ruleSets.get();
+    }
+
+    /**
+     * Get the current version of a rule set.
+     * @param file The file name of the rule set.
+     * @return The current rule set, or undefined value if the file has not been loaded.
+     */
+    public RuleSet get(String file) {
+        return file == null ? null : this.ruleSets.get().get(file);
+    }
+
+    /**
+     * Get the load failures.
+     * @return The unmodifiable map of the messages of the failed loads and the failed listeners by
+     * file name.
+     */
+    public Map<String, String> getErrors() {
+        return Collections.unmodifiableMap(new HashMap<>(this.errors));
+    }
+
+    /**
+     * Is a path a rule set file name.
+     */
+    private static boolean isRuleSet(Path file) {
+        return file != null && file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * Load all rule set files of the directory.
+     * @return The number of loaded rule sets.
+     * @throws IOException The listing of the directory failed.
+     */
+    public int loadAll() throws IOException {
+        int result = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && reload(file.getFileName().toString())) result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Load a rule set file, and replace the current version of the rule set with it. A missing file
+     * removes the rule set. A file changing while it is read is not loaded, and the current version
+     * of the rule set is kept until the file is reloaded.
+     * @param file The file name of the rule set.
+     * @return True, if and only if the rule set was loaded.
+     * @throws IllegalArgumentException The file name was undefined.
+     */
+    public boolean reload(String file) throws IllegalArgumentException {
+        if (file == null) throw new IllegalArgumentException("Missing rule set file");
+        final Path path = this.directory.resolve(file);
+        synchronized (this.reloadLock) {
+            if (!Files.exists(path)) {
+                remove(file);
+                return false;
+            }
+            final RuleSet loaded;
+            try {
+                final FileTime modified = Files.getLastModifiedTime(path);
+                final long size = Files.size(path);
+                loaded = RuleSet.load(path, this.versions.incrementAndGet());
+                if (!modified.equals(Files.getLastModifiedTime(path)) || size != Files.size(path)) {
+                    // The file is still being written, and the end of the writing reloads it again.
+                    return false;
+                }
+            } catch (IOException | IllegalArgumentException exception) {
+                this.errors.put(file, String.valueOf(exception.getMessage()));
+                return false;
+            }
+            this.errors.remove(file);
+            Map<String, RuleSet> previous = this.ruleSets.getAndUpdate(current -> {
+                Map<String, RuleSet> result = new HashMap<>(current);
+                result.put(file, loaded);
+                return Collections.unmodifiableMap(result);
+            });
+            fire(file, previous.get(file), loaded);
+            return true;
+        }
+    }
+
+    /**
+     * Remove a rule set. The caller holds the reload lock.
+     * @param file The file name of the rule set.
+     */
+    private void remove(String file) {
+        this.errors.remove(file);
+        Map<String, RuleSet> previous = this.ruleSets.getAndUpdate(current -> {
+            if (!current.containsKey(file)) return current;
+            Map<String, RuleSet> result = new HashMap<>(current);
+            result.remove(file);
+            return Collections.unmodifiableMap(result);
+        });
+        if (previous.containsKey(file)) fire(file, previous.get(file), null);
+    }
+
+    /**
+     * Inform the listeners of a change. A failing listener does not prevent informing the other
+     * listeners, and its failure is kept with the load failures of the file.
+     */
+    private void fire(String file, RuleSet previous, RuleSet current) {
+        for (Listener listener : this.listeners) {
+            try {
+                listener.ruleSetChanged(file, previous, current);
+            } catch (RuntimeException exception) {
+                this.errors.put(file, "Listener failed: " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Start watching the directory. The rule sets of the directory are loaded before the method
+     * returns, and the changes are loaded by a daemon thread until the watcher is closed.
+     * @throws IOException The watching of the directory failed.
+     * @throws IllegalStateException The watcher has already been started.
+     */
+    public synchronized void start() throws IOException, IllegalStateException {
+        if (this.service != null) throw new IllegalStateException("Rule set watcher already started");
+        final WatchService watchService = this.directory.getFileSystem().newWatchService();
+        try {
+            this.directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            loadAll();
+        } catch (IOException exception) {
+            watchService.close();
+            throw exception;
+        }
+        this.service = watchService;
+        this.thread = new Thread(() -> watch(watchService), "rule-set-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Load the changes of the directory until the watch service is closed.
+     */
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                // The events are collected until the directory has been quiet for the quiet period,
+                // so a file written in several steps is loaded once after the writing has ended.
+                Set<String> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                boolean valid = true;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (event.context() instanceof Path file && isRuleSet(file)) {
+                            changed.add(file.getFileName().toString());
+                        }
+                    }
+                    valid = key.reset();
+                    key = valid ? watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS) : null;
+                }
+                if (overflow) {
+                    for (String file : getRuleSets().keySet()) {
+                        if (!Files.exists(this.directory.resolve(file))) reload(file);
+                    }
+                    try {
+                        loadAll();
+                    } catch (IOException exception) {
+                        this.errors.put(this.directory.toString(), String.valueOf(exception.getMessage()));
+                    }
+                } else {
+                    for (String file : changed) {
+                        reload(file);
+                    }
+                }
+                if (!valid) return;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exception) {
+            // The watcher was closed.
+        }
+    }
+
+    /**
+     * Stop watching the directory. The current rule sets remain available.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.service == null) return;
+        try {
+            this.service.close();
+        } catch (IOException exception) {
+            // Closing the watch service only releases its resources.
+        }
+        this.thread.interrupt();
+        this.service = null;
+        this.thread = null;
+    }
+}
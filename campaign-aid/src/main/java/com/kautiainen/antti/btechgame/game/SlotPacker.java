@@ -0,0 +1,90 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.Arrays;
+
+/**
+ * The packing of equipment into the critical slots of hit locations.
+ *
+ * The packer first tries the best fit decreasing heuristic, which places the largest equipment
+ * first into the location with the fewest sufficient free slots. If the heuristic fails for a small
+ * number of items, an exhaustive search decides whether a packing exists.
+ */
+final class SlotPacker {
+
+    /**
+     * The largest number of items packed with the exhaustive search.
+     */
+    static final int EXACT_LIMIT = 12;
+
+    private SlotPacker() {
+
+    }
+
+    /**
+     * Pack items into locations.
+     * @param free The free slots of the locations.
+     * @param sizes The sizes of the items.
+     * @return The location index of every item, or undefined value if the items could not be packed.
+     */
+    static int[] pack(int[] free, int[] sizes) {
+        Integer[] boxed = new Integer[sizes.length];
+        for (int i = 0; i < boxed.length; i++) boxed[i] = i;
+        Arrays.sort(boxed, (a, b) -> Integer.compare(sizes[b], sizes[a]));
+        int[] order = Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+
+        int[] result = new int[sizes.length];
+        int[] remaining = free.clone();
+        if (bestFit(remaining, sizes, order, result)) {
+            return result;
+        }
+        if (sizes.length <= EXACT_LIMIT && exact(free.clone(), sizes, order, 0, result)) {
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * Pack the items with the best fit decreasing heuristic.
+     */
+    private static boolean bestFit(int[] free, int[] sizes, int[] order, int[] result) {
+        for (int item : order) {
+            int best = -1;
+            for (int location = 0; location < free.length; location++) {
+                if (free[location] >= sizes[item] && (best < 0 || free[location] < free[best])) {
+                    best = location;
+                }
+            }
+            if (best < 0) return false;
+            free[best] -= sizes[item];
+            result[item] = best;
+        }
+        return true;
+    }
+
+    /**
+     * Pack the items with an exhaustive search. Locations with equal free slots are
+     * interchangeable, so only the first of them is tried.
+     */
+    private static boolean exact(int[] free, int[] sizes, int[] order, int index, int[] result) {
+        if (index == order.length) return true;
+        final int item = order[index];
+        for (int location = 0; location < free.length; location++) {
+            if (free[location] < sizes[item] || seenBefore(free, location)) continue;
+            free[location] -= sizes[item];
+            result[item] = location;
+            if (exact(free, sizes, order, index + 1, result)) return true;
+            free[location] += sizes[item];
+        }
+        return false;
+    }
+
+    /**
+     * Does a location before the given location have the same number of free slots.
+     */
+    private static boolean seenBefore(int[] free, int location) {
+        for (int i = 0; i < location; i++) {
+            if (free[i] == free[location]) return true;
+        }
+        return false;
+    }
+}
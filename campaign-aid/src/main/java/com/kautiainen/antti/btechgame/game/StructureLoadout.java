@@ -29,8 +29,8 @@ public class StructureLoadout {
      * @throws IllegalArgumentException The loadout location, maximum, or current value is invalid.
      */
     public StructureLoadout(HitLocation location, Short max, short current) throws IllegalArgumentException {
-        if (max <= 0) throw new IllegalArgumentException("Negative maximum structure");
-        if (current > max) throw new IllegalArgumentException("Current structure larger than maximum");
+        if (max != null && max <= 0) throw new IllegalArgumentException("Negative maximum structure");
+        if (max != null && current > max) throw new IllegalArgumentException("Current structure larger than maximum");
         this.location = location;
         this.max = max;
         this.current = current;
@@ -0,0 +1,346 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import com.kautiainen.antti.btechgame.metrics.Histogram;
+import com.kautiainen.antti.btechgame.metrics.Metrics;
+
+/**
+ * The end of turn maintenance of a campaign.
+ *
+ * The maintenance runs in stages over the whole roster. Each stage processes the units in batches
+ * in parallel, and the next stage starts when all batches of the previous stage have completed.
+ * The stages produce a new array of units, which replaces the units of the campaign in one update,
+ * so the readers of the campaign never see a partially maintained roster. The units the stages do
+ * not change are kept as they are.
+ */
+public final class TurnPipeline {
+
+    /**
+     * The default number of units in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The stages of the maintenance.
+     */
+    public static enum Stage {
+        /** The armor and the structure are repaired. */
+        REPAIR,
+        /** The units are resupplied. */
+        RESUPPLY,
+        /** The tonnage of the units is validated. */
+        REVALIDATE,
+        /** The units are merged into the new campaign. */
+        MERGE;
+
+        /**
+         * The latencies of the stage in nanoseconds.
+         */
+        private final Histogram latency = Metrics.histogram("game.turn." + name().toLowerCase());
+    }
+
+    /**
+     * The resupply of the units.
+     */
+    @FunctionalInterface
+    public static interface Resupply {
+
+        /**
+         * No resupply.
+         */
+        public static final Resupply NONE = unit -> unit;
+
+        /**
+         * Resupply a unit. The resupply is called from several threads at the same time.
+         * @param unit The repaired unit.
+         * @return The resupplied unit, or the given unit if it was not changed.
+         */
+        Unit resupply(Unit unit);
+    }
+
+    /**
+     * The repair allowed per turn.
+     * @param armorPerLocation The largest amount of armor repaired in a location.
+     * @param structurePerLocation The largest amount of structure repaired in a location. The
+     * destroyed locations are not repaired.
+     */
+    public static record RepairPolicy(int armorPerLocation, int structurePerLocation) {
+
+        /**
+         * The repair of all damage of the locations which are not destroyed.
+         */
+        public static final RepairPolicy FULL = new RepairPolicy(Short.MAX_VALUE, Short.MAX_VALUE);
+
+        /**
+         * Create a new repair policy.
+         * @throws IllegalArgumentException Either amount was negative.
+         */
+        public RepairPolicy {
+            if (armorPerLocation < 0) throw new IllegalArgumentException("Negative armor repair");
+            if (structurePerLocation < 0) throw new IllegalArgumentException("Negative structure repair");
+        }
+    }
+
+    /**
+     * A unit failing the validation.
+     * @param index The index of the unit in the campaign.
+     * @param unit The invalid unit.
+     * @param message The description of the failure.
+     */
+    public static record Violation(int index, Unit unit, String message) {
+
+    }
+
+    /**
+     * The result of the maintenance.
+     * @param campaign The maintained campaign.
+     * @param repaired The number of repaired units.
+     * @param resupplied The number of resupplied units.
+     * @param violations The units failing the validation in the order of the units.
+     * @param timings The wall clock durations of the stages in nanoseconds.
+     */
+    public static record Result(Campaign campaign, int repaired, int resupplied, List<Violation> violations,
+        Map<Stage, Long> timings) {
+
+    }
+
+    /**
+     * The registry of the canonical hit locations of the rules of the maintenance.
+     */
+    private final HitLocationRegistry registry;
+
+    private final RepairPolicy repair;
+
+    private final Resupply resupply;
+
+    private final int batchSize;
+
+    /**
+     * Create a new pipeline with full repair and without resupply.
+     */
+    public TurnPipeline() {
+        this(RepairPolicy.FULL, Resupply.NONE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a new pipeline.
+     * @param repair The repair policy.
+     * @param resupply The resupply of the units.
+     * @param batchSize The number of units in a batch.
+     * @throws IllegalArgumentException The policy or the resupply was undefined, or the batch size
+     * was not positive.
+     */
+    public TurnPipeline(RepairPolicy repair, Resupply resupply, int batchSize) throws IllegalArgumentException {
+        this(HitLocationRegistry.getDefault(), repair, resupply, batchSize);
+    }
+
+    /**
+     * Create a new pipeline using the hit locations of a rule set.
+     * @param ruleSet The rule set of the maintenance.
+     * @param repair The repair policy.
+     * @param resupply The resupply of the units.
+     * @param batchSize The number of units in a batch.
+     * @throws IllegalArgumentException The rule set, the policy, or the resupply was undefined, or
+     * the batch size was not positive.
+     */
+    public TurnPipeline(RuleSet ruleSet, RepairPolicy repair, Resupply resupply, int batchSize) throws IllegalArgumentException {
+        this(ruleSet == null ? null : ruleSet.getLocations(), repair, resupply, batchSize);
+    }
+
+    private TurnPipeline(HitLocationRegistry registry, RepairPolicy repair, Resupply resupply, int batchSize) throws IllegalArgumentException {
+        if (registry == null) throw new IllegalArgumentException("Missing rule set");
+        if (repair == null) throw new IllegalArgumentException("Missing repair policy");
+        if (resupply == null) throw new IllegalArgumentException("Missing resupply");
+        if (batchSize <= 0) throw new IllegalArgumentException("Non-positive batch size");
+        this.registry = registry;
+        this.repair = repair;
+        this.resupply = resupply;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The task of a stage for a batch of units.
+     */
+    @FunctionalInterface
+    private static interface BatchTask {
+
+        /**
+         * Process a batch.
+         * @param first The index of the first unit of the batch.
+         * @param end The index after the last unit of the batch.
+         */
+        void run(int first, int end);
+    }
+
+    /**
+     * Perform a stage for batches of units in parallel.
+     * @param stage The performed stage.
+     * @param units The number of units.
+     * @param batch The task of a batch.
+     * @return The wall clock duration of the stage in nanoseconds.
+     */
+    private long stage(Stage stage, int units, BatchTask batch) {
+        final long start = System.nanoTime();
+        final int batches = (units + this.batchSize - 1) / this.batchSize;
+        IntStream.range(0, batches).parallel().forEach(index -> {
+            final int first = index * this.batchSize;
+            batch.run(first, Math.min(units, first + this.batchSize));
+        });
+        final long result = System.nanoTime() - start;
+        stage.latency.record(result);
+        return result;
+    }
+
+    /**
+     * Perform the maintenance of a campaign. The campaign is not changed.
+     * @param campaign The campaign.
+     * @return The result with the maintained campaign.
+     * @throws IllegalArgumentException The campaign was undefined.
+     */
+    public Result run(Campaign campaign) throws IllegalArgumentException {
+        if (campaign == null) throw new IllegalArgumentException("Missing campaign");
+        final Unit[] units = campaign.getUnits();
+        final Unit[] repaired = new Unit[units.length];
+        final Unit[] resupplied = new Unit[units.length];
+        final AtomicInteger repairCount = new AtomicInteger();
+        final AtomicInteger resupplyCount = new AtomicInteger();
+        final ConcurrentLinkedQueue<Violation> violations = new ConcurrentLinkedQueue<>();
+        final Map<Stage, Long> timings = new EnumMap<>(Stage.class);
+
+        timings.put(Stage.REPAIR, stage(Stage.REPAIR, units.length, (first, end) -> {
+            int count = 0;
+            for (int i = first; i < end; i++) {
+                repaired[i] = repair(units[i]);
+                if (repaired[i] != units[i]) count++;
+            }
+            repairCount.addAndGet(count);
+        }));
+        timings.put(Stage.RESUPPLY, stage(Stage.RESUPPLY, units.length, (first, end) -> {
+            int count = 0;
+            for (int i = first; i < end; i++) {
+                Unit result = this.resupply.resupply(repaired[i]);
+                resupplied[i] = result == null ? repaired[i] : result;
+                if (resupplied[i] != repaired[i]) count++;
+            }
+            resupplyCount.addAndGet(count);
+        }));
+        timings.put(Stage.REVALIDATE, stage(Stage.REVALIDATE, units.length, (first, end) -> {
+            for (int i = first; i < end; i++) {
+                String failure = validate(resupplied[i]);
+                if (failure != null) violations.add(new Violation(i, resupplied[i], failure));
+            }
+        }));
+
+        final long start = System.nanoTime();
+        List<Violation> ordered = new ArrayList<>(violations);
+        ordered.sort((first, second) -> Integer.compare(first.index(), second.index()));
+        Campaign result = new Campaign(campaign.getName(), resupplied);
+        final long merge = System.nanoTime() - start;
+        Stage.MERGE.latency.record(merge);
+        timings.put(Stage.MERGE, merge);
+        return new Result(result, repairCount.get(), resupplyCount.get(), Collections.unmodifiableList(ordered),
+            Collections.unmodifiableMap(timings));
+    }
+
+    /**
+     * Perform the maintenance of the current campaign, and replace it with the maintained
+     * campaign.
+     * @param state The reference to the current campaign.
+     * @return The result with the maintained campaign.
+     * @throws IllegalArgumentException The reference or the campaign was undefined.
+     * @throws IllegalStateException The campaign was replaced during the maintenance. The campaign
+     * is not replaced by the maintained campaign.
+     */
+    public Result advance(AtomicReference<Campaign> state) throws IllegalArgumentException, IllegalStateException {
+        if (state == null) throw new IllegalArgumentException("Missing campaign state");
+        Campaign current = state.get();
+        Result result = run(current);
+        if (!state.compareAndSet(current, result.campaign())) {
+            throw new IllegalStateException("Campaign changed during the turn");
+        }
+        return result;
+    }
+
+    /**
+     * Does a unit need repair.
+     */
+    private static boolean isDamaged(Unit unit) {
+        for (ArmorLoadout entry : unit.armor) {
+            if (entry != null && (entry.max == null || entry.current < entry.max)) return true;
+        }
+        for (StructureLoadout entry : unit.structure) {
+            if (entry != null && (entry.max == null || entry.current < entry.max)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Repair a unit.
+     * @param unit The unit.
+     * @return The repaired unit, or the given unit if it had no damage to repair.
+     */
+    Unit repair(Unit unit) {
+        if (!isDamaged(unit)) return unit;
+        DamageEngine.UnitState state = new DamageEngine.UnitState(unit, this.registry);
+        HitLocation[] locations = state.getLocations();
+        short[] armor = new short[locations.length];
+        short[] armorMax = new short[locations.length];
+        short[] structure = new short[locations.length];
+        short[] structureMax = new short[locations.length];
+        state.copyArmor(armor, armorMax);
+        state.copyStructure(structure, structureMax);
+        DamageEngine.Batch batch = state.newBatch();
+        for (int i = 0; i < locations.length; i++) {
+            if (state.isDestroyed(locations[i])) continue;
+            if (armor[i] < armorMax[i]) {
+                batch.repairArmor(locations[i], Math.min(armorMax[i] - armor[i], this.repair.armorPerLocation()));
+            }
+            if (structure[i] < structureMax[i]) {
+                batch.repairStructure(locations[i],
+                    Math.min(structureMax[i] - structure[i], this.repair.structurePerLocation()));
+            }
+        }
+        if (batch.size() == 0 && !hasDeltas(unit)) return unit;
+        state.submit(batch);
+        state.apply();
+        return state.toUnit(unit);
+    }
+
+    /**
+     * Does a unit have armor or structure deltas, which the repair folds into the totals.
+     */
+    private static boolean hasDeltas(Unit unit) {
+        for (ArmorLoadout entry : unit.armor) {
+            if (entry != null && entry.max == null) return true;
+        }
+        for (StructureLoadout entry : unit.structure) {
+            if (entry != null && entry.max == null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Validate the tonnage of a unit.
+     * @param unit The unit.
+     * @return The description of the failure, or undefined value if the unit is valid.
+     */
+    static String validate(Unit unit) {
+        if (unit.availableTonnage > unit.tonnage) {
+            return String.format("Available tonnage %s exceeds the tonnage %s", unit.availableTonnage, unit.tonnage);
+        }
+        double mass = unit.getSummary().getEquipmentMass();
+        if (mass > unit.availableTonnage + 1e-9) {
+            return String.format("Equipment mass %s exceeds the available tonnage %s", mass, unit.availableTonnage);
+        }
+        return null;
+    }
+}
@@ -1,14 +1,24 @@
 
 package com.kautiainen.antti.btechgame.game;
 
-import java.util.Arrays;
-
 import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+import com.kautiainen.antti.btechgame.metrics.Histogram;
+import com.kautiainen.antti.btechgame.metrics.Metrics;
 
 /**
  * A POJO representing an unit.
  */
 public class Unit {
+
+    /**
+     * The latencies of creating units in nanoseconds.
+     */
+    static final Histogram CREATE_LATENCY = Metrics.histogram("game.unit.create");
+
+    /**
+     * The latencies of creating loadout controllers of units in nanoseconds.
+     */
+    static final Histogram LOADOUT_CONTROLLER_LATENCY = Metrics.histogram("game.unit.loadout_controller");
     
     /**
      * The name of the unit.
@@ -50,6 +60,173 @@ public class Unit {
      */
     final StructureLoadout[] structure; 
 
+    /**
+     * The precomputed totals of a unit.
+     *
+     * The totals are computed with one pass over the loadout, the armor, and the structure of the
+     * unit, and the queries of the totals take constant time. The armor and structure totals
+     * include the entries with a maximum, and omit the deltas without maximum.
+     */
+    public static final class Summary {
+
+        private final double equipmentMass;
+
+        private final int equipmentCount;
+
+        private final long contentHash;
+
+        private final int armor;
+
+        private final int armorMax;
+
+        private final int structure;
+
+        private final int structureMax;
+
+        /**
+         * The locations with equipment.
+         */
+        private final HitLocation[] locations;
+
+        /**
+         * The critical slots used by the equipment by the index of the location.
+         */
+        private final int[] usedSlots;
+
+        /**
+         * Compute the summary of a unit.
+         * @param unit The unit.
+         */
+        private Summary(Unit unit) {
+            double mass = 0.0;
+            int count = 0;
+            long hash = 0;
+            HitLocation[] locations = new HitLocation[4];
+            int[] slots = new int[4];
+            int locationCount = 0;
+            for (EquipmentLoadout entry : unit.loadout) {
+                if (entry == null || entry.getValue() == null) continue;
+                Equipment equipment = entry.getValue();
+                mass += equipment.mass;
+                count++;
+                hash += ValuationEngine.hashOf(equipment);
+                if (entry.getKey() != null) {
+                    int index = 0;
+                    while (index < locationCount && !locations[index].equals(entry.getKey())) index++;
+                    if (index == locationCount) {
+                        if (locationCount == locations.length) {
+                            locations = java.util.Arrays.copyOf(locations, 2 * locationCount);
+                            slots = java.util.Arrays.copyOf(slots, 2 * locationCount);
+                        }
+                        locations[locationCount++] = entry.getKey();
+                    }
+                    slots[index] += equipment.size;
+                }
+            }
+            int armor = 0;
+            int armorMax = 0;
+            for (ArmorLoadout entry : unit.armor) {
+                if (entry != null && entry.max != null) {
+                    armor += entry.current;
+                    armorMax += entry.max;
+                }
+            }
+            int structure = 0;
+            int structureMax = 0;
+            for (StructureLoadout entry : unit.structure) {
+                if (entry != null && entry.max != null) {
+                    structure += entry.current;
+                    structureMax += entry.max;
+                }
+            }
+            this.equipmentMass = mass;
+            this.equipmentCount = count;
+            this.contentHash = hash;
+            this.armor = armor;
+            this.armorMax = armorMax;
+            this.structure = structure;
+            this.structureMax = structureMax;
+            this.locations = java.util.Arrays.copyOf(locations, locationCount);
+            this.usedSlots = java.util.Arrays.copyOf(slots, locationCount);
+        }
+
+        /**
+         * The total mass of the equipment.
+         * @return The sum of the masses of the equipment of the loadout.
+         */
+        public double getEquipmentMass() {
+            return this.equipmentMass;
+        }
+
+        /**
+         * The number of equipment.
+         * @return The number of equipment in the loadout.
+         */
+        public int getEquipmentCount() {
+            return this.equipmentCount;
+        }
+
+        /**
+         * The content hash of the equipment.
+         * @return The order independent hash of the equipment of the loadout used by the
+         * {@link ValuationEngine}.
+         */
+        public long getContentHash() {
+            return this.contentHash;
+        }
+
+        /**
+         * The total current armor.
+         * @return The sum of the current armor of the locations.
+         */
+        public int getArmor() {
+            return this.armor;
+        }
+
+        /**
+         * The total maximum armor.
+         * @return The sum of the maximum armor of the locations.
+         */
+        public int getArmorMax() {
+            return this.armorMax;
+        }
+
+        /**
+         * The total current structure.
+         * @return The sum of the current structure of the locations.
+         */
+        public int getStructure() {
+            return this.structure;
+        }
+
+        /**
+         * The total maximum structure.
+         * @return The sum of the maximum structure of the locations.
+         */
+        public int getStructureMax() {
+            return this.structureMax;
+        }
+
+        /**
+         * The critical slots used in a location. A unit has only a few locations, so the location
+         * is found with a linear search.
+         * @param location The location.
+         * @return The number of critical slots the equipment of the location uses.
+         */
+        public int getUsedSlots(HitLocation location) {
+            for (int i = 0; i < this.locations.length; i++) {
+                if (this.locations[i].equals(location)) return this.usedSlots[i];
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * The summary of the unit, or undefined value if it has not been computed. The summary is
+     * immutable, so concurrent threads may compute it at most once each.
+     */
+    private volatile Summary summary;
+
     /**
      * Create a new unit.
      * @param type The unit type.
@@ -60,17 +237,60 @@ public class Unit {
      */
     public Unit(GameRules.UnitType type, String name, String model, double tonnage,
     double availableTonnage, EquipmentLoadout[] loadout, ArmorLoadout[] armor, StructureLoadout[] structure) {
+        final long start = System.nanoTime();
         if (type == null) throw new IllegalArgumentException("Unit without unit type");
         if (armor == null) throw new IllegalArgumentException("Unit without armor");
         if (structure == null) throw new IllegalArgumentException("Unit without structure");
+        if (loadout == null) throw new IllegalArgumentException("Unit without loadout");
         this.type = type;
         this.name = name;
         this.model = model;
         this.tonnage = tonnage;
         this.availableTonnage = availableTonnage;
-        this.loadout = java.util.Arrays.asList(loadout).stream().toArray( (int size) -> (new EquipmentLoadout[size]) );
-        this.armor = java.util.Arrays.asList(armor).toArray( (int size) -> (new ArmorLoadout[size]));
-        this.structure = java.util.Arrays.asList(structure).toArray( (int size) -> (new StructureLoadout[size]));
+        this.loadout = loadout.clone();
+        this.armor = armor.clone();
+        this.structure = structure.clone();
+        CREATE_LATENCY.recordSince(start);
+    }
+
+    /**
+     * The name of the unit.
+     * @return The name of the unit.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The model name of the unit.
+     * @return The model name of the unit.
+     */
+    public String getModel() {
+        return this.model;
+    }
+
+    /**
+     * The unit type of the unit.
+     * @return The unit type of the unit.
+     */
+    public GameRules.UnitType getType() {
+        return this.type;
+    }
+
+    /**
+     * The total tonnage of the unit.
+     * @return The total tonnage of the unit.
+     */
+    public double getTonnage() {
+        return this.tonnage;
+    }
+
+    /**
+     * The tonnage available for equipment.
+     * @return The available tonnage of the unit.
+     */
+    public double getAvailableTonnage() {
+        return this.availableTonnage;
     }
 
     /**
@@ -81,14 +301,49 @@ public class Unit {
         return getLoadoutController(false, true);
     }
 
+    /**
+     * The precomputed totals of the unit.
+     * @return The summary computed on the first call.
+     */
+    public Summary getSummary() {
+        Summary result = this.summary;
+        if (result == null) {
+            result = new Summary(this);
+            this.summary = result;
+        }
+        return result;
+    }
+
     public LoadoutController getLoadoutController(boolean stripArmor, boolean stripEquipment) {
-        return new LoadoutController(this.tonnage, this.availableTonnage
-        + (stripEquipment ? (Arrays.stream(this.loadout).collect(
-            java.util.stream.Collectors.summingDouble( (EquipmentLoadout item) -> (item == null ? 0.0 : -item.getValue().mass) )
-        )) : 0.0)
-        + (stripArmor ? Math.floor(Arrays.stream(this.armor).filter( item -> (item.max != null)).collect(
-            java.util.stream.Collectors.summingInt( (ArmorLoadout location) -> (-location.max))
-        ) / 16.0) : 0.0)); 
+        final long start = System.nanoTime();
+        LoadoutController result = new LoadoutController(this.tonnage, getStrippedTonnage(stripArmor, stripEquipment));
+        LOADOUT_CONTROLLER_LATENCY.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Create a loadout controller for this unit using the hit locations of game rules.
+     * @param stripArmor Is the armor removed from the unit.
+     * @param stripEquipment Is the equipment removed from the unit.
+     * @param rules The game rules of the calculation.
+     * @return The loadout controller for the unit.
+     * @throws IllegalArgumentException The rules were undefined.
+     */
+    public LoadoutController getLoadoutController(boolean stripArmor, boolean stripEquipment, GameRules rules)
+            throws IllegalArgumentException {
+        final long start = System.nanoTime();
+        LoadoutController result = new LoadoutController(this.tonnage, getStrippedTonnage(stripArmor, stripEquipment), rules);
+        LOADOUT_CONTROLLER_LATENCY.recordSince(start);
+        return result;
+    }
 
+    /**
+     * The available tonnage of the unit with the armor or the equipment removed.
+     */
+    private double getStrippedTonnage(boolean stripArmor, boolean stripEquipment) {
+        final Summary totals = getSummary();
+        return this.availableTonnage
+        + (stripEquipment ? -totals.getEquipmentMass() : 0.0)
+        + (stripArmor ? Math.floor(-totals.getArmorMax() / 16.0) : 0.0);
     }
 }
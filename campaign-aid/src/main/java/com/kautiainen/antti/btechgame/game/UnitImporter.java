@@ -0,0 +1,426 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The streaming importer of unit definitions.
+ *
+ * The importer reads a line oriented format resembling the MegaMek MTF files. A file may contain
+ * any number of units, and every unit starts with a <code>chassis:</code> line.
+ * <ul>
+ * <li>The <code>chassis</code>, <code>model</code>, <code>type</code>, <code>mass</code>, and
+ * <code>available</code> keys set the name, the model, the unit type, the tonnage, and the tonnage
+ * available for equipment of the unit. The type defaults to mech, and the available tonnage to the
+ * mass. The type is read before the other lines of the record, so the locations are resolved with
+ * the type of the unit wherever the type line is. Other keys are ignored.</li>
+ * <li>The <code>LOC armor:N</code> and <code>LOC structure:N</code> lines set the armor and the
+ * structure of a location, which is given by its abbreviation or name.</li>
+ * <li>A line with a location name followed by a colon starts the critical slots of the location. The
+ * following lines until a blank line name the equipment in the slots. The <code>-Empty-</code> slots
+ * are skipped, and an equipment taking several slots is listed once per slot.</li>
+ * <li>Blank lines and lines starting with <code>#</code> outside of the critical slots are ignored.</li>
+ * </ul>
+ *
+ * The reading thread splits the input into chunks of records, which are parsed in parallel on a
+ * fork/join pool. The number of chunks read ahead of the parsing is bounded, so the memory used by
+ * the import does not depend on the size of the input. The equipment is resolved against an
+ * equipment catalog, and the locations against a hit location registry, so the imported units share
+ * their canonical instances.
+ */
+public final class UnitImporter {
+
+    /**
+     * The default number of records in a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    /**
+     * The largest number of lines in a record.
+     */
+    static final int MAX_RECORD_LINES = 4096;
+
+    /**
+     * The equipment line of an empty critical slot.
+     */
+    private static final String EMPTY_SLOT = "-Empty-";
+
+    /**
+     * An error of an imported record.
+     * @param line The line number of the error.
+     * @param chassis The chassis of the record, or undefined value if it is not known.
+     * @param model The model of the record, or undefined value if it is not known.
+     * @param message The error message.
+     */
+    public static record ImportError(long line, String chassis, String model, String message) {
+
+    }
+
+    /**
+     * The summary of an import.
+     * @param records The number of records read.
+     * @param imported The number of units imported.
+     * @param failed The number of records failed.
+     */
+    public static record Summary(long records, long imported, long failed) {
+
+    }
+
+    /**
+     * The lines of a record.
+     * @param line The line number of the first line.
+     * @param lines The lines of the record.
+     */
+    private static record Record(long line, List<String> lines) {
+
+    }
+
+    /**
+     * The error aborting the parsing of a record.
+     */
+    private static final class RecordException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final long line;
+
+        RecordException(long line, String message) {
+            super(message, null, false, false);
+            this.line = line;
+        }
+    }
+
+    private final EquipmentCatalog catalog;
+
+    private final HitLocationRegistry registry;
+
+    private final ForkJoinPool pool;
+
+    private final int chunkSize;
+
+    /**
+     * The largest number of chunks read ahead of the parsing.
+     */
+    private final int maxPendingChunks;
+
+    /**
+     * Create an importer parsing on the common fork/join pool.
+     * @param catalog The catalog of the equipment.
+     * @param registry The registry of the hit locations. The locations of the unit types have to be
+     * registered before the import, for example by creating the game rules.
+     * @throws IllegalArgumentException The catalog or the registry was undefined.
+     */
+    public UnitImporter(EquipmentCatalog catalog, HitLocationRegistry registry) throws IllegalArgumentException {
+        this(catalog, registry, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, 2 * ForkJoinPool.commonPool().getParallelism());
+    }
+
+    /**
+     * Create an importer.
+     * @param catalog The catalog of the equipment.
+     * @param registry The registry of the hit locations.
+     * @param pool The pool parsing the chunks.
+     * @param chunkSize The number of records in a chunk.
+     * @param maxPendingChunks The largest number of chunks read but not yet parsed.
+     * @throws IllegalArgumentException Any parameter was undefined, or a size was not positive.
+     */
+    public UnitImporter(EquipmentCatalog catalog, HitLocationRegistry registry, ForkJoinPool pool, int chunkSize, int maxPendingChunks)
+            throws IllegalArgumentException {
+        if (catalog == null) throw new IllegalArgumentException("Missing equipment catalog");
+        if (registry == null) throw new IllegalArgumentException("Missing hit location registry");
+        if (pool == null) throw new IllegalArgumentException("Missing pool");
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        if (maxPendingChunks <= 0) throw new IllegalArgumentException("Pending chunk count must be positive");
+        this.catalog = catalog;
+        this.registry = registry;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    /**
+     * Import the units of a UTF-8 encoded file.
+     * @param file The file.
+     * @param units The consumer of the imported units.
+     * @param errors The consumer of the record errors.
+     * @return The summary of the import.
+     * @throws IllegalArgumentException Any parameter was undefined.
+     * @throws IOException The reading of the file failed.
+     * @see #importUnits(Reader, Consumer, Consumer)
+     */
+    public Summary importUnits(Path file, Consumer<Unit> units, Consumer<ImportError> errors) throws IllegalArgumentException, IOException {
+        if (file == null) throw new IllegalArgumentException("Missing file");
+        try (Reader input = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importUnits(input, units, errors);
+        }
+    }
+
+    /**
+     * Import units. The consumers are called concurrently from the threads of the pool, and the
+     * units are not consumed in the order of the input. A record with an error is skipped, and the
+     * import continues with the next record.
+     * @param input The reader of the unit definitions.
+     * @param units The consumer of the imported units.
+     * @param errors The consumer of the record errors.
+     * @return The summary of the import, when all records have been parsed and consumed.
+     * @throws IllegalArgumentException Any parameter was undefined.
+     * @throws IOException The reading of the input failed.
+     * @throws RejectedExecutionException The pool did not accept a chunk. The import ends after the
+     * chunks already accepted have been parsed.
+     */
+    public Summary importUnits(Reader input, Consumer<Unit> units, Consumer<ImportError> errors)
+            throws IllegalArgumentException, IOException, RejectedExecutionException {
+        if (input == null) throw new IllegalArgumentException("Missing input");
+        if (units == null) throw new IllegalArgumentException("Missing unit consumer");
+        if (errors == null) throw new IllegalArgumentException("Missing error consumer");
+        final Semaphore pending = new Semaphore(this.maxPendingChunks);
+        final LongAdder records = new LongAdder();
+        final LongAdder imported = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final Consumer<List<Record>> submit = (List<Record> chunk) -> {
+            records.add(chunk.size());
+            try {
+                this.pool.execute(() -> {
+                    try {
+                        for (Record record : chunk) {
+                            if (parse(record, units, errors)) imported.increment();
+                            else failed.increment();
+                        }
+                    } finally {
+                        pending.release();
+                    }
+                });
+            } catch (RuntimeException rejected) {
+                // The chunk never runs, so its permit is released here.
+                pending.release();
+                throw rejected;
+            }
+        };
+        try {
+            BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+            List<Record> chunk = new ArrayList<>(this.chunkSize);
+            List<String> lines = null;
+            long first = 0;
+            long number = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (isKey(line, "chassis")) {
+                    if (lines != null) {
+                        chunk.add(new Record(first, lines));
+                        if (chunk.size() == this.chunkSize) {
+                            pending.acquire();
+                            submit.accept(chunk);
+                            chunk = new ArrayList<>(this.chunkSize);
+                        }
+                    }
+                    lines = new ArrayList<>();
+                    first = number;
+                }
+                if (lines == null) {
+                    if (!line.isBlank() && !line.startsWith("#")) {
+                        errors.accept(new ImportError(number, null, null, "Line outside of a unit record"));
+                        failed.increment();
+                    }
+                } else if (lines.size() < MAX_RECORD_LINES) {
+                    lines.add(line);
+                } else if (lines.size() == MAX_RECORD_LINES) {
+                    // The parsing reports the record too long.
+                    lines.add(null);
+                }
+            }
+            if (lines != null) chunk.add(new Record(first, lines));
+            if (!chunk.isEmpty()) {
+                pending.acquire();
+                submit.accept(chunk);
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Unit import interrupted");
+        } finally {
+            pending.acquireUninterruptibly(this.maxPendingChunks);
+            pending.release(this.maxPendingChunks);
+        }
+        return new Summary(records.sum(), imported.sum(), failed.sum());
+    }
+
+    /**
+     * Is a line a key value line with a key.
+     */
+    private static boolean isKey(String line, String key) {
+        return line.regionMatches(true, 0, key, 0, key.length()) && line.length() > key.length() && line.charAt(key.length()) == ':';
+    }
+
+    /**
+     * Parse a record, and pass the unit or the error to its consumer.
+     * @return True, if and only if the record was imported.
+     */
+    private boolean parse(Record record, Consumer<Unit> units, Consumer<ImportError> errors) {
+        String chassis = null;
+        String model = null;
+        try {
+            final GameRules.UnitType type = parseType(record);
+            Double mass = null;
+            Double available = null;
+            List<ArmorLoadout> armor = new ArrayList<>();
+            List<StructureLoadout> structure = new ArrayList<>();
+            List<EquipmentLoadout> loadout = new ArrayList<>();
+            List<String> slots = null;
+            HitLocation slotLocation = null;
+            long slotLine = 0;
+            long number = record.line;
+            for (String raw : record.lines) {
+                if (raw == null) throw new RecordException(number, "Unit record longer than " + MAX_RECORD_LINES + " lines");
+                final String line = raw.strip();
+                if (slots != null) {
+                    if (!line.isEmpty()) {
+                        slots.add(line);
+                        number++;
+                        continue;
+                    }
+                    addSlots(slotLine, slotLocation, slots, loadout);
+                    slots = null;
+                }
+                if (line.isEmpty() || line.startsWith("#")) {
+                    number++;
+                    continue;
+                }
+                final int colon = line.indexOf(':');
+                if (colon < 0) throw new RecordException(number, "Unknown line \"" + line + "\"");
+                final String key = line.substring(0, colon).strip();
+                final String value = line.substring(colon + 1).strip();
+                final String lowerKey = key.toLowerCase(Locale.ROOT);
+                if (value.isEmpty()) {
+                    HitLocation location = this.registry.byName(type, key);
+                    if (location != null) {
+                        slots = new ArrayList<>();
+                        slotLocation = location;
+                        slotLine = number + 1;
+                    }
+                } else if (lowerKey.equals("chassis")) {
+                    chassis = value;
+                } else if (lowerKey.equals("model")) {
+                    model = value;
+                } else if (lowerKey.equals("type")) {
+                    // The type was read before the other lines.
+                } else if (lowerKey.equals("mass")) {
+                    mass = parseNumber(number, value);
+                } else if (lowerKey.equals("available")) {
+                    available = parseNumber(number, value);
+                } else if (lowerKey.endsWith(" armor")) {
+                    final int amount = parseAmount(number, value);
+                    armor.add(new ArmorLoadout(location(number, type, key.substring(0, key.length() - 6).strip()), amount, amount));
+                } else if (lowerKey.endsWith(" structure")) {
+                    final short amount = (short) parseAmount(number, value);
+                    structure.add(new StructureLoadout(location(number, type, key.substring(0, key.length() - 10).strip()), amount, amount));
+                }
+                number++;
+            }
+            if (slots != null) addSlots(slotLine, slotLocation, slots, loadout);
+            if (mass == null) throw new RecordException(record.line, "Unit without mass");
+            Unit unit = new Unit(type, chassis, model, mass, available == null ? mass : available,
+                loadout.toArray(new EquipmentLoadout[0]), armor.toArray(new ArmorLoadout[0]),
+                structure.toArray(new StructureLoadout[0]));
+            units.accept(unit);
+            return true;
+        } catch (RecordException exception) {
+            errors.accept(new ImportError(exception.line, chassis, model, exception.getMessage()));
+        } catch (RuntimeException exception) {
+            errors.accept(new ImportError(record.line, chassis, model, String.valueOf(exception.getMessage())));
+        }
+        return false;
+    }
+
+    /**
+     * Add the equipment of the critical slots of a location. The consecutive slots of an equipment
+     * taking several slots are combined into one equipment per the size of the equipment.
+     */
+    private void addSlots(long line, HitLocation location, List<String> slots, List<EquipmentLoadout> loadout) throws RecordException {
+        int index = 0;
+        while (index < slots.size()) {
+            final String name = slots.get(index);
+            int run = 1;
+            while (index + run < slots.size() && slots.get(index + run).equals(name)) run++;
+            if (!name.equalsIgnoreCase(EMPTY_SLOT)) {
+                Equipment equipment = this.catalog.byName(name);
+                if (equipment == null) equipment = this.catalog.byAbbrev(name);
+                if (equipment == null) throw new RecordException(line + index, "Unknown equipment \"" + name + "\"");
+                final int size = Math.max(1, equipment.size);
+                for (int count = (run + size - 1) / size; count > 0; count--) {
+                    loadout.add(new EquipmentLoadout(location, equipment));
+                }
+            }
+            index += run;
+        }
+    }
+
+    /**
+     * Resolve a location by abbreviation or name.
+     */
+    private HitLocation location(long line, GameRules.UnitType type, String key) throws RecordException {
+        HitLocation result = this.registry.byAbbrev(type, key);
+        if (result == null) result = this.registry.byName(type, key);
+        if (result == null) throw new RecordException(line, "Unknown hit location \"" + key + "\"");
+        return result;
+    }
+
+    /**
+     * Read the unit type of a record. The last type line of the record sets the type.
+     * @return The unit type of the record, or mech if the record has no type line.
+     */
+    private static GameRules.UnitType parseType(Record record) throws RecordException {
+        GameRules.UnitType result = GameRules.UnitType.Mech;
+        long number = record.line;
+        for (String raw : record.lines) {
+            if (raw == null) break;
+            final int colon = raw.indexOf(':');
+            if (colon >= 0 && raw.substring(0, colon).strip().equalsIgnoreCase("type")) {
+                final String value = raw.substring(colon + 1).strip();
+                if (!value.isEmpty()) result = parseType(number, value);
+            }
+            number++;
+        }
+        return result;
+    }
+
+    private static GameRules.UnitType parseType(long line, String value) throws RecordException {
+        for (GameRules.UnitType type : GameRules.UnitType.values()) {
+            if (type.name().equalsIgnoreCase(value)) return type;
+        }
+        throw new RecordException(line, "Unknown unit type \"" + value + "\"");
+    }
+
+    private static double parseNumber(long line, String value) throws RecordException {
+        try {
+            double result = Double.parseDouble(value);
+            if (!(result >= 0) || Double.isInfinite(result)) throw new RecordException(line, "Invalid tonnage \"" + value + "\"");
+            return result;
+        } catch (NumberFormatException exception) {
+            throw new RecordException(line, "Invalid number \"" + value + "\"");
+        }
+    }
+
+    private static int parseAmount(long line, String value) throws RecordException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 0 || result > Short.MAX_VALUE) throw new RecordException(line, "Invalid amount \"" + value + "\"");
+            return result;
+        } catch (NumberFormatException exception) {
+            throw new RecordException(line, "Invalid amount \"" + value + "\"");
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package com.kautiainen.antti.btechgame.game;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The valuation of the units.
+ *
+ * The cost and the combat value of a unit are sums of the values of its equipment, its armor and
+ * structure totals, and the effective modifiers of the {@link #COST_RULE} and the
+ * {@link #COMBAT_VALUE_RULE} rules. The values of the equipment are cached, and the valuations
+ * are memoized by a content hash of the equipment, which is the sum of the hashes of the equipment.
+ * As the sum does not depend on the order of the equipment, the hash and the valuation of a
+ * {@link Tracker} are updated with each added or removed equipment instead of being recomputed
+ * from the whole loadout.
+ *
+ * The caches are bounded and lock free. A cached value is used only if its whole key, including
+ * the counts of the equipment, equals the looked up key, so a collision of the content hashes never
+ * returns the valuation of another loadout.
+ */
+public final class ValuationEngine {
+
+    /**
+     * The rule whose modifiers change the cost of a unit.
+     */
+    public static final String COST_RULE = "cost";
+
+    /**
+     * The rule whose modifiers change the combat value of a unit.
+     */
+    public static final String COMBAT_VALUE_RULE = "combat value";
+
+    /**
+     * The default number of memoized valuations.
+     */
+    public static final int DEFAULT_MEMO_SIZE = 4096;
+
+    /**
+     * The number of cached equipment values.
+     */
+    static final int ITEM_CACHE_SIZE = 1024;
+
+    /**
+     * The precision used to discard the floating point error of the incremental sums.
+     */
+    private static final double PRECISION = 1e6;
+
+    /**
+     * The weights of the valuation.
+     * @param costPerUnitTon The cost of a ton of the unit tonnage.
+     * @param costPerTon The cost of a ton of equipment.
+     * @param costPerSlot The cost of a critical slot of equipment.
+     * @param costPerModifier The cost of a unit of the modifier amounts of equipment.
+     * @param costPerArmor The cost of a point of maximum armor.
+     * @param costPerStructure The cost of a point of maximum structure.
+     * @param valuePerTon The combat value of a ton of equipment.
+     * @param valuePerSlot The combat value of a critical slot of equipment.
+     * @param valuePerModifier The combat value of a unit of the modifier amounts of equipment.
+     * @param valuePerArmor The combat value of a point of current armor.
+     * @param valuePerStructure The combat value of a point of current structure.
+     */
+    public static record Weights(double costPerUnitTon, double costPerTon, double costPerSlot,
+        double costPerModifier, double costPerArmor, double costPerStructure, double valuePerTon,
+        double valuePerSlot, double valuePerModifier, double valuePerArmor, double valuePerStructure) {
+
+    }
+
+    /**
+     * The default weights of the valuation.
+     */
+    public static final Weights DEFAULT_WEIGHTS = new Weights(10000.0, 5000.0, 1000.0, 2500.0, 625.0, 1600.0,
+        12.0, 4.0, 20.0, 2.5, 1.5);
+
+    /**
+     * The valuation of a unit.
+     * @param cost The cost of the unit.
+     * @param combatValue The combat value of the unit.
+     */
+    public static record Valuation(double cost, double combatValue) {
+
+    }
+
+    /**
+     * The precomputed values of an equipment.
+     * @param hash The 64 bit content hash of the equipment.
+     * @param cost The cost of the equipment.
+     * @param combatValue The combat value of the equipment.
+     */
+    private static record Item(long hash, double cost, double combatValue) {
+
+    }
+
+    /**
+     * The memo key of a valuation.
+     * @param contentHash The content hash of the equipment.
+     * @param items The number of equipment.
+     * @param tonnage The bits of the unit tonnage.
+     * @param armorMax The total maximum armor.
+     * @param armor The total current armor.
+     * @param structureMax The total maximum structure.
+     * @param structure The total current structure.
+     * @param content The counts of the equipment. The hash code of the key uses the content hash
+     * instead of the counts, but the keys are equal only if their counts are equal.
+     */
+    private static record Key(long contentHash, int items, long tonnage, int armorMax, int armor,
+        int structureMax, int structure, Map<Equipment, Integer> content) {
+
+        @Override
+        public int hashCode() {
+            long result = mix(this.contentHash ^ this.tonnage);
+            result = mix(result ^ (((long) this.armorMax << 32) | (this.armor & 0xffffffffL)));
+            result = mix(result ^ (((long) this.structureMax << 32) | (this.structure & 0xffffffffL)));
+            return (int) (result ^ (result >>> 32)) ^ this.items;
+        }
+
+        /**
+         * Create a copy of the key, which does not share the counts of the key.
+         * @return The copy of the key.
+         */
+        Key copy() {
+            return new Key(this.contentHash, this.items, this.tonnage, this.armorMax, this.armor,
+                this.structureMax, this.structure, Map.copyOf(this.content));
+        }
+    }
+
+    /**
+     * A bounded lock free cache. Each key has one slot chosen by the hash code of the key, and
+     * storing a value replaces the value of the slot. A lookup returns a value only if the key of
+     * the slot equals the looked up key.
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     */
+    private static final class Cache<K, V> {
+
+        /**
+         * A cached value with its key.
+         */
+        private static record Entry<K, V>(K key, V value) {
+
+        }
+
+        private final AtomicReferenceArray<Entry<K, V>> slots;
+
+        /**
+         * The number of the used slots.
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * Create a new empty cache.
+         * @param capacity The largest number of cached values.
+         */
+        Cache(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * The slot of a key.
+         */
+        private int slot(K key) {
+            return (int) Math.floorMod(mix(key.hashCode()), (long) this.slots.length());
+        }
+
+        /**
+         * Get a cached value.
+         * @param key The key.
+         * @return The value cached with the key, or undefined value if the value is not cached.
+         */
+        V get(K key) {
+            if (this.slots.length() == 0) return null;
+            Entry<K, V> entry = this.slots.get(slot(key));
+            return entry != null && entry.key().equals(key) ? entry.value() : null;
+        }
+
+        /**
+         * Cache a value.
+         * @param key The key. The key must not be modified afterwards.
+         * @param value The cached value.
+         */
+        void put(K key, V value) {
+            if (this.slots.length() == 0) return;
+            if (this.slots.getAndSet(slot(key), new Entry<>(key, value)) == null) {
+                this.size.incrementAndGet();
+            }
+        }
+
+        /**
+         * The number of cached values.
+         * @return The number of cached values.
+         */
+        int size() {
+            return this.size.get();
+        }
+    }
+
+    private final Weights weights;
+
+    /**
+     * The evaluation of the modifiers of the valuation rules.
+     */
+    private final ModifierEngine modifiers = new ModifierEngine();
+
+    /**
+     * The cached values of the equipment.
+     */
+    private final Cache<Equipment, Item> items = new Cache<>(ITEM_CACHE_SIZE);
+
+    /**
+     * The memoized valuations.
+     */
+    private final Cache<Key, Valuation> memo;
+
+    /**
+     * Create a new valuation engine with the default weights and memo size.
+     */
+    public ValuationEngine() {
+        this(DEFAULT_WEIGHTS, DEFAULT_MEMO_SIZE);
+    }
+
+    /**
+     * Create a new valuation engine.
+     * @param weights The weights of the valuation.
+     * @param memoSize The largest number of memoized valuations.
+     * @throws IllegalArgumentException The weights were undefined, or the memo size was negative.
+     */
+    public ValuationEngine(Weights weights, int memoSize) throws IllegalArgumentException {
+        if (weights == null) throw new IllegalArgumentException("Missing weights");
+        if (memoSize < 0) throw new IllegalArgumentException("Negative memo size");
+        this.weights = weights;
+        this.memo = new Cache<>(memoSize);
+    }
+
+    /**
+     * The weights of the valuation.
+     * @return The weights of the valuation.
+     */
+    public Weights getWeights() {
+        return this.weights;
+    }
+
+    /**
+     * Mix the bits of a hash.
+     * @param value The mixed value.
+     * @return The value with well distributed bits.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * The 64 bit content hash of an equipment.
+     * @param equipment The equipment.
+     * @return The hash of the equipment. The content hash of a loadout is the sum of the hashes of
+     * its equipment.
+     */
+    static long hashOf(Equipment equipment) {
+        long hash = mix(java.util.Objects.hashCode(equipment.name));
+        hash = mix(hash ^ java.util.Objects.hashCode(equipment.abbrev));
+        hash = mix(hash ^ Double.doubleToLongBits(equipment.mass));
+        hash = mix(hash ^ equipment.size);
+        return mix(hash ^ java.util.Arrays.hashCode(equipment.modifiers));
+    }
+
+    /**
+     * Get the precomputed values of an equipment.
+     */
+    private Item itemOf(Equipment equipment) {
+        Item result = this.items.get(equipment);
+        if (result == null) {
+            double modifiers = 0.0;
+            for (RulesModifier modifier : equipment.modifiers) {
+                if (!COST_RULE.equals(modifier.rule()) && !COMBAT_VALUE_RULE.equals(modifier.rule())) {
+                    modifiers += Math.abs(modifier.modifier());
+                }
+            }
+            result = new Item(hashOf(equipment),
+                this.weights.costPerTon * equipment.mass + this.weights.costPerSlot * equipment.size
+                + this.weights.costPerModifier * modifiers,
+                this.weights.valuePerTon * equipment.mass + this.weights.valuePerSlot * equipment.size
+                + this.weights.valuePerModifier * modifiers);
+            this.items.put(equipment, result);
+        }
+        return result;
+    }
+
+    /**
+     * The number of memoized valuations.
+     * @return The number of valuations in the memo.
+     */
+    public int getMemoSize() {
+        return this.memo.size();
+    }
+
+    /**
+     * Get the valuation of a unit. The memo key is read from the {@link Unit.Summary} of the unit,
+     * and the valuation is computed only if it is not memoized.
+     * @param unit The unit.
+     * @return The valuation of the unit.
+     * @throws IllegalArgumentException The unit was undefined.
+     */
+    public Valuation valueOf(Unit unit) throws IllegalArgumentException {
+        if (unit == null) throw new IllegalArgumentException("Missing unit");
+        Unit.Summary summary = unit.getSummary();
+        Map<Equipment, Integer> content = new HashMap<>();
+        for (EquipmentLoadout entry : unit.loadout) {
+            if (entry != null && entry.getValue() != null) {
+                content.merge(entry.getValue(), 1, Integer::sum);
+            }
+        }
+        Valuation result = this.memo.get(new Key(summary.getContentHash(), summary.getEquipmentCount(),
+            Double.doubleToLongBits(unit.tonnage), summary.getArmorMax(), summary.getArmor(),
+            summary.getStructureMax(), summary.getStructure(), content));
+        if (result == null) {
+            result = track(unit).getValuation();
+        }
+        return result;
+    }
+
+    /**
+     * Start tracking the valuation of a unit.
+     * @param unit The unit.
+     * @return The tracker with the equipment, armor, and structure of the unit.
+     * @throws IllegalArgumentException The unit was undefined.
+     */
+    public Tracker track(Unit unit) throws IllegalArgumentException {
+        if (unit == null) throw new IllegalArgumentException("Missing unit");
+        Unit.Summary summary = unit.getSummary();
+        Tracker result = new Tracker(unit.tonnage);
+        result.armor = summary.getArmor();
+        result.armorMax = summary.getArmorMax();
+        result.structure = summary.getStructure();
+        result.structureMax = summary.getStructureMax();
+        for (EquipmentLoadout entry : unit.loadout) {
+            if (entry != null && entry.getValue() != null) {
+                result.add(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Start tracking the valuation of a unit without equipment.
+     * @param tonnage The tonnage of the unit.
+     * @return The tracker without equipment, armor, or structure.
+     */
+    public Tracker track(double tonnage) {
+        return new Tracker(tonnage);
+    }
+
+    /**
+     * The incrementally updated valuation of a changing unit.
+     *
+     * A refit planner adds and removes equipment, and each change updates the content hash and the
+     * sums in constant time with respect to the size of the loadout.
+     */
+    public final class Tracker {
+
+        private final double tonnage;
+
+        /**
+         * The effective modifiers of the valuation rules.
+         */
+        private final ModifierEngine.EffectiveRules rules = new ModifierEngine.EffectiveRules(ValuationEngine.this.modifiers);
+
+        /**
+         * The counts of the tracked equipment.
+         */
+        private final HashMap<Equipment, Integer> content = new HashMap<>();
+
+        private long contentHash;
+
+        private int count;
+
+        private double cost;
+
+        private double combatValue;
+
+        private int armorMax;
+
+        private int armor;
+
+        private int structureMax;
+
+        private int structure;
+
+        private Tracker(double tonnage) {
+            this.tonnage = tonnage;
+        }
+
+        /**
+         * Add an equipment.
+         * @param equipment The added equipment.
+         * @throws IllegalArgumentException The equipment was undefined.
+         */
+        public synchronized void add(Equipment equipment) throws IllegalArgumentException {
+            if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+            Item item = itemOf(equipment);
+            this.content.merge(equipment, 1, Integer::sum);
+            this.contentHash += item.hash;
+            this.count++;
+            this.cost += item.cost;
+            this.combatValue += item.combatValue;
+            this.rules.add(equipment);
+        }
+
+        /**
+         * Remove an equipment. Removing an equipment the tracker does not contain does nothing.
+         * @param equipment The removed equipment.
+         * @throws IllegalArgumentException The equipment was undefined.
+         */
+        public synchronized void remove(Equipment equipment) throws IllegalArgumentException {
+            if (equipment == null) throw new IllegalArgumentException("Undefined equipment not accepted");
+            final Integer count = this.content.get(equipment);
+            if (count == null) return;
+            if (count == 1) {
+                this.content.remove(equipment);
+            } else {
+                this.content.put(equipment, count - 1);
+            }
+            Item item = itemOf(equipment);
+            this.contentHash -= item.hash;
+            this.count--;
+            this.cost -= item.cost;
+            this.combatValue -= item.combatValue;
+            this.rules.remove(equipment);
+        }
+
+        /**
+         * Set the armor totals.
+         * @param armor The armor loadouts with maximums. The deltas without maximum are ignored.
+         */
+        public synchronized void setArmor(ArmorLoadout[] armor) {
+            int max = 0;
+            int current = 0;
+            for (ArmorLoadout location : armor) {
+                if (location != null && location.max != null) {
+                    max += location.max;
+                    current += location.current;
+                }
+            }
+            this.armorMax = max;
+            this.armor = current;
+        }
+
+        /**
+         * Set the structure totals.
+         * @param structure The structure loadouts with maximums. The deltas without maximum are
+         * ignored.
+         */
+        public synchronized void setStructure(StructureLoadout[] structure) {
+            int max = 0;
+            int current = 0;
+            for (StructureLoadout location : structure) {
+                if (location != null && location.max != null) {
+                    max += location.max;
+                    current += location.current;
+                }
+            }
+            this.structureMax = max;
+            this.structure = current;
+        }
+
+        /**
+         * The content hash of the equipment.
+         * @return The order independent hash of the tracked equipment.
+         */
+        public synchronized long getContentHash() {
+            return this.contentHash;
+        }
+
+        /**
+         * The memo key of the current content. The key shares the counts of the tracker.
+         */
+        private Key key() {
+            return new Key(this.contentHash, this.count, Double.doubleToLongBits(this.tonnage), this.armorMax, this.armor,
+                this.structureMax, this.structure, this.content);
+        }
+
+        /**
+         * The current valuation.
+         * @return The memoized valuation of the tracked content, or the valuation computed from the
+         * incremental sums.
+         */
+        public synchronized Valuation getValuation() {
+            Key key = key();
+            Valuation result = ValuationEngine.this.memo.get(key);
+            if (result == null) {
+                final Weights weights = ValuationEngine.this.weights;
+                double totalCost = weights.costPerUnitTon * this.tonnage + this.cost
+                    + weights.costPerArmor * this.armorMax + weights.costPerStructure * this.structureMax
+                    + this.rules.getModifier(COST_RULE);
+                double totalValue = this.combatValue + weights.valuePerArmor * this.armor
+                    + weights.valuePerStructure * this.structure + this.rules.getModifier(COMBAT_VALUE_RULE);
+                result = new Valuation(Math.rint(totalCost * PRECISION) / PRECISION,
+                    Math.rint(totalValue * PRECISION) / PRECISION);
+                ValuationEngine.this.memo.put(key.copy(), result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.kautiainen.antti.btechgame.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter of events.
+ *
+ * The counter is updated without locks, and concurrent updates do not contend on a single value.
+ */
+public final class Counter {
+
+    private final String name;
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Create a new counter.
+     * @param name The name of the counter.
+     */
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The name of the counter.
+     * @return The name of the counter.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Count an event.
+     */
+    public void increment() {
+        this.count.increment();
+    }
+
+    /**
+     * Count events.
+     * @param amount The number of events.
+     */
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    /**
+     * The number of counted events.
+     * @return The number of events counted since the creation or the last reset.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Reset the counter.
+     */
+    public void reset() {
+        this.count.reset();
+    }
+}
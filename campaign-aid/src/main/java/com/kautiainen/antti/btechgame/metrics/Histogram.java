@@ -0,0 +1,187 @@
+package com.kautiainen.antti.btechgame.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values such as latencies in nanoseconds.
+ *
+ * The histogram uses log-linear buckets with 8 buckets per power of two, so the recorded values
+ * are reported with at most 12.5% relative error. Recording a value neither locks nor allocates.
+ * The buckets are striped by thread, so concurrent recording threads seldom update the same cache
+ * line.
+ */
+public final class Histogram {
+
+    /**
+     * The number of bits of the linear part of the bucket.
+     */
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * The number of buckets of a stripe covering all non-negative long values.
+     */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    /**
+     * The size of a stripe with the buckets and the sum of the values.
+     */
+    private static final int STRIPE_SIZE = BUCKETS + 1;
+
+    /**
+     * The number of stripes.
+     */
+    private static final int STRIPES = Math.min(16,
+        Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    /**
+     * The statistics of a histogram.
+     * @param count The number of values.
+     * @param sum The sum of the values.
+     * @param max The largest value.
+     * @param p50 The median.
+     * @param p90 The 90th percentile.
+     * @param p99 The 99th percentile.
+     * @param p999 The 99.9th percentile.
+     */
+    public static record Snapshot(long count, long sum, long max, long p50, long p90, long p99, long p999) {
+
+        /**
+         * The mean of the values.
+         * @return The mean of the values, or 0 if the histogram is empty.
+         */
+        public double mean() {
+            return this.count == 0 ? 0.0 : (double) this.sum / this.count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p999=%d max=%d",
+                this.count, mean(), this.p50, this.p90, this.p99, this.p999, this.max);
+        }
+    }
+
+    private final String name;
+
+    /**
+     * The stripes of the bucket counts followed by the sum of the values.
+     */
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Create a new histogram.
+     * @param name The name of the histogram.
+     */
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The name of the histogram.
+     * @return The name of the histogram.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The bucket of a value.
+     * @param value The non-negative value.
+     * @return The index of the bucket containing the value.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * The largest value of a bucket.
+     * @param bucket The index of the bucket.
+     * @return The largest value the bucket contains.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long lower = (long) (SUB_COUNT + bucket % SUB_COUNT) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Record a value.
+     * @param value The recorded value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        int stripe = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SIZE;
+        this.stripes.getAndIncrement(stripe + bucketOf(value));
+        this.stripes.getAndAdd(stripe + BUCKETS, value);
+        if (value > this.max.get()) {
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Record the time elapsed since a start time.
+     * @param start The start time from {@link System#nanoTime()}.
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * The statistics of the recorded values. The statistics are read without stopping the
+     * recording, so values recorded during the read may be partially included.
+     * @return The statistics of the values recorded since the creation or the last reset.
+     */
+    public Snapshot getSnapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIPE_SIZE; stripe += STRIPE_SIZE) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long value = this.stripes.get(stripe + bucket);
+                counts[bucket] += value;
+                count += value;
+            }
+            sum += this.stripes.get(stripe + BUCKETS);
+        }
+        long max = this.max.get();
+        return new Snapshot(count, sum, max, percentile(counts, count, 0.5, max), percentile(counts, count, 0.9, max),
+            percentile(counts, count, 0.99, max), percentile(counts, count, 0.999, max));
+    }
+
+    /**
+     * The value at a percentile.
+     * @param counts The counts of the buckets.
+     * @param count The total count.
+     * @param fraction The fraction of the values at or below the result.
+     * @param max The largest recorded value.
+     * @return The upper bound of the bucket containing the percentile limited to the largest value.
+     */
+    private static long percentile(long[] counts, long count, double fraction, long max) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) return Math.min(upperBoundOf(bucket), max);
+        }
+        return max;
+    }
+
+    /**
+     * Reset the histogram. Values recorded during the reset may be lost.
+     */
+    public void reset() {
+        for (int index = 0; index < this.stripes.length(); index++) {
+            this.stripes.set(index, 0);
+        }
+        this.max.set(0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.kautiainen.antti.btechgame.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The registry of the metrics of the application.
+ *
+ * The instrumented code gets its counters and histograms once, and updates them without locking.
+ * The metrics are published through JMX as {@value #OBJECT_NAME}, and as text with
+ * {@link #getReport()}.
+ */
+public final class Metrics {
+
+    /**
+     * The JMX object name of the metrics.
+     */
+    public static final String OBJECT_NAME = "com.kautiainen.antti.btechgame:type=Metrics";
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    /**
+     * The management interface of the metrics.
+     */
+    private static final class Bean implements MetricsMXBean {
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> result = new TreeMap<>();
+            COUNTERS.forEach((name, counter) -> result.put(name, counter.getCount()));
+            return result;
+        }
+
+        @Override
+        public Map<String, String> getHistograms() {
+            Map<String, String> result = new TreeMap<>();
+            HISTOGRAMS.forEach((name, histogram) -> result.put(name, histogram.getSnapshot().toString()));
+            return result;
+        }
+
+        @Override
+        public String getReport() {
+            return Metrics.getReport();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Bean(), name);
+            }
+        } catch (JMException | SecurityException exception) {
+            // The metrics are still available through the text report.
+        }
+    }
+
+    private Metrics() {
+
+    }
+
+    /**
+     * Test validity of a metric name.
+     * @param name The tested name.
+     * @return True, if and only if the name is a non-empty sequence of letters, digits, periods,
+     * and underscores.
+     */
+    public static boolean validName(String name) {
+        return name != null && !name.isEmpty() && name.chars().allMatch(
+            c -> (c < 128 && Character.isLetterOrDigit(c)) || c == '.' || c == '_');
+    }
+
+    private static String checkName(String name) throws IllegalArgumentException {
+        if (!validName(name)) throw new IllegalArgumentException("Invalid metric name");
+        return name;
+    }
+
+    /**
+     * Get a counter.
+     * @param name The name of the counter.
+     * @return The counter with the name.
+     * @throws IllegalArgumentException The name was invalid.
+     */
+    public static Counter counter(String name) throws IllegalArgumentException {
+        return COUNTERS.computeIfAbsent(checkName(name), Counter::new);
+    }
+
+    /**
+     * Get a histogram.
+     * @param name The name of the histogram.
+     * @return The histogram with the name.
+     * @throws IllegalArgumentException The name was invalid.
+     */
+    public static Histogram histogram(String name) throws IllegalArgumentException {
+        return HISTOGRAMS.computeIfAbsent(checkName(name), Histogram::new);
+    }
+
+    /**
+     * The text report of the metrics. Each line contains a metric name and its value. The
+     * periods of the names are replaced with underscores, and the histograms are reported as
+     * their count, sum, maximum, and quantiles.
+     * @return The report of all metrics.
+     */
+    public static String getReport() {
+        StringBuilder result = new StringBuilder();
+        new TreeMap<>(COUNTERS).forEach((name, counter) -> {
+            String key = name.replace('.', '_');
+            result.append(key).append("_total ").append(counter.getCount()).append('\n');
+        });
+        new TreeMap<>(HISTOGRAMS).forEach((name, histogram) -> {
+            String key = name.replace('.', '_');
+            Histogram.Snapshot snapshot = histogram.getSnapshot();
+            result.append(key).append("_count ").append(snapshot.count()).append('\n');
+            result.append(key).append("_sum ").append(snapshot.sum()).append('\n');
+            result.append(key).append("_max ").append(snapshot.max()).append('\n');
+            result.append(key).append("{quantile=\"0.5\"} ").append(snapshot.p50()).append('\n');
+            result.append(key).append("{quantile=\"0.9\"} ").append(snapshot.p90()).append('\n');
+            result.append(key).append("{quantile=\"0.99\"} ").append(snapshot.p99()).append('\n');
+            result.append(key).append("{quantile=\"0.999\"} ").append(snapshot.p999()).append('\n');
+        });
+        return result.toString();
+    }
+
+    /**
+     * Reset all metrics.
+     */
+    public static void reset() {
+        COUNTERS.values().forEach(Counter::reset);
+        HISTOGRAMS.values().forEach(Histogram::reset);
+    }
+}
@@ -0,0 +1,32 @@
+package com.kautiainen.antti.btechgame.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * The counters.
+     * @return The counts of the counters by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * The histograms.
+     * @return The statistics of the histograms by name.
+     */
+    Map<String, String> getHistograms();
+
+    /**
+     * The metrics in the text format.
+     * @return The text report of all metrics.
+     */
+    String getReport();
+
+    /**
+     * Reset all metrics.
+     */
+    void reset();
+}
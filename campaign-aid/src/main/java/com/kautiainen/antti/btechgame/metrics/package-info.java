@@ -0,0 +1,5 @@
+
+/**
+ * Package containing the low overhead metrics of the game model and the user interface.
+ */
+package com.kautiainen.antti.btechgame.metrics;
@@ -0,0 +1,111 @@
+package com.kautiainen.antti.btechgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the job executor.
+ */
+class JobExecutorTest {
+
+    /**
+     * Wait until the executor has no pending jobs.
+     */
+    private static void awaitIdle(JobExecutor executor) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.getPendingCount() > 0) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Jobs did not end");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void cancelledJobCountsUntilItsTaskReturns() throws InterruptedException {
+        try (JobExecutor executor = new JobExecutor(1, 1, 1)) {
+            final Object owner = new Object();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Job<Void> job = executor.submit(owner, "Stubborn", running -> {
+                started.countDown();
+                // The task ignores the interrupt of the cancellation.
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException exception) {
+                        // Keeps running.
+                    }
+                }
+                return null;
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertTrue(job.cancel());
+            assertEquals(Job.State.CANCELLED, job.getState());
+            final long rejected = JobExecutor.REJECTED.getCount();
+            assertThrows(RejectedExecutionException.class, () -> executor.submit(owner, "Next", running -> null));
+            assertEquals(rejected + 1, JobExecutor.REJECTED.getCount());
+
+            release.countDown();
+            awaitIdle(executor);
+            assertEquals("Done", executor.submit(owner, "Next", running -> "Done").getResult().join());
+        }
+    }
+
+    @Test
+    void cancelledQueuedJobsEnd() throws InterruptedException {
+        try (JobExecutor executor = new JobExecutor(1, 8, 8)) {
+            final Object owner = new Object();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.submit(owner, "Blocking", running -> {
+                started.countDown();
+                // The task ignores the interrupt of the cancellation, so the queued jobs can not run
+                // before they are cancelled.
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                        // The job keeps blocking until it is released.
+                    }
+                }
+                return null;
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 6; i++) {
+                executor.submit(owner, "Queued " + i, running -> null);
+            }
+            assertEquals(7, executor.cancelAll(owner));
+            release.countDown();
+            awaitIdle(executor);
+            assertEquals(0, executor.getJobs(owner).size());
+        }
+    }
+
+    @Test
+    void listenersSeeProgressAndEndOfTheJobsOfTheirOwner() throws InterruptedException {
+        try (JobExecutor executor = new JobExecutor(2, 4, 2)) {
+            final Object owner = new Object();
+            final Object other = new Object();
+            java.util.List<String> changes = new java.util.concurrent.CopyOnWriteArrayList<>();
+            java.util.function.Consumer<Job<?>> listener = job -> changes.add(job.getState() + " " + job.getProgress());
+            executor.addJobListener(owner, listener);
+            executor.addJobListener(other, job -> { throw new IllegalStateException("Failing listener"); });
+            executor.submit(other, "Other", running -> null);
+            Job<String> job = executor.submit(owner, "Progress", running -> {
+                running.setProgress(1, 2);
+                return "done";
+            });
+            assertEquals("done", job.getResult().join());
+            awaitIdle(executor);
+            assertEquals(java.util.List.of("RUNNING -1.0", "RUNNING 0.5", "DONE 1.0", "DONE 1.0"), changes);
+            assertTrue(executor.removeJobListener(owner, listener));
+            assertEquals(false, executor.removeJobListener(owner, listener));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the campaign store.
+ */
+class CampaignStoreTest {
+
+    /**
+     * The names of the files of a directory in name order.
+     */
+    private static List<String> files(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    /**
+     * Delete a directory with its files.
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void snapshotsReplaceOlderFilesAndReload() throws IOException {
+        final Path directory = Files.createTempDirectory("campaign-store");
+        try {
+            final HitLocation location = new HitLocation.SlottedHitLocation("Store Test", "ST", (short) 20);
+            final Equipment equipment = new Equipment("Store Test", "ST", 1.0, 1);
+            Unit unit = new Unit(GameRules.UnitType.Mech, "Test", "TST-1", 50.0, 20.0,
+                new LoadoutController.EquipmentLoadout[0], new ArmorLoadout[0], new StructureLoadout[0]);
+            try (CampaignStore store = CampaignStore.open(directory, new Campaign("Test", new Unit[] { unit }), 4)) {
+                for (int i = 0; i < 10; i++) {
+                    store.append(new CampaignEvent.EquipmentAdded(0, location, equipment)).join();
+                }
+            }
+            assertEquals(List.of("events-8.log", "snapshot-8.bin"), files(directory));
+
+            // Reading the campaign does not create a segment.
+            assertEquals(10, CampaignStore.read(directory, HitLocationRegistry.getDefault()).getUnit(0).loadout.length);
+            assertEquals(List.of("events-8.log", "snapshot-8.bin"), files(directory));
+
+            try (CampaignStore store = CampaignStore.open(directory, null, 4)) {
+                assertEquals(10, store.getLastSequence());
+                assertEquals(10, store.getCampaign().getUnit(0).loadout.length);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void eventsAppendedWhileClosingComplete() throws Exception {
+        final Path directory = Files.createTempDirectory("campaign-store");
+        try {
+            final HitLocation location = new HitLocation.SlottedHitLocation("Store Test", "ST", (short) 20);
+            final Equipment equipment = new Equipment("Store Test", "ST", 1.0, 1);
+            Unit unit = new Unit(GameRules.UnitType.Mech, "Test", "TST-1", 50.0, 20.0,
+                new LoadoutController.EquipmentLoadout[0], new ArmorLoadout[0], new StructureLoadout[0]);
+            ConcurrentLinkedQueue<CompletableFuture<Long>> futures = new ConcurrentLinkedQueue<>();
+            CountDownLatch appending = new CountDownLatch(2);
+            CampaignStore store = CampaignStore.open(directory, new Campaign("Test", new Unit[] { unit }), 1000);
+            Thread[] appenders = new Thread[2];
+            for (int i = 0; i < appenders.length; i++) {
+                appenders[i] = new Thread(() -> {
+                    appending.countDown();
+                    try {
+                        while (true) {
+                            futures.add(store.append(new CampaignEvent.EquipmentAdded(0, location, equipment)));
+                        }
+                    } catch (IllegalStateException closed) {
+                        // The store was closed.
+                    }
+                });
+                appenders[i].start();
+            }
+            appending.await();
+            store.close();
+            for (Thread appender : appenders) {
+                appender.join();
+            }
+            for (CompletableFuture<Long> future : futures) {
+                assertTrue(future.isDone());
+            }
+            assertThrows(IllegalStateException.class, () -> store.append(new CampaignEvent.EquipmentAdded(0, location, equipment)));
+        } finally {
+            delete(directory);
+        }
+    }
+}
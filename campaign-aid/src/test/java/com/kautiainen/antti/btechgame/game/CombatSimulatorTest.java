@@ -0,0 +1,93 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the combat simulator.
+ */
+class CombatSimulatorTest {
+
+    private static final CombatSimulator SIMULATOR = new CombatSimulator(new GameRules.BaseGameRules("Simulation"));
+
+    private static final CombatSimulator.Weapon[] VOLLEY = { new CombatSimulator.Weapon(5, 0.7),
+        new CombatSimulator.Weapon(10, 0.4), new CombatSimulator.Weapon(2, 0.9) };
+
+    /**
+     * Create a mech with armor and structure in the default mech locations.
+     */
+    private static Unit target() {
+        GameRules.UnitHitLocation[] locations = GameRules.defaultHitLocations();
+        ArmorLoadout[] armor = new ArmorLoadout[locations.length];
+        StructureLoadout[] structure = new StructureLoadout[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            armor[i] = new ArmorLoadout(locations[i].location(), 12, 12);
+            structure[i] = new StructureLoadout(locations[i].location(), (short) 8, (short) 8);
+        }
+        return new Unit(GameRules.UnitType.Mech, "Target", "T-1", 50.0, 20.0, new LoadoutController.EquipmentLoadout[0],
+            armor, structure);
+    }
+
+    private static void assertSameResult(CombatSimulator.Result expected, CombatSimulator.Result actual) {
+        assertEquals(expected.trials(), actual.trials());
+        assertArrayEquals(expected.volleysToKill(), actual.volleysToKill());
+        assertArrayEquals(expected.locations(), actual.locations());
+        assertArrayEquals(expected.destroyed(), actual.destroyed());
+    }
+
+    /**
+     * Simulate in a pool of a parallelism.
+     */
+    private static CombatSimulator.Result simulateIn(int parallelism, Unit target, long trials, long seed)
+        throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> SIMULATOR.simulate(target, VOLLEY, 20, trials, seed)).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sameSeedGivesTheSameResult() {
+        Unit target = target();
+        CombatSimulator.Result first = SIMULATOR.simulate(target, VOLLEY, 20, 5_000, 42);
+        assertSameResult(first, SIMULATOR.simulate(target, VOLLEY, 20, 5_000, 42));
+        assertTrue(first.kills() > 0);
+        assertTrue(first.kills() <= first.trials());
+        assertEquals(0, first.volleysToKill()[0]);
+        assertFalse(Arrays.equals(first.volleysToKill(), SIMULATOR.simulate(target, VOLLEY, 20, 5_000, 43).volleysToKill()));
+    }
+
+    @Test
+    void parallelSimulationEqualsSequentialSimulation() throws InterruptedException, ExecutionException {
+        Unit target = target();
+        // The trials span several chunks, the last of them partial.
+        final long trials = 3 * (1 << 14) + 123;
+        CombatSimulator.Result sequential = simulateIn(1, target, trials, 7);
+        assertSameResult(sequential, simulateIn(4, target, trials, 7));
+        assertSameResult(sequential, SIMULATOR.simulate(target, VOLLEY, 20, trials, 7));
+        assertEquals(trials, sequential.trials());
+    }
+
+    @Test
+    void unitWithoutHitsIsNeverKilled() {
+        CombatSimulator.Result result = SIMULATOR.simulate(target(),
+            new CombatSimulator.Weapon[] { new CombatSimulator.Weapon(50, 0.0) }, 5, 100, 1);
+        assertEquals(0, result.kills());
+        assertTrue(Double.isNaN(result.meanVolleysToKill()));
+        assertEquals(0.0, result.destructionRate(result.locations()[0]));
+        assertEquals(0, SIMULATOR.simulate(target(), VOLLEY, 5, 0, 1).kills());
+        assertThrows(IllegalArgumentException.class, () -> SIMULATOR.simulate(target(), VOLLEY, 0, 100, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CombatSimulator.Weapon(5, 1.5));
+    }
+}
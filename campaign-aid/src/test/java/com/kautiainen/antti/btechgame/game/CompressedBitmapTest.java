@@ -0,0 +1,120 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the compressed bitmap.
+ */
+class CompressedBitmapTest {
+
+    /**
+     * The members of a bit set as an array.
+     */
+    private static int[] members(BitSet bits) {
+        return bits.stream().toArray();
+    }
+
+    /**
+     * Create a random bitmap and the bit set of the same members within the first chunks.
+     */
+    private static CompressedBitmap random(SplittableRandom random, BitSet bits, int chunks, int count) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < count; i++) {
+            int value = random.nextInt(chunks << 16);
+            result.add(value);
+            bits.set(value);
+        }
+        return result;
+    }
+
+    @Test
+    void chunkConvertsToBitmapAboveTheLimitAndBackWellBelowIt() {
+        CompressedBitmap bitmap = CompressedBitmap.range(0, CompressedBitmap.ARRAY_LIMIT);
+        assertEquals(0, bitmap.getBitmapChunkCount());
+        assertTrue(bitmap.add(CompressedBitmap.ARRAY_LIMIT));
+        assertEquals(1, bitmap.getBitmapChunkCount());
+
+        // Removing and adding at the limit keeps the bitmap chunk.
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bitmap.remove(CompressedBitmap.ARRAY_LIMIT));
+            assertEquals(1, bitmap.getBitmapChunkCount());
+            assertTrue(bitmap.add(CompressedBitmap.ARRAY_LIMIT));
+        }
+        for (int value = CompressedBitmap.ARRAY_LIMIT; value > CompressedBitmap.BITMAP_LIMIT; value--) {
+            assertTrue(bitmap.remove(value));
+        }
+        assertEquals(CompressedBitmap.BITMAP_LIMIT + 1, bitmap.getCardinality());
+        assertEquals(1, bitmap.getBitmapChunkCount());
+        assertTrue(bitmap.remove(0));
+        assertEquals(0, bitmap.getBitmapChunkCount());
+        assertEquals(CompressedBitmap.range(1, CompressedBitmap.BITMAP_LIMIT + 1), bitmap);
+        assertFalse(bitmap.remove(0));
+    }
+
+    @Test
+    void setOperationsMatchBitSets() {
+        SplittableRandom random = new SplittableRandom(22);
+        // The sparse bitmaps have array chunks, and the dense bitmaps have bitmap chunks.
+        int[] counts = { 100, 20_000 };
+        for (int first : counts) {
+            for (int second : counts) {
+                BitSet firstBits = new BitSet();
+                BitSet secondBits = new BitSet();
+                CompressedBitmap a = random(random, firstBits, 3, first);
+                CompressedBitmap b = random(random, secondBits, 2, second);
+
+                BitSet and = (BitSet) firstBits.clone();
+                and.and(secondBits);
+                assertArrayEquals(members(and), CompressedBitmap.and(a, b).toArray());
+                BitSet or = (BitSet) firstBits.clone();
+                or.or(secondBits);
+                assertArrayEquals(members(or), CompressedBitmap.or(a, b).toArray());
+                BitSet andNot = (BitSet) firstBits.clone();
+                andNot.andNot(secondBits);
+                assertArrayEquals(members(andNot), CompressedBitmap.andNot(a, b).toArray());
+                assertArrayEquals(members(firstBits), a.toArray());
+            }
+        }
+    }
+
+    @Test
+    void setOperationResultsUseTheDenserChunkOnlyAboveTheLimit() {
+        CompressedBitmap low = CompressedBitmap.range(0, 3000);
+        CompressedBitmap high = CompressedBitmap.range(2000, 5000);
+        CompressedBitmap union = CompressedBitmap.or(low, high);
+        assertEquals(5000, union.getCardinality());
+        assertEquals(1, union.getBitmapChunkCount());
+        CompressedBitmap intersection = CompressedBitmap.and(union, high);
+        assertEquals(high, intersection);
+        assertEquals(0, intersection.getBitmapChunkCount());
+        assertEquals(CompressedBitmap.range(3000, 5000), CompressedBitmap.andNot(union, low));
+        assertTrue(CompressedBitmap.andNot(low, union).isEmpty());
+    }
+
+    @Test
+    void rangesHandleChunkAndIntegerBoundaries() {
+        assertTrue(CompressedBitmap.range(7, 7).isEmpty());
+        assertArrayEquals(new int[] { 65535, 65536 }, CompressedBitmap.range(65535, 65537).toArray());
+        assertEquals(3 * 65536, CompressedBitmap.range(65536, 4 * 65536).getCardinality());
+
+        CompressedBitmap last = CompressedBitmap.range(Integer.MAX_VALUE - 3, Integer.MAX_VALUE);
+        assertArrayEquals(new int[] { Integer.MAX_VALUE - 3, Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1 },
+            last.toArray());
+        CompressedBitmap crossing = CompressedBitmap.range(Integer.MAX_VALUE - 70_000, Integer.MAX_VALUE);
+        assertEquals(70_000, crossing.getCardinality());
+        assertTrue(crossing.contains(Integer.MAX_VALUE - 1));
+        assertFalse(crossing.contains(Integer.MAX_VALUE));
+        assertTrue(crossing.add(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> CompressedBitmap.range(-1, 3));
+        assertThrows(IllegalArgumentException.class, () -> CompressedBitmap.range(5, 3));
+    }
+}
@@ -0,0 +1,32 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the damage engine.
+ */
+class DamageEngineTest {
+
+    @Test
+    void armorOnlyLocationsAreNeverDestroyed() {
+        final HitLocation plate = new HitLocation("Damage Plate", "DP");
+        final HitLocation torso = new HitLocation("Damage Torso", "DT");
+        DamageEngine.UnitState state = new DamageEngine.UnitState(
+            new ArmorLoadout[] { new ArmorLoadout(plate, 4, 4), new ArmorLoadout(torso, 2, 2) },
+            new StructureLoadout[] { new StructureLoadout(torso, (short) 3, (short) 3) }, new HitLocationRegistry());
+        assertFalse(state.isDestroyed(plate));
+
+        state.submit(state.newBatch().damage(plate, 10).damage(torso, 5));
+        assertEquals(1, state.apply());
+        assertEquals(0, state.getArmor(plate));
+        assertFalse(state.isDestroyed(plate));
+        assertTrue(state.isDestroyed(torso));
+        assertEquals(List.of(torso), state.getDestroyedLocations());
+    }
+}
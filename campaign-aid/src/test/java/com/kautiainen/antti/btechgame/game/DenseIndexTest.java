@@ -0,0 +1,42 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the dense index.
+ */
+class DenseIndexTest {
+
+    @Test
+    void extendingIndexSharesBaseOrdinals() {
+        DenseIndex<String> base = new DenseIndex<>(Arrays.asList("a", "b"));
+        DenseIndex<String> extending = new DenseIndex<>(base);
+        assertEquals(1, extending.indexOf("b"));
+        assertEquals(2, extending.intern("c"));
+        assertEquals(0, extending.intern("a"));
+        assertEquals("c", extending.get(2));
+        assertEquals("a", extending.get(0));
+        assertEquals(3, extending.size());
+    }
+
+    @Test
+    void extendingIndexDoesNotModifyBase() {
+        DenseIndex<String> base = new DenseIndex<>(Arrays.asList("a"));
+        DenseIndex<String> extending = new DenseIndex<>(base);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i + 1, extending.intern("local " + i));
+        }
+        assertEquals(1, base.size());
+        assertEquals(-1, base.indexOf("local 0"));
+
+        // The members added to the base later are local to the extending index.
+        assertEquals(1, base.intern("later"));
+        assertEquals(-1, extending.indexOf("later"));
+        assertEquals(21, extending.intern("later"));
+        assertEquals("later", extending.get(21));
+    }
+}
@@ -0,0 +1,88 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the equipment catalog.
+ */
+class EquipmentCatalogTest {
+
+    private static final Equipment MEDIUM_LASER = new Equipment("Medium Laser", "ML", 1.0, 1);
+
+    private static final Equipment LARGE_LASER = new Equipment("Large Laser", "LL", 5.0, 2);
+
+    private static final Equipment MACHINE_GUN = new Equipment("Machine Gun", "MG", 0.5, 1);
+
+    private static final Equipment AUTOCANNON = new Equipment("Autocannon/20", "AC/20", 14.0, 10);
+
+    private static final EquipmentCatalog CATALOG = EquipmentCatalog.of(
+        List.of(MEDIUM_LASER, LARGE_LASER, MACHINE_GUN, AUTOCANNON));
+
+    @Test
+    void equalEquipmentIsInterned() {
+        Equipment copy = new Equipment("Large Laser", "LL", 5.0, 2);
+        assertNotSame(LARGE_LASER, copy);
+        assertSame(LARGE_LASER, CATALOG.intern(copy));
+        assertEquals(1, CATALOG.idOf(copy));
+        assertSame(LARGE_LASER, CATALOG.get(CATALOG.idOf(copy)));
+
+        Equipment unknown = new Equipment("Large Laser", "LL", 5.5, 2);
+        assertSame(unknown, CATALOG.intern(unknown));
+        assertEquals(-1, CATALOG.idOf(unknown));
+        assertEquals(-1, CATALOG.idOf(null));
+
+        // The duplicates do not get ids of their own.
+        EquipmentCatalog duplicates = EquipmentCatalog.of(List.of(MACHINE_GUN, new Equipment("Machine Gun", "MG", 0.5, 1),
+            MEDIUM_LASER));
+        assertEquals(2, duplicates.size());
+        assertSame(MACHINE_GUN, duplicates.intern(new Equipment("Machine Gun", "MG", 0.5, 1)));
+        assertEquals(duplicates.toList(), duplicates.toBuilder().add(MEDIUM_LASER).build().toList());
+    }
+
+    @Test
+    void equipmentIsFoundByNameAndAbbreviation() {
+        assertSame(AUTOCANNON, CATALOG.byName("Autocannon/20"));
+        assertSame(AUTOCANNON, CATALOG.byAbbrev("AC/20"));
+        assertNull(CATALOG.byName("autocannon/20"));
+        assertNull(CATALOG.byName(null));
+        assertNull(CATALOG.byAbbrev("PPC"));
+        assertEquals(List.of(MEDIUM_LASER, LARGE_LASER, MACHINE_GUN, AUTOCANNON), CATALOG.toList());
+    }
+
+    @Test
+    void prefixesIgnoreTheCase() {
+        assertEquals(List.of(MACHINE_GUN, MEDIUM_LASER), CATALOG.withPrefix("m"));
+        assertEquals(List.of(MACHINE_GUN), CATALOG.withPrefix("MACH"));
+        assertEquals(List.of(LARGE_LASER), CATALOG.withPrefix("large laser"));
+        assertEquals(List.of(), CATALOG.withPrefix("Large Lasers"));
+        assertEquals(List.of(), CATALOG.withPrefix("x"));
+        assertEquals(4, CATALOG.withPrefix("").size());
+        assertEquals(List.of(MEDIUM_LASER), CATALOG.withPrefix("m").subList(1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> CATALOG.withPrefix("m").get(2));
+    }
+
+    @Test
+    void rangesIncludeTheirBounds() {
+        assertEquals(List.of(MACHINE_GUN, MEDIUM_LASER, LARGE_LASER), CATALOG.withMass(0.5, 5.0));
+        assertEquals(List.of(MEDIUM_LASER), CATALOG.withMass(0.75, 1.0));
+        assertEquals(List.of(), CATALOG.withMass(6.0, 2.0));
+        assertEquals(List.of(MEDIUM_LASER, MACHINE_GUN, LARGE_LASER), CATALOG.withSize(1, 2));
+        assertEquals(List.of(AUTOCANNON), CATALOG.withSize(3, Integer.MAX_VALUE));
+        assertEquals(List.of(), EquipmentCatalog.empty().withSize(0, 10));
+    }
+
+    @Test
+    void invalidEquipmentIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> EquipmentCatalog.builder().add(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> EquipmentCatalog.builder().add(new Equipment(null, "N", 1.0, 1)));
+    }
+}
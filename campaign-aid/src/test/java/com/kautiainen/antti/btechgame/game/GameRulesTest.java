@@ -0,0 +1,36 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the game rules.
+ */
+class GameRulesTest {
+
+    @Test
+    void modifyingReturnedArraysDoesNotModifyRules() {
+        GameRules rules = new GameRules("Test", "Test");
+        rules.getUnitTypes()[0] = null;
+        rules.getHitLocations()[0] = null;
+        assertNotNull(rules.getUnitTypes()[0]);
+        assertNotNull(rules.getHitLocations()[0]);
+        assertNotNull(new GameRules("Other", "Test").getHitLocations()[0]);
+    }
+
+    @Test
+    void loadoutsDoNotModifyRuleLocationIndex() {
+        GameRules rules = new GameRules("Test", "Test");
+        final int size = rules.getLocationIndex().size();
+        rules.getLocationIndex().intern(new HitLocation("Rules Test", "RT"));
+        LoadoutController controller = new LoadoutController(100.0, 100.0, rules);
+        LoadoutController.Loadout loadout = controller.new Loadout(new HashMap<>(), false);
+        loadout.addEquipment(new HitLocation("Rules Test", "RT"), new Equipment("Test", "T", 1.0, 1));
+        assertEquals(size, rules.getLocationIndex().size());
+        assertEquals(size, new GameRules("Other", "Test").getLocationIndex().size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the hit location registry and its users.
+ */
+class HitLocationRegistryTest {
+
+    @Test
+    void conflictingDefinitionsAreRejected() {
+        HitLocationRegistry registry = new HitLocationRegistry();
+        HitLocation first = registry.slotted(GameRules.UnitType.Mech, "Torso", "T", (short) 12);
+        assertThrows(IllegalArgumentException.class, () -> registry.slotted(GameRules.UnitType.Mech, "Torso", "T", (short) 6));
+        assertThrows(IllegalArgumentException.class, () -> registry.unslotted(GameRules.UnitType.Mech, "Other Torso", "T"));
+        assertSame(first, registry.intern(GameRules.UnitType.Mech, new HitLocation.SlottedHitLocation("Torso", "T", (short) 12)));
+        assertSame(first, registry.byName(GameRules.UnitType.Mech, "Torso"));
+        assertSame(first, registry.byAbbrev(GameRules.UnitType.Mech, "T"));
+        assertEquals(1, registry.size());
+
+        // The unit types have names of their own.
+        HitLocation vehicle = registry.slotted(GameRules.UnitType.Vehicle, "Torso", "T", (short) 6);
+        assertNotSame(first, vehicle);
+        assertSame(vehicle, registry.byName(GameRules.UnitType.Vehicle, "Torso"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void ruleSetRejectsConflictingDefinitions() {
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.parse(new StringReader(
+            "name: Test\nlocation: Mech, Torso, T, 12\nlocation: Mech, Torso, T, 6\n"), 1L));
+    }
+
+    @Test
+    void loadoutsDoNotRegisterLocations() {
+        final int registered = HitLocationRegistry.getDefault().size();
+        HitLocation location = new HitLocation.SlottedHitLocation("Unregistered Test", "UT", (short) 4);
+        LoadoutController controller = new LoadoutController(100.0, 100.0);
+        LoadoutController.Loadout loadout = controller.new Loadout(new HashMap<>(), true);
+        loadout.addEquipment(location, new Equipment("Test", "T", 1.0, 3));
+        assertEquals(1, loadout.getFreeSlots(location));
+        LoadoutSnapshot.of(loadout);
+        assertEquals(registered, HitLocationRegistry.getDefault().size());
+        assertEquals(-1, HitLocationRegistry.getDefault().idOf(location));
+    }
+
+    @Test
+    void damageAppliesToUnregisteredLocations() {
+        final int registered = HitLocationRegistry.getDefault().size();
+        HitLocation location = new HitLocation("Unregistered Damage", "UD");
+        DamageEngine.UnitState state = new DamageEngine.UnitState(new ArmorLoadout[0],
+            new StructureLoadout[] { new StructureLoadout(location, (short) 5, (short) 5) });
+        state.submit(new DamageEngine.Batch().damageStructure(location, 5));
+        assertEquals(1, state.apply());
+        assertEquals(0, state.getStructure(location));
+        assertEquals(registered, HitLocationRegistry.getDefault().size());
+    }
+
+    @Test
+    void calculationsUseLocationsOfRuleSet() throws java.io.IOException {
+        RuleSet ruleSet = RuleSet.parse(new StringReader("name: Test\nlocation: Mech, Rule Torso, RT, 12\n"), 1L);
+        HitLocation location = ruleSet.getLocations().byName(GameRules.UnitType.Mech, "Rule Torso");
+        assertSame(ruleSet.getLocations(), ruleSet.getRules().getLocationRegistry());
+        assertEquals(-1, HitLocationRegistry.getDefault().idOf(location));
+        DamageEngine.UnitState state = new DamageEngine.UnitState(new ArmorLoadout[] { new ArmorLoadout(location, 10, 10) },
+            new StructureLoadout[] { new StructureLoadout(location, (short) 5, (short) 5) }, ruleSet.getLocations());
+        state.submit(state.newBatch().damage(location, 12));
+        state.submit(new DamageEngine.Batch().repairArmor(location, 1));
+        state.apply();
+        assertEquals(1, state.getArmor(location));
+        assertEquals(3, state.getStructure(location));
+    }
+}
@@ -0,0 +1,199 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The stress test of the concurrent modifications and optimistic reads of a loadout.
+ *
+ * Every writer owns one equipment whose mass is a distinct power of four, and holds at most three
+ * items of it, so every committed tonnage encodes the number of items of each writer in its base
+ * four digits. A read seeing a partially applied modification shows up as an invalid digit or as a
+ * mismatch between the items and their mass.
+ */
+class LoadoutConcurrencyTest {
+
+    /**
+     * The number of writer threads.
+     */
+    private static final int WRITERS = 4;
+
+    /**
+     * The number of optimistic reader threads.
+     */
+    private static final int READERS = 4;
+
+    /**
+     * The largest number of items of a writer.
+     */
+    private static final int MAX_ITEMS = 3;
+
+    /**
+     * The duration of the stress in milliseconds.
+     */
+    private static final long DURATION = 2_000;
+
+    /**
+     * The locations of the stressed loadout.
+     */
+    private static final HitLocation[] LOCATIONS = {
+        new HitLocation.SlottedHitLocation("Stress Left", "SL", (short) 64),
+        new HitLocation.SlottedHitLocation("Stress Right", "SR", (short) 64)
+    };
+
+    /**
+     * The equipment of a writer.
+     */
+    private static Equipment equipmentOf(int writer) {
+        return new Equipment("Stress " + writer, "S" + writer, Math.pow(4, writer), 1);
+    }
+
+    /**
+     * Check that a tonnage is a committed tonnage.
+     * @return The numbers of items of the writers encoded by the tonnage.
+     */
+    private static int[] decode(double tonnage) {
+        if (tonnage != Math.rint(tonnage) || tonnage < 0) fail("Torn tonnage " + tonnage);
+        long value = (long) tonnage;
+        int[] result = new int[WRITERS];
+        for (int writer = 0; writer < WRITERS; writer++) {
+            result[writer] = (int) (value % 4);
+            value /= 4;
+        }
+        if (value != 0) fail("Tonnage out of range " + tonnage);
+        return result;
+    }
+
+    /**
+     * The total mass of the entries of a loadout.
+     */
+    private static double massOf(LoadoutController.Entry<HitLocation, Equipment>[] entries) {
+        double result = 0.0;
+        for (LoadoutController.Entry<HitLocation, Equipment> entry : entries) {
+            result += entry.getValue().mass;
+        }
+        return result;
+    }
+
+    @Test
+    void tonnageMatchesMassUnderConcurrentModifications() throws InterruptedException {
+        LoadoutController controller = new LoadoutController(1000.0, 1000.0);
+        LoadoutController.Loadout loadout = controller.new Loadout(new HashMap<>(), true);
+        AtomicIntegerArray held = new AtomicIntegerArray(WRITERS);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong checkpoints = new AtomicLong();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        // The writers hold the shared side during a modification, so the checker sees the loadout
+        // and the counts of the writers at rest while it holds the exclusive side.
+        ReentrantReadWriteLock phase = new ReentrantReadWriteLock();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            final Equipment equipment = equipmentOf(writer);
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(writer);
+                List<HitLocation> placed = new ArrayList<>();
+                while (!stop.get()) {
+                    phase.readLock().lock();
+                    try {
+                        final int operation = random.nextInt(3);
+                        if (placed.size() < MAX_ITEMS && operation == 0) {
+                            HitLocation location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+                            loadout.addEquipment(location, equipment);
+                            placed.add(location);
+                        } else if (placed.size() < MAX_ITEMS && operation == 1) {
+                            LoadoutController.EquipmentLoadout[] result = loadout.autoPlace(LOCATIONS,
+                                Collections.singletonList(equipment));
+                            if (result == null) throw new AssertionError("Auto placement failed");
+                            placed.add(result[0].location);
+                        } else if (!placed.isEmpty()) {
+                            HitLocation location = placed.remove(placed.size() - 1);
+                            if (!loadout.removeEquipment(location, equipment)) {
+                                throw new AssertionError("Placed equipment missing");
+                            }
+                        }
+                        held.set(writer, placed.size());
+                    } catch (Throwable failure) {
+                        failures.add(failure);
+                        stop.set(true);
+                    } finally {
+                        phase.readLock().unlock();
+                    }
+                }
+            }, "writer-" + writer));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                while (!stop.get()) {
+                    try {
+                        LoadoutController.Entry<HitLocation, Equipment>[] entries = loadout.toArray();
+                        int[] counts = new int[WRITERS];
+                        for (LoadoutController.Entry<HitLocation, Equipment> entry : entries) {
+                            counts[Integer.numberOfTrailingZeros((int) entry.getValue().mass) / 2]++;
+                        }
+                        assertEquals(Arrays.toString(counts),
+                            Arrays.toString(decode(massOf(entries))), "Entries and their mass");
+                        decode(loadout.getTonnage());
+                        reads.incrementAndGet();
+                    } catch (Throwable failure) {
+                        failures.add(failure);
+                        stop.set(true);
+                    }
+                }
+            }, "reader-" + r));
+        }
+        threads.add(new Thread(() -> {
+            while (!stop.get()) {
+                phase.writeLock().lock();
+                try {
+                    double expected = 0.0;
+                    for (int writer = 0; writer < WRITERS; writer++) {
+                        expected += held.get(writer) * Math.pow(4, writer);
+                    }
+                    assertEquals(expected, loadout.getTonnage(), "Tonnage at rest");
+                    assertEquals(expected, massOf(loadout.toArray()), "Mass at rest");
+                    checkpoints.incrementAndGet();
+                } catch (Throwable failure) {
+                    failures.add(failure);
+                    stop.set(true);
+                } finally {
+                    phase.writeLock().unlock();
+                }
+                Thread.yield();
+            }
+        }, "checker"));
+
+        threads.forEach(Thread::start);
+        Thread.sleep(DURATION);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError("Inconsistent loadout", failures.peek());
+            failures.stream().skip(1).forEach(error::addSuppressed);
+            throw error;
+        }
+        assertEquals(loadout.getTonnage(), massOf(loadout.toArray()), "Final tonnage");
+        assertTrue(reads.get() > 0, "No optimistic reads performed");
+        assertTrue(checkpoints.get() > 0, "No checkpoints performed");
+    }
+}
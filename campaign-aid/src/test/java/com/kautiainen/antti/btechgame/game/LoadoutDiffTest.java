@@ -0,0 +1,112 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The test of the loadout differences.
+ */
+class LoadoutDiffTest {
+
+    private static final HitLocation TORSO = new HitLocation.SlottedHitLocation("Diff Torso", "DFT", (short) 6);
+
+    private static final HitLocation ARM = new HitLocation.SlottedHitLocation("Diff Arm", "DFA", (short) 4);
+
+    private static final Equipment LASER = new Equipment("Diff Laser", "DL", 1.0, 1);
+
+    private static final Equipment CANNON = new Equipment("Diff Cannon", "DC", 4.0, 3);
+
+    private static final Equipment SINK = new Equipment("Diff Sink", "DS", 1.0, 1);
+
+    private static EquipmentLoadout[] entries(Object... locationsAndEquipment) {
+        EquipmentLoadout[] result = new EquipmentLoadout[locationsAndEquipment.length / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new EquipmentLoadout((HitLocation) locationsAndEquipment[2 * i],
+                (Equipment) locationsAndEquipment[2 * i + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Count the entries by location and equipment.
+     */
+    private static Map<List<Object>, Integer> counts(LoadoutController.Entry<HitLocation, Equipment>[] entries) {
+        Map<List<Object>, Integer> result = new HashMap<>();
+        for (LoadoutController.Entry<HitLocation, Equipment> entry : entries) {
+            result.merge(List.of(entry.getKey(), entry.getValue()), 1, Integer::sum);
+        }
+        return result;
+    }
+
+    @Test
+    void differencePairsRemovalsAndAdditionsAsMoves() {
+        LoadoutDiff diff = LoadoutDiff.of(entries(TORSO, LASER, TORSO, LASER, ARM, CANNON, TORSO, SINK),
+            entries(ARM, LASER, TORSO, LASER, TORSO, CANNON, ARM, SINK, ARM, SINK));
+        List<LoadoutDiff.Change> changes = diff.getChanges();
+        assertEquals(List.of(
+            new LoadoutDiff.Change(LoadoutDiff.Kind.MOVE, LASER, TORSO, ARM),
+            new LoadoutDiff.Change(LoadoutDiff.Kind.MOVE, CANNON, ARM, TORSO),
+            new LoadoutDiff.Change(LoadoutDiff.Kind.MOVE, SINK, TORSO, ARM),
+            new LoadoutDiff.Change(LoadoutDiff.Kind.ADD, SINK, null, ARM)), changes);
+        assertEquals(1.0, diff.getMassDelta());
+
+        List<LoadoutDiff.Step> plan = diff.toRefitPlan();
+        assertEquals(7, plan.size());
+        assertEquals(new LoadoutDiff.Step(false, TORSO, LASER, true), plan.get(0));
+        assertEquals(new LoadoutDiff.Step(true, ARM, SINK, false), plan.get(6));
+        assertTrue(LoadoutDiff.of(entries(TORSO, LASER), entries(TORSO, LASER)).isEmpty());
+
+        LoadoutDiff removal = LoadoutDiff.of(entries(TORSO, CANNON, ARM, LASER), entries(ARM, LASER));
+        assertEquals(List.of(new LoadoutDiff.Change(LoadoutDiff.Kind.REMOVE, CANNON, TORSO, null)), removal.getChanges());
+        assertEquals(-4.0, removal.getMassDelta());
+    }
+
+    @Test
+    void planStaysWithinStrictLimits() {
+        // Both loadouts use the whole tonnage, and the source uses all slots of the arm.
+        LoadoutController controller = new LoadoutController(50.0, 6.0);
+        LoadoutController.Loadout loadout = controller.new Loadout(entries(ARM, CANNON, ARM, LASER, TORSO, LASER), true);
+        EquipmentLoadout[] target = entries(TORSO, CANNON, ARM, LASER, ARM, SINK);
+        assertThrows(IllegalArgumentException.class, () -> loadout.addEquipment(ARM, SINK));
+
+        LoadoutDiff diff = LoadoutDiff.of(loadout, controller.new Loadout(target, true));
+        assertEquals(0.0, diff.getMassDelta());
+        assertEquals(diff.toRefitPlan().size(), diff.applyTo(loadout));
+        assertEquals(counts(target), counts(loadout.toArray()));
+        assertEquals(6.0, loadout.getTonnage());
+    }
+
+    @Test
+    void randomPlansReachTheTargetWithinTheLimits() {
+        SplittableRandom random = new SplittableRandom(23);
+        Equipment[] items = { LASER, CANNON, SINK };
+        HitLocation[] locations = { TORSO, ARM };
+        LoadoutController controller = new LoadoutController(50.0, 8.0);
+        for (int round = 0; round < 200; round++) {
+            LoadoutController.Loadout source = controller.new Loadout(new EquipmentLoadout[0], true);
+            LoadoutController.Loadout target = controller.new Loadout(new EquipmentLoadout[0], true);
+            for (LoadoutController.Loadout loadout : List.of(source, target)) {
+                for (int i = 0; i < 8; i++) {
+                    HitLocation location = locations[random.nextInt(locations.length)];
+                    Equipment item = items[random.nextInt(items.length)];
+                    if (loadout.canPlace(location, item)) loadout.addEquipment(location, item);
+                }
+            }
+            LoadoutDiff diff = LoadoutDiff.of(source, target);
+            assertEquals(target.getTonnage() - source.getTonnage(), diff.getMassDelta(), 1e-9);
+            // The strict source loadout rejects every step exceeding the tonnage or the slots.
+            assertEquals(diff.toRefitPlan().size(), diff.applyTo(source));
+            assertEquals(counts(target.toArray()), counts(source.toArray()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the order of the loadout change events.
+ */
+class LoadoutListenerTest {
+
+    /**
+     * The number of changes of a thread.
+     */
+    private static final int CHANGES = 20_000;
+
+    @Test
+    void eventsArriveInTheOrderOfTheChanges() throws InterruptedException {
+        final HitLocation location = new HitLocation("Listener Test", "LT");
+        final Equipment equipment = new Equipment("Listener Test", "LT", 1.0, 0);
+        LoadoutController controller = new LoadoutController(1000.0, 1000.0);
+        LoadoutController.Loadout loadout = controller.new Loadout(new HashMap<>(), false);
+
+        // The count seen by the listener goes negative, if a removal is delivered before the
+        // addition it removed.
+        AtomicInteger count = new AtomicInteger();
+        AtomicInteger minimum = new AtomicInteger();
+        loadout.addLoadoutListener(new LoadoutController.LoadoutListener() {
+
+            @Override
+            public void equipmentAdded(HitLocation added, Equipment item) {
+                count.incrementAndGet();
+            }
+
+            @Override
+            public void equipmentRemoved(HitLocation removed, Equipment item) {
+                minimum.accumulateAndGet(count.decrementAndGet(), Math::min);
+            }
+        });
+
+        AtomicInteger removed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            threads.add(new Thread(() -> {
+                for (int change = 0; change < CHANGES; change++) {
+                    loadout.addEquipment(location, equipment);
+                }
+            }));
+            threads.add(new Thread(() -> {
+                int done = 0;
+                while (done < CHANGES) {
+                    if (loadout.removeEquipment(location, equipment)) done++;
+                }
+                removed.addAndGet(done);
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2 * CHANGES, removed.get());
+        assertEquals(0, count.get(), "Events after the changes");
+        assertTrue(minimum.get() >= 0, "Removal delivered before its addition");
+        assertEquals(0.0, loadout.getTonnage());
+    }
+
+    @Test
+    void rejectedAdditionsAreCountedWithoutEvents() {
+        final HitLocation location = new HitLocation.SlottedHitLocation("Listener Test", "LT", (short) 2);
+        LoadoutController controller = new LoadoutController(10.0, 5.0);
+        LoadoutController.Loadout loadout = controller.new Loadout(new HashMap<>(), true);
+        AtomicInteger events = new AtomicInteger();
+        loadout.addLoadoutListener(new LoadoutController.LoadoutListener() {
+
+            @Override
+            public void equipmentAdded(HitLocation added, Equipment item) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void equipmentRemoved(HitLocation removed, Equipment item) {
+                events.incrementAndGet();
+            }
+        });
+        final long rejected = LoadoutController.REJECTED_ADDS.getCount();
+        assertThrows(IllegalArgumentException.class,
+            () -> loadout.addEquipment(location, new Equipment("Heavy", "H", 6.0, 1)));
+        assertThrows(IllegalArgumentException.class,
+            () -> loadout.addEquipment(location, new Equipment("Large", "L", 1.0, 3)));
+        assertEquals(rejected + 2, LoadoutController.REJECTED_ADDS.getCount());
+        assertEquals(0, events.get());
+    }
+}
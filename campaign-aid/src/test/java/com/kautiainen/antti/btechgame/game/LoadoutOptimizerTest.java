@@ -0,0 +1,137 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.jupiter.api.Test;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The test of the loadout optimizer.
+ */
+class LoadoutOptimizerTest {
+
+    private static final HitLocation TORSO = new HitLocation.SlottedHitLocation("Optimized Torso", "OT", (short) 6);
+
+    private static final HitLocation ARM = new HitLocation.SlottedHitLocation("Optimized Arm", "OA", (short) 3);
+
+    private static final HitLocation[] LOCATIONS = { TORSO, ARM };
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final LoadoutController.Entry<HitLocation, Equipment>[] NONE = new LoadoutController.Entry[0];
+
+    /**
+     * Find the best score by trying every assignment of the items to the locations.
+     */
+    private static double bruteForce(List<Equipment> items, ToDoubleFunction<Equipment> score, double tonnage,
+        int[] free, int index) {
+        if (index == items.size()) return 0.0;
+        Equipment item = items.get(index);
+        double best = bruteForce(items, score, tonnage, free, index + 1);
+        if (item.mass > tonnage + 1e-9) return best;
+        for (int location = 0; location < free.length; location++) {
+            if (free[location] >= item.size) {
+                free[location] -= item.size;
+                best = Math.max(best, score.applyAsDouble(item)
+                    + bruteForce(items, score, tonnage - item.mass, free, index + 1));
+                free[location] += item.size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check that a result fits the tonnage and the critical slots, and that its score is the score
+     * of its entries.
+     */
+    private static void assertValid(LoadoutOptimizer.Result result, ToDoubleFunction<Equipment> score) {
+        Map<HitLocation, Integer> used = new HashMap<>();
+        double tonnage = 0.0;
+        double total = 0.0;
+        for (EquipmentLoadout entry : result.entries()) {
+            used.merge(entry.getKey(), entry.getValue().size, Integer::sum);
+            tonnage += entry.getValue().mass;
+            total += score.applyAsDouble(entry.getValue());
+        }
+        assertTrue(tonnage <= result.controller().getAvailableTonnage() + 1e-9);
+        assertEquals(tonnage, result.tonnage(), 1e-9);
+        assertEquals(total, result.score(), 1e-9);
+        used.forEach((location, slots) -> assertTrue(slots <= PackedLoadout.capacityOf(location)));
+    }
+
+    @Test
+    void searchFindsTheBestLoadout() {
+        LoadoutOptimizer optimizer = new LoadoutOptimizer();
+        SplittableRandom random = new SplittableRandom(4);
+        ToDoubleFunction<Equipment> score = item -> item.mass * (item.size + 1) + item.name.length();
+        for (int round = 0; round < 20; round++) {
+            List<Equipment> items = new ArrayList<>();
+            for (int i = 0; i < 9; i++) {
+                items.add(new Equipment("Candidate " + random.nextInt(4), "C", 0.5 * (1 + random.nextInt(8)),
+                    1 + random.nextInt(4)));
+            }
+            LoadoutController controller = new LoadoutController(50.0, 2.0 + random.nextInt(10));
+            LoadoutOptimizer.Result result = optimizer.start(controller, LOCATIONS, NONE, items, score, null).join();
+            assertTrue(result.complete());
+            assertValid(result, score);
+            assertEquals(bruteForce(items, score, controller.getAvailableTonnage(), new int[] { 6, 3 }, 0),
+                result.score(), 1e-9);
+        }
+    }
+
+    @Test
+    void occupiedSlotsAreNotReused() {
+        Equipment gun = new Equipment("Occupying Gun", "OG", 1.0, 5);
+        Equipment laser = new Equipment("Occupying Laser", "OL", 1.0, 2);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        LoadoutController.Entry<HitLocation, Equipment>[] occupied = new LoadoutController.Entry[] {
+            new EquipmentLoadout(TORSO, gun) };
+        LoadoutOptimizer.Result result = new LoadoutOptimizer().start(new LoadoutController(50.0, 10.0), LOCATIONS,
+            occupied, List.of(laser, laser, laser), item -> 1.0, null).join();
+        // The torso has one free slot, and the arm fits only one laser.
+        assertEquals(1, result.entries().length);
+        assertEquals(ARM, result.entries()[0].getKey());
+    }
+
+    @Test
+    void expiredBudgetStopsTheSearch() {
+        // The scores correlated with the masses make the bounds weak.
+        SplittableRandom random = new SplittableRandom(11);
+        List<Equipment> items = new ArrayList<>();
+        double total = 0.0;
+        for (int i = 0; i < 60; i++) {
+            Equipment item = new Equipment("Heavy " + i, "H" + i, 10 + random.nextInt(90), 0);
+            items.add(item);
+            total += item.mass;
+        }
+        ToDoubleFunction<Equipment> score = item -> item.mass + 10;
+        LoadoutOptimizer.Result result = new LoadoutOptimizer().start(new LoadoutController(total, total / 2),
+            LOCATIONS, NONE, items, score, Duration.ZERO).join();
+        assertFalse(result.complete());
+        assertValid(result, score);
+    }
+
+    @Test
+    void invalidParametersAreRejected() {
+        LoadoutOptimizer optimizer = new LoadoutOptimizer();
+        LoadoutController controller = new LoadoutController(50.0, 10.0);
+        assertThrows(IllegalArgumentException.class, () -> new LoadoutOptimizer(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> optimizer.start(controller, LOCATIONS, NONE, List.of(), item -> 1.0, Duration.ofSeconds(-1)));
+        List<Equipment> undefined = new ArrayList<>();
+        undefined.add(null);
+        assertThrows(IllegalArgumentException.class,
+            () -> optimizer.start(controller, LOCATIONS, NONE, undefined, item -> 1.0, null));
+    }
+}
@@ -0,0 +1,132 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.kautiainen.antti.btechgame.game.LoadoutController.EquipmentLoadout;
+
+/**
+ * The test of the loadout snapshots.
+ */
+class LoadoutSnapshotTest {
+
+    private static final HitLocation TORSO = new HitLocation("Snapshot Torso", "ST");
+
+    private static final HitLocation ARM = new HitLocation("Snapshot Arm", "SA");
+
+    private static final Equipment LASER = new Equipment("Snapshot Laser", "SL", 1.0, 1);
+
+    private static final Equipment CANNON = new Equipment("Snapshot Cannon", "SC", 8.0, 4);
+
+    /**
+     * Count the equipment of a snapshot by location and equipment.
+     */
+    private static Map<List<Object>, Integer> counts(LoadoutSnapshot snapshot) {
+        Map<List<Object>, Integer> result = new HashMap<>();
+        for (EquipmentLoadout entry : snapshot.toArray()) {
+            result.merge(List.of(entry.getKey(), entry.getValue()), 1, Integer::sum);
+        }
+        return result;
+    }
+
+    @Test
+    void historyUndoesAndRedoesTheCommittedStates() {
+        LoadoutSnapshot empty = LoadoutSnapshot.empty();
+        LoadoutSnapshot.History history = new LoadoutSnapshot.History(empty);
+        assertFalse(history.canUndo());
+        assertSame(empty, history.undo());
+
+        LoadoutSnapshot first = history.commit(empty.add(TORSO, LASER));
+        LoadoutSnapshot second = history.commit(first.add(ARM, CANNON));
+        assertSame(second, history.commit(second));
+        assertSame(first, history.undo());
+        assertSame(empty, history.undo());
+        assertFalse(history.canUndo());
+        assertSame(first, history.redo());
+        assertTrue(history.canRedo());
+
+        // A new state forgets the undone states.
+        LoadoutSnapshot branch = history.commit(first.add(TORSO, LASER));
+        assertFalse(history.canRedo());
+        assertSame(branch, history.redo());
+        assertSame(first, history.undo());
+        assertEquals(2, branch.count(TORSO, LASER));
+        assertEquals(1, first.count(TORSO, LASER));
+        assertThrows(IllegalArgumentException.class, () -> history.commit(null));
+    }
+
+    @Test
+    void sharedTreesLeaveTheEarlierSnapshotsIntact() {
+        SplittableRandom random = new SplittableRandom(7);
+        HitLocation[] locations = { TORSO, ARM };
+        Equipment[] items = new Equipment[40];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Equipment("Snapshot Item " + i, "SI" + i, 0.5 * (i % 5 + 1), 1);
+        }
+        List<LoadoutSnapshot> snapshots = new ArrayList<>();
+        List<Map<List<Object>, Integer>> expected = new ArrayList<>();
+        Map<List<Object>, Integer> current = new HashMap<>();
+        LoadoutSnapshot snapshot = LoadoutSnapshot.empty();
+        for (int step = 0; step < 500; step++) {
+            HitLocation location = locations[random.nextInt(locations.length)];
+            Equipment item = items[random.nextInt(items.length)];
+            List<Object> key = List.of(location, item);
+            if (random.nextInt(3) == 0) {
+                LoadoutSnapshot updated = snapshot.remove(location, item);
+                if (current.containsKey(key)) {
+                    current.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+                } else {
+                    assertSame(snapshot, updated);
+                }
+                snapshot = updated;
+            } else {
+                snapshot = snapshot.add(location, item);
+                current.merge(key, 1, Integer::sum);
+            }
+            snapshots.add(snapshot);
+            expected.add(new HashMap<>(current));
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            LoadoutSnapshot state = snapshots.get(i);
+            assertEquals(expected.get(i), counts(state));
+            assertEquals(expected.get(i).values().stream().mapToInt(Integer::intValue).sum(), state.size());
+            double tonnage = 0.0;
+            for (EquipmentLoadout entry : state.toArray()) {
+                tonnage += entry.getValue().mass;
+            }
+            assertEquals(tonnage, state.getTonnage(), 1e-9);
+        }
+    }
+
+    @Test
+    void snapshotsOrderTheEquipmentByLocation() {
+        LoadoutSnapshot snapshot = LoadoutSnapshot.empty().add(ARM, LASER).add(TORSO, CANNON).add(ARM, CANNON)
+            .add(TORSO, CANNON);
+        EquipmentLoadout[] entries = snapshot.toArray();
+        assertEquals(4, entries.length);
+        for (int i = 1; i < entries.length; i++) {
+            // The locations are never interleaved.
+            if (entries[i].getKey() != entries[i - 1].getKey()) {
+                for (int j = i + 1; j < entries.length; j++) {
+                    assertSame(entries[i].getKey(), entries[j].getKey());
+                }
+            }
+        }
+        assertEquals(counts(snapshot), counts(LoadoutSnapshot.of(entries)));
+        assertSame(snapshot, snapshot.remove(TORSO, LASER));
+        assertEquals(0, snapshot.count(new HitLocation("Unknown", "U"), LASER));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.add(null, LASER));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.add(TORSO, null));
+    }
+}
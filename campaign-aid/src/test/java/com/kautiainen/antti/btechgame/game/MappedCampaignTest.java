@@ -0,0 +1,145 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the campaign file format.
+ */
+class MappedCampaignTest {
+
+    private static final HitLocation TORSO = new HitLocation.SlottedHitLocation("File Torso", "FT", (short) 12);
+
+    private static final HitLocation TURRET = new HitLocation("File Turret", "FTU");
+
+    private static final Equipment LASER = new Equipment("File Laser", "FL", 1.0, 1);
+
+    private static final Equipment SINK = new Equipment("File Sink", "FS", 1.0, 1,
+        new RulesModifier("File Sink", "heat", -1.0, RoundingMode.DOWN), new RulesModifier("File Sink", "cost", 2.0, null));
+
+    private static Campaign campaign() {
+        return new Campaign("File Campaign", new Unit[] {
+            new Unit(GameRules.UnitType.Mech, "First", "F-1", 50.0, 20.0,
+                new LoadoutController.EquipmentLoadout[] {
+                    new LoadoutController.EquipmentLoadout(TORSO, LASER), null,
+                    new LoadoutController.EquipmentLoadout(TORSO, SINK) },
+                new ArmorLoadout[] { new ArmorLoadout(TORSO, 20, 15), null },
+                new StructureLoadout[] { new StructureLoadout(TORSO, (short) 16, (short) 10) }),
+            new Unit(GameRules.UnitType.Vehicle, "Second", null, 30.0, 10.0,
+                new LoadoutController.EquipmentLoadout[0],
+                new ArmorLoadout[] { new ArmorLoadout(TURRET, null, 8) },
+                new StructureLoadout[0])
+        });
+    }
+
+    private static ByteBuffer encode(Campaign campaign) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CampaignFile.write(campaign, EquipmentCatalog.of(List.of(LASER)), output);
+        return ByteBuffer.wrap(output.toByteArray());
+    }
+
+    /**
+     * The offset of the record of an unit.
+     */
+    private static int unitOffset(ByteBuffer content, int unit) {
+        return (int) content.getLong(CampaignFile.HEADER_SECTIONS + 8 * CampaignFile.UNIT_SECTION) + unit * CampaignFile.UNIT_SIZE;
+    }
+
+    @Test
+    void campaignSurvivesRoundTrip() throws IOException {
+        MappedCampaign mapped = MappedCampaign.of(encode(campaign()), new HitLocationRegistry());
+        assertEquals("File Campaign", mapped.getName());
+        assertEquals(2, mapped.size());
+        assertEquals(GameRules.UnitType.Vehicle, mapped.getUnitType(1));
+        assertEquals(List.of(LASER, SINK), mapped.getCatalog().toList());
+
+        Unit first = mapped.getUnit(0);
+        assertEquals("F-1", first.getModel());
+        assertEquals(20.0, first.getAvailableTonnage());
+        assertEquals(TORSO, first.loadout[0].getKey());
+        assertNull(first.loadout[1]);
+        assertEquals(SINK, first.loadout[2].getValue());
+        assertSame(first.loadout[2].getValue(), mapped.getEquipment(1));
+        assertEquals(15, first.getSummary().getArmor());
+        assertNull(first.armor[1]);
+        assertEquals(16, first.getSummary().getStructureMax());
+
+        Unit second = mapped.toCampaign().units[1];
+        assertNull(second.getModel());
+        assertNull(second.armor[0].max);
+        assertEquals(TURRET, second.armor[0].location);
+    }
+
+    @Test
+    void fileSurvivesRoundTripWithCanonicalLocations() throws IOException {
+        HitLocationRegistry registry = new HitLocationRegistry();
+        HitLocation canonical = registry.intern(GameRules.UnitType.Mech, TORSO);
+        Path file = Files.createTempFile("campaign", ".bin");
+        try {
+            CampaignFile.write(campaign(), file);
+            MappedCampaign mapped = MappedCampaign.open(file, registry);
+            assertSame(canonical, mapped.getUnit(0).loadout[0].getKey());
+            assertEquals(List.of(LASER, SINK), mapped.getCatalog().toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void corruptedUnitTypeIsRejected() throws IOException {
+        ByteBuffer content = encode(campaign());
+        content.put(unitOffset(content, 1) + 8, (byte) 100);
+        MappedCampaign mapped = MappedCampaign.of(content, new HitLocationRegistry());
+        assertThrows(IOException.class, () -> mapped.getUnitType(1));
+        assertThrows(IOException.class, () -> mapped.getUnit(1));
+        assertEquals("First", mapped.getUnit(0).getName());
+    }
+
+    @Test
+    void corruptedEntryRangesAreRejected() throws IOException {
+        ByteBuffer content = encode(campaign());
+        content.putInt(unitOffset(content, 0) + 29, 1000);
+        content.putInt(unitOffset(content, 1) + 33, -1);
+        MappedCampaign mapped = MappedCampaign.of(content, new HitLocationRegistry());
+        assertThrows(IOException.class, () -> mapped.getUnit(0));
+        assertThrows(IOException.class, () -> mapped.getUnit(1));
+        assertThrows(IOException.class, mapped::toCampaign);
+    }
+
+    @Test
+    void corruptedRoundingAndIdsAreRejected() throws IOException {
+        ByteBuffer content = encode(campaign());
+        final int catalog = (int) content.getLong(CampaignFile.HEADER_SECTIONS + 8 * CampaignFile.CATALOG_SECTION);
+        final int records = catalog + 4 * (2 + 1);
+        final int sink = records + content.getInt(catalog + 4);
+        content.put(sink + CampaignFile.EQUIPMENT_SIZE + 16, (byte) 42);
+        content.putInt(unitOffset(content, 1), 1000);
+        MappedCampaign mapped = MappedCampaign.of(content, new HitLocationRegistry());
+        assertEquals(LASER, mapped.getEquipment(0));
+        assertThrows(IOException.class, () -> mapped.getEquipment(1));
+        assertThrows(IOException.class, mapped::getCatalog);
+        assertThrows(IOException.class, () -> mapped.getUnitName(1));
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        ByteBuffer content = encode(campaign());
+        assertThrows(IOException.class, () -> MappedCampaign.of(content.slice(0, CampaignFile.HEADER_SIZE - 1)));
+        // The last condition entry of the second unit is cut.
+        MappedCampaign truncated = MappedCampaign.of(content.slice(0, content.limit() - 3));
+        assertEquals("First", truncated.getUnit(0).getName());
+        assertThrows(IOException.class, () -> truncated.getUnit(1));
+    }
+}
@@ -0,0 +1,59 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.RoundingMode;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the caches of the modifier engine.
+ */
+class ModifierEngineTest {
+
+    private static final Equipment HEAT_SINK = new Equipment("Modifier Test Heat Sink", "MTHS", 1.0, 1,
+        new RulesModifier("Modifier Test Heat Sink", "heat", -0.5, RoundingMode.DOWN));
+
+    @Test
+    void trackedLoadoutFollowsChanges() {
+        final HitLocation location = new HitLocation("Modifier Test", "MT");
+        ModifierEngine engine = new ModifierEngine();
+        LoadoutController controller = new LoadoutController(100.0, 100.0);
+        LoadoutController.Loadout loadout = controller.new Loadout(new HashMap<>(), false);
+        ModifierEngine.Modifiers modifiers = engine.track(loadout);
+        assertEquals(0.0, modifiers.getModifier("heat"));
+
+        loadout.addEquipment(location, HEAT_SINK);
+        loadout.addEquipment(location, HEAT_SINK);
+        assertEquals(-1.0, modifiers.getModifier("heat"));
+
+        loadout.removeEquipment(location, HEAT_SINK);
+        assertEquals(0.0, modifiers.getModifier("heat"));
+        assertEquals(10.0, modifiers.getValue("heat", 10.0));
+    }
+
+    @Test
+    void unitRulesAreCachedReadOnlyViews() {
+        final HitLocation location = new HitLocation("Modifier Test", "MT");
+        Unit unit = new Unit(GameRules.UnitType.Mech, "Modifier Test", "MT-1", 20.0, 10.0,
+            new LoadoutController.EquipmentLoadout[] {
+                new LoadoutController.EquipmentLoadout(location, HEAT_SINK),
+                new LoadoutController.EquipmentLoadout(location, HEAT_SINK) },
+            new ArmorLoadout[0], new StructureLoadout[0]);
+        ModifierEngine engine = new ModifierEngine();
+        ModifierEngine.Modifiers modifiers = engine.of(unit);
+        assertFalse(modifiers instanceof ModifierEngine.EffectiveRules);
+        assertSame(modifiers, engine.of(unit));
+        assertEquals(-1.0, modifiers.getModifier("heat"));
+
+        // The engines do not share the rule ids.
+        ModifierEngine other = new ModifierEngine();
+        assertEquals(-1.0, other.of(unit).getModifier("heat"));
+        assertEquals(0, other.ruleId("heat"));
+        assertEquals(1, other.ruleId("cost"));
+        assertEquals(0, engine.ruleId("heat"));
+    }
+}
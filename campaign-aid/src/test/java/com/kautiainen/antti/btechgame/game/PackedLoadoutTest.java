@@ -0,0 +1,58 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the packed loadout.
+ */
+class PackedLoadoutTest {
+
+    private static final HitLocation TORSO = new HitLocation.SlottedHitLocation("Packed Torso", "PT", (short) 12);
+
+    private static final HitLocation ARM = new HitLocation.SlottedHitLocation("Packed Arm", "PA", (short) 4);
+
+    @Test
+    void sharedLoadoutIndexesOnlyUnknownLocationsItself() {
+        DenseIndex<HitLocation> locations = new DenseIndex<>(List.of(TORSO));
+        DenseIndex<Equipment> equipment = new DenseIndex<>();
+        PackedLoadout loadout = PackedLoadout.shared(locations, equipment, new int[] { 12 });
+        loadout.add(TORSO, new Equipment("Packed Laser", "PL", 1.0, 1));
+        assertSame(locations, loadout.getLocationIndex());
+        assertSame(equipment, loadout.getEquipmentIndex());
+
+        loadout.add(ARM, new Equipment("Packed Laser", "PL", 1.0, 2));
+        assertNotSame(locations, loadout.getLocationIndex());
+        assertEquals(1, locations.size());
+        assertEquals(2, equipment.size());
+        assertEquals(2, loadout.freeSlots(ARM));
+        assertEquals(11, loadout.freeSlots(TORSO));
+        assertEquals(ARM, loadout.toArray()[1].getKey());
+    }
+
+    @Test
+    void sharedEquipmentIndexStopsGrowingAtTheLimit() {
+        DenseIndex<Equipment> equipment = new DenseIndex<>();
+        for (int i = 0; i < PackedLoadout.SHARED_EQUIPMENT_LIMIT; i++) {
+            equipment.intern(new Equipment("Shared " + i, "S" + i, 1.0, 1));
+        }
+        PackedLoadout loadout = PackedLoadout.shared(new DenseIndex<>(), equipment, new int[0]);
+        Equipment known = equipment.get(3);
+        loadout.add(TORSO, known);
+        assertSame(equipment, loadout.getEquipmentIndex());
+
+        Equipment unknown = new Equipment("Unshared", "U", 2.0, 1);
+        loadout.add(TORSO, unknown);
+        assertEquals(PackedLoadout.SHARED_EQUIPMENT_LIMIT, equipment.size());
+        assertNotSame(equipment, loadout.getEquipmentIndex());
+        assertEquals(3.0, loadout.getTonnage());
+        assertEquals(List.of(known, unknown), List.of(loadout.toArray()[0].getValue(), loadout.toArray()[1].getValue()));
+        assertEquals(true, loadout.remove(TORSO, unknown));
+        assertEquals(1, loadout.size());
+    }
+}
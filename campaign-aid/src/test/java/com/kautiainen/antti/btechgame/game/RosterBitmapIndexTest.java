@@ -0,0 +1,72 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.kautiainen.antti.btechgame.game.RosterBitmapIndex.Query;
+
+/**
+ * The test of the roster bitmap index.
+ */
+class RosterBitmapIndexTest {
+
+    private static final HitLocation TORSO = new HitLocation("Bitmap Torso", "BT");
+
+    private static final Equipment LASER = new Equipment("Bitmap Laser", "BL", 1.0, 1);
+
+    private static final Equipment CANNON = new Equipment("Bitmap Cannon", "BC", 8.0, 4);
+
+    private static Unit unit(GameRules.UnitType type, double tonnage, Equipment... equipment) {
+        LoadoutController.EquipmentLoadout[] loadout = new LoadoutController.EquipmentLoadout[equipment.length];
+        for (int i = 0; i < equipment.length; i++) {
+            loadout[i] = new LoadoutController.EquipmentLoadout(TORSO, equipment[i]);
+        }
+        return new Unit(type, "Indexed", "I-1", tonnage, tonnage, loadout, new ArmorLoadout[0], new StructureLoadout[0]);
+    }
+
+    @Test
+    void removedAndReplacedUnitsLeaveTheEquipmentLayers() {
+        RosterBitmapIndex index = new RosterBitmapIndex(new Unit[] {
+            unit(GameRules.UnitType.Mech, 50.0, LASER, LASER, CANNON),
+            unit(GameRules.UnitType.Vehicle, 30.0, LASER),
+            unit(GameRules.UnitType.Mech, 75.0, LASER, LASER)
+        });
+        assertArrayEquals(new int[] { 0, 2 }, index.evaluate(Query.carries(LASER, 2)).toArray());
+        assertArrayEquals(new int[] { 0, 2 }, index.evaluate(Query.and(Query.type(GameRules.UnitType.Mech),
+            Query.tonnage(40.0, 80.0))).toArray());
+
+        assertTrue(index.remove(0));
+        assertFalse(index.remove(0));
+        assertArrayEquals(new int[] { 2 }, index.evaluate(Query.carries(LASER, 2)).toArray());
+        assertTrue(index.evaluate(Query.carries(CANNON)).isEmpty());
+
+        index.put(2, unit(GameRules.UnitType.Vehicle, 20.0, CANNON));
+        assertArrayEquals(new int[] { 1 }, index.evaluate(Query.carries(LASER)).toArray());
+        assertArrayEquals(new int[] { 2 }, index.evaluate(Query.carries(CANNON)).toArray());
+        assertEquals(2, index.count(Query.type(GameRules.UnitType.Vehicle)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void listenerKeepsTheCarriedEquipment() {
+        RosterBitmapIndex index = new RosterBitmapIndex(new Unit[] { unit(GameRules.UnitType.Mech, 50.0, LASER) });
+        LoadoutController.LoadoutListener listener = index.listener(0);
+        listener.equipmentAdded(TORSO, CANNON);
+        listener.equipmentAdded(TORSO, LASER);
+        listener.equipmentRemoved(TORSO, LASER);
+        listener.equipmentRemoved(TORSO, LASER);
+        assertTrue(index.evaluate(Query.carries(LASER)).isEmpty());
+
+        // The removal of the unit clears only the equipment it still carries.
+        assertTrue(index.remove(0));
+        assertTrue(index.evaluate(Query.carries(CANNON)).isEmpty());
+        listener.equipmentRemoved(TORSO, CANNON);
+        index.put(0, unit(GameRules.UnitType.Mech, 50.0));
+        assertTrue(index.evaluate(Query.carriesAny(LASER, CANNON)).isEmpty());
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,116 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the roster index.
+ */
+class RosterIndexTest {
+
+    /**
+     * Create a roster of units with random types and tonnages.
+     */
+    private static Unit[] roster(int size) {
+        SplittableRandom random = new SplittableRandom(7);
+        Unit[] result = new Unit[size];
+        for (int i = 0; i < size; i++) {
+            GameRules.UnitType type = random.nextBoolean() ? GameRules.UnitType.Mech : GameRules.UnitType.Vehicle;
+            double tonnage = 20 + 5 * random.nextInt(17);
+            result[i] = new Unit(type, String.format("Unit %04d", random.nextInt(10_000)), "M-" + i, tonnage,
+                random.nextInt((int) tonnage), new LoadoutController.EquipmentLoadout[0], new ArmorLoadout[0],
+                new StructureLoadout[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Fetch a page of units by filtering and sorting the whole roster.
+     */
+    private static List<Unit> expected(Unit[] units, Predicate<Unit> filter, Comparator<Unit> order, boolean descending,
+        int offset, int limit) {
+        List<Integer> matching = new ArrayList<>();
+        for (int i = 0; i < units.length; i++) {
+            if (filter.test(units[i])) matching.add(i);
+        }
+        // The index breaks the ties by the roster order.
+        matching.sort(Comparator.comparing((Integer i) -> units[i], order).thenComparing(Comparator.naturalOrder()));
+        List<Unit> result = new ArrayList<>();
+        for (int i = offset; i < Math.min(matching.size(), offset + limit); i++) {
+            result.add(units[matching.get(descending ? matching.size() - 1 - i : i)]);
+        }
+        return result;
+    }
+
+    @Test
+    void pagesSortedByAnotherKeyMatchFullSort() {
+        final Unit[] units = roster(2_000);
+        final RosterIndex index = new RosterIndex(units);
+        final Comparator<Unit> byName = Comparator.comparing((Unit unit) -> unit.name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(unit -> unit.name);
+        final Comparator<Unit> byAvailable = Comparator.comparingDouble(unit -> unit.availableTonnage);
+        final int[][] pages = { { 0, 10 }, { 25, 10 }, { 0, 500 }, { 900, 50 }, { 1990, 20 } };
+        for (GameRules.UnitType type : new GameRules.UnitType[] { null, GameRules.UnitType.Mech }) {
+            for (double[] tonnage : new double[][] { { 20, 100 }, { 45, 55 }, { 100, 100 }, { 101, 200 } }) {
+                RosterIndex.Filter filter = RosterIndex.Filter.ALL.withType(type).withTonnage(tonnage[0], tonnage[1]);
+                Predicate<Unit> matches = unit -> (type == null || unit.type == type)
+                    && unit.tonnage >= tonnage[0] && unit.tonnage <= tonnage[1];
+                for (int[] page : pages) {
+                    for (boolean descending : new boolean[] { false, true }) {
+                        assertEquals(expected(units, matches, byName, descending, page[0], page[1]),
+                            index.fetch(filter, RosterIndex.Key.NAME, descending, page[0], page[1]));
+                        assertEquals(expected(units, matches, byAvailable, descending, page[0], page[1]),
+                            index.fetch(filter, RosterIndex.Key.AVAILABLE_TONNAGE, descending, page[0], page[1]));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void cacheKeepsRecentSortedResults() {
+        final Unit[] units = roster(500);
+        final RosterIndex index = new RosterIndex(units);
+        final Comparator<Unit> byTonnage = Comparator.comparingDouble(unit -> unit.tonnage);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 2 * RosterIndex.SORTED_CACHE_SIZE; i++) {
+                final String prefix = "Unit " + (i % 10);
+                RosterIndex.Filter filter = RosterIndex.Filter.ALL.withNamePrefix(prefix);
+                assertEquals(expected(units, unit -> unit.name.startsWith(prefix), byTonnage, false, 0, 1_000),
+                    index.fetch(filter, RosterIndex.Key.TONNAGE, false, 0, 1_000));
+            }
+        }
+    }
+
+    @Test
+    void combinedFiltersMatchBothFilters() {
+        final Unit[] units = roster(2_000);
+        final RosterIndex index = new RosterIndex(units);
+        final Comparator<Unit> byName = Comparator.comparing((Unit unit) -> unit.name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(unit -> unit.name);
+        final Comparator<Unit> byTonnage = Comparator.comparingDouble(unit -> unit.tonnage);
+        for (GameRules.UnitType type : new GameRules.UnitType[] { null, GameRules.UnitType.Vehicle }) {
+            for (String prefix : new String[] { "Unit 1", "unit 05", "Unit 9999" }) {
+                RosterIndex.Filter filter = RosterIndex.Filter.ALL.withType(type).withNamePrefix(prefix)
+                    .and(RosterIndex.Filter.ALL.withTonnage(40, 70));
+                Predicate<Unit> matches = unit -> (type == null || unit.type == type)
+                    && unit.name.toLowerCase().startsWith(prefix.toLowerCase())
+                    && unit.tonnage >= 40 && unit.tonnage <= 70;
+                assertEquals(expected(units, matches, byName, false, 0, units.length).size(), index.count(filter));
+                for (boolean descending : new boolean[] { false, true }) {
+                    assertEquals(expected(units, matches, byName, descending, 3, 20),
+                        index.fetch(filter, null, descending, 3, 20));
+                    assertEquals(expected(units, matches, byTonnage, descending, 0, 50),
+                        index.fetch(filter, RosterIndex.Key.TONNAGE, descending, 0, 50));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the rule set watcher.
+ */
+class RuleSetWatcherTest {
+
+    /**
+     * Delete a directory with its files.
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Write a rule set file by renaming a temporary file over it.
+     */
+    private static void write(Path directory, String file, String content) throws IOException {
+        Path temporary = directory.resolve(file + ".tmp");
+        Files.writeString(temporary, content, StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(file), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    void failingListenerDoesNotStopOtherListeners() throws IOException {
+        final Path directory = Files.createTempDirectory("rule-sets");
+        try (RuleSetWatcher watcher = new RuleSetWatcher(directory)) {
+            write(directory, "test.rules", "name: First\n");
+            List<RuleSet> loaded = new ArrayList<>();
+            watcher.addListener((file, previous, current) -> {
+                throw new IllegalStateException("Broken listener");
+            });
+            watcher.addListener((file, previous, current) -> loaded.add(current));
+            assertEquals(1, watcher.loadAll());
+            assertEquals(1, loaded.size());
+            assertEquals("First", loaded.get(0).getName());
+            assertEquals("Listener failed: Broken listener", watcher.getErrors().get("test.rules"));
+            assertEquals("First", watcher.get("test.rules").getName());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void startedWatcherReloadsReplacedFile() throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("rule-sets");
+        try (RuleSetWatcher watcher = new RuleSetWatcher(directory)) {
+            write(directory, "test.rules", "name: First\n");
+            watcher.start();
+            final long first = watcher.get("test.rules").getVersion();
+            write(directory, "test.rules", "name: Second\n");
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (!"Second".equals(watcher.get("test.rules").getName()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals("Second", watcher.get("test.rules").getName());
+            assertTrue(watcher.get("test.rules").getVersion() > first, "Version not increased");
+        } finally {
+            delete(directory);
+        }
+    }
+}
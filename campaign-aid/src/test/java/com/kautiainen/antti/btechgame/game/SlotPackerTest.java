@@ -0,0 +1,93 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the critical slot packing.
+ */
+class SlotPackerTest {
+
+    private static final HitLocation TORSO = new HitLocation.SlottedHitLocation("Packing Torso", "PKT", (short) 5);
+
+    private static final HitLocation ARM = new HitLocation.SlottedHitLocation("Packing Arm", "PKA", (short) 4);
+
+    private static final HitLocation TURRET = new HitLocation("Packing Turret", "PKU");
+
+    /**
+     * Check that a placement fits the free slots.
+     */
+    private static void assertFits(int[] free, int[] sizes, int[] placement) {
+        assertNotNull(placement);
+        int[] used = new int[free.length];
+        for (int i = 0; i < sizes.length; i++) {
+            used[placement[i]] += sizes[i];
+        }
+        for (int i = 0; i < free.length; i++) {
+            assertTrue(used[i] <= free[i]);
+        }
+    }
+
+    private static LoadoutController.Loadout loadout(double available) {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        LoadoutController.Entry<HitLocation, Equipment>[] none = new LoadoutController.Entry[0];
+        return new LoadoutController(50.0, available).new Loadout(none, true);
+    }
+
+    @Test
+    void fragmentedSlotsArePackedByTheExhaustiveSearch() {
+        // The best fit places the largest item into the smaller location, and strands a slot there.
+        int[] free = { 5, 4 };
+        int[] sizes = { 2, 3, 2, 2 };
+        assertFits(free, sizes, SlotPacker.pack(free, sizes));
+        assertArrayEquals(new int[] { 5, 4 }, free);
+    }
+
+    @Test
+    void capacityLimitsThePacking() {
+        assertFits(new int[] { 5, 4 }, new int[] { 5, 4 }, SlotPacker.pack(new int[] { 5, 4 }, new int[] { 5, 4 }));
+        assertNull(SlotPacker.pack(new int[] { 5, 4 }, new int[] { 5, 4, 1 }));
+        assertNull(SlotPacker.pack(new int[] { 5, 4 }, new int[] { 6 }));
+        assertNull(SlotPacker.pack(new int[] { 3, 3, 3 }, new int[] { 2, 2, 2, 2 }));
+        assertNull(SlotPacker.pack(new int[0], new int[] { 1 }));
+        assertArrayEquals(new int[0], SlotPacker.pack(new int[0], new int[0]));
+        assertArrayEquals(new int[] { 0, 0 }, SlotPacker.pack(new int[] { 0 }, new int[] { 0, 0 }));
+        assertArrayEquals(new int[] { 1 }, SlotPacker.pack(new int[] { 2, Integer.MAX_VALUE }, new int[] { 100 }));
+    }
+
+    @Test
+    void canPlaceChecksTheTonnageAndTheSlotsInclusively() {
+        LoadoutController.Loadout loadout = loadout(6.0);
+        loadout.addEquipment(TORSO, new Equipment("Packed Gun", "PKG", 3.0, 3));
+        assertTrue(loadout.canPlace(TORSO, new Equipment("Exact Fit", "EF", 3.0, 2)));
+        assertFalse(loadout.canPlace(TORSO, new Equipment("Too Large", "TL", 1.0, 3)));
+        assertFalse(loadout.canPlace(ARM, new Equipment("Too Heavy", "TH", 3.5, 1)));
+        assertTrue(loadout.canPlace(TURRET, new Equipment("Huge", "HU", 1.0, 1000)));
+        assertFalse(loadout.canPlace(null, new Equipment("Huge", "HU", 1.0, 1)));
+        assertFalse(loadout.canPlace(TORSO, null));
+        assertEquals(2, loadout.getFreeSlots(TORSO));
+        assertEquals(Integer.MAX_VALUE, loadout.getFreeSlots(TURRET));
+    }
+
+    @Test
+    void autoPlaceUsesTheFragmentedSlots() {
+        LoadoutController.Loadout loadout = loadout(20.0);
+        Equipment small = new Equipment("Small Item", "SI", 1.0, 2);
+        Equipment large = new Equipment("Large Item", "LI", 1.0, 3);
+        LoadoutController.EquipmentLoadout[] placed = loadout.autoPlace(new HitLocation[] { TORSO, ARM },
+            List.of(small, large, small, small));
+        assertNotNull(placed);
+        assertEquals(4, placed.length);
+        assertEquals(0, loadout.getFreeSlots(TORSO) + loadout.getFreeSlots(ARM));
+        assertNull(loadout.autoPlace(new HitLocation[] { TORSO, ARM }, List.of(small)));
+        assertNull(loadout(3.0).autoPlace(new HitLocation[] { TORSO, ARM }, List.of(small, small, small, small)));
+    }
+}
@@ -0,0 +1,109 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the end of turn maintenance.
+ */
+class TurnPipelineTest {
+
+    private static final HitLocation TORSO = new HitLocation("Turn Torso", "TT");
+
+    private static final HitLocation ARM = new HitLocation("Turn Arm", "TA");
+
+    private static final Equipment CANNON = new Equipment("Turn Cannon", "TC", 8.0, 4);
+
+    /**
+     * Create a unit whose torso lost armor and structure, and whose arm is destroyed.
+     */
+    private static Unit damaged(String name) {
+        return new Unit(GameRules.UnitType.Mech, name, "D-1", 50.0, 10.0, new LoadoutController.EquipmentLoadout[0],
+            new ArmorLoadout[] { new ArmorLoadout(TORSO, 20, 5), new ArmorLoadout(ARM, 10, 0) },
+            new StructureLoadout[] { new StructureLoadout(TORSO, (short) 16, (short) 9),
+                new StructureLoadout(ARM, (short) 8, (short) 0) });
+    }
+
+    private static Unit intact(String name) {
+        return new Unit(GameRules.UnitType.Mech, name, "I-1", 50.0, 10.0, new LoadoutController.EquipmentLoadout[0],
+            new ArmorLoadout[] { new ArmorLoadout(TORSO, 20, 20) },
+            new StructureLoadout[] { new StructureLoadout(TORSO, (short) 16, (short) 16) });
+    }
+
+    private static ArmorLoadout armorOf(Unit unit, HitLocation location) {
+        for (ArmorLoadout entry : unit.armor) {
+            if (entry != null && entry.location.equals(location)) return entry;
+        }
+        return null;
+    }
+
+    private static StructureLoadout structureOf(Unit unit, HitLocation location) {
+        for (StructureLoadout entry : unit.structure) {
+            if (entry != null && entry.location.equals(location)) return entry;
+        }
+        return null;
+    }
+
+    @Test
+    void repairSkipsTheDestroyedLocations() {
+        Unit unit = damaged("Damaged");
+        Unit repaired = new TurnPipeline().repair(unit);
+        assertEquals(20, armorOf(repaired, TORSO).current);
+        assertEquals(16, structureOf(repaired, TORSO).current);
+        assertEquals(0, armorOf(repaired, ARM).current);
+        assertEquals(0, structureOf(repaired, ARM).current);
+        assertEquals(0, armorOf(unit, ARM).current);
+
+        Unit partial = new TurnPipeline(new TurnPipeline.RepairPolicy(4, 2), TurnPipeline.Resupply.NONE, 1).repair(unit);
+        assertEquals(9, armorOf(partial, TORSO).current);
+        assertEquals(11, structureOf(partial, TORSO).current);
+        assertEquals(0, structureOf(partial, ARM).current);
+    }
+
+    @Test
+    void stagesRunInOrderOverAllBatches() {
+        Unit[] units = new Unit[7];
+        for (int i = 0; i < units.length; i++) {
+            units[i] = i % 2 == 0 ? damaged("Unit " + i) : intact("Unit " + i);
+        }
+        // The resupply sees the repaired units, and the validation sees the resupplied units.
+        TurnPipeline.Resupply overload = unit -> {
+            assertEquals(armorOf(unit, TORSO).max.intValue(), armorOf(unit, TORSO).current);
+            if (!unit.name.equals("Unit 3")) return unit;
+            return new Unit(unit.type, unit.name, unit.model, unit.tonnage, unit.availableTonnage,
+                new LoadoutController.EquipmentLoadout[] { new LoadoutController.EquipmentLoadout(TORSO, CANNON),
+                    new LoadoutController.EquipmentLoadout(TORSO, CANNON) }, unit.armor, unit.structure);
+        };
+        TurnPipeline pipeline = new TurnPipeline(TurnPipeline.RepairPolicy.FULL, overload, 2);
+        Campaign campaign = new Campaign("Turn Campaign", units);
+        TurnPipeline.Result result = pipeline.run(campaign);
+
+        assertEquals(4, result.repaired());
+        assertEquals(1, result.resupplied());
+        assertEquals(List.of(3), result.violations().stream().map(TurnPipeline.Violation::index).toList());
+        assertSame(result.campaign().getUnits()[3], result.violations().get(0).unit());
+        assertSame(units[1], result.campaign().getUnits()[1]);
+        assertEquals(0, structureOf(result.campaign().getUnits()[0], ARM).current);
+        assertEquals(TurnPipeline.Stage.values().length, result.timings().size());
+        assertSame(units[0], campaign.getUnits()[0]);
+    }
+
+    @Test
+    void advanceReplacesOnlyTheMaintainedCampaign() {
+        AtomicReference<Campaign> state = new AtomicReference<>(new Campaign("Advanced", new Unit[] { damaged("Only") }));
+        TurnPipeline.Result result = new TurnPipeline().advance(state);
+        assertSame(result.campaign(), state.get());
+        assertEquals(20, armorOf(state.get().getUnits()[0], TORSO).current);
+        assertTrue(result.violations().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new TurnPipeline().run(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> new TurnPipeline(TurnPipeline.RepairPolicy.FULL, TurnPipeline.Resupply.NONE, 0));
+    }
+}
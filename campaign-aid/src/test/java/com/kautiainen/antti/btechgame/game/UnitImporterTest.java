@@ -0,0 +1,113 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the unit importer.
+ */
+class UnitImporterTest {
+
+    private static final Equipment LASER = new Equipment("Import Test Laser", "ITL", 1.0, 1);
+
+    private static final Equipment CANNON = new Equipment("Import Test Cannon", "ITC", 8.0, 3);
+
+    private final HitLocationRegistry registry = new HitLocationRegistry();
+
+    private final HitLocation torso = this.registry.slotted(GameRules.UnitType.Mech, "Center Torso", "CT", (short) 12);
+
+    private final HitLocation front = this.registry.slotted(GameRules.UnitType.Vehicle, "Front", "FR", (short) 6);
+
+    private final EquipmentCatalog catalog = EquipmentCatalog.of(List.of(LASER, CANNON));
+
+    /**
+     * Import units, and collect the units in the order of their names and the errors in the order
+     * of their lines.
+     */
+    private UnitImporter.Summary importUnits(UnitImporter importer, String input, List<Unit> units,
+        List<UnitImporter.ImportError> errors) throws IOException {
+        List<Unit> imported = Collections.synchronizedList(new ArrayList<>());
+        List<UnitImporter.ImportError> failed = Collections.synchronizedList(new ArrayList<>());
+        UnitImporter.Summary result = importer.importUnits(new StringReader(input), imported::add, failed::add);
+        units.addAll(imported);
+        units.sort(Comparator.comparing(Unit::getName));
+        errors.addAll(failed);
+        errors.sort(Comparator.comparingLong(UnitImporter.ImportError::line));
+        return result;
+    }
+
+    @Test
+    void importsUnitsWithCanonicalLocationsAndEquipment() throws IOException {
+        UnitImporter importer = new UnitImporter(this.catalog, this.registry, ForkJoinPool.commonPool(), 2, 1);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 9; i++) {
+            input.append("chassis: Unit ").append(i).append("\nmodel: U-").append(i).append("\nmass: 50\n")
+                .append("CT armor: 20\nCenter Torso structure: 16\n")
+                .append("Center Torso:\nImport Test Cannon\nImport Test Cannon\nImport Test Cannon\nITL\n-Empty-\n\n");
+        }
+        List<Unit> units = new ArrayList<>();
+        List<UnitImporter.ImportError> errors = new ArrayList<>();
+        assertEquals(new UnitImporter.Summary(9, 9, 0), importUnits(importer, input.toString(), units, errors));
+        assertEquals(List.of(), errors);
+        Unit unit = units.get(4);
+        assertEquals("Unit 4", unit.getName());
+        assertEquals(50.0, unit.getAvailableTonnage());
+        assertEquals(2, unit.loadout.length);
+        assertSame(this.torso, unit.loadout[0].getKey());
+        assertSame(CANNON, unit.loadout[0].getValue());
+        assertSame(LASER, unit.loadout[1].getValue());
+        assertSame(this.torso, unit.armor[0].location);
+        assertEquals(16, unit.getSummary().getStructureMax());
+    }
+
+    @Test
+    void typeAfterLocationsResolvesLocationsOfTheType() throws IOException {
+        UnitImporter importer = new UnitImporter(this.catalog, this.registry);
+        List<Unit> units = new ArrayList<>();
+        List<UnitImporter.ImportError> errors = new ArrayList<>();
+        importUnits(importer, "chassis: Tank\nmass: 20\nFR armor: 10\nFront:\nITL\n\ntype: Vehicle\n", units, errors);
+        assertEquals(List.of(), errors);
+        assertEquals(GameRules.UnitType.Vehicle, units.get(0).getType());
+        assertSame(this.front, units.get(0).armor[0].location);
+        assertSame(this.front, units.get(0).loadout[0].getKey());
+    }
+
+    @Test
+    void errorsSkipTheRecord() throws IOException {
+        UnitImporter importer = new UnitImporter(this.catalog, this.registry);
+        List<Unit> units = new ArrayList<>();
+        List<UnitImporter.ImportError> errors = new ArrayList<>();
+        UnitImporter.Summary summary = importUnits(importer,
+            "stray line\nchassis: First\nmass: 30\nXX armor: 5\nchassis: Second\nmass: 40\nCenter Torso:\nNo Such Gun\n\n"
+                + "chassis: Third\nmass: 25\n", units, errors);
+        assertEquals(new UnitImporter.Summary(3, 1, 3), summary);
+        assertEquals("Third", units.get(0).getName());
+        assertEquals(List.of(1L, 4L, 8L), errors.stream().map(UnitImporter.ImportError::line).toList());
+        assertEquals("First", errors.get(1).chassis());
+    }
+
+    @Test
+    void rejectedChunkDoesNotBlockTheImport() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        pool.shutdown();
+        UnitImporter importer = new UnitImporter(this.catalog, this.registry, pool, 1, 1);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(RejectedExecutionException.class, () -> importer.importUnits(
+                new StringReader("chassis: First\nmass: 30\nchassis: Second\nmass: 40\n"), unit -> { }, error -> { }));
+        });
+    }
+}
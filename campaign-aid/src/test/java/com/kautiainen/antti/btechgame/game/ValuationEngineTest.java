@@ -0,0 +1,60 @@
+package com.kautiainen.antti.btechgame.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test of the valuation engine.
+ */
+class ValuationEngineTest {
+
+    private static final HitLocation TORSO = new HitLocation("Valuation Torso", "VT");
+
+    private static final Equipment LASER = new Equipment("Valuation Laser", "VL", 1.0, 1);
+
+    private static final Equipment CANNON = new Equipment("Valuation Cannon", "VC", 8.0, 4);
+
+    private static Unit unit(double tonnage, Equipment... equipment) {
+        LoadoutController.EquipmentLoadout[] loadout = new LoadoutController.EquipmentLoadout[equipment.length];
+        for (int i = 0; i < equipment.length; i++) {
+            loadout[i] = new LoadoutController.EquipmentLoadout(TORSO, equipment[i]);
+        }
+        return new Unit(GameRules.UnitType.Mech, "Valued", "V-1", tonnage, tonnage, loadout,
+            new ArmorLoadout[] { new ArmorLoadout(TORSO, 10, 8) },
+            new StructureLoadout[] { new StructureLoadout(TORSO, (short) 5, (short) 5) });
+    }
+
+    @Test
+    void trackerFollowsAddedAndRemovedEquipment() {
+        ValuationEngine engine = new ValuationEngine();
+        Unit unit = unit(50.0, LASER, CANNON);
+        ValuationEngine.Tracker tracker = engine.track(unit);
+        assertEquals(engine.valueOf(unit), tracker.getValuation());
+
+        tracker.remove(CANNON);
+        // Removing equipment the tracker does not contain does nothing.
+        tracker.remove(CANNON);
+        assertEquals(new ValuationEngine().valueOf(unit(50.0, LASER)), tracker.getValuation());
+        tracker.add(CANNON);
+        tracker.add(LASER);
+        assertEquals(new ValuationEngine().valueOf(unit(50.0, LASER, LASER, CANNON)), tracker.getValuation());
+        assertNotEquals(engine.valueOf(unit), tracker.getValuation());
+    }
+
+    @Test
+    void memoIsBounded() {
+        ValuationEngine engine = new ValuationEngine(ValuationEngine.DEFAULT_WEIGHTS, 8);
+        for (int tonnage = 20; tonnage < 120; tonnage++) {
+            Unit unit = unit(tonnage, LASER);
+            assertEquals(engine.track(unit).getValuation(), engine.valueOf(unit));
+        }
+        assertTrue(engine.getMemoSize() <= 8);
+        assertTrue(engine.getMemoSize() > 0);
+        assertEquals(0, new ValuationEngine(ValuationEngine.DEFAULT_WEIGHTS, 0).getMemoSize());
+        assertEquals(engine.valueOf(unit(60.0, CANNON)),
+            new ValuationEngine(ValuationEngine.DEFAULT_WEIGHTS, 0).valueOf(unit(60.0, CANNON)));
+    }
+}